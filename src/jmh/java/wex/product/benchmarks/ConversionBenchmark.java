@@ -0,0 +1,82 @@
+package wex.product.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import wex.product.services.exchange.ExchangeRateService;
+import wex.product.services.storage.StorageService;
+import wex.product.services.storage.Transaction;
+import wex.product.services.transaction.ConvertedTransaction;
+import wex.product.services.transaction.TransactionService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link TransactionService} itself: storage and the exchange rate API are replaced with in-memory stubs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    private static final BigDecimal EXCHANGE_RATE = new BigDecimal("1.527");
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"1000", "100000"})
+    private int records;
+
+    private TransactionService transactionService;
+    private List<UUID> batchIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var transactions = new HashMap<UUID, Transaction>();
+        for (var i = 0; i < records; i++) {
+            var transaction = Datasets.transaction(i);
+            transactions.put(transaction.id(), transaction);
+        }
+        ExchangeRateService exchangeRateService = (currency, date) -> EXCHANGE_RATE;
+        transactionService = new TransactionService(new InMemoryStorageService(transactions), exchangeRateService);
+        batchIds = new ArrayList<>(BATCH_SIZE);
+        for (var i = 0; i < BATCH_SIZE; i++) {
+            batchIds.add(Datasets.id(i % records));
+        }
+    }
+
+    @Benchmark
+    public ConvertedTransaction retrieveTransaction() {
+        return transactionService.retrieveTransaction(Datasets.id(ThreadLocalRandom.current().nextInt(records)), "Euro Zone-Euro");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<ConvertedTransaction> retrieveTransactions() {
+        return transactionService.retrieveTransactions(batchIds, "Euro Zone-Euro").toList();
+    }
+
+    private record InMemoryStorageService(Map<UUID, Transaction> transactions) implements StorageService {
+
+        @Override
+        public void reset() {
+            transactions.clear();
+        }
+
+        @Override
+        public void storeTransaction(Transaction transaction) {
+            transactions.put(transaction.id(), transaction);
+        }
+
+        @Override
+        public Transaction findTransaction(UUID id) {
+            return transactions.get(id);
+        }
+    }
+}
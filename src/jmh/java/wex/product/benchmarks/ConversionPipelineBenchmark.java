@@ -0,0 +1,69 @@
+package wex.product.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import wex.product.services.storage.Transaction;
+import wex.product.services.transaction.ConversionPipeline;
+import wex.product.services.transaction.ConvertedTransaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link ConversionPipeline} with the parallelism of its pool, rates are resolved from memory so only the
+ * conversion itself is measured. Records are shuffled, so the pipeline pays for sorting them by date.
+ * {@code threads=1} is the sequential baseline; 10 million records need about 6 GB of heap, e.g.
+ * {@code -jvmArgs -Xmx8g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConversionPipelineBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int records;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private List<Transaction> transactions;
+    private CompletableFuture<Map<LocalDate, BigDecimal>> exchangeRates;
+    private ForkJoinPool pool;
+    private ConversionPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        transactions = new ArrayList<>(records);
+        var rates = new HashMap<LocalDate, BigDecimal>();
+        for (var i = 0; i < records; i++) {
+            var transaction = Datasets.transaction(i);
+            transactions.add(transaction);
+            rates.computeIfAbsent(transaction.date(), date -> BigDecimal.valueOf(500 + date.getDayOfYear(), 3));
+        }
+        exchangeRates = CompletableFuture.completedFuture(rates);
+        Collections.shuffle(transactions, new Random(42));
+        pool = new ForkJoinPool(threads);
+        pipeline = new ConversionPipeline(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public List<ConvertedTransaction> convert() {
+        return pipeline.convert(transactions, dates -> exchangeRates);
+    }
+}
@@ -0,0 +1,116 @@
+package wex.product.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import wex.product.services.storage.FileStorageService;
+import wex.product.services.storage.JdbcStorageService;
+import wex.product.services.storage.LockingFileStorageService;
+import wex.product.services.storage.LogStorageService;
+import wex.product.services.storage.MappedStorageService;
+import wex.product.services.storage.StorageService;
+import wex.product.services.storage.StorageServiceFactory;
+import wex.product.services.storage.Transaction;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic purchases and storages pre-filled with them, so every benchmark run sees the same data.
+ */
+abstract class Datasets {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final LocalDate FIRST_DATE = LocalDate.parse("2020-01-01");
+
+    private Datasets() {
+    }
+
+    static UUID id(long index) {
+        return new UUID(0x5745580000000000L | index, index * 0x9E3779B97F4A7C15L);
+    }
+
+    static Transaction transaction(long index) {
+        return new Transaction(
+                id(index),
+                BigDecimal.valueOf(index % 1_000_000, 2),
+                FIRST_DATE.plusDays(index % 1_000),
+                "Purchase " + index
+        );
+    }
+
+    /**
+     * Creates the storage engine in the directory and fills it with the first {@code records} purchases.
+     */
+    static StorageService createStorage(String engine, Path directory, long records, ObjectMapper objectMapper) throws IOException {
+        if (engine.equals(StorageServiceFactory.FILE) || engine.equals(StorageServiceFactory.LOCKING_FILE)) {
+            writeJsonStorage(directory.resolve("storage.json"), records, objectMapper);
+            return openStorage(engine, directory, objectMapper);
+        }
+        return fill(openStorage(engine, directory, objectMapper), records);
+    }
+
+    /**
+     * Opens the storage engine over the files {@link #createStorage} left in the directory.
+     */
+    static StorageService openStorage(String engine, Path directory, ObjectMapper objectMapper) {
+        return switch (engine) {
+            case StorageServiceFactory.FILE -> new FileStorageService(directory.resolve("storage.json").toString(), objectMapper);
+            case StorageServiceFactory.LOCKING_FILE -> new LockingFileStorageService(directory.resolve("storage.json"), objectMapper);
+            case StorageServiceFactory.LOG -> new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+            case StorageServiceFactory.MAPPED -> new MappedStorageService(directory.resolve("storage.bin").toString());
+            case StorageServiceFactory.JDBC -> new JdbcStorageService(JdbcStorageService.fileUrl(directory.resolve("storage-h2").toString()));
+            default -> throw new IllegalArgumentException(String.format("Unknown storage type %s.", engine));
+        };
+    }
+
+    static void copyDirectory(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (var path : paths.toList()) {
+                var copy = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static StorageService fill(StorageService storageService, long records) {
+        var batch = new ArrayList<Transaction>(BATCH_SIZE);
+        for (var i = 0L; i < records; i++) {
+            batch.add(transaction(i));
+            if (batch.size() == BATCH_SIZE) {
+                storageService.storeTransactions(batch);
+                batch.clear();
+            }
+        }
+        storageService.storeTransactions(batch);
+        return storageService;
+    }
+
+    private static void writeJsonStorage(Path path, long records, ObjectMapper objectMapper) throws IOException {
+        try (var generator = objectMapper.getFactory().createGenerator(Files.newOutputStream(path))) {
+            generator.writeStartArray();
+            for (var i = 0L; i < records; i++) {
+                objectMapper.writeValue(generator, transaction(i));
+            }
+            generator.writeEndArray();
+        }
+    }
+}
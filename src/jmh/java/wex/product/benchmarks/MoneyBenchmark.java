@@ -0,0 +1,54 @@
+package wex.product.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import wex.product.services.transaction.FixedPointMoney;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of converting an amount to the target currency with {@link BigDecimal} arithmetic against
+ * {@link FixedPointMoney}. Run with {@code -prof gc} to compare allocations per conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final int AMOUNTS = 1_024;
+
+    @Param({"1.527", "0.917245"})
+    private String rate;
+
+    private BigDecimal exchangeRate;
+    private BigDecimal[] amounts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        exchangeRate = new BigDecimal(rate);
+        amounts = new BigDecimal[AMOUNTS];
+        for (var i = 0; i < AMOUNTS; i++) {
+            amounts[i] = Datasets.transaction(i).amount();
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        return nextAmount().multiply(exchangeRate).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public BigDecimal fixedPoint() {
+        return FixedPointMoney.multiply(nextAmount(), exchangeRate);
+    }
+
+    private BigDecimal nextAmount() {
+        next = (next + 1) & (AMOUNTS - 1);
+        return amounts[next];
+    }
+}
@@ -0,0 +1,67 @@
+package wex.product.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import wex.product.mapper.ObjectMapperFactory;
+import wex.product.services.storage.Transaction;
+import wex.product.services.storage.TransactionCodec;
+import wex.product.services.transaction.ConvertedTransaction;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization used by the log and file engines and the CLI output, next to the fixed-width binary codec of the
+ * mapped engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.create();
+    private final Transaction transaction = Datasets.transaction(42);
+    private final ConvertedTransaction convertedTransaction = new ConvertedTransaction(
+            transaction.id(), transaction.date(), transaction.description(), transaction.amount(),
+            new BigDecimal("1.527"), new BigDecimal("0.64"));
+    private final ByteBuffer buffer = ByteBuffer.allocate(TransactionCodec.MAX_RECORD_SIZE);
+
+    private byte[] transactionJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        transactionJson = objectMapper.writeValueAsBytes(transaction);
+        TransactionCodec.encode(transaction, buffer, 0);
+    }
+
+    @Benchmark
+    public byte[] writeTransactionJson() throws IOException {
+        return objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public Transaction readTransactionJson() throws IOException {
+        return objectMapper.readValue(transactionJson, Transaction.class);
+    }
+
+    @Benchmark
+    public String writeConvertedTransactionJson() throws IOException {
+        return objectMapper.writeValueAsString(convertedTransaction);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeTransaction() {
+        TransactionCodec.encode(transaction, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public Transaction decodeTransaction() {
+        return TransactionCodec.decode(buffer, 0);
+    }
+}
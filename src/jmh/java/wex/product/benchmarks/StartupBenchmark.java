@@ -0,0 +1,79 @@
+package wex.product.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching {@code target/app.jar} in a fresh JVM to the first byte it prints, with and without the class
+ * data sharing archive built by {@code mvn verify}. Needs {@code mvn verify} to have run before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final Path JAR = Path.of("target", "app.jar").toAbsolutePath();
+    private static final Path ARCHIVE = Path.of("target", "app.jsa").toAbsolutePath();
+
+    @Param({"none", "cds"})
+    private String archive;
+
+    @Param({"usage", "reset", "store"})
+    private String command;
+
+    private Path directory;
+    private List<String> commandLine;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (!Files.exists(JAR) || archive.equals("cds") && !Files.exists(ARCHIVE)) {
+            throw new IllegalStateException("Run mvn verify to build target/app.jar and target/app.jsa first.");
+        }
+        directory = Files.createTempDirectory("startup-benchmark");
+        commandLine = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        if (archive.equals("cds")) {
+            commandLine.add("-XX:SharedArchiveFile=" + ARCHIVE);
+        }
+        commandLine.addAll(List.of("-jar", JAR.toString()));
+        switch (command) {
+            case "usage" -> {
+            }
+            case "reset" -> commandLine.add("reset");
+            case "store" -> commandLine.addAll(List.of("store", "--amount=1.00", "--date=2023-01-01", "--description=Startup"));
+            default -> throw new IllegalArgumentException(command);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void awaitExit() throws IOException, InterruptedException {
+        try (var output = process.getInputStream()) {
+            output.transferTo(OutputStream.nullOutputStream());
+        }
+        process.waitFor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Datasets.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public int timeToFirstOutput() throws IOException {
+        process = new ProcessBuilder(commandLine)
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .start();
+        return process.getInputStream().read();
+    }
+}
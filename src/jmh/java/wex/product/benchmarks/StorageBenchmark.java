@@ -0,0 +1,75 @@
+package wex.product.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import wex.product.mapper.ObjectMapperFactory;
+import wex.product.services.storage.StorageService;
+import wex.product.services.storage.Transaction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store and lookup cost of every storage engine as the storage grows.
+ * <p>
+ * Every iteration starts from a fresh copy of a storage filled once per trial, so the purchases stored while measuring
+ * do not pile up across iterations. The JSON engines rewrite and reparse the whole file per operation, so they are
+ * left out of the defaults; compare them at small sizes with e.g.
+ * {@code -Djmh.args="StorageBenchmark -p engine=jdbc,file -p records=1000,100000"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Param({"log", "mapped", "jdbc"})
+    private String engine;
+
+    @Param({"1000", "100000", "1000000"})
+    private long records;
+
+    private Path template;
+    private Path directory;
+    private StorageService storageService;
+    private long nextIndex;
+
+    @Setup(Level.Trial)
+    public void createTemplate() throws IOException {
+        template = Files.createTempDirectory("storage-benchmark");
+        Datasets.createStorage(engine, template, records, ObjectMapperFactory.create()).close();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("storage-benchmark");
+        Datasets.copyDirectory(template, directory);
+        storageService = Datasets.openStorage(engine, directory, ObjectMapperFactory.create());
+        nextIndex = records;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        storageService.close();
+        Datasets.deleteDirectory(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTemplate() throws IOException {
+        Datasets.deleteDirectory(template);
+    }
+
+    @Benchmark
+    public Transaction findTransaction() {
+        return storageService.findTransaction(Datasets.id(ThreadLocalRandom.current().nextLong(records)));
+    }
+
+    @Benchmark
+    public void storeTransaction() {
+        storageService.storeTransaction(Datasets.transaction(nextIndex++));
+    }
+}
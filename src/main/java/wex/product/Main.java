@@ -2,10 +2,29 @@ package wex.product;
 
 import wex.product.interactor.Interactor;
 import wex.product.mapper.ObjectMapperFactory;
+import wex.product.metrics.Metrics;
+import wex.product.server.TransactionServer;
+import wex.product.services.exchange.CachingExchangeRateService;
+import wex.product.services.exchange.CoalescingExchangeRateService;
+import wex.product.services.exchange.ExchangeRateService;
 import wex.product.services.exchange.FiscalDataExchangeRateService;
-import wex.product.services.storage.FileStorageService;
+import wex.product.services.exchange.LazyExchangeRateService;
+import wex.product.services.exchange.LocalExchangeRateService;
+import wex.product.services.exchange.MeteredExchangeRateService;
+import wex.product.services.storage.CachingStorageService;
+import wex.product.services.storage.MeteredStorageService;
+import wex.product.services.storage.StorageService;
+import wex.product.services.storage.StorageServiceFactory;
+import wex.product.services.transaction.ConversionExecutor;
+import wex.product.services.transaction.TransactionImporter;
 import wex.product.services.transaction.TransactionService;
 import wex.product.utils.LaunchParameters;
+import wex.product.utils.Lazy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.Executors;
 
 public final class Main {
     /**
@@ -16,10 +35,94 @@ public final class Main {
     public static void main(String[] args) {
         var objectMapper = ObjectMapperFactory.create();
         var parameters = new LaunchParameters(args);
+        var metricsPath = parameters.arguments().get("metrics");
+        var metrics = metricsPath != null ? new Metrics() : null;
         var interactor = new Interactor(parameters, System.out, objectMapper);
-        var storageService = new FileStorageService("storage.json", objectMapper);
-        var exchangeRateService = new FiscalDataExchangeRateService(objectMapper);
-        var transactionService = new TransactionService(storageService, exchangeRateService);
-        new Runner(interactor, storageService, transactionService).run();
+        var storageService = Lazy.<StorageService>of(() -> {
+            var storage = StorageServiceFactory.create(
+                    parameters.arguments().get("storage"),
+                    parameters.arguments().get("sync-batch"),
+                    objectMapper
+            );
+            if ("serve".equals(parameters.command())) {
+                var cachingStorage = new CachingStorageService(storage);
+                if (metrics != null) {
+                    metrics.gauge("storage.cache.records", cachingStorage::cachedCount);
+                }
+                storage = cachingStorage;
+            }
+            return metrics != null ? new MeteredStorageService(storage, metrics) : storage;
+        });
+        Runnable closeStorage = () -> {
+            if (storageService.isCreated()) {
+                synchronized (storageService) {
+                    try {
+                        storageService.get().close();
+                    } catch (IOException e) {
+                        interactor.printError(e);
+                    }
+                }
+            }
+        };
+        var fiscalDataExchangeRateService = Lazy.of(() -> new FiscalDataExchangeRateService(objectMapper));
+        var localExchangeRateService = Lazy.of(() -> {
+            ExchangeRateService upstreamExchangeRateService = fiscalDataExchangeRateService.get();
+            if (metrics != null) {
+                upstreamExchangeRateService = new MeteredExchangeRateService(upstreamExchangeRateService, metrics, "fetch");
+            }
+            var cachingExchangeRateService = new CachingExchangeRateService(
+                    new CoalescingExchangeRateService(upstreamExchangeRateService),
+                    "exchange-rates.json",
+                    objectMapper
+            );
+            if (metrics != null) {
+                metrics.gauge("exchange.cache.hitRatio", () -> cachingExchangeRateService.stats().hitRatio());
+            }
+            return new LocalExchangeRateService(
+                    fiscalDataExchangeRateService.get(),
+                    cachingExchangeRateService,
+                    "exchange-rates-table.json",
+                    objectMapper
+            );
+        });
+        ExchangeRateService exchangeRateService = new LazyExchangeRateService(metrics != null
+                ? Lazy.of(() -> new MeteredExchangeRateService(localExchangeRateService.get(), metrics, "lookup"))
+                : localExchangeRateService);
+        var transactionService = Lazy.of(() -> new TransactionService(storageService.get(), exchangeRateService));
+        var transactionImporter = Lazy.of(() -> new TransactionImporter(transactionService.get(), objectMapper));
+        var transactionServer = Lazy.of(() -> {
+            var server = new TransactionServer(
+                    transactionService.get(),
+                    new ConversionExecutor(transactionService.get()),
+                    objectMapper,
+                    Executors.newFixedThreadPool(TransactionServer.DEFAULT_THREADS)
+            );
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                closeStorage.run();
+            }));
+            return server;
+        });
+        var runner = new Runner(
+                interactor,
+                storageService,
+                transactionService,
+                localExchangeRateService,
+                transactionImporter,
+                transactionServer
+        );
+        try {
+            if (metrics == null) {
+                runner.run();
+            } else {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> metrics.dump(Path.of(metricsPath), objectMapper)));
+                var commandTime = metrics.histogram("command." + Objects.requireNonNullElse(parameters.command(), "usage"));
+                var start = System.nanoTime();
+                runner.run();
+                commandTime.recordSince(start);
+            }
+        } finally {
+            closeStorage.run();
+        }
     }
 }
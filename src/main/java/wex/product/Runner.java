@@ -2,22 +2,55 @@ package wex.product;
 
 import wex.product.interactor.Interactor;
 import wex.product.interactor.commands.CommandException;
+import wex.product.interactor.commands.ImportCommand;
+import wex.product.interactor.commands.PurgeCommand;
+import wex.product.interactor.commands.QueryCommand;
 import wex.product.interactor.commands.ResetCommand;
+import wex.product.interactor.commands.RetrieveBatchCommand;
 import wex.product.interactor.commands.RetrieveCommand;
+import wex.product.interactor.commands.ServeCommand;
 import wex.product.interactor.commands.StoreCommand;
+import wex.product.interactor.commands.SyncCommand;
+import wex.product.server.TransactionServer;
+import wex.product.services.exchange.LocalExchangeRateService;
 import wex.product.services.storage.StorageService;
+import wex.product.services.storage.TransactionQuery;
+import wex.product.services.transaction.TransactionImporter;
 import wex.product.services.transaction.TransactionService;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * Runs the command given on the command line.
+ * <p>
+ * Services are passed as suppliers and are only asked for when the command needs them, so that a command does not
+ * build what it never uses.
+ */
 public final class Runner {
 
     private final Interactor interactor;
-    private final StorageService storageService;
-    private final TransactionService transactionService;
+    private final Supplier<StorageService> storageService;
+    private final Supplier<TransactionService> transactionService;
+    private final Supplier<LocalExchangeRateService> localExchangeRateService;
+    private final Supplier<TransactionImporter> transactionImporter;
+    private final Supplier<TransactionServer> transactionServer;
 
-    public Runner(Interactor interactor, StorageService storageService, TransactionService transactionService) {
+    public Runner(
+            Interactor interactor,
+            Supplier<StorageService> storageService,
+            Supplier<TransactionService> transactionService,
+            Supplier<LocalExchangeRateService> localExchangeRateService,
+            Supplier<TransactionImporter> transactionImporter,
+            Supplier<TransactionServer> transactionServer
+    ) {
         this.interactor = interactor;
         this.storageService = storageService;
         this.transactionService = transactionService;
+        this.localExchangeRateService = localExchangeRateService;
+        this.transactionImporter = transactionImporter;
+        this.transactionServer = transactionServer;
     }
 
     public void run() {
@@ -31,6 +64,18 @@ public final class Runner {
                 storeTransaction((StoreCommand) command);
             } else if (command instanceof RetrieveCommand) {
                 retrieveTransaction((RetrieveCommand) command);
+            } else if (command instanceof RetrieveBatchCommand) {
+                retrieveTransactions((RetrieveBatchCommand) command);
+            } else if (command instanceof ImportCommand) {
+                importTransactions((ImportCommand) command);
+            } else if (command instanceof SyncCommand) {
+                syncExchangeRates();
+            } else if (command instanceof ServeCommand) {
+                serve((ServeCommand) command);
+            } else if (command instanceof PurgeCommand) {
+                purgeTransactions((PurgeCommand) command);
+            } else if (command instanceof QueryCommand) {
+                queryTransactions((QueryCommand) command);
             } else {
                 throw new IllegalStateException(String.format("Unexpected command: %s", command.getClass().getName()));
             }
@@ -43,17 +88,61 @@ public final class Runner {
     }
 
     private void resetStorage() {
-        storageService.reset();
+        storageService.get().reset();
         interactor.printResult("Done");
     }
 
     private void storeTransaction(StoreCommand command) {
-        var transaction = transactionService.storeTransaction(command.amount(), command.date(), command.description());
+        var transaction = transactionService.get().storeTransaction(command.amount(), command.date(), command.description());
         interactor.printResult(transaction.id());
     }
 
+    /**
+     * Prints a single conversion as before when one currency is asked for, and conversions by currency otherwise.
+     */
     private void retrieveTransaction(RetrieveCommand command) {
-        var transaction = transactionService.retrieveTransaction(command.id(), command.currency());
-        interactor.printResult(transaction);
+        var currencies = command.currencies();
+        if (command.allCurrencies()) {
+            interactor.printResult(transactionService.get().retrieveTransactionInAllCurrencies(command.id()));
+        } else if (currencies.size() == 1) {
+            interactor.printResult(transactionService.get().retrieveTransaction(command.id(), currencies.get(0)));
+        } else {
+            interactor.printResult(transactionService.get().retrieveTransaction(command.id(), currencies));
+        }
+    }
+
+    private void retrieveTransactions(RetrieveBatchCommand command) {
+        transactionService.get().retrieveTransactions(command.ids(), command.currency()).forEach(interactor::printJsonLine);
+    }
+
+    private void importTransactions(ImportCommand command) {
+        var count = transactionImporter.get().importFile(Path.of(command.file()));
+        interactor.printResult(count);
+    }
+
+    private void syncExchangeRates() {
+        var count = localExchangeRateService.get().sync();
+        interactor.printResult(count);
+    }
+
+    private void purgeTransactions(PurgeCommand command) {
+        storageService.get().deleteTransactionsBefore(command.before());
+        interactor.printResult("Done");
+    }
+
+    private void queryTransactions(QueryCommand command) {
+        var query = new TransactionQuery(command.from(), command.to(), command.prefix());
+        if (command.currency() == null) {
+            transactionService.get().queryTransactions(query, interactor::printJsonLine);
+        } else {
+            transactionService.get().queryTransactions(query, command.currency(), interactor::printJsonLine);
+        }
+    }
+
+    private void serve(ServeCommand command) throws IOException, InterruptedException {
+        var server = transactionServer.get();
+        var port = server.start(command.port());
+        interactor.printResult(String.format("Listening on http://localhost:%d", port));
+        server.awaitStop();
     }
 }
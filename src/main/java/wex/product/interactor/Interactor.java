@@ -3,25 +3,44 @@ package wex.product.interactor;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import wex.product.interactor.commands.*;
+import wex.product.server.TransactionServer;
 import wex.product.utils.LaunchParameters;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import static wex.product.utils.Utils.readTextResource;
 
 public final class Interactor {
 
+    private static final String ALL_CURRENCIES = "all";
+
     private final LaunchParameters launchParameters;
     private final PrintStream printStream;
+    private final InputStream inputStream;
     private final ObjectMapper objectMapper;
 
     public Interactor(LaunchParameters launchParameters, PrintStream printStream, ObjectMapper objectMapper) {
+        this(launchParameters, printStream, System.in, objectMapper);
+    }
+
+    public Interactor(LaunchParameters launchParameters, PrintStream printStream, InputStream inputStream, ObjectMapper objectMapper) {
         this.launchParameters = launchParameters;
         this.printStream = printStream;
+        this.inputStream = inputStream;
         this.objectMapper = objectMapper;
     }
 
@@ -37,6 +56,17 @@ public final class Interactor {
         }
     }
 
+    /**
+     * Prints the result as a single line of JSON so that a stream of results can be consumed as JSON lines.
+     */
+    public void printJsonLine(Object result) {
+        try {
+            printStream.println(objectMapper.writeValueAsString(result));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Can not serialize result to JSON.", e);
+        }
+    }
+
     public void printError(Throwable e) {
         printStream.printf("Error: %s%n", e.getMessage());
     }
@@ -50,6 +80,12 @@ public final class Interactor {
                 case "reset" -> buildResetCommand();
                 case "store" -> buildStoreCommand();
                 case "retrieve" -> buildRetrieveCommand();
+                case "retrieve-batch" -> buildRetrieveBatchCommand();
+                case "import" -> buildImportCommand();
+                case "sync" -> buildSyncCommand();
+                case "serve" -> buildServeCommand();
+                case "purge" -> buildPurgeCommand();
+                case "query" -> buildQueryCommand();
                 default -> throw new CommandException(String.format("Unknown command %s.", launchParameters.command()));
             };
         }
@@ -68,10 +104,93 @@ public final class Interactor {
     }
 
     private RetrieveCommand buildRetrieveCommand() throws CommandException {
-        return new RetrieveCommand(
-                getUuidArgument("id"),
-                getStringArgument("currency")
-        );
+        var id = getUuidArgument("id");
+        var currency = getStringArgument("currency");
+        if (ALL_CURRENCIES.equals(currency)) {
+            return new RetrieveCommand(id, List.of());
+        }
+        var currencies = Arrays.stream(currency.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .distinct()
+                .toList();
+        if (currencies.isEmpty()) {
+            throw new CommandException("Argument currency is not provided.");
+        }
+        return new RetrieveCommand(id, currencies);
+    }
+
+    private RetrieveBatchCommand buildRetrieveBatchCommand() throws CommandException {
+        var currency = getStringArgument("currency");
+        var file = launchParameters.arguments().get("file");
+        if (file == null) {
+            return new RetrieveBatchCommand(readIds(inputStream), currency);
+        }
+        try (var fileStream = Files.newInputStream(Path.of(file))) {
+            return new RetrieveBatchCommand(readIds(fileStream), currency);
+        } catch (IOException e) {
+            throw new CommandException(String.format("Can not read ids from %s.", file));
+        }
+    }
+
+    private ImportCommand buildImportCommand() throws CommandException {
+        return new ImportCommand(getStringArgument("file"));
+    }
+
+    private SyncCommand buildSyncCommand() {
+        return new SyncCommand();
+    }
+
+    private ServeCommand buildServeCommand() throws CommandException {
+        var value = launchParameters.arguments().get("port");
+        if (value == null) {
+            return new ServeCommand(TransactionServer.DEFAULT_PORT);
+        }
+        try {
+            var port = Integer.parseInt(value);
+            if (port >= 0 && port <= 65535) {
+                return new ServeCommand(port);
+            }
+        } catch (NumberFormatException e) {
+            // Reported below together with out of range ports.
+        }
+        throw new CommandException("Argument port is not a valid port number.");
+    }
+
+    private PurgeCommand buildPurgeCommand() throws CommandException {
+        return new PurgeCommand(getIsoDateArgument("before"));
+    }
+
+    private QueryCommand buildQueryCommand() throws CommandException {
+        var arguments = launchParameters.arguments();
+        var from = arguments.get("from") != null ? getIsoDateArgument("from") : null;
+        var to = arguments.get("to") != null ? getIsoDateArgument("to") : null;
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new CommandException("Argument from is after argument to.");
+        }
+        return new QueryCommand(from, to, arguments.get("prefix"), arguments.get("currency"));
+    }
+
+    private List<UUID> readIds(InputStream idsStream) throws CommandException {
+        var ids = new ArrayList<UUID>();
+        var reader = new BufferedReader(new InputStreamReader(idsStream, StandardCharsets.UTF_8));
+        try {
+            var lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!line.isBlank()) {
+                    try {
+                        ids.add(UUID.fromString(line.trim()));
+                    } catch (IllegalArgumentException e) {
+                        throw new CommandException(String.format("Line %d of ids is not a valid UUID.", lineNumber));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new CommandException("Can not read ids.");
+        }
+        return ids;
     }
 
     private UUID getUuidArgument(@SuppressWarnings("SameParameterValue") String argumentName) throws CommandException {
@@ -92,7 +211,7 @@ public final class Interactor {
         }
     }
 
-    private LocalDate getIsoDateArgument(@SuppressWarnings("SameParameterValue") String argumentName) throws CommandException {
+    private LocalDate getIsoDateArgument(String argumentName) throws CommandException {
         var value = getStringArgument(argumentName);
         try {
             return LocalDate.parse(value);
@@ -0,0 +1,4 @@
+package wex.product.interactor.commands;
+
+public record ImportCommand(String file) implements Command {
+}
@@ -0,0 +1,6 @@
+package wex.product.interactor.commands;
+
+import java.time.LocalDate;
+
+public record PurgeCommand(LocalDate before) implements Command {
+}
@@ -0,0 +1,6 @@
+package wex.product.interactor.commands;
+
+import java.time.LocalDate;
+
+public record QueryCommand(LocalDate from, LocalDate to, String prefix, String currency) implements Command {
+}
@@ -0,0 +1,7 @@
+package wex.product.interactor.commands;
+
+import java.util.List;
+import java.util.UUID;
+
+public record RetrieveBatchCommand(List<UUID> ids, String currency) implements Command {
+}
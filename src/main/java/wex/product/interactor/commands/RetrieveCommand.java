@@ -1,6 +1,14 @@
 package wex.product.interactor.commands;
 
+import java.util.List;
 import java.util.UUID;
 
-public record RetrieveCommand(UUID id, String currency) implements Command {
+/**
+ * Retrieves a purchase in the given currencies, or in every currency with a rate when the list is empty.
+ */
+public record RetrieveCommand(UUID id, List<String> currencies) implements Command {
+
+    public boolean allCurrencies() {
+        return currencies.isEmpty();
+    }
 }
@@ -0,0 +1,4 @@
+package wex.product.interactor.commands;
+
+public record SyncCommand() implements Command {
+}
@@ -0,0 +1,73 @@
+package wex.product.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of named counters, gauges and latency histograms.
+ * <p>
+ * Instruments are looked up once when the instrumented service is built, so recording never touches the registry.
+ * The app only builds metered services when metrics are requested, so switched off metrics cost nothing.
+ */
+public final class Metrics {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, ignored -> new LongAdder());
+    }
+
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, ignored -> new LatencyHistogram());
+    }
+
+    public Snapshot snapshot() {
+        var counterValues = new TreeMap<String, Long>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+        var gaugeValues = new TreeMap<String, Double>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.getAsDouble()));
+        var histogramValues = new TreeMap<String, LatencyHistogram.Snapshot>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.snapshot()));
+        return new Snapshot(counterValues, gaugeValues, histogramValues);
+    }
+
+    /**
+     * Writes the snapshot as JSON, replacing the file atomically so a reader never sees a partial dump.
+     */
+    public void dump(Path path, ObjectMapper objectMapper) {
+        try {
+            var absolutePath = path.toAbsolutePath();
+            var temporaryPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+            try {
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(temporaryPath.toFile(), snapshot());
+                Files.move(temporaryPath, absolutePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporaryPath);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can not write metrics.", e);
+        }
+    }
+
+    public record Snapshot(
+            Map<String, Long> counters,
+            Map<String, Double> gauges,
+            Map<String, LatencyHistogram.Snapshot> histograms
+    ) {
+    }
+}
@@ -0,0 +1,258 @@
+package wex.product.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import wex.product.services.transaction.ConversionExecutor;
+import wex.product.services.transaction.ConvertedTransaction;
+import wex.product.services.transaction.Purchase;
+import wex.product.services.transaction.TransactionNotFoundException;
+import wex.product.services.transaction.TransactionService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Serves store and retrieve operations over HTTP on the loopback interface, so a single warm process with an open
+ * storage index and a filled rate cache answers many requests.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *     <li>{@code POST /transactions} stores a purchase given as {@code {"amount","date","description"}}</li>
+ *     <li>{@code GET /transactions/<id>?currency=<currency>} retrieves a purchase converted to the currency</li>
+ *     <li>{@code POST /transactions/retrieve-batch} converts {@code {"ids":[...],"currency"}} and streams JSON lines</li>
+ * </ul>
+ * Invalid requests are answered with 400, unknown purchases with 404, purchases that can not be converted with 422,
+ * conversions missing their deadline with 504, other failures with 500; the error body is {@code {"error":"<message>"}}.
+ */
+public final class TransactionServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String TRANSACTIONS_PATH = "/transactions";
+    private static final String BATCH_PATH = TRANSACTIONS_PATH + "/retrieve-batch";
+    private static final int BACKLOG = 1024;
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    /**
+     * Request threads mostly wait on storage or on the Treasury API, so there are many more of them than cores.
+     */
+    public static final int DEFAULT_THREADS = 64;
+
+    private final TransactionService transactionService;
+    private final ConversionExecutor conversionExecutor;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private HttpServer server;
+
+    public TransactionServer(
+            TransactionService transactionService,
+            ConversionExecutor conversionExecutor,
+            ObjectMapper objectMapper,
+            ExecutorService executor
+    ) {
+        this.transactionService = transactionService;
+        this.conversionExecutor = conversionExecutor;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts listening on the port, {@code 0} picks a free one, and returns the actual port.
+     */
+    public synchronized int start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server is already started.");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext(TRANSACTIONS_PATH, this::handle);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    public void stop() {
+        stop(STOP_DELAY_SECONDS);
+    }
+
+    /**
+     * Stops accepting requests and waits up to {@code delaySeconds} for the exchanges in progress to finish.
+     */
+    public synchronized void stop(int delaySeconds) {
+        if (server != null && stopped.getCount() > 0) {
+            server.stop(delaySeconds);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stopped.countDown();
+        }
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            var method = exchange.getRequestMethod();
+            var path = exchange.getRequestURI().getPath();
+            if (path.equals(TRANSACTIONS_PATH) && method.equals("POST")) {
+                storeTransaction(exchange);
+            } else if (path.equals(BATCH_PATH) && method.equals("POST")) {
+                retrieveTransactions(exchange);
+            } else if (path.startsWith(TRANSACTIONS_PATH + "/") && method.equals("GET")) {
+                retrieveTransaction(exchange, path.substring(TRANSACTIONS_PATH.length() + 1));
+            } else {
+                sendError(exchange, 404, "Unknown endpoint.");
+            }
+        } catch (Throwable e) {
+            sendFailure(exchange, e);
+        }
+    }
+
+    private void storeTransaction(HttpExchange exchange) throws IOException {
+        var purchase = readBody(exchange, Purchase.class);
+        requireField(purchase.amount(), "amount");
+        requireField(purchase.date(), "date");
+        requireField(purchase.description(), "description");
+        var transaction = transactionService.storeTransaction(purchase.amount(), purchase.date(), purchase.description());
+        send(exchange, 201, transaction);
+    }
+
+    private void retrieveTransaction(HttpExchange exchange, String idValue) {
+        UUID id;
+        try {
+            id = UUID.fromString(idValue);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Transaction id is not a valid UUID.");
+        }
+        var currency = queryParameters(exchange).get("currency");
+        requireField(currency, "currency");
+        conversionExecutor.convert(id, currency).whenComplete((transaction, error) -> {
+            if (error != null) {
+                sendFailure(exchange, error);
+            } else {
+                send(exchange, 200, transaction);
+            }
+        });
+    }
+
+    private void retrieveTransactions(HttpExchange exchange) throws IOException {
+        var request = readBody(exchange, BatchRequest.class);
+        requireField(request.ids(), "ids");
+        requireField(request.currency(), "currency");
+        var transactions = transactionService.retrieveTransactions(request.ids(), request.currency());
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (var body = exchange.getResponseBody()) {
+            var iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                writeLine(body, iterator.next());
+            }
+        }
+    }
+
+    private void writeLine(OutputStream body, ConvertedTransaction transaction) throws IOException {
+        body.write(objectMapper.writeValueAsBytes(transaction));
+        body.write('\n');
+    }
+
+    private <T> T readBody(HttpExchange exchange, Class<T> type) throws IOException {
+        try (var body = exchange.getRequestBody()) {
+            var value = objectMapper.readValue(body, type);
+            if (value == null) {
+                throw new BadRequestException("Request body is empty.");
+            }
+            return value;
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Request body is not valid JSON of the expected shape.");
+        }
+    }
+
+    private static void requireField(Object value, String name) {
+        if (value == null) {
+            throw new BadRequestException(String.format("Field %s is not provided.", name));
+        }
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        var parameters = new HashMap<String, String>();
+        var query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (var pair : query.split("&")) {
+                var separator = pair.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(
+                            URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8)
+                    );
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private void sendFailure(HttpExchange exchange, Throwable e) {
+        var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof BadRequestException) {
+            sendError(exchange, 400, cause.getMessage());
+        } else if (cause instanceof TimeoutException) {
+            sendError(exchange, 504, "The purchase was not converted in time.");
+        } else if (cause instanceof TransactionNotFoundException) {
+            sendError(exchange, 404, cause.getMessage());
+        } else if (cause instanceof IllegalStateException) {
+            sendError(exchange, 422, cause.getMessage());
+        } else {
+            sendError(exchange, 500, cause.getMessage());
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) {
+        send(exchange, status, new ErrorResponse(message));
+    }
+
+    private void send(HttpExchange exchange, int status, Object result) {
+        try (exchange) {
+            var body = objectMapper.writeValueAsBytes(result);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException e) {
+            // The client has gone away or the response has already been started, nothing can be reported.
+        }
+    }
+
+    record BatchRequest(List<UUID> ids, String currency) {
+    }
+
+    record ErrorResponse(String error) {
+    }
+
+    private static final class BadRequestException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package wex.product.services.exchange;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import wex.product.utils.Utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier cache of exchange rates keyed on currency and date, the date defining the 6-month lookup window.
+ * <p>
+ * Rates of dates older than {@code stableAge} can not change anymore, so they never expire and are also kept in a
+ * file that survives restarts. Rates of recent dates are kept in memory only, for at most {@code ttl}.
+ * <p>
+ * A stable rate is kept with the date it was recorded on, since it is also the rate of every date from that one up to
+ * the looked up date, so other purchase dates within the same rate period are served without asking the delegate.
+ * The file holds one JSON line per cached period and misses are appended to it; it is compacted when loaded.
+ */
+public final class CachingExchangeRateService implements ExchangeRateService {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final Duration DEFAULT_TTL = Duration.ofHours(1);
+    public static final Period DEFAULT_STABLE_AGE = Period.ofDays(30);
+
+    private final ExchangeRateService delegate;
+    private final Path cachePath;
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Period stableAge;
+    private final Clock clock;
+    private final Map<Key, Entry> memoryTier;
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder fileHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private Map<String, TreeMap<LocalDate, CachedRate>> fileTier;
+
+    public CachingExchangeRateService(ExchangeRateService delegate, String cachePath, ObjectMapper objectMapper) {
+        this(delegate, Path.of(cachePath), objectMapper, DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_STABLE_AGE, Clock.systemDefaultZone());
+    }
+
+    public CachingExchangeRateService(
+            ExchangeRateService delegate,
+            Path cachePath,
+            ObjectMapper objectMapper,
+            int maxEntries,
+            Duration ttl,
+            Period stableAge,
+            Clock clock
+    ) {
+        this.delegate = delegate;
+        this.cachePath = cachePath;
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.stableAge = stableAge;
+        this.clock = clock;
+        this.memoryTier = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > CachingExchangeRateService.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public BigDecimal getExchangeRate(String currency, LocalDate date) {
+        try {
+            return getExchangeRateAsync(currency, date).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> getExchangeRateAsync(String currency, LocalDate date) {
+        var key = new Key(currency, date);
+        var stable = isStable(date);
+        var cached = findCached(key, stable);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.rate());
+        }
+        misses.increment();
+        var lookup = delegate.getExchangeRateRecordAsync(currency, date);
+        return Utils.cancelling(lookup.thenApply(record -> {
+            var rate = record == null ? null : record.exchangeRate();
+            remember(key, rate, stable);
+            if (stable) {
+                persist(List.of(record == null
+                        ? new CachedRate(currency, date, date, null)
+                        : new CachedRate(currency, record.date(), date, rate)));
+            }
+            return rate;
+        }), lookup);
+    }
+
+    /**
+     * Serves the cached currencies and asks the delegate for the missing ones in one call, caching a currency it has
+     * no rate for as missing like {@link #getExchangeRateAsync} does. The delegate does not tell the recorded dates
+     * here, so the rates are cached for the looked up date only.
+     */
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getExchangeRatesAsync(Collection<String> currencies, LocalDate date) {
+        var stable = isStable(date);
+        var cachedRates = new HashMap<String, BigDecimal>();
+        var missingCurrencies = new ArrayList<String>();
+        for (var currency : currencies) {
+            if (cachedRates.containsKey(currency) || missingCurrencies.contains(currency)) {
+                continue;
+            }
+            var cached = findCached(new Key(currency, date), stable);
+            if (cached != null) {
+                cachedRates.put(currency, cached.rate());
+            } else {
+                missingCurrencies.add(currency);
+            }
+        }
+        if (missingCurrencies.isEmpty()) {
+            return CompletableFuture.completedFuture(ordered(currencies, cachedRates));
+        }
+        misses.add(missingCurrencies.size());
+        return delegate.getExchangeRatesAsync(missingCurrencies, date).thenApply(fetchedRates -> {
+            var fetched = new HashMap<Key, BigDecimal>();
+            for (var currency : missingCurrencies) {
+                fetched.put(new Key(currency, date), fetchedRates.get(currency));
+                cachedRates.put(currency, fetchedRates.get(currency));
+            }
+            store(fetched, stable);
+            return ordered(currencies, cachedRates);
+        });
+    }
+
+    /**
+     * Always asks the delegate, as the cache can not tell whether it holds every currency, and caches what it returns.
+     */
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getAllExchangeRatesAsync(LocalDate date) {
+        var stable = isStable(date);
+        misses.increment();
+        return delegate.getAllExchangeRatesAsync(date).thenApply(rates -> {
+            var fetched = new HashMap<Key, BigDecimal>();
+            rates.forEach((currency, rate) -> fetched.put(new Key(currency, date), rate));
+            store(fetched, stable);
+            return rates;
+        });
+    }
+
+    public Stats stats() {
+        return new Stats(memoryHits.sum(), fileHits.sum(), misses.sum());
+    }
+
+    private boolean isStable(LocalDate date) {
+        return date.isBefore(LocalDate.now(clock).minus(stableAge));
+    }
+
+    private Entry findCached(Key key, boolean stable) {
+        synchronized (memoryTier) {
+            var entry = memoryTier.get(key);
+            if (entry != null && (entry.expiresAt() == null || clock.instant().isBefore(entry.expiresAt()))) {
+                memoryHits.increment();
+                return entry;
+            }
+        }
+        if (stable) {
+            synchronized (this) {
+                var periods = fileTier().get(key.currency());
+                var period = periods == null ? null : periods.floorEntry(key.date());
+                if (period != null && !period.getValue().to().isBefore(key.date())) {
+                    fileHits.increment();
+                    var rate = period.getValue().rate();
+                    remember(key, rate, true);
+                    return new Entry(rate, null);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void store(Map<Key, BigDecimal> rates, boolean stable) {
+        rates.forEach((key, rate) -> remember(key, rate, stable));
+        if (stable && !rates.isEmpty()) {
+            var periods = new ArrayList<CachedRate>();
+            rates.forEach((key, rate) -> periods.add(new CachedRate(key.currency(), key.date(), key.date(), rate)));
+            persist(periods);
+        }
+    }
+
+    private void remember(Key key, BigDecimal rate, boolean stable) {
+        synchronized (memoryTier) {
+            memoryTier.put(key, new Entry(rate, stable ? null : clock.instant().plus(ttl)));
+        }
+    }
+
+    private synchronized Map<String, TreeMap<LocalDate, CachedRate>> fileTier() {
+        if (fileTier == null) {
+            fileTier = new HashMap<>();
+            if (Files.exists(cachePath)) {
+                var lines = 0;
+                var damaged = false;
+                try (var reader = Files.newBufferedReader(cachePath)) {
+                    for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                        lines++;
+                        var period = parse(line);
+                        if (period != null) {
+                            merge(period);
+                        } else {
+                            damaged = true;
+                        }
+                    }
+                } catch (IOException e) {
+                    damaged = true;
+                }
+                var periods = fileTier.values().stream().mapToInt(Map::size).sum();
+                if (damaged || lines > 2 * periods) {
+                    compact();
+                }
+            }
+        }
+        return fileTier;
+    }
+
+    /**
+     * Merges the periods into the file tier and appends the merged periods to the file, the last line of a period
+     * winning when the file is loaded.
+     */
+    private synchronized void persist(List<CachedRate> periods) {
+        fileTier();
+        var lines = new StringBuilder();
+        try {
+            for (var period : periods) {
+                lines.append(objectMapper.writeValueAsString(merge(period))).append('\n');
+            }
+            Files.writeString(cachePath, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // The rate is still served from memory, it is only fetched again by the next process
+        }
+    }
+
+    private void compact() {
+        try {
+            var absolutePath = cachePath.toAbsolutePath();
+            var temporaryPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+            try {
+                try (var writer = Files.newBufferedWriter(temporaryPath)) {
+                    for (var periods : fileTier.values()) {
+                        for (var period : periods.values()) {
+                            writer.write(objectMapper.writeValueAsString(period));
+                            writer.newLine();
+                        }
+                    }
+                }
+                Files.move(temporaryPath, absolutePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporaryPath);
+            }
+        } catch (IOException e) {
+            // A damaged or long cache file is only a performance loss, it is compacted again by the next process
+        }
+    }
+
+    private CachedRate merge(CachedRate period) {
+        var periods = fileTier.computeIfAbsent(period.currency(), currency -> new TreeMap<>());
+        var existing = periods.get(period.from());
+        var merged = existing != null && existing.to().isAfter(period.to()) ? existing : period;
+        periods.put(merged.from(), merged);
+        return merged;
+    }
+
+    private CachedRate parse(String line) {
+        try {
+            var period = objectMapper.readValue(line, CachedRate.class);
+            return period.currency() != null && period.from() != null && period.to() != null ? period : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, BigDecimal> ordered(Collection<String> currencies, Map<String, BigDecimal> rates) {
+        var ordered = new LinkedHashMap<String, BigDecimal>();
+        for (var currency : currencies) {
+            var rate = rates.get(currency);
+            if (rate != null) {
+                ordered.put(currency, rate);
+            }
+        }
+        return ordered;
+    }
+
+    public record Stats(long memoryHits, long fileHits, long misses) {
+        public double hitRatio() {
+            var total = memoryHits + fileHits + misses;
+            return total == 0 ? 0 : (double) (memoryHits + fileHits) / total;
+        }
+    }
+
+    private record Key(String currency, LocalDate date) {
+    }
+
+    /**
+     * Rate of the currency for every date from {@code from}, the date it was recorded on, to {@code to}, the latest
+     * date it was looked up for; a missing rate is kept as a period of its looked up date only.
+     */
+    private record CachedRate(String currency, LocalDate from, LocalDate to, BigDecimal rate) {
+    }
+
+    private record Entry(BigDecimal rate, Instant expiresAt) {
+    }
+}
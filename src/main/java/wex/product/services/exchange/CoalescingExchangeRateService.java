@@ -0,0 +1,210 @@
+package wex.product.services.exchange;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent lookups of the same currency and date share a single in-flight fetch from the delegate.
+ * <p>
+ * A lookup of many currencies shares the fetches already in flight and asks the delegate for the rest in one call,
+ * which lookups of those currencies started meanwhile share in turn.
+ * <p>
+ * A lookup cancelled or timed out before its fetch completes leaves it, and the fetch is cancelled once every lookup
+ * sharing it left. Lookups of many currencies never leave the fetches they share.
+ */
+public final class CoalescingExchangeRateService implements ExchangeRateService {
+
+    private final ExchangeRateService delegate;
+    private final Map<Key, SharedFetch<BigDecimal>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Key, SharedFetch<ExchangeRateRecord>> recordsInFlight = new ConcurrentHashMap<>();
+
+    public CoalescingExchangeRateService(ExchangeRateService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public BigDecimal getExchangeRate(String currency, LocalDate date) {
+        try {
+            return getExchangeRateAsync(currency, date).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> getExchangeRateAsync(String currency, LocalDate date) {
+        return share(inFlight, new Key(currency, date), () -> delegate.getExchangeRateAsync(currency, date));
+    }
+
+    @Override
+    public CompletableFuture<ExchangeRateRecord> getExchangeRateRecordAsync(String currency, LocalDate date) {
+        return share(recordsInFlight, new Key(currency, date), () -> delegate.getExchangeRateRecordAsync(currency, date));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getExchangeRatesAsync(Collection<String> currencies, LocalDate date) {
+        var fetches = new LinkedHashMap<String, CompletableFuture<BigDecimal>>();
+        var promises = new LinkedHashMap<String, SharedFetch<BigDecimal>>();
+        for (var currency : currencies) {
+            if (fetches.containsKey(currency)) {
+                continue;
+            }
+            var fetch = new SharedFetch<BigDecimal>();
+            var waiter = join(inFlight, new Key(currency, date), fetch);
+            if (waiter != null) {
+                fetches.put(currency, waiter);
+            } else {
+                promises.put(currency, fetch);
+                fetches.put(currency, fetch.join());
+            }
+        }
+        if (!promises.isEmpty()) {
+            try {
+                delegate.getExchangeRatesAsync(List.copyOf(promises.keySet()), date).whenComplete((rates, error) -> promises.forEach((currency, fetch) -> {
+                    inFlight.remove(new Key(currency, date), fetch);
+                    if (error != null) {
+                        fetch.promise.completeExceptionally(unwrap(error));
+                    } else {
+                        fetch.promise.complete(rates.get(currency));
+                    }
+                }));
+            } catch (RuntimeException e) {
+                promises.forEach((currency, fetch) -> {
+                    inFlight.remove(new Key(currency, date), fetch);
+                    fetch.promise.completeExceptionally(e);
+                });
+            }
+        }
+        return CompletableFuture.allOf(fetches.values().toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            var rates = new LinkedHashMap<String, BigDecimal>();
+            fetches.forEach((currency, fetch) -> {
+                var rate = fetch.join();
+                if (rate != null) {
+                    rates.put(currency, rate);
+                }
+            });
+            return rates;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getAllExchangeRatesAsync(LocalDate date) {
+        return delegate.getAllExchangeRatesAsync(date);
+    }
+
+    private static <T> CompletableFuture<T> share(
+            Map<Key, SharedFetch<T>> inFlight,
+            Key key,
+            Supplier<CompletableFuture<T>> delegateFetch
+    ) {
+        var fetch = new SharedFetch<T>();
+        var waiter = join(inFlight, key, fetch);
+        if (waiter != null) {
+            return waiter;
+        }
+        waiter = fetch.join();
+        try {
+            var source = delegateFetch.get();
+            fetch.start(source);
+            source.whenComplete((result, error) -> {
+                inFlight.remove(key, fetch);
+                if (error != null) {
+                    fetch.promise.completeExceptionally(unwrap(error));
+                } else {
+                    fetch.promise.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, fetch);
+            fetch.promise.completeExceptionally(e);
+        }
+        return waiter;
+    }
+
+    /**
+     * Joins the fetch in flight for the key and returns the future of the new waiter, or puts {@code fetch} in flight
+     * and returns {@code null} when there is none. A fetch being cancelled as all its waiters left is not joined.
+     */
+    private static <T> CompletableFuture<T> join(Map<Key, SharedFetch<T>> inFlight, Key key, SharedFetch<T> fetch) {
+        while (true) {
+            var existing = inFlight.putIfAbsent(key, fetch);
+            if (existing == null) {
+                return null;
+            }
+            var waiter = existing.join();
+            if (waiter != null) {
+                return waiter;
+            }
+            inFlight.remove(key, existing);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private record Key(String currency, LocalDate date) {
+    }
+
+    /**
+     * Fetch shared by the lookups waiting for it, which cancels its source once all of them left.
+     */
+    private static final class SharedFetch<T> {
+
+        private final CompletableFuture<T> promise = new CompletableFuture<>();
+
+        private CompletableFuture<?> source;
+        private int waiters;
+        private boolean abandoned;
+
+        /**
+         * Returns a future completed with the fetch for a new waiter, which leaves when it is completed exceptionally
+         * first, or {@code null} when the fetch is abandoned.
+         */
+        synchronized CompletableFuture<T> join() {
+            if (abandoned) {
+                return null;
+            }
+            waiters++;
+            var waiter = promise.copy();
+            waiter.whenComplete((result, error) -> {
+                if (error != null && !promise.isDone()) {
+                    leave();
+                }
+            });
+            return waiter;
+        }
+
+        void start(CompletableFuture<?> source) {
+            synchronized (this) {
+                this.source = source;
+                if (!abandoned) {
+                    return;
+                }
+            }
+            source.cancel(true);
+        }
+
+        private void leave() {
+            CompletableFuture<?> abandonedSource;
+            synchronized (this) {
+                if (--waiters > 0 || promise.isDone()) {
+                    return;
+                }
+                abandoned = true;
+                abandonedSource = source;
+            }
+            if (abandonedSource != null) {
+                abandonedSource.cancel(true);
+            }
+        }
+    }
+}
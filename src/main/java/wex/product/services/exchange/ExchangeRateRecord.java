@@ -0,0 +1,11 @@
+package wex.product.services.exchange;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record ExchangeRateRecord(
+        String currency,
+        LocalDate date,
+        BigDecimal exchangeRate
+) {
+}
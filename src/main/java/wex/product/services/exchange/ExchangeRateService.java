@@ -2,7 +2,56 @@ package wex.product.services.exchange;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface ExchangeRateService {
     BigDecimal getExchangeRate(String currency, LocalDate date);
+
+    default CompletableFuture<BigDecimal> getExchangeRateAsync(String currency, LocalDate date) {
+        return CompletableFuture.supplyAsync(() -> getExchangeRate(currency, date));
+    }
+
+    /**
+     * Looks up the rate like {@link #getExchangeRateAsync} together with the date it was recorded on, so the caller
+     * knows the rate applies to every date from that one up to the looked up date. The default does not know the
+     * recorded date and reports the looked up date instead.
+     */
+    default CompletableFuture<ExchangeRateRecord> getExchangeRateRecordAsync(String currency, LocalDate date) {
+        return getExchangeRateAsync(currency, date)
+                .thenApply(rate -> rate == null ? null : new ExchangeRateRecord(currency, date, rate));
+    }
+
+    /**
+     * Looks up the rates of many currencies for the same date and completes with the found ones by currency, in the
+     * order given; currencies without a rate in the 6-month window are left out. The default starts every lookup at
+     * once, services that can answer them with a single request override it.
+     */
+    default CompletableFuture<Map<String, BigDecimal>> getExchangeRatesAsync(Collection<String> currencies, LocalDate date) {
+        var fetches = new LinkedHashMap<String, CompletableFuture<BigDecimal>>();
+        for (var currency : currencies) {
+            if (!fetches.containsKey(currency)) {
+                fetches.put(currency, getExchangeRateAsync(currency, date));
+            }
+        }
+        return CompletableFuture.allOf(fetches.values().toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            var rates = new LinkedHashMap<String, BigDecimal>();
+            fetches.forEach((currency, fetch) -> {
+                var rate = fetch.join();
+                if (rate != null) {
+                    rates.put(currency, rate);
+                }
+            });
+            return rates;
+        });
+    }
+
+    /**
+     * Looks up the rates of every currency that has one in the 6-month window of the date.
+     */
+    default CompletableFuture<Map<String, BigDecimal>> getAllExchangeRatesAsync(LocalDate date) {
+        throw new UnsupportedOperationException("The exchange rate service does not support listing currencies.");
+    }
 }
@@ -0,0 +1,93 @@
+package wex.product.services.exchange;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory time series of exchange rates, one array of epoch days sorted ascending per currency.
+ */
+public final class ExchangeRateTable {
+
+    private final Map<String, Series> series;
+
+    private ExchangeRateTable(Map<String, Series> series) {
+        this.series = series;
+    }
+
+    public static ExchangeRateTable of(Collection<ExchangeRateRecord> records) {
+        var series = new HashMap<String, Series>();
+        records.stream()
+                .collect(Collectors.groupingBy(ExchangeRateRecord::currency))
+                .forEach((currency, currencyRecords) -> {
+                    currencyRecords.sort(Comparator.comparing(ExchangeRateRecord::date));
+                    var days = new int[currencyRecords.size()];
+                    var rates = new BigDecimal[currencyRecords.size()];
+                    for (var i = 0; i < days.length; i++) {
+                        days[i] = Math.toIntExact(currencyRecords.get(i).date().toEpochDay());
+                        rates[i] = currencyRecords.get(i).exchangeRate();
+                    }
+                    series.put(currency, new Series(days, rates));
+                });
+        return new ExchangeRateTable(series);
+    }
+
+    public boolean contains(String currency) {
+        return series.containsKey(currency);
+    }
+
+    /**
+     * Returns the latest rate of the currency within 6 months on or before the date, the same rate the Treasury API
+     * returns, or {@code null} if there is none.
+     */
+    public BigDecimal find(String currency, LocalDate date) {
+        var record = findRecord(currency, date);
+        return record == null ? null : record.exchangeRate();
+    }
+
+    /**
+     * Returns the rate {@link #find} returns together with the date it was recorded on.
+     */
+    public ExchangeRateRecord findRecord(String currency, LocalDate date) {
+        var currencySeries = series.get(currency);
+        if (currencySeries == null) {
+            return null;
+        }
+        var day = Math.toIntExact(date.toEpochDay());
+        var index = Arrays.binarySearch(currencySeries.days(), day);
+        var latest = index >= 0 ? lastIndexOf(currencySeries.days(), index) : -index - 2;
+        if (latest < 0 || currencySeries.days()[latest] < date.minusMonths(6).toEpochDay()) {
+            return null;
+        }
+        return new ExchangeRateRecord(currency, LocalDate.ofEpochDay(currencySeries.days()[latest]), currencySeries.rates()[latest]);
+    }
+
+    /**
+     * Returns the rate {@link #find} returns for every currency that has one for the date.
+     */
+    public Map<String, BigDecimal> findAll(LocalDate date) {
+        var rates = new HashMap<String, BigDecimal>();
+        for (var currency : series.keySet()) {
+            var rate = find(currency, date);
+            if (rate != null) {
+                rates.put(currency, rate);
+            }
+        }
+        return rates;
+    }
+
+    private static int lastIndexOf(int[] days, int index) {
+        while (index + 1 < days.length && days[index + 1] == days[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    private record Series(int[] days, BigDecimal[] rates) {
+    }
+}
@@ -2,6 +2,7 @@ package wex.product.services.exchange;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import wex.product.utils.Utils;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -9,34 +10,64 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class FiscalDataExchangeRateService implements ExchangeRateService {
 
+    private static final int BULK_PAGE_SIZE = 10_000;
+
     private final String apiUrl;
     private final ObjectMapper objectMapper;
+    private final HttpSettings settings;
+    private final HttpClient client;
 
     public FiscalDataExchangeRateService(ObjectMapper objectMapper) {
         this("https://api.fiscaldata.treasury.gov/services/api/fiscal_service/v1/accounting/od/rates_of_exchange", objectMapper);
     }
 
     public FiscalDataExchangeRateService(String apiUrl, ObjectMapper objectMapper) {
+        this(apiUrl, objectMapper, HttpSettings.defaults());
+    }
+
+    public FiscalDataExchangeRateService(String apiUrl, ObjectMapper objectMapper, HttpSettings settings) {
+        this(apiUrl, objectMapper, settings, createClient(settings));
+    }
+
+    public FiscalDataExchangeRateService(String apiUrl, ObjectMapper objectMapper, HttpSettings settings, HttpClient client) {
         this.apiUrl = apiUrl;
         this.objectMapper = objectMapper;
+        this.settings = settings;
+        this.client = client;
     }
 
     @Override
     public BigDecimal getExchangeRate(String currency, LocalDate date) {
-        try {
-            ExchangeRateResponse response = fetchExchangeRate(currency, date);
-            return response.data.size() > 0 ? response.data.get(0).exchangeRate : null;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to fetch exchange rate.", e);
-        }
+        return await(getExchangeRateAsync(currency, date));
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> getExchangeRateAsync(String currency, LocalDate date) {
+        var lookup = getExchangeRateRecordAsync(currency, date);
+        return Utils.cancelling(lookup.thenApply(record -> record == null ? null : record.exchangeRate()), lookup);
     }
 
-    private ExchangeRateResponse fetchExchangeRate(String currency, LocalDate date) throws IOException, InterruptedException {
+    @Override
+    public CompletableFuture<ExchangeRateRecord> getExchangeRateRecordAsync(String currency, LocalDate date) {
         var url = String.format(apiUrl +
                         "?fields=record_date,exchange_rate" +
                         "&filter=country_currency_desc:eq:%s,record_date:gte:%s,record_date:lte:%s" +
@@ -44,10 +75,217 @@ public final class FiscalDataExchangeRateService implements ExchangeRateService
                         "&page[number]=1" +
                         "&page[size]=1",
                 currency, date.minusMonths(6), date);
-        var client = HttpClient.newHttpClient();
-        var request = HttpRequest.newBuilder(URI.create(url)).build();
-        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        return objectMapper.readValue(response.body(), ExchangeRateResponse.class);
+        var fetch = fetch(url, ExchangeRateResponse.class);
+        return Utils.cancelling(fetch
+                .thenApply(response -> {
+                    if (response.data.isEmpty()) {
+                        return null;
+                    }
+                    var record = response.data.get(0);
+                    return new ExchangeRateRecord(currency, record.date != null ? record.date : date, record.exchangeRate);
+                })
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(
+                        new RuntimeException("Failed to fetch exchange rate.", unwrap(e)))), fetch);
+    }
+
+    /**
+     * Fetches the rates of all the currencies with one request filtered by {@code in:}, instead of one request each.
+     */
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getExchangeRatesAsync(Collection<String> currencies, LocalDate date) {
+        var distinctCurrencies = new LinkedHashSet<>(currencies);
+        if (distinctCurrencies.isEmpty()) {
+            return CompletableFuture.completedFuture(new LinkedHashMap<>());
+        }
+        var currencyFilter = "country_currency_desc:in:(" + String.join(",", distinctCurrencies) + "),";
+        return fetchLatestExchangeRates(currencyFilter, date).thenApply(latestRates -> {
+            var rates = new LinkedHashMap<String, BigDecimal>();
+            for (var currency : distinctCurrencies) {
+                var rate = latestRates.get(currency);
+                if (rate != null) {
+                    rates.put(currency, rate);
+                }
+            }
+            return rates;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getAllExchangeRatesAsync(LocalDate date) {
+        return fetchLatestExchangeRates("", date);
+    }
+
+    public List<ExchangeRateRecord> fetchAllExchangeRates() {
+        try {
+            var records = new ArrayList<ExchangeRateRecord>();
+            var totalPages = 1;
+            for (var page = 1; page <= totalPages; page++) {
+                var response = await(fetchExchangeRatePage(page));
+                response.data.forEach(record -> records.add(new ExchangeRateRecord(record.currency, record.date, record.exchangeRate)));
+                totalPages = response.meta.totalPages;
+            }
+            return records;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to fetch exchange rates.", unwrap(e));
+        }
+    }
+
+    private CompletableFuture<BulkExchangeRateResponse> fetchExchangeRatePage(int page) {
+        var url = String.format(apiUrl +
+                        "?fields=country_currency_desc,record_date,exchange_rate" +
+                        "&sort=country_currency_desc,record_date" +
+                        "&page[number]=%d" +
+                        "&page[size]=%d",
+                page, BULK_PAGE_SIZE);
+        return fetch(url, BulkExchangeRateResponse.class);
+    }
+
+    /**
+     * Fetches the rates of the date's 6-month window newest first, so the first record of a currency is its latest rate,
+     * following pages until the last one.
+     */
+    private CompletableFuture<Map<String, BigDecimal>> fetchLatestExchangeRates(String currencyFilter, LocalDate date) {
+        return fetchLatestExchangeRates(currencyFilter, date, 1, new LinkedHashMap<>())
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(
+                        new RuntimeException("Failed to fetch exchange rates.", unwrap(e))));
+    }
+
+    private CompletableFuture<Map<String, BigDecimal>> fetchLatestExchangeRates(
+            String currencyFilter,
+            LocalDate date,
+            int page,
+            Map<String, BigDecimal> rates
+    ) {
+        var url = String.format(apiUrl +
+                        "?fields=country_currency_desc,record_date,exchange_rate" +
+                        "&filter=%srecord_date:gte:%s,record_date:lte:%s" +
+                        "&sort=-record_date" +
+                        "&page[number]=%d" +
+                        "&page[size]=%d",
+                currencyFilter, date.minusMonths(6), date, page, BULK_PAGE_SIZE);
+        return fetch(url, BulkExchangeRateResponse.class).thenCompose(response -> {
+            response.data.forEach(record -> rates.putIfAbsent(record.currency, record.exchangeRate));
+            return page < response.meta.totalPages
+                    ? fetchLatestExchangeRates(currencyFilter, date, page + 1, rates)
+                    : CompletableFuture.completedFuture(rates);
+        });
+    }
+
+    /**
+     * Sends the request without blocking, retrying failed attempts, and binds the received body off the HTTP client
+     * threads, so they are never held by parsing. Cancelling the result cancels the exchange in progress and the
+     * retries still to come.
+     */
+    private <T> CompletableFuture<T> fetch(String url, Class<T> responseType) {
+        var request = HttpRequest.newBuilder(URI.create(url)).timeout(settings.requestTimeout()).GET().build();
+        var body = new CompletableFuture<byte[]>();
+        send(request, 1, body);
+        return Utils.cancelling(body.thenApplyAsync(bytes -> {
+            try {
+                return objectMapper.readValue(bytes, responseType);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }), body);
+    }
+
+    private void send(HttpRequest request, int attempt, CompletableFuture<byte[]> body) {
+        if (body.isDone()) {
+            return;
+        }
+        CompletableFuture<HttpResponse<byte[]>> exchange;
+        try {
+            exchange = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            body.completeExceptionally(e);
+            return;
+        }
+        Utils.cancelling(body, exchange);
+        exchange.whenComplete((response, error) -> {
+            if (body.isDone()) {
+                return;
+            }
+            if (error != null) {
+                if (attempt < settings.maxAttempts()) {
+                    retry(request, attempt, null, body);
+                } else {
+                    body.completeExceptionally(unwrap(error));
+                }
+                return;
+            }
+            var status = response.statusCode();
+            if (status >= 200 && status < 300) {
+                body.complete(response.body());
+            } else if (!isRetryable(status) || attempt >= settings.maxAttempts()) {
+                body.completeExceptionally(new IOException(String.format("Unexpected response status %d.", status)));
+            } else {
+                retry(request, attempt, response, body);
+            }
+        });
+    }
+
+    private void retry(HttpRequest request, int attempt, HttpResponse<?> response, CompletableFuture<byte[]> body) {
+        var delay = CompletableFuture.delayedExecutor(backoff(attempt, response).toMillis(), TimeUnit.MILLISECONDS);
+        delay.execute(() -> send(request, attempt + 1, body));
+    }
+
+    /**
+     * Full-jitter exponential backoff, stretched to the server's Retry-After hint when it sends one.
+     */
+    private Duration backoff(int attempt, HttpResponse<?> response) {
+        var ceiling = settings.initialBackoff().multipliedBy(1L << Math.min(attempt - 1, 20));
+        if (ceiling.compareTo(settings.maxBackoff()) > 0) {
+            ceiling = settings.maxBackoff();
+        }
+        var delay = Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling.toMillis() + 1));
+        var retryAfter = response == null ? null : response.headers().firstValue("Retry-After").orElse(null);
+        if (retryAfter != null) {
+            try {
+                var hint = Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+                delay = hint.compareTo(settings.maxBackoff()) > 0 ? settings.maxBackoff() : hint;
+            } catch (NumberFormatException e) {
+                // HTTP-date hints are rare for this API, the jittered delay is used instead
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Waits interruptibly, so a caller whose conversion was cancelled stops waiting for the API right away.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the exchange rate API.");
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private static HttpClient createClient(HttpSettings settings) {
+        var threadCounter = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(settings.executorThreads(), runnable -> {
+            var thread = new Thread(runnable, "fiscal-data-http-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(settings.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
     }
 
     private record ExchangeRateResponse(
@@ -55,9 +293,34 @@ public final class FiscalDataExchangeRateService implements ExchangeRateService
             List<Record> data
     ) {
         private record Record(
+                @JsonProperty(value = "record_date")
+                LocalDate date,
                 @JsonProperty(value = "exchange_rate", required = true)
                 BigDecimal exchangeRate
         ) {
         }
     }
+
+    private record BulkExchangeRateResponse(
+            @JsonProperty(value = "data", required = true)
+            List<Record> data,
+            @JsonProperty(value = "meta", required = true)
+            Meta meta
+    ) {
+        private record Record(
+                @JsonProperty(value = "country_currency_desc", required = true)
+                String currency,
+                @JsonProperty(value = "record_date", required = true)
+                LocalDate date,
+                @JsonProperty(value = "exchange_rate", required = true)
+                BigDecimal exchangeRate
+        ) {
+        }
+
+        private record Meta(
+                @JsonProperty(value = "total-pages", required = true)
+                int totalPages
+        ) {
+        }
+    }
 }
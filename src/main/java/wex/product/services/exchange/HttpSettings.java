@@ -0,0 +1,24 @@
+package wex.product.services.exchange;
+
+import java.time.Duration;
+
+public record HttpSettings(
+        Duration connectTimeout,
+        Duration requestTimeout,
+        int maxAttempts,
+        Duration initialBackoff,
+        Duration maxBackoff,
+        int executorThreads
+) {
+
+    public static HttpSettings defaults() {
+        return new HttpSettings(
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(10),
+                3,
+                Duration.ofMillis(200),
+                Duration.ofSeconds(2),
+                4
+        );
+    }
+}
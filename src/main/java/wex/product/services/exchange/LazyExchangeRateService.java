@@ -0,0 +1,45 @@
+package wex.product.services.exchange;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Defers building the delegate until the first lookup, so that commands which never convert do not pay for it.
+ */
+public final class LazyExchangeRateService implements ExchangeRateService {
+
+    private final Supplier<? extends ExchangeRateService> delegate;
+
+    public LazyExchangeRateService(Supplier<? extends ExchangeRateService> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public BigDecimal getExchangeRate(String currency, LocalDate date) {
+        return delegate.get().getExchangeRate(currency, date);
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> getExchangeRateAsync(String currency, LocalDate date) {
+        return delegate.get().getExchangeRateAsync(currency, date);
+    }
+
+    @Override
+    public CompletableFuture<ExchangeRateRecord> getExchangeRateRecordAsync(String currency, LocalDate date) {
+        return delegate.get().getExchangeRateRecordAsync(currency, date);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getExchangeRatesAsync(Collection<String> currencies, LocalDate date) {
+        return delegate.get().getExchangeRatesAsync(currencies, date);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getAllExchangeRatesAsync(LocalDate date) {
+        return delegate.get().getAllExchangeRatesAsync(date);
+    }
+}
@@ -0,0 +1,177 @@
+package wex.product.services.exchange;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Answers exchange rate lookups from a local copy of the whole Treasury rates dataset.
+ * <p>
+ * The copy is downloaded by {@link #sync()} and kept in a file. Lookups for currencies the copy does not know or for
+ * dates after the copy was taken are passed to the fallback service.
+ */
+public final class LocalExchangeRateService implements ExchangeRateService {
+
+    private final FiscalDataExchangeRateService source;
+    private final ExchangeRateService fallback;
+    private final Path tablePath;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    private boolean loaded;
+    private LocalDate syncedAt;
+    private ExchangeRateTable table;
+
+    public LocalExchangeRateService(
+            FiscalDataExchangeRateService source,
+            ExchangeRateService fallback,
+            String tablePath,
+            ObjectMapper objectMapper
+    ) {
+        this(source, fallback, Path.of(tablePath), objectMapper, Clock.systemDefaultZone());
+    }
+
+    public LocalExchangeRateService(
+            FiscalDataExchangeRateService source,
+            ExchangeRateService fallback,
+            Path tablePath,
+            ObjectMapper objectMapper,
+            Clock clock
+    ) {
+        this.source = source;
+        this.fallback = fallback;
+        this.tablePath = tablePath;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    @Override
+    public BigDecimal getExchangeRate(String currency, LocalDate date) {
+        var localTable = findLocalTable(currency, date);
+        return localTable != null ? localTable.find(currency, date) : fallback.getExchangeRate(currency, date);
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> getExchangeRateAsync(String currency, LocalDate date) {
+        var localTable = findLocalTable(currency, date);
+        return localTable != null
+                ? CompletableFuture.completedFuture(localTable.find(currency, date))
+                : fallback.getExchangeRateAsync(currency, date);
+    }
+
+    @Override
+    public CompletableFuture<ExchangeRateRecord> getExchangeRateRecordAsync(String currency, LocalDate date) {
+        var localTable = findLocalTable(currency, date);
+        return localTable != null
+                ? CompletableFuture.completedFuture(localTable.findRecord(currency, date))
+                : fallback.getExchangeRateRecordAsync(currency, date);
+    }
+
+    /**
+     * Answers the currencies the table knows from it and looks the others up with one call to the fallback.
+     */
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getExchangeRatesAsync(Collection<String> currencies, LocalDate date) {
+        var localRates = new LinkedHashMap<String, BigDecimal>();
+        var fallbackCurrencies = new ArrayList<String>();
+        for (var currency : currencies) {
+            var localTable = findLocalTable(currency, date);
+            if (localTable == null) {
+                fallbackCurrencies.add(currency);
+            } else {
+                var rate = localTable.find(currency, date);
+                if (rate != null) {
+                    localRates.put(currency, rate);
+                }
+            }
+        }
+        if (fallbackCurrencies.isEmpty()) {
+            return CompletableFuture.completedFuture(localRates);
+        }
+        return fallback.getExchangeRatesAsync(fallbackCurrencies, date).thenApply(fallbackRates -> {
+            var rates = new LinkedHashMap<String, BigDecimal>();
+            for (var currency : currencies) {
+                var rate = localRates.containsKey(currency) ? localRates.get(currency) : fallbackRates.get(currency);
+                if (rate != null) {
+                    rates.put(currency, rate);
+                }
+            }
+            return rates;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getAllExchangeRatesAsync(LocalDate date) {
+        var localTable = findLocalTable(date);
+        return localTable != null
+                ? CompletableFuture.completedFuture(localTable.findAll(date))
+                : fallback.getAllExchangeRatesAsync(date);
+    }
+
+    /**
+     * Downloads the whole rates dataset, stores it locally and returns the number of downloaded rates.
+     */
+    public int sync() {
+        var snapshot = new Snapshot(LocalDate.now(clock), source.fetchAllExchangeRates());
+        try {
+            var absolutePath = tablePath.toAbsolutePath();
+            var temporaryPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+            try {
+                objectMapper.writeValue(temporaryPath.toFile(), snapshot);
+                Files.move(temporaryPath, absolutePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporaryPath);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can not write exchange rates table.", e);
+        }
+        synchronized (this) {
+            apply(snapshot);
+        }
+        return snapshot.rates().size();
+    }
+
+    private synchronized ExchangeRateTable findLocalTable(String currency, LocalDate date) {
+        var localTable = findLocalTable(date);
+        return localTable != null && localTable.contains(currency) ? localTable : null;
+    }
+
+    private synchronized ExchangeRateTable findLocalTable(LocalDate date) {
+        ensureLoaded();
+        return table != null && !date.isAfter(syncedAt) ? table : null;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            loaded = true;
+            if (Files.exists(tablePath)) {
+                try {
+                    apply(objectMapper.readValue(tablePath.toFile(), Snapshot.class));
+                } catch (IOException e) {
+                    throw new RuntimeException("Can not read exchange rates table.", e);
+                }
+            }
+        }
+    }
+
+    private void apply(Snapshot snapshot) {
+        loaded = true;
+        syncedAt = snapshot.syncedAt();
+        table = ExchangeRateTable.of(snapshot.rates());
+    }
+
+    private record Snapshot(LocalDate syncedAt, List<ExchangeRateRecord> rates) {
+    }
+}
@@ -0,0 +1,73 @@
+package wex.product.services.exchange;
+
+import wex.product.metrics.LatencyHistogram;
+import wex.product.metrics.Metrics;
+import wex.product.utils.Utils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records lookup latencies and failures of the delegate under {@code exchange.<name>}.
+ */
+public final class MeteredExchangeRateService implements ExchangeRateService {
+
+    private final ExchangeRateService delegate;
+    private final LatencyHistogram latencies;
+    private final LongAdder failures;
+
+    public MeteredExchangeRateService(ExchangeRateService delegate, Metrics metrics, String name) {
+        this.delegate = delegate;
+        this.latencies = metrics.histogram("exchange." + name);
+        this.failures = metrics.counter("exchange." + name + ".failures");
+    }
+
+    @Override
+    public BigDecimal getExchangeRate(String currency, LocalDate date) {
+        var start = System.nanoTime();
+        try {
+            return delegate.getExchangeRate(currency, date);
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            latencies.recordSince(start);
+        }
+    }
+
+    @Override
+    public CompletableFuture<BigDecimal> getExchangeRateAsync(String currency, LocalDate date) {
+        return record(System.nanoTime(), delegate.getExchangeRateAsync(currency, date));
+    }
+
+    @Override
+    public CompletableFuture<ExchangeRateRecord> getExchangeRateRecordAsync(String currency, LocalDate date) {
+        return record(System.nanoTime(), delegate.getExchangeRateRecordAsync(currency, date));
+    }
+
+    /**
+     * Records a lookup of many currencies as one, since the delegate may answer it with a single fetch.
+     */
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getExchangeRatesAsync(Collection<String> currencies, LocalDate date) {
+        return record(System.nanoTime(), delegate.getExchangeRatesAsync(currencies, date));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, BigDecimal>> getAllExchangeRatesAsync(LocalDate date) {
+        return record(System.nanoTime(), delegate.getAllExchangeRatesAsync(date));
+    }
+
+    private <T> CompletableFuture<T> record(long start, CompletableFuture<T> lookup) {
+        return Utils.cancelling(lookup.whenComplete((result, error) -> {
+            if (error != null) {
+                failures.increment();
+            }
+            latencies.recordSince(start);
+        }), lookup);
+    }
+}
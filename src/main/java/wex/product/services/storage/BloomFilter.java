@@ -0,0 +1,96 @@
+package wex.product.services.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Bloom filter on transaction ids: answers "definitely absent" or "maybe present" from a fixed bit set.
+ * <p>
+ * Bit positions are derived from the two halves of the id with double hashing, so adding and testing an id costs a
+ * few multiplications and no allocation.
+ */
+public final class BloomFilter {
+
+    private final long[] words;
+    private final int bitCount;
+    private final int hashFunctions;
+
+    private BloomFilter(long[] words, int hashFunctions) {
+        if (words.length == 0 || hashFunctions < 1) {
+            throw new IllegalArgumentException("Bloom filter needs at least one word and one hash function.");
+        }
+        this.words = words;
+        this.bitCount = words.length * Long.SIZE;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Creates a filter sized to keep the false positive rate near the given one once {@code expectedIds} ids are added.
+     */
+    public static BloomFilter create(long expectedIds, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        var ids = Math.max(1, expectedIds);
+        var bits = Math.ceil(-ids * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        var wordCount = (int) Math.min(Integer.MAX_VALUE / Long.SIZE, Math.max(1, Math.ceil(bits / Long.SIZE)));
+        var hashFunctions = (int) Math.max(1, Math.round((double) wordCount * Long.SIZE / ids * Math.log(2)));
+        return new BloomFilter(new long[wordCount], Math.min(hashFunctions, 16));
+    }
+
+    public void add(UUID id) {
+        var h1 = mix(id.getMostSignificantBits());
+        var h2 = mix(id.getLeastSignificantBits() ^ h1) | 1;
+        for (var i = 0; i < hashFunctions; i++) {
+            var bit = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(UUID id) {
+        var h1 = mix(id.getMostSignificantBits());
+        var h2 = mix(id.getLeastSignificantBits() ^ h1) | 1;
+        for (var i = 0; i < hashFunctions; i++) {
+            var bit = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((words[bit >>> 6] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(hashFunctions);
+        output.writeInt(words.length);
+        for (var word : words) {
+            output.writeLong(word);
+        }
+    }
+
+    public static BloomFilter readFrom(DataInput input) throws IOException {
+        var hashFunctions = input.readInt();
+        var wordCount = input.readInt();
+        if (hashFunctions < 1 || wordCount < 1) {
+            throw new IOException("Bloom filter is damaged.");
+        }
+        var words = new long[wordCount];
+        for (var i = 0; i < wordCount; i++) {
+            words[i] = input.readLong();
+        }
+        return new BloomFilter(words, hashFunctions);
+    }
+
+    /**
+     * Finalization step of MurmurHash3, spreads every input bit over the whole result.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
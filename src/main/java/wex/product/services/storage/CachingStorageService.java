@@ -0,0 +1,183 @@
+package wex.product.services.storage;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps transactions of the delegate storage in an {@link OffHeapTransactionMap}, so a long-lived process serves
+ * repeated lookups from memory without adding millions of small objects to the heap.
+ * <p>
+ * Writes go to the delegate first and are cached once it accepts them; lookups the cache can not answer are read from
+ * the delegate and cached. Deleting transactions drops the whole cache, which fills up again from later lookups.
+ * A generation counter keeps a write or a lookup that raced with a reset or a delete from caching what the delegate
+ * no longer holds. Transactions the binary layout can not hold, and any beyond the record or direct memory limit, are
+ * just not cached.
+ */
+public final class CachingStorageService implements StorageService {
+
+    public static final int DEFAULT_MAX_RECORDS = 32_000_000;
+
+    private final StorageService delegate;
+    private final OffHeapTransactionMap cache;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long generation;
+
+    public CachingStorageService(StorageService delegate) {
+        this(delegate, DEFAULT_MAX_RECORDS);
+    }
+
+    public CachingStorageService(StorageService delegate, int maxRecords) {
+        this.delegate = delegate;
+        this.cache = new OffHeapTransactionMap(maxRecords);
+    }
+
+    @Override
+    public void reset() {
+        delegate.reset();
+        clear();
+    }
+
+    @Override
+    public void deleteTransactionsBefore(LocalDate date) {
+        delegate.deleteTransactionsBefore(date);
+        clear();
+    }
+
+    @Override
+    public void forEachTransaction(Consumer<Transaction> consumer) {
+        delegate.forEachTransaction(consumer);
+    }
+
+    @Override
+    public void queryTransactions(TransactionQuery query, Consumer<Transaction> consumer) {
+        delegate.queryTransactions(query, consumer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public void storeTransaction(Transaction transaction) {
+        var generation = generation();
+        delegate.storeTransaction(transaction);
+        cache(List.of(transaction), generation);
+    }
+
+    @Override
+    public void storeTransactions(List<Transaction> transactions) {
+        var generation = generation();
+        delegate.storeTransactions(transactions);
+        cache(transactions, generation);
+    }
+
+    @Override
+    public Transaction findTransaction(UUID id) {
+        var generation = generation();
+        var transaction = cached(id);
+        if (transaction == null) {
+            transaction = delegate.findTransaction(id);
+            if (transaction != null) {
+                cache(List.of(transaction), generation);
+            }
+        }
+        return transaction;
+    }
+
+    @Override
+    public Map<UUID, Transaction> findTransactions(Collection<UUID> ids) {
+        var generation = generation();
+        var transactions = new HashMap<UUID, Transaction>();
+        var missingIds = new ArrayList<UUID>();
+        lock.readLock().lock();
+        try {
+            for (var id : ids) {
+                var transaction = cache.get(id);
+                if (transaction != null) {
+                    transactions.put(id, transaction);
+                } else {
+                    missingIds.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!missingIds.isEmpty()) {
+            var loaded = delegate.findTransactions(missingIds);
+            cache(loaded.values(), generation);
+            transactions.putAll(loaded);
+        }
+        return transactions;
+    }
+
+    /**
+     * Returns the number of transactions held in memory.
+     */
+    public int cachedCount() {
+        lock.readLock().lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Transaction cached(UUID id) {
+        lock.readLock().lock();
+        try {
+            return cache.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void cache(Collection<Transaction> transactions, long expectedGeneration) {
+        lock.writeLock().lock();
+        try {
+            if (generation != expectedGeneration) {
+                return;
+            }
+            for (var transaction : transactions) {
+                try {
+                    if (!cache.put(transaction)) {
+                        return;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Not representable in the binary layout, lookups keep reading it from the delegate.
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long generation() {
+        lock.readLock().lock();
+        try {
+            return generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void clear() {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            cache.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
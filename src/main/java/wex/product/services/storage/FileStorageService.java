@@ -4,13 +4,17 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.*;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public class FileStorageService implements StorageService {
 
     private final FileAccessor fileAccessor;
     private final ObjectMapper objectMapper;
+    private final TransactionScanner transactionScanner;
 
     public FileStorageService(String storagePath, ObjectMapper objectMapper) {
         this(new FileAccessor(storagePath), objectMapper);
@@ -19,23 +23,56 @@ public class FileStorageService implements StorageService {
     public FileStorageService(FileAccessor fileAccessor, ObjectMapper objectMapper) {
         this.fileAccessor = fileAccessor;
         this.objectMapper = objectMapper;
+        this.transactionScanner = new TransactionScanner(objectMapper);
     }
 
     @Override
-    public void reset() {
+    public synchronized void reset() {
         fileAccessor.deleteFile();
     }
 
     @Override
-    public void storeTransaction(Transaction transaction) {
+    public synchronized void storeTransaction(Transaction transaction) {
         var transactions = readTransactions();
         transactions.add(transaction);
         writeTransactions(transactions);
     }
 
     @Override
-    public Transaction findTransaction(UUID id) {
-        return readTransactions().stream().filter(t -> t.id().equals(id)).findAny().orElse(null);
+    public synchronized void storeTransactions(List<Transaction> transactions) {
+        var storedTransactions = readTransactions();
+        storedTransactions.addAll(transactions);
+        writeTransactions(storedTransactions);
+    }
+
+    @Override
+    public synchronized Transaction findTransaction(UUID id) {
+        try {
+            fileAccessor.ensureFileExists();
+            return transactionScanner.find(fileAccessor.getInputStream(), id);
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the file storage.", e);
+        }
+    }
+
+    @Override
+    public synchronized Map<UUID, Transaction> findTransactions(Collection<UUID> ids) {
+        try {
+            fileAccessor.ensureFileExists();
+            return transactionScanner.findAll(fileAccessor.getInputStream(), ids);
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the file storage.", e);
+        }
+    }
+
+    @Override
+    public synchronized void forEachTransaction(Consumer<Transaction> consumer) {
+        try {
+            fileAccessor.ensureFileExists();
+            transactionScanner.forEach(fileAccessor.getInputStream(), consumer);
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the file storage.", e);
+        }
     }
 
     private List<Transaction> readTransactions() {
@@ -0,0 +1,245 @@
+package wex.product.services.storage;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Storage in an embedded H2 database reached through a pool of JDBC connections.
+ * <p>
+ * Transactions live in one table with the id as primary key and secondary indexes on the purchase date, which serves
+ * retention deletes and date range queries, and on the description, which serves description prefix queries. Batches
+ * are inserted with a single JDBC batch in one database transaction. The database is opened without write delay, so a
+ * stored batch is written to the file once the call returns and survives the process exiting or crashing, but it is
+ * not forced to the disk and can still be lost when the operating system crashes or the power fails. The embedded
+ * database is locked by the process that opened it, a second process fails to open it until the first one exits.
+ */
+public class JdbcStorageService implements StorageService {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 8;
+
+    private static final int LOOKUP_CHUNK_SIZE = 1_000;
+
+    private static final String CREATE_TABLE = """
+            CREATE TABLE IF NOT EXISTS transactions (
+                id UUID PRIMARY KEY,
+                amount NUMERIC(19, 2) NOT NULL,
+                purchase_date DATE NOT NULL,
+                description VARCHAR(255) NOT NULL
+            )""";
+    private static final String CREATE_DATE_INDEX = "CREATE INDEX IF NOT EXISTS transactions_purchase_date ON transactions (purchase_date)";
+    private static final String CREATE_DESCRIPTION_INDEX = "CREATE INDEX IF NOT EXISTS transactions_description ON transactions (description)";
+    private static final String INSERT = "INSERT INTO transactions (id, amount, purchase_date, description) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_BY_ID = "SELECT id, amount, purchase_date, description FROM transactions WHERE id = ?";
+    private static final String SELECT_BY_IDS = "SELECT id, amount, purchase_date, description FROM transactions WHERE id = ANY(?)";
+    private static final String SELECT_ALL = "SELECT id, amount, purchase_date, description FROM transactions";
+    private static final String DELETE_BEFORE = "DELETE FROM transactions WHERE purchase_date < ?";
+    private static final String DELETE_ALL = "TRUNCATE TABLE transactions";
+
+    private final DataSource dataSource;
+    private final Runnable closer;
+
+    private volatile boolean schemaCreated;
+
+    public JdbcStorageService(String url) {
+        this(createPool(url));
+    }
+
+    private JdbcStorageService(JdbcConnectionPool pool) {
+        this(pool, pool::dispose);
+    }
+
+    public JdbcStorageService(DataSource dataSource, Runnable closer) {
+        this.dataSource = dataSource;
+        this.closer = closer;
+    }
+
+    /**
+     * Returns the URL of a database in the given file that writes every commit to the file without delay and compares
+     * strings by {@link String#compareTo}, so descriptions sort the same way as on the other engines. The database
+     * locks the file while open, so only one process can use it at a time.
+     */
+    public static String fileUrl(String path) {
+        return String.format("jdbc:h2:file:%s;WRITE_DELAY=0;COLLATION=OFF", path);
+    }
+
+    @Override
+    public void reset() {
+        try (var connection = connect(); var statement = connection.createStatement()) {
+            statement.execute(DELETE_ALL);
+        } catch (SQLException e) {
+            throw new RuntimeException("Can not reset the database storage.", e);
+        }
+    }
+
+    @Override
+    public void storeTransaction(Transaction transaction) {
+        storeTransactions(List.of(transaction));
+    }
+
+    @Override
+    public void storeTransactions(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        try (var connection = connect()) {
+            connection.setAutoCommit(false);
+            try (var statement = connection.prepareStatement(INSERT)) {
+                for (var transaction : transactions) {
+                    statement.setObject(1, transaction.id());
+                    statement.setBigDecimal(2, transaction.amount());
+                    statement.setObject(3, transaction.date());
+                    statement.setString(4, transaction.description());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Can not write transaction to the database storage.", e);
+        }
+    }
+
+    @Override
+    public Transaction findTransaction(UUID id) {
+        try (var connection = connect(); var statement = connection.prepareStatement(SELECT_BY_ID)) {
+            statement.setObject(1, id);
+            try (var resultSet = statement.executeQuery()) {
+                return resultSet.next() ? readTransaction(resultSet) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Can not read transactions from the database storage.", e);
+        }
+    }
+
+    @Override
+    public Map<UUID, Transaction> findTransactions(Collection<UUID> ids) {
+        var transactions = new HashMap<UUID, Transaction>();
+        if (ids.isEmpty()) {
+            return transactions;
+        }
+        var distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        try (var connection = connect(); var statement = connection.prepareStatement(SELECT_BY_IDS)) {
+            for (var from = 0; from < distinctIds.size(); from += LOOKUP_CHUNK_SIZE) {
+                var chunk = distinctIds.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, distinctIds.size()));
+                statement.setArray(1, connection.createArrayOf("UUID", chunk.toArray()));
+                try (var resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        var transaction = readTransaction(resultSet);
+                        transactions.put(transaction.id(), transaction);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Can not read transactions from the database storage.", e);
+        }
+        return transactions;
+    }
+
+    @Override
+    public void deleteTransactionsBefore(LocalDate date) {
+        try (var connection = connect(); var statement = connection.prepareStatement(DELETE_BEFORE)) {
+            statement.setObject(1, date);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Can not delete transactions from the database storage.", e);
+        }
+    }
+
+    /**
+     * Selects matches with a range condition on the purchase date and a {@code LIKE 'prefix%'} condition on the
+     * description, both of which the database answers from its indexes, and reads them as the result set is iterated.
+     */
+    @Override
+    public void queryTransactions(TransactionQuery query, Consumer<Transaction> consumer) {
+        var conditions = new ArrayList<String>();
+        var parameters = new ArrayList<>();
+        if (query.from() != null) {
+            conditions.add("purchase_date >= ?");
+            parameters.add(query.from());
+        }
+        if (query.to() != null) {
+            conditions.add("purchase_date <= ?");
+            parameters.add(query.to());
+        }
+        if (query.descriptionPrefix() != null) {
+            conditions.add("description LIKE ? ESCAPE '\\'");
+            parameters.add(query.descriptionPrefix().replaceAll("[\\\\%_]", "\\\\$0") + "%");
+        }
+        var sql = SELECT_ALL
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + (query.hasDateRange() || query.descriptionPrefix() == null ? " ORDER BY purchase_date" : " ORDER BY description");
+        try (var connection = connect(); var statement = connection.prepareStatement(sql)) {
+            for (var i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            statement.setFetchSize(LOOKUP_CHUNK_SIZE);
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(readTransaction(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Can not read transactions from the database storage.", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closer.run();
+    }
+
+    private static JdbcConnectionPool createPool(String url) {
+        var pool = JdbcConnectionPool.create(url, "sa", "");
+        pool.setMaxConnections(DEFAULT_MAX_CONNECTIONS);
+        return pool;
+    }
+
+    private Connection connect() throws SQLException {
+        var connection = dataSource.getConnection();
+        if (!schemaCreated) {
+            createSchema(connection);
+        }
+        return connection;
+    }
+
+    private synchronized void createSchema(Connection connection) throws SQLException {
+        if (!schemaCreated) {
+            try (var statement = connection.createStatement()) {
+                statement.execute(CREATE_TABLE);
+                statement.execute(CREATE_DATE_INDEX);
+                statement.execute(CREATE_DESCRIPTION_INDEX);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+            schemaCreated = true;
+        }
+    }
+
+    private static Transaction readTransaction(ResultSet resultSet) throws SQLException {
+        return new Transaction(
+                resultSet.getObject(1, UUID.class),
+                resultSet.getBigDecimal(2),
+                resultSet.getObject(3, LocalDate.class),
+                resultSet.getString(4)
+        );
+    }
+}
@@ -0,0 +1,177 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * JSON file storage that is safe for concurrent writers, including writers in other processes.
+ * <p>
+ * Writers serialize on an exclusive {@link FileChannel} lock of a sibling {@code .lock} file, and every update is
+ * written to a temporary file that atomically replaces the storage, so readers never see a half-written file.
+ * Concurrent stores within a process are grouped: whoever takes the commit lock writes every queued transaction
+ * with a single rewrite.
+ */
+public class LockingFileStorageService implements StorageService {
+
+    private final Path storagePath;
+    private final Path lockPath;
+    private final ObjectMapper objectMapper;
+    private final TransactionScanner transactionScanner;
+    private final Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    public LockingFileStorageService(String storagePath, ObjectMapper objectMapper) {
+        this(Path.of(storagePath), objectMapper);
+    }
+
+    public LockingFileStorageService(Path storagePath, ObjectMapper objectMapper) {
+        this.storagePath = storagePath.toAbsolutePath();
+        this.lockPath = Path.of(this.storagePath + ".lock");
+        this.objectMapper = objectMapper;
+        this.transactionScanner = new TransactionScanner(objectMapper);
+    }
+
+    @Override
+    public void reset() {
+        commitLock.lock();
+        try (var lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            var lock = lockChannel.lock();
+            try {
+                Files.deleteIfExists(storagePath);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can not reset the file storage.", e);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    @Override
+    public void storeTransaction(Transaction transaction) {
+        storeTransactions(List.of(transaction));
+    }
+
+    @Override
+    public void storeTransactions(List<Transaction> transactions) {
+        var pendingWrite = new PendingWrite(transactions, new CompletableFuture<>());
+        pendingWrites.add(pendingWrite);
+        commitLock.lock();
+        try {
+            if (!pendingWrite.result().isDone()) {
+                commitPendingWrites();
+            }
+        } finally {
+            commitLock.unlock();
+        }
+        try {
+            pendingWrite.result().join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Can not write transactions to the file storage.", e.getCause());
+        }
+    }
+
+    @Override
+    public Transaction findTransaction(UUID id) {
+        try (var inputStream = Files.newInputStream(storagePath)) {
+            return transactionScanner.find(inputStream, id);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the file storage.", e);
+        }
+    }
+
+    @Override
+    public Map<UUID, Transaction> findTransactions(Collection<UUID> ids) {
+        try (var inputStream = Files.newInputStream(storagePath)) {
+            return transactionScanner.findAll(inputStream, ids);
+        } catch (NoSuchFileException e) {
+            return new HashMap<>();
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the file storage.", e);
+        }
+    }
+
+    @Override
+    public void forEachTransaction(Consumer<Transaction> consumer) {
+        try (var inputStream = Files.newInputStream(storagePath)) {
+            transactionScanner.forEach(inputStream, consumer);
+        } catch (NoSuchFileException e) {
+            // Nothing is stored yet.
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the file storage.", e);
+        }
+    }
+
+    private void commitPendingWrites() {
+        var batch = new ArrayList<PendingWrite>();
+        PendingWrite pendingWrite;
+        while ((pendingWrite = pendingWrites.poll()) != null) {
+            batch.add(pendingWrite);
+        }
+        try (var lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            var lock = lockChannel.lock();
+            try {
+                var transactions = readTransactions();
+                batch.forEach(write -> transactions.addAll(write.transactions()));
+                writeTransactions(transactions);
+            } finally {
+                lock.release();
+            }
+            batch.forEach(write -> write.result().complete(null));
+        } catch (Throwable e) {
+            batch.forEach(write -> write.result().completeExceptionally(e));
+        }
+    }
+
+    private List<Transaction> readTransactions() throws IOException {
+        if (!Files.exists(storagePath)) {
+            return new ArrayList<>();
+        }
+        try (var inputStream = Files.newInputStream(storagePath)) {
+            return objectMapper.readValue(inputStream, new TypeReference<ArrayList<Transaction>>() {});
+        }
+    }
+
+    private void writeTransactions(List<Transaction> transactions) throws IOException {
+        var temporaryPath = Files.createTempFile(storagePath.getParent(), storagePath.getFileName().toString(), ".tmp");
+        try {
+            try (var channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                var buffer = ByteBuffer.wrap(objectMapper.writeValueAsBytes(transactions));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryPath, storagePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    private record PendingWrite(List<Transaction> transactions, CompletableFuture<Void> result) {
+    }
+}
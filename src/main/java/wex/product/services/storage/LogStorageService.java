@@ -0,0 +1,297 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Storage of JSON records in an append-only {@link RecordLog} with a persistent id index.
+ * <p>
+ * Queries are answered from a {@link QueryIndex} kept next to the log. Writes do not update it; the first query after
+ * them adds the appended records to the index as a new run, so a log that is never queried never pays for it.
+ * <p>
+ * Processes may share the storage: every operation runs under a {@link StorageLock} on {@code storagePath + ".lock"}
+ * and first takes up what other processes wrote since. The id index is only discarded as not cleanly closed when no
+ * other process uses the storage, as their updates in progress mark it dirty too.
+ */
+public class LogStorageService implements StorageService {
+
+    public static final int DEFAULT_SYNC_BATCH_SIZE = 1;
+
+    private static final int IMPORT_BATCH_SIZE = 10_000;
+    private static final int QUERY_INDEX_CHUNK_SIZE = 1 << 16;
+
+    private final RecordLog recordLog;
+    private final TransactionIndex index;
+    private final QueryIndex queryIndex;
+    private final ObjectMapper objectMapper;
+    private final StorageLock lock;
+
+    public LogStorageService(String storagePath, ObjectMapper objectMapper) {
+        this(storagePath, DEFAULT_SYNC_BATCH_SIZE, objectMapper);
+    }
+
+    /**
+     * Creates the storage forcing appends to disk once per {@code syncBatchSize} records, so a crash may lose up to
+     * {@code syncBatchSize - 1} stored transactions; closing the storage forces the rest.
+     */
+    public LogStorageService(String storagePath, int syncBatchSize, ObjectMapper objectMapper) {
+        this(
+                new RecordLog(Path.of(storagePath), syncBatchSize),
+                new TransactionIndex(Path.of(storagePath + ".idx")),
+                Path.of(storagePath + ".qidx"),
+                Path.of(storagePath + ".lock"),
+                objectMapper
+        );
+    }
+
+    public LogStorageService(RecordLog recordLog, TransactionIndex index, Path queryIndexPath, Path lockPath, ObjectMapper objectMapper) {
+        this.recordLog = recordLog;
+        this.index = index;
+        this.queryIndex = new QueryIndex(queryIndexPath);
+        this.objectMapper = objectMapper;
+        this.lock = new StorageLock(lockPath, index::discardIfDirty);
+    }
+
+    /**
+     * Opens the log storage, first importing the transactions of the JSON storage at {@code legacyPath} when the log
+     * does not exist yet, so purchases stored before the log became the default stay retrievable. The import is
+     * written next to the log and moved in place once complete, so an interrupted import is redone on the next open;
+     * the JSON file is left as it is. The import runs under the lock of the log, so processes opening it at once
+     * import only once.
+     */
+    public static LogStorageService openImportingLegacy(String storagePath, String legacyPath, ObjectMapper objectMapper) {
+        return openImportingLegacy(storagePath, legacyPath, DEFAULT_SYNC_BATCH_SIZE, objectMapper);
+    }
+
+    public static LogStorageService openImportingLegacy(String storagePath, String legacyPath, int syncBatchSize, ObjectMapper objectMapper) {
+        var logPath = Path.of(storagePath);
+        var jsonPath = Path.of(legacyPath);
+        var service = new LogStorageService(storagePath, syncBatchSize, objectMapper);
+        try {
+            service.lock.run(() -> {
+                if (!Files.exists(logPath) && Files.exists(jsonPath)) {
+                    importLegacy(jsonPath, logPath, objectMapper);
+                }
+            });
+        } catch (IOException e) {
+            var exception = new RuntimeException(String.format("Can not import transactions of %s into the log storage.", legacyPath), e);
+            try {
+                service.close();
+            } catch (IOException closeException) {
+                exception.addSuppressed(closeException);
+            }
+            throw exception;
+        }
+        return service;
+    }
+
+    private static void importLegacy(Path jsonPath, Path logPath, ObjectMapper objectMapper) throws IOException {
+        var importPath = Path.of(logPath + ".import");
+        var importIndexPath = Path.of(importPath + ".idx");
+        var importLockPath = Path.of(importPath + ".lock");
+        Files.deleteIfExists(importPath);
+        Files.deleteIfExists(importIndexPath);
+        try (var storage = new LogStorageService(importPath.toString(), objectMapper);
+             var inputStream = Files.newInputStream(jsonPath)) {
+            var batch = new ArrayList<Transaction>(IMPORT_BATCH_SIZE);
+            new TransactionScanner(objectMapper).forEach(inputStream, transaction -> {
+                batch.add(transaction);
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    storage.storeTransactions(batch);
+                    batch.clear();
+                }
+            });
+            storage.storeTransactions(batch);
+        }
+        // The id index is rebuilt by the first lookup on the log.
+        Files.deleteIfExists(importIndexPath);
+        Files.deleteIfExists(importLockPath);
+        Files.move(importPath, logPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void reset() {
+        try {
+            run(() -> {
+                recordLog.truncate();
+                index.clear();
+                queryIndex.clear();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not reset the log storage.", e);
+        }
+    }
+
+    @Override
+    public void storeTransaction(Transaction transaction) {
+        try {
+            var payload = objectMapper.writeValueAsBytes(transaction);
+            run(() -> {
+                ensureIndexed();
+                var offset = recordLog.append(payload);
+                index.put(transaction.id(), offset);
+                index.setCoveredSize(recordLog.size());
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not write transaction to the log storage.", e);
+        }
+    }
+
+    @Override
+    public void storeTransactions(List<Transaction> transactions) {
+        try {
+            var payloads = new ArrayList<byte[]>(transactions.size());
+            for (var transaction : transactions) {
+                payloads.add(objectMapper.writeValueAsBytes(transaction));
+            }
+            run(() -> {
+                ensureIndexed();
+                var offsets = recordLog.appendAll(payloads);
+                for (var i = 0; i < offsets.length; i++) {
+                    index.put(transactions.get(i).id(), offsets[i]);
+                }
+                index.setCoveredSize(recordLog.size());
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not write transaction to the log storage.", e);
+        }
+    }
+
+    @Override
+    public Transaction findTransaction(UUID id) {
+        try {
+            return call(() -> {
+                ensureIndexed();
+                var offset = index.find(id);
+                if (offset < 0) {
+                    return null;
+                }
+                var transaction = objectMapper.readValue(recordLog.read(offset), Transaction.class);
+                return transaction.id().equals(id) ? transaction : null;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the log storage.", e);
+        }
+    }
+
+    /**
+     * Reads candidates from the date index when the query has no description prefix and from the description index
+     * when it has no dates. With both, the index selecting fewer records is read and matches found by description are
+     * sorted by date.
+     */
+    @Override
+    public void queryTransactions(TransactionQuery query, Consumer<Transaction> consumer) {
+        try {
+            run(() -> {
+                ensureQueryIndexed();
+                var prefix = query.descriptionPrefix();
+                if (prefix == null
+                        || query.hasDateRange() && queryIndex.countByDate(query.from(), query.to()) <= queryIndex.countByDescriptionPrefix(prefix)) {
+                    readMatching(queryIndex.findByDate(query.from(), query.to()), query, consumer);
+                } else if (!query.hasDateRange()) {
+                    readMatching(queryIndex.findByDescriptionPrefix(prefix), query, consumer);
+                } else {
+                    var matches = new ArrayList<Transaction>();
+                    readMatching(queryIndex.findByDescriptionPrefix(prefix), query, matches::add);
+                    matches.sort(Comparator.comparing(Transaction::date));
+                    matches.forEach(consumer);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the log storage.", e);
+        }
+    }
+
+    private void readMatching(long[] offsets, TransactionQuery query, Consumer<Transaction> consumer) throws IOException {
+        for (var offset : offsets) {
+            var transaction = objectMapper.readValue(recordLog.read(offset), Transaction.class);
+            if (query.matches(transaction)) {
+                consumer.accept(transaction);
+            }
+        }
+    }
+
+    /**
+     * Opens the query index runs saved by previous queries, which drops the ones that are damaged or cover more than
+     * the log, and indexes records appended since in runs of at most {@value #QUERY_INDEX_CHUNK_SIZE} records, so
+     * indexing a large log does not hold all its entries in memory.
+     */
+    private void ensureQueryIndexed() throws IOException {
+        var logSize = recordLog.size();
+        queryIndex.open(logSize);
+        if (queryIndex.coveredSize() == logSize) {
+            return;
+        }
+        var entries = new ArrayList<QueryIndex.Entry>();
+        recordLog.scan(queryIndex.coveredSize(), (offset, payload) -> {
+            entries.add(QueryIndex.Entry.of(offset, objectMapper.readValue(payload, Transaction.class)));
+            if (entries.size() == QUERY_INDEX_CHUNK_SIZE) {
+                queryIndex.append(offset + RecordLog.HEADER_SIZE + payload.length, entries);
+                entries.clear();
+            }
+            return true;
+        });
+        if (!entries.isEmpty()) {
+            queryIndex.append(logSize, entries);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the log when it is missing, was not closed cleanly or was written for a different log,
+     * and catches it up with records appended after it was last updated.
+     */
+    private void ensureIndexed() throws IOException {
+        var logSize = recordLog.size();
+        var coveredSize = index.coveredSize();
+        if (coveredSize == logSize) {
+            return;
+        }
+        if (coveredSize > logSize) {
+            index.clear();
+            coveredSize = 0;
+        }
+        recordLog.scan(coveredSize, (offset, payload) -> {
+            index.put(objectMapper.readValue(payload, Transaction.class).id(), offset);
+            return true;
+        });
+        index.setCoveredSize(logSize);
+    }
+
+    /**
+     * Runs the operation under the lock, after taking up records appended and files replaced by other processes.
+     */
+    private <T> T call(StorageLock.Action<T> action) throws IOException {
+        return lock.call(() -> {
+            recordLog.refresh();
+            index.refresh();
+            return action.run();
+        });
+    }
+
+    private void run(StorageLock.Operation operation) throws IOException {
+        call(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (lock) {
+            lock.run(() -> {
+                try (index; queryIndex) {
+                    recordLog.close();
+                }
+            });
+        }
+    }
+}
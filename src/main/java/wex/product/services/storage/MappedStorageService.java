@@ -0,0 +1,268 @@
+package wex.product.services.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static wex.product.services.storage.TransactionCodec.MAX_RECORD_SIZE;
+
+/**
+ * Storage of {@link TransactionCodec} records in a memory-mapped file.
+ * <p>
+ * The file header holds the end of the committed records, which are packed back to back by their encoded size. The
+ * file is mapped in regions of up to 1 GiB so it is not limited to the 2 GiB of one mapping, a record is never split
+ * between regions, and the last region is extended in small steps and truncated to the committed end on close. Reads
+ * decode straight from the mapping and the id index points at long record positions.
+ * <p>
+ * Every operation runs under a {@link StorageLock} on {@code storagePath + ".lock"} and first takes up the end other
+ * processes committed. Truncating a file another process has mapped makes its reads fail, so reset only rewrites the
+ * header and close truncates the file only when no other instance or process uses it.
+ */
+public class MappedStorageService implements StorageService {
+
+    static final int HEADER_SIZE = 16;
+    static final long REGION_SIZE = 1L << 30;
+
+    private static final int MAGIC = 0x57455843;
+    private static final int END_POSITION = 8;
+    private static final long GROWTH_STEP = 1 << 16;
+
+    private final Path path;
+    private final TransactionIndex index;
+    private final long regionSize;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private final StorageLock lock;
+
+    private FileChannel channel;
+    private long end;
+
+    public MappedStorageService(String storagePath) {
+        this(Path.of(storagePath), new TransactionIndex(Path.of(storagePath + ".idx")));
+    }
+
+    public MappedStorageService(Path path, TransactionIndex index) {
+        this(path, index, REGION_SIZE);
+    }
+
+    MappedStorageService(Path path, TransactionIndex index, long regionSize) {
+        this.path = path;
+        this.index = index;
+        this.regionSize = regionSize;
+        this.lock = new StorageLock(Path.of(path + ".lock"), index::discardIfDirty);
+    }
+
+    @Override
+    public void reset() {
+        try {
+            run(() -> {
+                initializeHeader();
+                regions.get(0).force();
+                index.clear();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not reset the mapped storage.", e);
+        }
+    }
+
+    @Override
+    public void storeTransaction(Transaction transaction) {
+        storeTransactions(List.of(transaction));
+    }
+
+    @Override
+    public void storeTransactions(List<Transaction> transactions) {
+        try {
+            run(() -> {
+                ensureIndexed();
+                var firstPosition = end;
+                var position = end;
+                for (var transaction : transactions) {
+                    position = recordStart(position);
+                    map(position + MAX_RECORD_SIZE);
+                    var size = TransactionCodec.encode(transaction, region(position), offset(position));
+                    index.put(transaction.id(), position);
+                    position += size;
+                }
+                force(firstPosition, position);
+                end = position;
+                regions.get(0).putLong(END_POSITION, end);
+                regions.get(0).force(0, HEADER_SIZE);
+                index.setCoveredSize(end);
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not write transaction to the mapped storage.", e);
+        }
+    }
+
+    @Override
+    public Transaction findTransaction(UUID id) {
+        try {
+            return call(() -> {
+                ensureIndexed();
+                var position = index.find(id);
+                if (position < HEADER_SIZE || position >= end) {
+                    return null;
+                }
+                var region = region(position);
+                var offset = offset(position);
+                if (TransactionCodec.idMostSignificantBits(region, offset) != id.getMostSignificantBits()
+                        || TransactionCodec.idLeastSignificantBits(region, offset) != id.getLeastSignificantBits()) {
+                    return null;
+                }
+                return TransactionCodec.decode(region, offset);
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the mapped storage.", e);
+        }
+    }
+
+    @Override
+    public void forEachTransaction(Consumer<Transaction> consumer) {
+        try {
+            run(() -> {
+                var position = (long) HEADER_SIZE;
+                while (position < end) {
+                    position = recordStart(position);
+                    var region = region(position);
+                    var offset = offset(position);
+                    consumer.accept(TransactionCodec.decode(region, offset));
+                    position += TransactionCodec.recordSize(region, offset);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the mapped storage.", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (lock) {
+            lock.run(() -> {
+                try (index) {
+                    if (channel != null) {
+                        for (var region : regions) {
+                            region.force();
+                        }
+                        regions.clear();
+                        if (lock.isSoleUser()) {
+                            channel.truncate(end);
+                        }
+                        channel.close();
+                        channel = null;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the operation under the lock, after taking up the end of the records and the index files other processes
+     * committed.
+     */
+    private <T> T call(StorageLock.Action<T> action) throws IOException {
+        return lock.call(() -> {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                map(Math.max(HEADER_SIZE, channel.size()));
+                if (regions.get(0).getInt(0) != MAGIC) {
+                    initializeHeader();
+                }
+            }
+            var size = channel.size();
+            end = Math.max(HEADER_SIZE, Math.min(regions.get(0).getLong(END_POSITION), size));
+            map(Math.max(HEADER_SIZE, size));
+            index.refresh();
+            return action.run();
+        });
+    }
+
+    private void run(StorageLock.Operation operation) throws IOException {
+        call(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    private void ensureIndexed() throws IOException {
+        var coveredEnd = index.coveredSize();
+        if (coveredEnd == end) {
+            return;
+        }
+        if (coveredEnd > end || coveredEnd < HEADER_SIZE) {
+            index.clear();
+            coveredEnd = HEADER_SIZE;
+        }
+        var position = coveredEnd;
+        while (position < end) {
+            position = recordStart(position);
+            var region = region(position);
+            var offset = offset(position);
+            index.put(new UUID(
+                    TransactionCodec.idMostSignificantBits(region, offset),
+                    TransactionCodec.idLeastSignificantBits(region, offset)
+            ), position);
+            position += TransactionCodec.recordSize(region, offset);
+        }
+        index.setCoveredSize(end);
+    }
+
+    /**
+     * Maps the file up to at least the given size: every region but the last one whole and the last one rounded up to
+     * the growth step.
+     */
+    private void map(long size) throws IOException {
+        var last = (int) ((size - 1) / regionSize);
+        for (var i = 0; i <= last; i++) {
+            var regionEnd = i < last ? regionSize : Math.min(regionSize, roundUp(size - i * regionSize));
+            if (i == regions.size()) {
+                regions.add(channel.map(FileChannel.MapMode.READ_WRITE, i * regionSize, regionEnd));
+            } else if (regions.get(i).capacity() < regionEnd) {
+                regions.set(i, channel.map(FileChannel.MapMode.READ_WRITE, i * regionSize, regionEnd));
+            }
+        }
+    }
+
+    private void force(long from, long to) {
+        while (from < to) {
+            var region = region(from);
+            var offset = offset(from);
+            var length = (int) Math.min(to - from, regionSize - offset);
+            region.force(offset, length);
+            from += length;
+        }
+    }
+
+    private void initializeHeader() {
+        var header = regions.get(0);
+        header.putInt(0, MAGIC);
+        header.putLong(END_POSITION, HEADER_SIZE);
+        end = HEADER_SIZE;
+    }
+
+    /**
+     * Returns where the record following the given position starts, moving to the next region when the rest of the
+     * current one might not fit a record.
+     */
+    private long recordStart(long position) {
+        var offset = position % regionSize;
+        return regionSize - offset < MAX_RECORD_SIZE ? position - offset + regionSize : position;
+    }
+
+    private MappedByteBuffer region(long position) {
+        return regions.get((int) (position / regionSize));
+    }
+
+    private int offset(long position) {
+        return (int) (position % regionSize);
+    }
+
+    private static long roundUp(long size) {
+        return (size + GROWTH_STEP - 1) / GROWTH_STEP * GROWTH_STEP;
+    }
+}
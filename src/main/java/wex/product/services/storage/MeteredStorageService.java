@@ -0,0 +1,102 @@
+package wex.product.services.storage;
+
+import wex.product.metrics.LatencyHistogram;
+import wex.product.metrics.Metrics;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Records read and write latencies of the delegate storage and counts lookups of purchases that are not stored.
+ */
+public final class MeteredStorageService implements StorageService {
+
+    private final StorageService delegate;
+    private final LatencyHistogram reads;
+    private final LatencyHistogram writes;
+    private final LongAdder misses;
+
+    public MeteredStorageService(StorageService delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.reads = metrics.histogram("storage.read");
+        this.writes = metrics.histogram("storage.write");
+        this.misses = metrics.counter("storage.read.misses");
+    }
+
+    @Override
+    public void reset() {
+        delegate.reset();
+    }
+
+    @Override
+    public void deleteTransactionsBefore(LocalDate date) {
+        delegate.deleteTransactionsBefore(date);
+    }
+
+    @Override
+    public void forEachTransaction(Consumer<Transaction> consumer) {
+        delegate.forEachTransaction(consumer);
+    }
+
+    @Override
+    public void queryTransactions(TransactionQuery query, Consumer<Transaction> consumer) {
+        delegate.queryTransactions(query, consumer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public void storeTransaction(Transaction transaction) {
+        var start = System.nanoTime();
+        try {
+            delegate.storeTransaction(transaction);
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public void storeTransactions(List<Transaction> transactions) {
+        var start = System.nanoTime();
+        try {
+            delegate.storeTransactions(transactions);
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public Transaction findTransaction(UUID id) {
+        var start = System.nanoTime();
+        try {
+            var transaction = delegate.findTransaction(id);
+            if (transaction == null) {
+                misses.increment();
+            }
+            return transaction;
+        } finally {
+            reads.recordSince(start);
+        }
+    }
+
+    @Override
+    public Map<UUID, Transaction> findTransactions(Collection<UUID> ids) {
+        var start = System.nanoTime();
+        try {
+            var transactions = delegate.findTransactions(ids);
+            misses.add(ids.size() - transactions.size());
+            return transactions;
+        } finally {
+            reads.recordSince(start);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package wex.product.services.storage;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static wex.product.services.storage.TransactionCodec.MAX_RECORD_SIZE;
+
+/**
+ * Open-addressing hash table of {@link TransactionCodec} records kept in direct memory.
+ * <p>
+ * Records are packed back to back by their encoded size into chunks of direct buffers, 8-byte aligned and never split
+ * between chunks, and the table holds nothing but {@code record address / 8 + 1} per slot, probed linearly and compared
+ * against the two longs of the id stored in the record itself. No object is retained per record, so the heap cost of
+ * the map does not grow with the number of transactions. A replaced transaction is appended again, its previous record
+ * is left unused until the map is cleared.
+ * <p>
+ * Chunks and the table are counted against a byte budget, a share of {@code -XX:MaxDirectMemorySize} by default, and
+ * the map stops growing once the budget, or direct memory, runs out instead of trying again on every put.
+ * <p>
+ * The map is not thread-safe.
+ */
+final class OffHeapTransactionMap {
+
+    static final int CHUNK_SIZE = 1 << 22;
+    static final int MAX_RECORDS = 1 << 29;
+
+    private static final int ALIGNMENT = Long.BYTES;
+    private static final long MAX_ADDRESS = (long) Integer.MAX_VALUE * ALIGNMENT;
+    private static final int SLOTS_PER_CHUNK = 1 << 24;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final int maxRecords;
+    private final long maxBytes;
+
+    private IntBuffer[] slots;
+    private int capacity;
+    private int count;
+    private long end;
+    private long allocatedBytes;
+    private boolean full;
+
+    OffHeapTransactionMap(int maxRecords) {
+        this(maxRecords, directMemoryBudget());
+    }
+
+    OffHeapTransactionMap(int maxRecords, long maxBytes) {
+        if (maxRecords <= 0 || maxRecords > MAX_RECORDS) {
+            throw new IllegalArgumentException(String.format("Maximum number of records must be within 1..%d.", MAX_RECORDS));
+        }
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        clear();
+    }
+
+    Transaction get(UUID id) {
+        var value = slotValue(slots, findSlot(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        if (value == 0) {
+            return null;
+        }
+        var address = address(value);
+        return TransactionCodec.decode(chunk(address), position(address));
+    }
+
+    /**
+     * Puts the transaction in place of the one with the same id, or appends it.
+     *
+     * @return {@code false} if the map is full and the transaction is not stored
+     */
+    boolean put(Transaction transaction) {
+        var msb = transaction.id().getMostSignificantBits();
+        var lsb = transaction.id().getLeastSignificantBits();
+        var slot = findSlot(msb, lsb);
+        var added = slotValue(slots, slot) == 0;
+        if (added && count == maxRecords || !ensureCapacity(added)) {
+            return false;
+        }
+        if (added) {
+            slot = findSlot(msb, lsb);
+        }
+        var address = recordStart(end);
+        var size = TransactionCodec.encode(transaction, chunk(address), position(address));
+        end = (address + size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        setSlotValue(slots, slot, (int) (address / ALIGNMENT) + 1);
+        if (added) {
+            count++;
+        }
+        return true;
+    }
+
+    /**
+     * Drops all records and returns the direct memory of their chunks to the garbage collector.
+     */
+    void clear() {
+        chunks.clear();
+        slots = allocateSlots(INITIAL_CAPACITY);
+        capacity = INITIAL_CAPACITY;
+        count = 0;
+        end = 0;
+        allocatedBytes = (long) INITIAL_CAPACITY * Integer.BYTES;
+        full = false;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Makes room for one more record, adding a chunk when the rest of the last one might not fit it and growing the
+     * table at half load when the record is added. Growth past the budget, or a failed allocation, marks the map full.
+     */
+    private boolean ensureCapacity(boolean added) {
+        var start = recordStart(end);
+        var addsChunk = start / CHUNK_SIZE == chunks.size();
+        var growsTable = added && 2L * (count + 1) > capacity;
+        if (!addsChunk && !growsTable) {
+            return true;
+        }
+        var bytes = (addsChunk ? CHUNK_SIZE : 0) + (growsTable ? (long) capacity * Integer.BYTES : 0);
+        if (full || start + MAX_RECORD_SIZE > MAX_ADDRESS || allocatedBytes + bytes > maxBytes) {
+            full = true;
+            return false;
+        }
+        try {
+            if (addsChunk) {
+                chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+                allocatedBytes += CHUNK_SIZE;
+            }
+            if (growsTable) {
+                rehash(2 * capacity);
+            }
+            return true;
+        } catch (OutOfMemoryError e) {
+            // Others took the direct memory left within the budget, the map keeps what it holds and stops growing.
+            full = true;
+            return false;
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        var oldSlots = slots;
+        var oldCapacity = capacity;
+        slots = allocateSlots(newCapacity);
+        capacity = newCapacity;
+        allocatedBytes += (long) (newCapacity - oldCapacity) * Integer.BYTES;
+        for (var oldSlot = 0L; oldSlot < oldCapacity; oldSlot++) {
+            var value = slotValue(oldSlots, oldSlot);
+            if (value != 0) {
+                var address = address(value);
+                var chunk = chunk(address);
+                var position = position(address);
+                var slot = findSlot(
+                        TransactionCodec.idMostSignificantBits(chunk, position),
+                        TransactionCodec.idLeastSignificantBits(chunk, position)
+                );
+                setSlotValue(slots, slot, value);
+            }
+        }
+    }
+
+    private long findSlot(long msb, long lsb) {
+        var mask = capacity - 1L;
+        var slot = hash(msb, lsb) & mask;
+        while (true) {
+            var value = slotValue(slots, slot);
+            if (value == 0) {
+                return slot;
+            }
+            var address = address(value);
+            var chunk = chunk(address);
+            var position = position(address);
+            if (TransactionCodec.idMostSignificantBits(chunk, position) == msb
+                    && TransactionCodec.idLeastSignificantBits(chunk, position) == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private ByteBuffer chunk(long address) {
+        return chunks.get((int) (address / CHUNK_SIZE));
+    }
+
+    /**
+     * Returns where the record following the given address starts, moving to the next chunk when the rest of the
+     * current one might not fit a record.
+     */
+    private static long recordStart(long address) {
+        var offset = address % CHUNK_SIZE;
+        return CHUNK_SIZE - offset < MAX_RECORD_SIZE ? address - offset + CHUNK_SIZE : address;
+    }
+
+    private static int position(long address) {
+        return (int) (address % CHUNK_SIZE);
+    }
+
+    private static long address(int slotValue) {
+        return (slotValue - 1L) * ALIGNMENT;
+    }
+
+    private static int slotValue(IntBuffer[] slots, long slot) {
+        return slots[(int) (slot / SLOTS_PER_CHUNK)].get((int) (slot % SLOTS_PER_CHUNK));
+    }
+
+    private static void setSlotValue(IntBuffer[] slots, long slot, int value) {
+        slots[(int) (slot / SLOTS_PER_CHUNK)].put((int) (slot % SLOTS_PER_CHUNK), value);
+    }
+
+    private static IntBuffer[] allocateSlots(int capacity) {
+        var chunks = new IntBuffer[Math.max(1, capacity / SLOTS_PER_CHUNK)];
+        for (var i = 0; i < chunks.length; i++) {
+            var chunkSlots = Math.min(capacity, SLOTS_PER_CHUNK);
+            chunks[i] = ByteBuffer.allocateDirect(chunkSlots * Integer.BYTES).asIntBuffer();
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns three quarters of the direct memory limit, which defaults to the maximum heap size, leaving the rest to
+     * the I/O buffers of the process.
+     */
+    static long directMemoryBudget() {
+        var limit = 0L;
+        try {
+            var option = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption("MaxDirectMemorySize");
+            limit = Long.parseLong(option.getValue());
+        } catch (RuntimeException e) {
+            // Not a HotSpot VM, the default limit applies.
+        }
+        if (limit <= 0) {
+            limit = Runtime.getRuntime().maxMemory();
+        }
+        return limit / 4 * 3;
+    }
+
+    /**
+     * Mixes both halves with different weights, as ids whose halves are equal or complementary would all collide on
+     * {@code msb ^ lsb}.
+     */
+    private static long hash(long msb, long lsb) {
+        var hash = msb * 0x9e3779b97f4a7c15L + lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
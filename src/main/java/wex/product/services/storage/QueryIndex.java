@@ -0,0 +1,597 @@
+package wex.product.services.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Secondary indexes of {@link LogStorageService}: record offsets sorted by transaction date and by description, so a
+ * date range or a description prefix is found by binary search and only the records it selects are read.
+ * <p>
+ * Descriptions are indexed by their first {@value #MAX_KEY_LENGTH} characters, so a longer prefix selects candidates
+ * by its indexed part and callers check them against the whole query.
+ * <p>
+ * The index is a directory of sorted runs, each covering a range of the log in a file of its own, laid out as
+ * {@code [header][date, offset]* [key position, offset]* [key]*}. {@link #append} writes the records appended to the
+ * log as a new run and then merges the two newest runs while the older one holds less than twice as many records, so
+ * there are O(log n) runs and a record is rewritten O(log n) times. Lookups binary search every run on disk and only
+ * run headers are kept in memory. Runs are written to a temporary file and moved in place; runs not continuing the
+ * chain from the start of the log, such as leftovers of an interrupted merge, are deleted on open.
+ */
+final class QueryIndex implements Closeable {
+
+    static final int MAX_KEY_LENGTH = 64;
+
+    private static final int MAGIC = 0x57455852;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 3 * Long.BYTES;
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_KEY_SIZE = Short.BYTES + 3 * MAX_KEY_LENGTH;
+    private static final Pattern RUN_NAME = Pattern.compile("run-(\\d{19})-(\\d{19})");
+    private static final Comparator<Cursor> BY_DAY = Comparator.comparingLong(cursor -> cursor.epochDay);
+    private static final Comparator<Cursor> BY_KEY = Comparator.comparing(cursor -> cursor.key);
+
+    private final Path directory;
+
+    private List<Run> runs;
+
+    QueryIndex(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the chain of runs covering the log from its start up to at most {@code logSize}, deleting all other run
+     * files. The runs are listed again on every call, as other processes sharing the log may have added or merged
+     * runs since.
+     */
+    void open(long logSize) throws IOException {
+        close();
+        if (Files.isRegularFile(directory)) {
+            // A single-file index of an earlier version, it is rebuilt as runs.
+            Files.delete(directory);
+        }
+        Files.createDirectories(directory);
+        var candidates = new ArrayList<Candidate>();
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var matcher = RUN_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    candidates.add(new Candidate(file, Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))));
+                } else {
+                    Files.delete(file);
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(Candidate::from).thenComparing(Comparator.comparingLong(Candidate::to).reversed()));
+        runs = new ArrayList<>();
+        var position = 0L;
+        for (var candidate : candidates) {
+            var run = candidate.from() == position && candidate.to() <= logSize
+                    ? Run.open(candidate.path(), candidate.from(), candidate.to())
+                    : null;
+            if (run == null) {
+                Files.delete(candidate.path());
+            } else {
+                runs.add(run);
+                position = run.to;
+            }
+        }
+    }
+
+    long coveredSize() {
+        return runs.isEmpty() ? 0 : runs.get(runs.size() - 1).to;
+    }
+
+    /**
+     * Adds the given records, which were appended after {@link #coveredSize()}, as a run covering the log up to
+     * {@code newCoveredSize}. Records of the same date or key stay in log order.
+     */
+    void append(long newCoveredSize, List<Entry> entries) throws IOException {
+        var byDay = new ArrayList<>(entries);
+        byDay.sort(Comparator.comparingLong(Entry::epochDay));
+        var byKey = new ArrayList<>(entries);
+        byKey.sort(Comparator.comparing(Entry::key));
+        runs.add(write(coveredSize(), newCoveredSize, entries.size(), cursor(byDay), cursor(byKey)));
+        while (runs.size() > 1 && runs.get(runs.size() - 2).count < 2L * runs.get(runs.size() - 1).count) {
+            var older = runs.get(runs.size() - 2);
+            var newer = runs.get(runs.size() - 1);
+            var merged = write(
+                    older.from,
+                    newer.to,
+                    Math.addExact(older.count, newer.count),
+                    merge(List.of(older.days(0, older.count), newer.days(0, newer.count)), BY_DAY),
+                    merge(List.of(older.keys(0, older.count), newer.keys(0, newer.count)), BY_KEY)
+            );
+            runs.subList(runs.size() - 2, runs.size()).clear();
+            runs.add(merged);
+            older.delete();
+            newer.delete();
+        }
+    }
+
+    /**
+     * Returns offsets of records dated within the range in date order, a {@code null} bound leaves the range open.
+     */
+    long[] findByDate(LocalDate from, LocalDate to) throws IOException {
+        var cursors = new ArrayList<Cursor>();
+        var count = 0;
+        for (var run : runs) {
+            var low = run.dayLowerBound(from);
+            var high = run.dayUpperBound(to);
+            cursors.add(run.days(low, high));
+            count += high - low;
+        }
+        return offsets(merge(cursors, BY_DAY), count);
+    }
+
+    int countByDate(LocalDate from, LocalDate to) throws IOException {
+        var count = 0;
+        for (var run : runs) {
+            count += run.dayUpperBound(to) - run.dayLowerBound(from);
+        }
+        return count;
+    }
+
+    /**
+     * Returns offsets of records whose description may start with the prefix in description order.
+     */
+    long[] findByDescriptionPrefix(String prefix) throws IOException {
+        var key = key(prefix);
+        var cursors = new ArrayList<Cursor>();
+        var count = 0;
+        for (var run : runs) {
+            var low = run.keyLowerBound(key);
+            var high = run.keyUpperBound(key);
+            cursors.add(run.keys(low, high));
+            count += high - low;
+        }
+        return offsets(merge(cursors, BY_KEY), count);
+    }
+
+    int countByDescriptionPrefix(String prefix) throws IOException {
+        var key = key(prefix);
+        var count = 0;
+        for (var run : runs) {
+            count += run.keyUpperBound(key) - run.keyLowerBound(key);
+        }
+        return count;
+    }
+
+    /**
+     * Deletes the index, the next {@link #open} starts it over.
+     */
+    void clear() throws IOException {
+        close();
+        if (Files.isDirectory(directory)) {
+            try (var files = Files.list(directory)) {
+                for (var file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (runs != null) {
+            for (var run : runs) {
+                run.close();
+            }
+            runs = null;
+        }
+    }
+
+    /**
+     * Writes a run to a temporary file that then atomically takes its place: date entries first, then key entries
+     * pointing into the keys that follow them.
+     */
+    private Run write(long from, long to, int count, Cursor days, Cursor keys) throws IOException {
+        var path = directory.resolve(String.format("run-%019d-%019d", from, to));
+        var temporaryPath = Path.of(path + ".tmp");
+        try {
+            try (var channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                var dayTable = new Writer(channel, HEADER_SIZE);
+                while (days.next()) {
+                    dayTable.putLong(days.epochDay);
+                    dayTable.putLong(days.offset);
+                }
+                dayTable.flush();
+                var keyTable = new Writer(channel, HEADER_SIZE + (long) ENTRY_SIZE * count);
+                var heapStart = HEADER_SIZE + 2L * ENTRY_SIZE * count;
+                var heap = new Writer(channel, heapStart);
+                while (keys.next()) {
+                    keyTable.putLong(heap.position());
+                    keyTable.putLong(keys.offset);
+                    heap.putKey(keys.key);
+                }
+                keyTable.flush();
+                heap.flush();
+                var header = new Writer(channel, 0);
+                header.putInt(MAGIC);
+                header.putLong(from);
+                header.putLong(to);
+                header.putInt(count);
+                header.putLong(heap.position() - heapStart);
+                header.flush();
+                channel.force(false);
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+        var run = Run.open(path, from, to);
+        if (run == null) {
+            throw new IOException(String.format("%s is not a query index run.", path));
+        }
+        return run;
+    }
+
+    private static long[] offsets(Cursor cursor, int count) throws IOException {
+        var offsets = new long[count];
+        for (var i = 0; i < count && cursor.next(); i++) {
+            offsets[i] = cursor.offset;
+        }
+        return offsets;
+    }
+
+    private static Cursor cursor(List<Entry> entries) {
+        var iterator = entries.iterator();
+        return new Cursor() {
+            @Override
+            boolean next() {
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                var entry = iterator.next();
+                epochDay = entry.epochDay();
+                key = entry.key();
+                offset = entry.offset();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Merges cursors that are each in the given order, taking from the earlier cursor on ties so that entries of
+     * older runs come first.
+     */
+    private static Cursor merge(List<Cursor> cursors, Comparator<Cursor> order) {
+        return new Cursor() {
+
+            private boolean[] ready;
+            private int current = -1;
+
+            @Override
+            boolean next() throws IOException {
+                if (ready == null) {
+                    ready = new boolean[cursors.size()];
+                    for (var i = 0; i < ready.length; i++) {
+                        ready[i] = cursors.get(i).next();
+                    }
+                } else if (current >= 0) {
+                    ready[current] = cursors.get(current).next();
+                }
+                current = -1;
+                for (var i = 0; i < ready.length; i++) {
+                    if (ready[i] && (current < 0 || order.compare(cursors.get(i), cursors.get(current)) < 0)) {
+                        current = i;
+                    }
+                }
+                if (current < 0) {
+                    return false;
+                }
+                var cursor = cursors.get(current);
+                epochDay = cursor.epochDay;
+                key = cursor.key;
+                offset = cursor.offset;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the indexed part of the description, which never ends in half of a surrogate pair, as that would not
+     * survive encoding the key.
+     */
+    private static String key(String description) {
+        if (description.length() <= MAX_KEY_LENGTH) {
+            return description;
+        }
+        var length = Character.isHighSurrogate(description.charAt(MAX_KEY_LENGTH - 1)) ? MAX_KEY_LENGTH - 1 : MAX_KEY_LENGTH;
+        return description.substring(0, length);
+    }
+
+    /**
+     * Date and description key of the record at the offset.
+     */
+    record Entry(long offset, long epochDay, String key) {
+
+        static Entry of(long offset, Transaction transaction) {
+            return new Entry(offset, transaction.date().toEpochDay(), QueryIndex.key(transaction.description()));
+        }
+    }
+
+    private record Candidate(Path path, long from, long to) {
+    }
+
+    /**
+     * Entries of a run, or of a merge of runs, one at a time in index order.
+     */
+    private abstract static class Cursor {
+
+        long epochDay;
+        String key;
+        long offset;
+
+        abstract boolean next() throws IOException;
+    }
+
+    private static final class Run implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+        private final int count;
+
+        private Run(Path path, FileChannel channel, long from, long to, int count) {
+            this.path = path;
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        /**
+         * Opens the run file, or returns {@code null} when its header does not match its name and size.
+         */
+        static Run open(Path path, long from, long to) throws IOException {
+            var channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                var header = new Reader(channel, 0, HEADER_SIZE);
+                if (channel.size() >= HEADER_SIZE && header.getInt() == MAGIC && header.getLong() == from && header.getLong() == to) {
+                    var count = header.getInt();
+                    var heapSize = header.getLong();
+                    if (count >= 0 && heapSize >= 0 && channel.size() == HEADER_SIZE + 2L * ENTRY_SIZE * count + heapSize) {
+                        return new Run(path, channel, from, to, count);
+                    }
+                }
+            } catch (IOException e) {
+                // A damaged run is deleted and its records are indexed again, like a missing one.
+            }
+            channel.close();
+            return null;
+        }
+
+        Cursor days(int low, int high) {
+            var table = new Reader(channel, HEADER_SIZE + (long) ENTRY_SIZE * low, BUFFER_SIZE);
+            return new Cursor() {
+
+                private int index = low;
+
+                @Override
+                boolean next() throws IOException {
+                    if (index == high) {
+                        return false;
+                    }
+                    index++;
+                    epochDay = table.getLong();
+                    offset = table.getLong();
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Keys are stored in the order of their entries, so the keys of a range are read in one pass.
+         */
+        Cursor keys(int low, int high) {
+            var table = new Reader(channel, keyTablePosition() + (long) ENTRY_SIZE * low, BUFFER_SIZE);
+            return new Cursor() {
+
+                private int index = low;
+                private Reader heap;
+
+                @Override
+                boolean next() throws IOException {
+                    if (index == high) {
+                        return false;
+                    }
+                    index++;
+                    var keyPosition = table.getLong();
+                    offset = table.getLong();
+                    heap = heap != null ? heap : new Reader(channel, keyPosition, BUFFER_SIZE);
+                    key = heap.getKey();
+                    return true;
+                }
+            };
+        }
+
+        int dayLowerBound(LocalDate from) throws IOException {
+            return from == null ? 0 : firstDayAbove(from.toEpochDay() - 1);
+        }
+
+        int dayUpperBound(LocalDate to) throws IOException {
+            return to == null ? count : firstDayAbove(to.toEpochDay());
+        }
+
+        private int firstDayAbove(long epochDay) throws IOException {
+            var low = 0;
+            var high = count;
+            while (low < high) {
+                var middle = (low + high) >>> 1;
+                if (new Reader(channel, HEADER_SIZE + (long) ENTRY_SIZE * middle, Long.BYTES).getLong() <= epochDay) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        int keyLowerBound(String key) throws IOException {
+            var low = 0;
+            var high = count;
+            while (low < high) {
+                var middle = (low + high) >>> 1;
+                if (key(middle).compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Keys starting with the given one directly follow it in sort order, so the range ends at the first key that
+         * is greater and does not start with it.
+         */
+        int keyUpperBound(String key) throws IOException {
+            var low = 0;
+            var high = count;
+            while (low < high) {
+                var middle = (low + high) >>> 1;
+                var middleKey = key(middle);
+                if (middleKey.compareTo(key) < 0 || middleKey.startsWith(key)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private String key(int index) throws IOException {
+            var keyPosition = new Reader(channel, keyTablePosition() + (long) ENTRY_SIZE * index, Long.BYTES).getLong();
+            return new Reader(channel, keyPosition, MAX_KEY_SIZE).getKey();
+        }
+
+        private long keyTablePosition() {
+            return HEADER_SIZE + (long) ENTRY_SIZE * count;
+        }
+
+        void delete() throws IOException {
+            close();
+            Files.deleteIfExists(path);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads a run sequentially from a position with positional reads, so readers of one channel do not interfere. A
+     * binary search probe reads through a buffer of just the bytes it needs.
+     */
+    private static final class Reader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long position;
+
+        Reader(FileChannel channel, long position, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(bufferSize).flip();
+            this.position = position;
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        String getKey() throws IOException {
+            require(Short.BYTES);
+            var length = Short.toUnsignedInt(buffer.getShort());
+            require(length);
+            var bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                var read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of the query index.");
+                }
+                position += read;
+            }
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Writes a run sequentially from a position with positional writes, so writers of one channel do not interfere.
+     */
+    private static final class Writer {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long position;
+
+        Writer(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            require(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            require(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putKey(String key) throws IOException {
+            var bytes = key.getBytes(StandardCharsets.UTF_8);
+            require(Short.BYTES + bytes.length);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
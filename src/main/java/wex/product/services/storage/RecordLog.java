@@ -0,0 +1,259 @@
+package wex.product.services.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of length-prefixed records.
+ * <p>
+ * Every record is laid out as {@code [int payloadLength][int crc32][payload]}, payloads are never empty. On open the
+ * log is scanned and a torn tail after the last valid record is truncated, so a writer crashing in the middle of an
+ * append never leaves the log unreadable. An invalid record followed by valid ones is damage rather than a torn
+ * append, so the log then fails to open instead of losing the records after it. Appends are forced to disk once per
+ * {@code syncBatchSize} records.
+ * <p>
+ * Processes sharing the log serialize on a lock of their own and call {@link #refresh()} under it, which takes up
+ * records appended by the others. The log is never truncated in place while in use, {@link #truncate()} replaces it
+ * with an empty file instead, so the others notice and reopen it.
+ */
+public final class RecordLog implements Closeable {
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final Path path;
+    private final int syncBatchSize;
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long size;
+    private int unsyncedRecords;
+
+    public RecordLog(Path path, int syncBatchSize) {
+        if (syncBatchSize < 1) {
+            throw new IllegalArgumentException("Sync batch size must be positive.");
+        }
+        this.path = path;
+        this.syncBatchSize = syncBatchSize;
+    }
+
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    public synchronized long append(byte[] payload) throws IOException {
+        requireNotEmpty(payload);
+        ensureOpen();
+        var offset = size;
+        var buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        writeFully(buffer, offset);
+        size += buffer.capacity();
+        if (++unsyncedRecords >= syncBatchSize) {
+            sync();
+        }
+        return offset;
+    }
+
+    /**
+     * Appends records with a single write and counts them towards the sync batch together, returns their offsets.
+     */
+    public synchronized long[] appendAll(List<byte[]> payloads) throws IOException {
+        ensureOpen();
+        var offsets = new long[payloads.size()];
+        var length = 0;
+        for (var payload : payloads) {
+            requireNotEmpty(payload);
+            length += HEADER_SIZE + payload.length;
+        }
+        var buffer = ByteBuffer.allocate(length);
+        for (var i = 0; i < offsets.length; i++) {
+            var payload = payloads.get(i);
+            offsets[i] = size + buffer.position();
+            buffer.putInt(payload.length).putInt(checksum(payload)).put(payload);
+        }
+        buffer.flip();
+        writeFully(buffer, size);
+        size += length;
+        unsyncedRecords += payloads.size();
+        if (unsyncedRecords >= syncBatchSize) {
+            sync();
+        }
+        return offsets;
+    }
+
+    public synchronized byte[] read(long offset) throws IOException {
+        ensureOpen();
+        var payload = readRecord(offset, size);
+        if (payload == null) {
+            throw new IOException(String.format("No valid record at offset %d.", offset));
+        }
+        return payload;
+    }
+
+    /**
+     * Visits records in append order starting at {@code fromOffset} until the visitor returns {@code false}.
+     */
+    public synchronized void scan(long fromOffset, RecordVisitor visitor) throws IOException {
+        ensureOpen();
+        var offset = fromOffset;
+        while (offset < size) {
+            var payload = readRecord(offset, size);
+            if (payload == null) {
+                throw new IOException(String.format("No valid record at offset %d.", offset));
+            }
+            if (!visitor.visit(offset, payload)) {
+                return;
+            }
+            offset += HEADER_SIZE + payload.length;
+        }
+    }
+
+    public synchronized void sync() throws IOException {
+        if (channel != null && unsyncedRecords > 0) {
+            channel.force(false);
+            unsyncedRecords = 0;
+        }
+    }
+
+    /**
+     * Takes up records other processes appended since this one last read the size of the log, and reopens the log
+     * when another process replaced it.
+     */
+    public synchronized void refresh() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (!Objects.equals(fileKey, currentFileKey())) {
+            channel.close();
+            channel = null;
+            unsyncedRecords = 0;
+        } else if (channel.size() != size) {
+            size = recover(size);
+        }
+    }
+
+    /**
+     * Replaces the log with an empty file, which processes still reading the previous one notice on refresh.
+     */
+    public synchronized void truncate() throws IOException {
+        var temporaryPath = Path.of(path + ".tmp");
+        try (var emptyChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            emptyChannel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        unsyncedRecords = 0;
+        ensureOpen();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            sync();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                fileKey = currentFileKey();
+                size = recover(0);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                channel = null;
+                throw e;
+            }
+        }
+    }
+
+    private Object currentFileKey() throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private long recover(long fromOffset) throws IOException {
+        var fileSize = channel.size();
+        var offset = fromOffset;
+        byte[] payload;
+        while (offset < fileSize && (payload = readRecord(offset, fileSize)) != null) {
+            offset += HEADER_SIZE + payload.length;
+        }
+        if (offset < fileSize) {
+            for (var next = offset + 1; next < fileSize; next++) {
+                if (readRecord(next, fileSize) != null) {
+                    throw new IOException(String.format("The record log is damaged at offset %d.", offset));
+                }
+            }
+            channel.truncate(offset);
+            channel.force(true);
+        }
+        return offset;
+    }
+
+    private byte[] readRecord(long offset, long limit) throws IOException {
+        if (limit - offset < HEADER_SIZE) {
+            return null;
+        }
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, offset);
+        var length = header.getInt(0);
+        if (length <= 0 || length > limit - offset - HEADER_SIZE) {
+            return null;
+        }
+        var payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + HEADER_SIZE);
+        return checksum(payload.array()) == header.getInt(Integer.BYTES) ? payload.array() : null;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the record log.");
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static void requireNotEmpty(byte[] payload) {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Records must not be empty.");
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        var crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        boolean visit(long offset, byte[] payload) throws IOException;
+    }
+}
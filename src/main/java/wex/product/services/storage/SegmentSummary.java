@@ -0,0 +1,191 @@
+package wex.product.services.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * What a sealed segment of {@link SegmentedStorageService} holds: the size of the log it covers, the range of
+ * transaction dates, a bloom filter on ids and the offsets of all ids sorted for binary search. The active segment is
+ * summarized the same way when the storage is closed, as a checkpoint its index is loaded from on the next open.
+ * <p>
+ * Opening a summary reads everything but the offsets, which are read on the first lookup the bloom filter lets
+ * through, so segments that never hold a looked up id cost only their bloom filter in memory.
+ */
+final class SegmentSummary {
+
+    private static final int MAGIC = 0x53454753;
+    private static final int ENTRY_SIZE = 3 * Long.BYTES;
+
+    private final long coveredSize;
+    private final int records;
+    private final long minEpochDay;
+    private final long maxEpochDay;
+    private final BloomFilter bloomFilter;
+    private final Path path;
+    private final long entriesPosition;
+
+    private long[] entries;
+
+    private SegmentSummary(
+            long coveredSize,
+            int records,
+            long minEpochDay,
+            long maxEpochDay,
+            BloomFilter bloomFilter,
+            Path path,
+            long entriesPosition,
+            long[] entries
+    ) {
+        this.coveredSize = coveredSize;
+        this.records = records;
+        this.minEpochDay = minEpochDay;
+        this.maxEpochDay = maxEpochDay;
+        this.bloomFilter = bloomFilter;
+        this.path = path;
+        this.entriesPosition = entriesPosition;
+        this.entries = entries;
+    }
+
+    /**
+     * Summarizes a segment of {@code coveredSize} bytes from its id offsets and date range.
+     */
+    static SegmentSummary of(long coveredSize, Map<UUID, Long> offsets, long minEpochDay, long maxEpochDay, double falsePositiveRate) {
+        var bloomFilter = BloomFilter.create(offsets.size(), falsePositiveRate);
+        var sorted = offsets.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparingLong(UUID::getMostSignificantBits)
+                        .thenComparingLong(UUID::getLeastSignificantBits)))
+                .toList();
+        var entries = new long[sorted.size() * 3];
+        for (var i = 0; i < sorted.size(); i++) {
+            var id = sorted.get(i).getKey();
+            bloomFilter.add(id);
+            entries[i * 3] = id.getMostSignificantBits();
+            entries[i * 3 + 1] = id.getLeastSignificantBits();
+            entries[i * 3 + 2] = sorted.get(i).getValue();
+        }
+        return new SegmentSummary(coveredSize, sorted.size(), minEpochDay, maxEpochDay, bloomFilter, null, -1, entries);
+    }
+
+    /**
+     * Reads a summary written by {@link #write(Path)}, leaving the offsets on disk until they are needed.
+     */
+    static SegmentSummary read(Path path) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a segment summary.", path));
+            }
+            var coveredSize = input.readLong();
+            var records = input.readInt();
+            var minEpochDay = input.readLong();
+            var maxEpochDay = input.readLong();
+            var bloomFilter = BloomFilter.readFrom(input);
+            var entriesPosition = Files.size(path) - (long) records * ENTRY_SIZE;
+            return new SegmentSummary(coveredSize, records, minEpochDay, maxEpochDay, bloomFilter, path, entriesPosition, null);
+        }
+    }
+
+    /**
+     * Writes the summary to a temporary file that then atomically replaces the given one.
+     */
+    void write(Path target) throws IOException {
+        var entries = entries();
+        var temporaryPath = Path.of(target + ".tmp");
+        try {
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+                output.writeInt(MAGIC);
+                output.writeLong(coveredSize);
+                output.writeInt(records);
+                output.writeLong(minEpochDay);
+                output.writeLong(maxEpochDay);
+                bloomFilter.writeTo(output);
+                for (var value : entries) {
+                    output.writeLong(value);
+                }
+            }
+            Files.move(temporaryPath, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Returns the log offset of the id or {@code -1} when the segment does not hold it.
+     */
+    long find(UUID id) throws IOException {
+        if (!bloomFilter.mightContain(id)) {
+            return -1;
+        }
+        var entries = entries();
+        var msb = id.getMostSignificantBits();
+        var lsb = id.getLeastSignificantBits();
+        var low = 0;
+        var high = records - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            var comparison = Long.compare(entries[middle * 3], msb);
+            if (comparison == 0) {
+                comparison = Long.compare(entries[middle * 3 + 1], lsb);
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return entries[middle * 3 + 2];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offsets of all ids, so the active segment can go on from the summary written when it was closed.
+     */
+    Map<UUID, Long> offsets() throws IOException {
+        var entries = entries();
+        var offsets = new HashMap<UUID, Long>();
+        for (var i = 0; i < records; i++) {
+            offsets.put(new UUID(entries[i * 3], entries[i * 3 + 1]), entries[i * 3 + 2]);
+        }
+        return offsets;
+    }
+
+    long coveredSize() {
+        return coveredSize;
+    }
+
+    int records() {
+        return records;
+    }
+
+    long minEpochDay() {
+        return minEpochDay;
+    }
+
+    long maxEpochDay() {
+        return maxEpochDay;
+    }
+
+    private synchronized long[] entries() throws IOException {
+        if (entries == null) {
+            var loaded = new long[records * 3];
+            try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                input.skipNBytes(entriesPosition);
+                for (var i = 0; i < loaded.length; i++) {
+                    loaded[i] = input.readLong();
+                }
+            }
+            entries = loaded;
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,614 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Log-structured storage that rolls transactions into size-bounded segment files in a directory.
+ * <p>
+ * Transactions are appended to the active segment, which is indexed in memory. Closing the storage writes a summary of
+ * the active segment as a checkpoint, so the next open loads its index and scans only records appended after it. Once
+ * the active segment grows past the size bound it is sealed: a {@link SegmentSummary} with a bloom filter and a sorted id index is written next to it and a new active
+ * segment is started. Lookups go from the newest segment to the oldest and skip every sealed segment whose bloom
+ * filter rules the id out, so a miss rarely touches the disk.
+ * <p>
+ * {@link #deleteTransactionsBefore(LocalDate)} deletes whole segments holding only older transactions, hides older
+ * transactions in the remaining segments and compacts them away before it returns. Transactions dated before the
+ * latest such date are refused from then on, as they would be hidden too. Compaction also runs on a background thread
+ * after a segment is sealed, which {@link #close()} waits for. It rewrites segments without hidden transactions and
+ * merges runs of small segments, one run at a time: the run is read and written without holding the storage lock,
+ * which is only taken to swap the files, and a crash in the middle of it leaves the previous segments in place.
+ */
+public class SegmentedStorageService implements StorageService {
+
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{12})\\.log");
+    private static final String RETENTION_FILE = "retention";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final long maxSegmentBytes;
+    private final Executor compactionExecutor;
+    private final Object compactionLock = new Object();
+
+    private List<Segment> sealedSegments;
+    private Segment activeSegment;
+    private long retainedFromEpochDay = Long.MIN_VALUE;
+    private boolean compactionScheduled;
+    private volatile boolean closing;
+
+    public SegmentedStorageService(String directory, ObjectMapper objectMapper) {
+        this(Path.of(directory), objectMapper, DEFAULT_MAX_SEGMENT_BYTES, Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "storage-compaction");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public SegmentedStorageService(Path directory, ObjectMapper objectMapper, long maxSegmentBytes, Executor compactionExecutor) {
+        if (maxSegmentBytes < 1) {
+            throw new IllegalArgumentException("Segment size must be positive.");
+        }
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.compactionExecutor = compactionExecutor;
+    }
+
+    @Override
+    public void reset() {
+        synchronized (compactionLock) {
+            resetSegments();
+        }
+    }
+
+    private synchronized void resetSegments() {
+        try {
+            closeSegments();
+            if (Files.isDirectory(directory)) {
+                try (var files = Files.list(directory)) {
+                    for (var file : files.toList()) {
+                        Files.delete(file);
+                    }
+                }
+            }
+            sealedSegments = null;
+            activeSegment = null;
+            retainedFromEpochDay = Long.MIN_VALUE;
+        } catch (IOException e) {
+            throw new RuntimeException("Can not reset the segmented storage.", e);
+        }
+    }
+
+    @Override
+    public void storeTransaction(Transaction transaction) {
+        storeTransactions(List.of(transaction));
+    }
+
+    @Override
+    public synchronized void storeTransactions(List<Transaction> transactions) {
+        try {
+            ensureOpen();
+            if (transactions.isEmpty()) {
+                return;
+            }
+            for (var transaction : transactions) {
+                if (transaction.date().toEpochDay() < retainedFromEpochDay) {
+                    throw new IllegalArgumentException(String.format(
+                            "Transaction date %s is before %s, transactions dated before it were deleted from the storage.",
+                            transaction.date(),
+                            LocalDate.ofEpochDay(retainedFromEpochDay)
+                    ));
+                }
+            }
+            var payloads = new ArrayList<byte[]>(transactions.size());
+            for (var transaction : transactions) {
+                payloads.add(objectMapper.writeValueAsBytes(transaction));
+            }
+            var offsets = activeSegment.log.appendAll(payloads);
+            for (var i = 0; i < offsets.length; i++) {
+                activeSegment.add(transactions.get(i), offsets[i]);
+            }
+            if (activeSegment.log.size() >= maxSegmentBytes) {
+                sealActiveSegment();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can not write transaction to the segmented storage.", e);
+        }
+    }
+
+    @Override
+    public synchronized Transaction findTransaction(UUID id) {
+        try {
+            ensureOpen();
+            var offset = activeSegment.index.get(id);
+            if (offset != null) {
+                return readRetained(activeSegment, offset, id);
+            }
+            for (var i = sealedSegments.size() - 1; i >= 0; i--) {
+                var segment = sealedSegments.get(i);
+                var sealedOffset = segment.summary.find(id);
+                if (sealedOffset >= 0) {
+                    return readRetained(segment, sealedOffset, id);
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the segmented storage.", e);
+        }
+    }
+
+    @Override
+    public synchronized void forEachTransaction(Consumer<Transaction> consumer) {
+        try {
+            ensureOpen();
+            for (var segment : sealedSegments) {
+                forEachRetained(segment, consumer);
+            }
+            forEachRetained(activeSegment, consumer);
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the segmented storage.", e);
+        }
+    }
+
+    /**
+     * Deletes every segment holding only transactions dated before the given date, hides the older transactions of the
+     * other segments and compacts them away.
+     */
+    @Override
+    public void deleteTransactionsBefore(LocalDate date) {
+        synchronized (compactionLock) {
+            deleteSegmentsBefore(date);
+        }
+        compact();
+    }
+
+    private synchronized void deleteSegmentsBefore(LocalDate date) {
+        try {
+            ensureOpen();
+            var epochDay = date.toEpochDay();
+            if (epochDay > retainedFromEpochDay) {
+                writeRetention(epochDay);
+                retainedFromEpochDay = epochDay;
+            }
+            var iterator = sealedSegments.iterator();
+            while (iterator.hasNext()) {
+                var segment = iterator.next();
+                if (segment.maxEpochDay < epochDay) {
+                    deleteSegmentFiles(segment);
+                    iterator.remove();
+                }
+            }
+            if (!activeSegment.index.isEmpty() && activeSegment.maxEpochDay < epochDay) {
+                Files.deleteIfExists(summaryPath(activeSegment.id));
+                activeSegment.log.truncate();
+                activeSegment.clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can not delete transactions from the segmented storage.", e);
+        }
+    }
+
+    /**
+     * Rewrites sealed segments holding hidden transactions and merges runs of small sealed segments, returns the number
+     * of rewrites done.
+     */
+    public int compact() {
+        var rewrites = 0;
+        while (!closing && compactNextRun()) {
+            rewrites++;
+        }
+        return rewrites;
+    }
+
+    /**
+     * Returns the number of segment files, the active one included.
+     */
+    public synchronized int segmentCount() {
+        try {
+            ensureOpen();
+            return sealedSegments.size() + 1;
+        } catch (IOException e) {
+            throw new RuntimeException("Can not read transactions from the segmented storage.", e);
+        }
+    }
+
+    /**
+     * Lets a running compaction finish its current run, waits for the compaction thread to stop and closes the segments.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        if (compactionExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (compactionLock) {
+            closeStorage();
+        }
+    }
+
+    private synchronized void closeStorage() throws IOException {
+        if (activeSegment != null && !activeSegment.index.isEmpty()) {
+            activeSegment.log.close();
+            summarize(activeSegment).write(summaryPath(activeSegment.id));
+        }
+        closeSegments();
+        sealedSegments = null;
+        activeSegment = null;
+    }
+
+    private Transaction readRetained(Segment segment, long offset, UUID id) throws IOException {
+        var transaction = objectMapper.readValue(segment.log.read(offset), Transaction.class);
+        return transaction.id().equals(id) && transaction.date().toEpochDay() >= retainedFromEpochDay ? transaction : null;
+    }
+
+    private void forEachRetained(Segment segment, Consumer<Transaction> consumer) throws IOException {
+        segment.log.scan(0, (offset, payload) -> {
+            var transaction = objectMapper.readValue(payload, Transaction.class);
+            if (transaction.date().toEpochDay() >= retainedFromEpochDay) {
+                consumer.accept(transaction);
+            }
+            return true;
+        });
+    }
+
+    private void ensureOpen() throws IOException {
+        if (sealedSegments != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        var ids = new ArrayList<Long>();
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                var name = file.getFileName().toString();
+                var matcher = SEGMENT_NAME.matcher(name);
+                if (matcher.matches()) {
+                    ids.add(Long.parseLong(matcher.group(1)));
+                } else if (name.endsWith(COMPACTING_SUFFIX)) {
+                    Files.delete(file);
+                }
+            }
+        }
+        ids.sort(null);
+        var retentionPath = directory.resolve(RETENTION_FILE);
+        retainedFromEpochDay = Files.exists(retentionPath) ? readRetention(retentionPath) : Long.MIN_VALUE;
+        var sealed = new ArrayList<Segment>();
+        for (var i = 0; i < ids.size() - 1; i++) {
+            sealed.add(openSealedSegment(ids.get(i)));
+        }
+        activeSegment = ids.isEmpty() ? new Segment(1, openLog(1)) : openActiveSegment(ids.get(ids.size() - 1));
+        sealedSegments = sealed;
+    }
+
+    private Segment openSealedSegment(long id) throws IOException {
+        var segment = new Segment(id, openLog(id));
+        var summaryPath = summaryPath(id);
+        if (Files.exists(summaryPath)) {
+            try {
+                var summary = SegmentSummary.read(summaryPath);
+                if (summary.coveredSize() == segment.log.size()) {
+                    segment.seal(summary);
+                    return segment;
+                }
+            } catch (IOException e) {
+                // A damaged summary is rebuilt from the segment below, like a missing one.
+            }
+        }
+        scanInto(segment);
+        segment.seal(summarize(segment));
+        segment.summary.write(summaryPath);
+        return segment;
+    }
+
+    /**
+     * Opens the active segment from the checkpoint written when it was last closed, if it is intact and the log still
+     * holds what it covers, and indexes the records appended after it.
+     */
+    private Segment openActiveSegment(long id) throws IOException {
+        var segment = new Segment(id, openLog(id));
+        var summaryPath = summaryPath(id);
+        var indexedSize = 0L;
+        if (Files.exists(summaryPath)) {
+            try {
+                var checkpoint = SegmentSummary.read(summaryPath);
+                if (checkpoint.coveredSize() <= segment.log.size()) {
+                    segment.index = checkpoint.offsets();
+                    segment.minEpochDay = checkpoint.minEpochDay();
+                    segment.maxEpochDay = checkpoint.maxEpochDay();
+                    indexedSize = checkpoint.coveredSize();
+                }
+            } catch (IOException e) {
+                // A damaged checkpoint is ignored and the whole segment is scanned below.
+                segment.clear();
+                indexedSize = 0;
+            }
+        }
+        scanInto(segment, indexedSize);
+        return segment;
+    }
+
+    private void scanInto(Segment segment) throws IOException {
+        scanInto(segment, 0);
+    }
+
+    private void scanInto(Segment segment, long fromOffset) throws IOException {
+        segment.log.scan(fromOffset, (offset, payload) -> {
+            segment.add(objectMapper.readValue(payload, Transaction.class), offset);
+            return true;
+        });
+    }
+
+    private void sealActiveSegment() throws IOException {
+        activeSegment.log.sync();
+        var summary = summarize(activeSegment);
+        summary.write(summaryPath(activeSegment.id));
+        activeSegment.seal(summary);
+        sealedSegments.add(activeSegment);
+        var nextId = activeSegment.id + 1;
+        activeSegment = new Segment(nextId, openLog(nextId));
+        scheduleCompaction();
+    }
+
+    private SegmentSummary summarize(Segment segment) throws IOException {
+        return SegmentSummary.of(
+                segment.log.size(),
+                segment.index,
+                segment.minEpochDay,
+                segment.maxEpochDay,
+                BLOOM_FALSE_POSITIVE_RATE
+        );
+    }
+
+    private void scheduleCompaction() {
+        if (!compactionScheduled && !closing) {
+            compactionScheduled = true;
+            compactionExecutor.execute(() -> {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    // Segments are left as they are and compaction is tried again the next time it is scheduled.
+                } finally {
+                    synchronized (this) {
+                        compactionScheduled = false;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Finds the first run of sealed segments worth rewriting and replaces it with a single segment of its retained
+     * transactions, named after the newest segment of the run so that the order of segments is kept.
+     * <p>
+     * Sealed segments are never appended to and only compaction, deletion and reset remove them, all under the
+     * compaction lock, so the run is read through its own file handles without holding the storage lock.
+     */
+    private boolean compactNextRun() {
+        synchronized (compactionLock) {
+            List<Segment> run;
+            long retainedFrom;
+            synchronized (this) {
+                if (sealedSegments == null) {
+                    return false;
+                }
+                try {
+                    run = findRunToCompact();
+                } catch (IOException e) {
+                    throw new RuntimeException("Can not compact the segmented storage.", e);
+                }
+                if (run.isEmpty()) {
+                    return false;
+                }
+                retainedFrom = retainedFromEpochDay;
+            }
+            var newest = run.get(run.size() - 1);
+            var temporaryLogPath = Path.of(logPath(newest.id) + COMPACTING_SUFFIX);
+            var merged = new Segment(newest.id, new RecordLog(temporaryLogPath, Integer.MAX_VALUE));
+            try {
+                var payloads = new ArrayList<byte[]>();
+                var transactions = new ArrayList<Transaction>();
+                for (var segment : run) {
+                    try (var log = new RecordLog(logPath(segment.id), Integer.MAX_VALUE)) {
+                        log.scan(0, (offset, payload) -> {
+                            var transaction = objectMapper.readValue(payload, Transaction.class);
+                            if (transaction.date().toEpochDay() >= retainedFrom) {
+                                payloads.add(payload);
+                                transactions.add(transaction);
+                            }
+                            return true;
+                        });
+                    }
+                }
+                var offsets = merged.log.appendAll(payloads);
+                for (var i = 0; i < offsets.length; i++) {
+                    merged.add(transactions.get(i), offsets[i]);
+                }
+                merged.log.close();
+                replaceRun(run, merged, temporaryLogPath);
+                return true;
+            } catch (IOException e) {
+                throw new RuntimeException("Can not compact the segmented storage.", e);
+            } finally {
+                try {
+                    merged.log.close();
+                    Files.deleteIfExists(temporaryLogPath);
+                } catch (IOException e) {
+                    // The leftover is deleted the next time the storage is opened.
+                }
+            }
+        }
+    }
+
+    private synchronized void replaceRun(List<Segment> run, Segment merged, Path temporaryLogPath) throws IOException {
+        var newest = run.get(run.size() - 1);
+        var position = sealedSegments.indexOf(run.get(0));
+        sealedSegments.removeAll(run);
+        if (merged.index.isEmpty()) {
+            for (var segment : run) {
+                deleteSegmentFiles(segment);
+            }
+        } else {
+            // The newest segment is replaced first, the older ones are deleted after it, so a crash in between leaves
+            // duplicates of retained transactions rather than losing them.
+            newest.log.close();
+            Files.deleteIfExists(summaryPath(newest.id));
+            Files.move(temporaryLogPath, logPath(newest.id), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            var compacted = new Segment(newest.id, openLog(newest.id));
+            compacted.index = merged.index;
+            compacted.minEpochDay = merged.minEpochDay;
+            compacted.maxEpochDay = merged.maxEpochDay;
+            var summary = summarize(compacted);
+            summary.write(summaryPath(newest.id));
+            compacted.seal(summary);
+            for (var segment : run.subList(0, run.size() - 1)) {
+                deleteSegmentFiles(segment);
+            }
+            sealedSegments.add(position, compacted);
+        }
+    }
+
+    /**
+     * Returns the first run of adjacent sealed segments that either hold hidden transactions or are small enough to be
+     * merged, with the total size of a run kept within the segment size bound.
+     */
+    private List<Segment> findRunToCompact() throws IOException {
+        var run = new ArrayList<Segment>();
+        var runSize = 0L;
+        for (var segment : sealedSegments) {
+            var size = segment.log.size();
+            var holdsHidden = segment.minEpochDay < retainedFromEpochDay;
+            if (!holdsHidden && size >= maxSegmentBytes / 2 || !run.isEmpty() && runSize + size > maxSegmentBytes) {
+                if (isWorthCompacting(run)) {
+                    return run;
+                }
+                run = new ArrayList<>();
+                runSize = 0;
+                if (!holdsHidden && size >= maxSegmentBytes / 2) {
+                    continue;
+                }
+            }
+            run.add(segment);
+            runSize += size;
+        }
+        return isWorthCompacting(run) ? run : List.of();
+    }
+
+    private boolean isWorthCompacting(List<Segment> run) {
+        return run.size() > 1 || run.size() == 1 && run.get(0).minEpochDay < retainedFromEpochDay;
+    }
+
+    /**
+     * Deletes the files of a sealed segment: the summary goes first, so that a crash in between leaves a segment
+     * whose summary is rebuilt on open rather than a summary without its segment.
+     */
+    private void deleteSegmentFiles(Segment segment) throws IOException {
+        segment.log.close();
+        Files.deleteIfExists(summaryPath(segment.id));
+        Files.deleteIfExists(logPath(segment.id));
+    }
+
+    private static long readRetention(Path path) throws IOException {
+        var content = Files.readString(path).trim();
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("%s does not hold an epoch day.", path), e);
+        }
+    }
+
+    private void writeRetention(long epochDay) throws IOException {
+        var path = directory.resolve(RETENTION_FILE);
+        var temporaryPath = Path.of(path + ".tmp");
+        try {
+            Files.writeString(temporaryPath, Long.toString(epochDay));
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    private void closeSegments() throws IOException {
+        if (sealedSegments != null) {
+            for (var segment : sealedSegments) {
+                segment.log.close();
+            }
+        }
+        if (activeSegment != null) {
+            activeSegment.log.close();
+        }
+    }
+
+    private RecordLog openLog(long id) {
+        return new RecordLog(logPath(id), LogStorageService.DEFAULT_SYNC_BATCH_SIZE);
+    }
+
+    private Path logPath(long id) {
+        return directory.resolve(String.format("segment-%012d.log", id));
+    }
+
+    private Path summaryPath(long id) {
+        return directory.resolve(String.format("segment-%012d.summary", id));
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final RecordLog log;
+        private Map<UUID, Long> index = new HashMap<>();
+        private SegmentSummary summary;
+        private long minEpochDay = Long.MAX_VALUE;
+        private long maxEpochDay = Long.MIN_VALUE;
+
+        private Segment(long id, RecordLog log) {
+            this.id = id;
+            this.log = log;
+        }
+
+        private void add(Transaction transaction, long offset) {
+            index.put(transaction.id(), offset);
+            var epochDay = transaction.date().toEpochDay();
+            minEpochDay = Math.min(minEpochDay, epochDay);
+            maxEpochDay = Math.max(maxEpochDay, epochDay);
+        }
+
+        private void clear() {
+            index.clear();
+            minEpochDay = Long.MAX_VALUE;
+            maxEpochDay = Long.MIN_VALUE;
+        }
+
+        /**
+         * Replaces the in-memory index with the summary once the segment is no longer appended to.
+         */
+        private void seal(SegmentSummary summary) {
+            this.summary = summary;
+            this.index = Map.of();
+            this.minEpochDay = summary.minEpochDay();
+            this.maxEpochDay = summary.maxEpochDay();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package wex.product.services.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lock serializing the processes and threads that share a storage, held on a lock file next to it around every
+ * operation.
+ * <p>
+ * File locks belong to the process, and closing any channel of a file releases all of them, so all instances locking
+ * the same file in a JVM share one channel and serialize on it before taking the file lock. While at least one of
+ * them is open, the JVM also holds a shared lock on a second byte of the file, which tells other processes that it
+ * uses the storage.
+ */
+final class StorageLock implements Closeable {
+
+    private static final Map<Path, LockFile> LOCK_FILES = new ConcurrentHashMap<>();
+
+    private final LockFile lockFile;
+    private final Operation onOnlyUser;
+
+    private boolean open;
+    private boolean onlyUser;
+
+    /**
+     * Creates a lock on the given file, {@code onOnlyUser} is run under the lock when this instance starts using the
+     * storage while no other instance or process does.
+     */
+    StorageLock(Path path, Operation onOnlyUser) {
+        this.lockFile = LOCK_FILES.computeIfAbsent(path.toAbsolutePath().normalize(), LockFile::new);
+        this.onOnlyUser = onOnlyUser;
+    }
+
+    <T> T call(Action<T> action) throws IOException {
+        synchronized (lockFile) {
+            var opening = !open;
+            if (opening) {
+                lockFile.open();
+                open = true;
+            }
+            var lock = lockFile.channel.lock(0, 1, false);
+            try {
+                if (opening) {
+                    onlyUser = lockFile.takePresence();
+                }
+                if (onlyUser) {
+                    onOnlyUser.run();
+                    onlyUser = false;
+                }
+                return action.run();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Returns whether no other instance or process uses the storage, to be called from an action run under the lock.
+     */
+    boolean isSoleUser() throws IOException {
+        synchronized (lockFile) {
+            return lockFile.isSoleUser();
+        }
+    }
+
+    void run(Operation operation) throws IOException {
+        call(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lockFile) {
+            if (open) {
+                open = false;
+                onlyUser = false;
+                lockFile.release();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Action<T> {
+
+        T run() throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Operation {
+
+        void run() throws IOException;
+    }
+
+    private static final class LockFile {
+
+        private final Path path;
+
+        private FileChannel channel;
+        private FileLock presence;
+        private int users;
+
+        LockFile(Path path) {
+            this.path = path;
+        }
+
+        void open() throws IOException {
+            if (users == 0) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            users++;
+        }
+
+        /**
+         * Takes the presence lock unless the JVM already holds it, to be called under the operation lock, and returns
+         * whether no other process held it.
+         */
+        boolean takePresence() throws IOException {
+            if (presence != null) {
+                return false;
+            }
+            var unused = isUnused();
+            presence = channel.lock(1, 1, true);
+            return unused;
+        }
+
+        boolean isSoleUser() throws IOException {
+            if (users > 1) {
+                return false;
+            }
+            presence.release();
+            var unused = isUnused();
+            presence = channel.lock(1, 1, true);
+            return unused;
+        }
+
+        void release() throws IOException {
+            if (--users == 0) {
+                var openChannel = channel;
+                channel = null;
+                presence = null;
+                openChannel.close();
+            }
+        }
+
+        private boolean isUnused() throws IOException {
+            var probe = channel.tryLock(1, 1, false);
+            if (probe == null) {
+                return false;
+            }
+            probe.release();
+            return true;
+        }
+    }
+}
@@ -1,11 +1,95 @@
 package wex.product.services.storage;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+
+public interface StorageService extends Closeable {
+
+    /**
+     * Number of matches the default {@link #queryTransactions} buffers to sort them before it gives up.
+     */
+    int MAX_BUFFERED_MATCHES = 1_000_000;
 
-public interface StorageService {
     void reset();
 
     void storeTransaction(Transaction transaction);
 
+    /**
+     * Stores transactions in one go. Engines override it to pay their per-write cost, such as a file rewrite or a
+     * disk sync, once per batch rather than once per transaction.
+     */
+    default void storeTransactions(List<Transaction> transactions) {
+        transactions.forEach(this::storeTransaction);
+    }
+
     Transaction findTransaction(UUID id);
+
+    /**
+     * Finds all transactions with the given ids, ids that are not stored are absent from the result. Engines that have
+     * to read the whole storage to answer a lookup override it to do that only once.
+     */
+    default Map<UUID, Transaction> findTransactions(Collection<UUID> ids) {
+        var transactions = new HashMap<UUID, Transaction>();
+        for (var id : ids) {
+            var transaction = findTransaction(id);
+            if (transaction != null) {
+                transactions.put(id, transaction);
+            }
+        }
+        return transactions;
+    }
+
+    /**
+     * Deletes transactions dated before the given date. Engines that can only drop all transactions at once do not
+     * support it.
+     */
+    default void deleteTransactionsBefore(LocalDate date) {
+        throw new UnsupportedOperationException("The storage does not support deleting transactions by date.");
+    }
+
+    /**
+     * Passes every stored transaction to the consumer in storage order. Engines that answer all reads from indexes do
+     * not support it.
+     */
+    default void forEachTransaction(Consumer<Transaction> consumer) {
+        throw new UnsupportedOperationException("The storage does not support reading all transactions.");
+    }
+
+    /**
+     * Passes transactions matching the query to the consumer, in date order when the query has a date bound and in
+     * description order otherwise, ties in storage order. Engines with secondary indexes on the date and the
+     * description override it to read only matching transactions, others read all of them and sort the matches in
+     * memory, so they fail on queries matching more than {@value #MAX_BUFFERED_MATCHES} transactions.
+     */
+    default void queryTransactions(TransactionQuery query, Consumer<Transaction> consumer) {
+        var matches = new ArrayList<Transaction>();
+        forEachTransaction(transaction -> {
+            if (query.matches(transaction)) {
+                if (matches.size() == MAX_BUFFERED_MATCHES) {
+                    throw new IllegalStateException(String.format(
+                            "The query matches more than %d transactions, narrow it or use the log or jdbc storage.", MAX_BUFFERED_MATCHES));
+                }
+                matches.add(transaction);
+            }
+        });
+        matches.sort(query.hasDateRange() ? Comparator.comparing(Transaction::date) : Comparator.comparing(Transaction::description));
+        matches.forEach(consumer);
+    }
+
+    /**
+     * Releases files, mappings and connections and waits for background work of the engine. Engines that hold nothing
+     * open between calls need not override it.
+     */
+    @Override
+    default void close() throws IOException {
+    }
 }
@@ -0,0 +1,51 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public abstract class StorageServiceFactory {
+
+    public static final String LOG = "log";
+    public static final String FILE = "file";
+    public static final String MAPPED = "mapped";
+    public static final String LOCKING_FILE = "locking-file";
+    public static final String SEGMENTED = "segmented";
+    public static final String JDBC = "jdbc";
+
+    private StorageServiceFactory() {
+    }
+
+    public static StorageService create(String type, ObjectMapper objectMapper) {
+        return create(type, null, objectMapper);
+    }
+
+    /**
+     * Creates the storage of the given type, {@code syncBatchSize} sets how many records the log storage forces to disk
+     * at once and defaults to {@link LogStorageService#DEFAULT_SYNC_BATCH_SIZE} when {@code null}.
+     */
+    public static StorageService create(String type, String syncBatchSize, ObjectMapper objectMapper) {
+        return switch (type == null ? LOG : type) {
+            case LOG -> LogStorageService.openImportingLegacy("storage.log", "storage.json", parseSyncBatchSize(syncBatchSize), objectMapper);
+            case FILE -> new FileStorageService("storage.json", objectMapper);
+            case MAPPED -> new MappedStorageService("storage.bin");
+            case LOCKING_FILE -> new LockingFileStorageService("storage.json", objectMapper);
+            case SEGMENTED -> new SegmentedStorageService("storage.segments", objectMapper);
+            case JDBC -> new JdbcStorageService(JdbcStorageService.fileUrl("./storage-h2"));
+            default -> throw new IllegalArgumentException(String.format("Unknown storage type %s.", type));
+        };
+    }
+
+    private static int parseSyncBatchSize(String value) {
+        if (value == null) {
+            return LogStorageService.DEFAULT_SYNC_BATCH_SIZE;
+        }
+        try {
+            var syncBatchSize = Integer.parseInt(value);
+            if (syncBatchSize > 0) {
+                return syncBatchSize;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below together with sizes that are not positive.
+        }
+        throw new IllegalArgumentException(String.format("Sync batch size %s is not a positive number.", value));
+    }
+}
@@ -0,0 +1,78 @@
+package wex.product.services.storage;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Variable-length binary layout of a {@link Transaction}:
+ * {@code [long idMsb][long idLsb][long unscaledAmount][int epochDay][short descriptionLength][description UTF-8]}.
+ * <p>
+ * A record takes only the bytes of its description after the fixed fields, so it has to be addressed by its start
+ * position; {@link #MAX_RECORD_SIZE} covers the worst case of 50 characters encoded as UTF-8.
+ */
+public abstract class TransactionCodec {
+
+    public static final int AMOUNT_SCALE = 2;
+    public static final int MAX_DESCRIPTION_BYTES = 150;
+    public static final int FIXED_SIZE = 3 * Long.BYTES + Integer.BYTES + Short.BYTES;
+    public static final int MAX_RECORD_SIZE = FIXED_SIZE + MAX_DESCRIPTION_BYTES;
+
+    private static final int AMOUNT_POSITION = 2 * Long.BYTES;
+    private static final int DATE_POSITION = 3 * Long.BYTES;
+    private static final int DESCRIPTION_LENGTH_POSITION = DATE_POSITION + Integer.BYTES;
+    private static final int DESCRIPTION_POSITION = FIXED_SIZE;
+
+    private TransactionCodec() {
+    }
+
+    /**
+     * Writes the record at the position and returns its size.
+     */
+    public static int encode(Transaction transaction, ByteBuffer buffer, int position) {
+        var description = transaction.description().getBytes(StandardCharsets.UTF_8);
+        if (description.length > MAX_DESCRIPTION_BYTES) {
+            throw new IllegalArgumentException(String.format("Description exceeds %d bytes.", MAX_DESCRIPTION_BYTES));
+        }
+        buffer.putLong(position, transaction.id().getMostSignificantBits());
+        buffer.putLong(position + Long.BYTES, transaction.id().getLeastSignificantBits());
+        buffer.putLong(position + AMOUNT_POSITION, unscaledAmount(transaction.amount()));
+        buffer.putInt(position + DATE_POSITION, Math.toIntExact(transaction.date().toEpochDay()));
+        buffer.putShort(position + DESCRIPTION_LENGTH_POSITION, (short) description.length);
+        buffer.put(position + DESCRIPTION_POSITION, description);
+        return FIXED_SIZE + description.length;
+    }
+
+    public static Transaction decode(ByteBuffer buffer, int position) {
+        var description = new byte[buffer.getShort(position + DESCRIPTION_LENGTH_POSITION)];
+        buffer.get(position + DESCRIPTION_POSITION, description);
+        return new Transaction(
+                new UUID(buffer.getLong(position), buffer.getLong(position + Long.BYTES)),
+                BigDecimal.valueOf(buffer.getLong(position + AMOUNT_POSITION), AMOUNT_SCALE),
+                LocalDate.ofEpochDay(buffer.getInt(position + DATE_POSITION)),
+                new String(description, StandardCharsets.UTF_8)
+        );
+    }
+
+    public static int recordSize(ByteBuffer buffer, int position) {
+        return FIXED_SIZE + buffer.getShort(position + DESCRIPTION_LENGTH_POSITION);
+    }
+
+    public static long idMostSignificantBits(ByteBuffer buffer, int position) {
+        return buffer.getLong(position);
+    }
+
+    public static long idLeastSignificantBits(ByteBuffer buffer, int position) {
+        return buffer.getLong(position + Long.BYTES);
+    }
+
+    private static long unscaledAmount(BigDecimal amount) {
+        try {
+            return amount.setScale(AMOUNT_SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(String.format("Amount %s can not be stored in cents.", amount), e);
+        }
+    }
+}
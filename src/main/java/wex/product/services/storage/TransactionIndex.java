@@ -0,0 +1,311 @@
+package wex.product.services.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Persistent open-addressing hash table mapping transaction ids to record offsets.
+ * <p>
+ * The file starts with a header holding the table capacity, the number of entries, the size of the data file
+ * covered by the index and its state, followed by fixed-width {@code [long msb][long lsb][long offset + 1]} slots
+ * probed linearly. Slots are mapped in regions of {@code 2^26}, as one mapping can not exceed 2 GiB.
+ * <p>
+ * The index can always be rebuilt from the data file, so it is not forced to disk on every update. Instead the header
+ * is marked dirty and forced before the first update after it was last marked clean, and marked clean again by
+ * {@link #close()} once all slots are forced. An index found dirty while no other process has it open may have lost
+ * slot pages in an operating system crash while its covered size survived, so its owner discards it with
+ * {@link #discardIfDirty()} and rebuilds it from the data file.
+ * <p>
+ * Other processes may have the file mapped, so it is never truncated in place: a grown or cleared table is written to
+ * a temporary file that atomically replaces it, and {@link #refresh()} maps the replacement. Callers serialize
+ * processes with a file lock around every use of the index.
+ */
+public final class TransactionIndex implements Closeable {
+
+    static final int INITIAL_CAPACITY = 1024;
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private static final int MAGIC = 0x57455849;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 3 * Long.BYTES;
+    private static final int CAPACITY_POSITION = 4;
+    private static final int COUNT_POSITION = 8;
+    private static final int COVERED_SIZE_POSITION = 16;
+    private static final int STATE_POSITION = 24;
+    private static final int CLEAN = 1;
+    private static final int DIRTY = 2;
+    private static final int MSB = 0;
+    private static final int LSB = 1;
+    private static final int OFFSET = 2;
+    private static final int REGION_SHIFT = 26;
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+    private final Path path;
+
+    private FileChannel channel;
+    private Table table;
+    private Object fileKey;
+    private boolean dirty;
+
+    public TransactionIndex(Path path) {
+        this.path = path;
+    }
+
+    public synchronized long coveredSize() throws IOException {
+        ensureOpen();
+        return table.header.getLong(COVERED_SIZE_POSITION);
+    }
+
+    public synchronized void setCoveredSize(long coveredSize) throws IOException {
+        ensureOpen();
+        markDirty();
+        table.header.putLong(COVERED_SIZE_POSITION, coveredSize);
+    }
+
+    /**
+     * Returns the offset of the record with the given id or {@code -1} if the id is not indexed.
+     */
+    public synchronized long find(UUID id) throws IOException {
+        ensureOpen();
+        return table.get(findSlot(table, id.getMostSignificantBits(), id.getLeastSignificantBits()), OFFSET) - 1;
+    }
+
+    public synchronized void put(UUID id, long offset) throws IOException {
+        ensureOpen();
+        markDirty();
+        if (2L * (table.count() + 1) > table.capacity) {
+            if (table.capacity == MAX_CAPACITY) {
+                throw new IOException("The transaction index is full.");
+            }
+            resize(2 * table.capacity);
+        }
+        insert(table, id.getMostSignificantBits(), id.getLeastSignificantBits(), offset + 1);
+    }
+
+    public synchronized void clear() throws IOException {
+        ensureOpen();
+        replace(INITIAL_CAPACITY, null);
+    }
+
+    /**
+     * Maps the index again when another process replaced its file since it was mapped.
+     */
+    public synchronized void refresh() throws IOException {
+        if (channel != null && !Objects.equals(fileKey, currentFileKey())) {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Clears the index when it is marked dirty, to be called only while no other process has it open, as their
+     * updates mark it dirty too.
+     */
+    public synchronized void discardIfDirty() throws IOException {
+        ensureOpen();
+        if (!dirty && table.header.getInt(STATE_POSITION) == DIRTY) {
+            replace(INITIAL_CAPACITY, null);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            if (dirty && Objects.equals(fileKey, currentFileKey())) {
+                table.force();
+                table.header.putInt(STATE_POSITION, CLEAN);
+                table.header.force();
+            }
+            closeChannel();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                fileKey = currentFileKey();
+                var capacity = validCapacity();
+                if (capacity < 0) {
+                    replace(INITIAL_CAPACITY, null);
+                } else {
+                    table = Table.map(channel, capacity);
+                }
+            } catch (IOException | RuntimeException e) {
+                closeChannel();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns the capacity of the table in the file, or {@code -1} when the file is not a complete index.
+     */
+    private int validCapacity() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return -1;
+        }
+        var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        var capacity = header.getInt(CAPACITY_POSITION);
+        var state = header.getInt(STATE_POSITION);
+        var valid = header.getInt(0) == MAGIC
+                && (state == CLEAN || state == DIRTY)
+                && capacity >= INITIAL_CAPACITY
+                && Integer.bitCount(capacity) == 1
+                && channel.size() == HEADER_SIZE + (long) capacity * SLOT_SIZE;
+        return valid ? capacity : -1;
+    }
+
+    private void resize(int newCapacity) throws IOException {
+        replace(newCapacity, table);
+    }
+
+    /**
+     * Writes a table of the given capacity holding the entries of {@code previous}, if any, to a temporary file and
+     * moves it in place of the index, so processes that still map the previous file keep reading it until they
+     * {@link #refresh()}.
+     */
+    private void replace(int newCapacity, Table previous) throws IOException {
+        var temporaryPath = Path.of(path + ".tmp");
+        var newChannel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Table newTable;
+        try {
+            newTable = Table.map(newChannel, newCapacity);
+            newTable.header.putInt(0, MAGIC);
+            newTable.header.putInt(CAPACITY_POSITION, newCapacity);
+            newTable.header.putInt(STATE_POSITION, DIRTY);
+            if (previous != null) {
+                for (var slot = 0L; slot < previous.capacity; slot++) {
+                    var storedOffset = previous.get(slot, OFFSET);
+                    if (storedOffset != 0) {
+                        insert(newTable, previous.get(slot, MSB), previous.get(slot, LSB), storedOffset);
+                    }
+                }
+                newTable.header.putLong(COVERED_SIZE_POSITION, previous.header.getLong(COVERED_SIZE_POSITION));
+            }
+            newTable.header.force();
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            newChannel.close();
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        closeChannel();
+        channel = newChannel;
+        table = newTable;
+        fileKey = currentFileKey();
+        dirty = true;
+    }
+
+    private void closeChannel() throws IOException {
+        var openChannel = channel;
+        channel = null;
+        table = null;
+        fileKey = null;
+        dirty = false;
+        if (openChannel != null) {
+            openChannel.close();
+        }
+    }
+
+    private Object currentFileKey() throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Marks the index dirty unless it already is, also when another process marked it clean since this one did.
+     */
+    private void markDirty() {
+        if (table.header.getInt(STATE_POSITION) != DIRTY) {
+            table.header.putInt(STATE_POSITION, DIRTY);
+            table.header.force();
+        }
+        dirty = true;
+    }
+
+    private static void insert(Table table, long msb, long lsb, long storedOffset) {
+        var slot = findSlot(table, msb, lsb);
+        if (table.get(slot, OFFSET) == 0) {
+            table.header.putInt(COUNT_POSITION, table.count() + 1);
+        }
+        table.put(slot, MSB, msb);
+        table.put(slot, LSB, lsb);
+        table.put(slot, OFFSET, storedOffset);
+    }
+
+    private static long findSlot(Table table, long msb, long lsb) {
+        var mask = table.capacity - 1L;
+        var slot = hash(msb, lsb) & mask;
+        while (true) {
+            if (table.get(slot, OFFSET) == 0 || (table.get(slot, MSB) == msb && table.get(slot, LSB) == lsb)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Mixes both halves with different weights, as ids whose halves are equal or complementary would all collide on
+     * {@code msb ^ lsb}.
+     */
+    private static long hash(long msb, long lsb) {
+        var hash = msb * 0x9e3779b97f4a7c15L + lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Mapping of the header and of the slot regions of one index file.
+     */
+    private record Table(MappedByteBuffer header, MappedByteBuffer[] regions, int capacity) {
+
+        static Table map(FileChannel channel, int capacity) throws IOException {
+            var header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            var regions = new MappedByteBuffer[(int) ((capacity - 1L >>> REGION_SHIFT) + 1)];
+            for (var i = 0; i < regions.length; i++) {
+                var firstSlot = (long) i << REGION_SHIFT;
+                var slots = Math.min(capacity - firstSlot, REGION_MASK + 1);
+                regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + firstSlot * SLOT_SIZE, slots * SLOT_SIZE);
+            }
+            return new Table(header, regions, capacity);
+        }
+
+        int count() {
+            return header.getInt(COUNT_POSITION);
+        }
+
+        long get(long slot, int field) {
+            return regions[(int) (slot >>> REGION_SHIFT)].getLong(slotPosition(slot, field));
+        }
+
+        void put(long slot, int field, long value) {
+            regions[(int) (slot >>> REGION_SHIFT)].putLong(slotPosition(slot, field), value);
+        }
+
+        void force() {
+            for (var region : regions) {
+                region.force();
+            }
+        }
+
+        private static int slotPosition(long slot, int field) {
+            return (int) ((slot & REGION_MASK) * SLOT_SIZE) + field * Long.BYTES;
+        }
+    }
+}
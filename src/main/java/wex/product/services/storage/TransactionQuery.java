@@ -0,0 +1,39 @@
+package wex.product.services.storage;
+
+import java.time.LocalDate;
+
+/**
+ * Transactions dated from {@code from} to {@code to} inclusive whose description starts with
+ * {@code descriptionPrefix}, case-sensitively. Every criterion is optional, a {@code null} one matches all
+ * transactions.
+ */
+public record TransactionQuery(
+        LocalDate from,
+        LocalDate to,
+        String descriptionPrefix
+) {
+
+    public TransactionQuery {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Query date range ends before it starts.");
+        }
+    }
+
+    public static TransactionQuery byDateRange(LocalDate from, LocalDate to) {
+        return new TransactionQuery(from, to, null);
+    }
+
+    public static TransactionQuery byDescriptionPrefix(String descriptionPrefix) {
+        return new TransactionQuery(null, null, descriptionPrefix);
+    }
+
+    public boolean hasDateRange() {
+        return from != null || to != null;
+    }
+
+    public boolean matches(Transaction transaction) {
+        return (from == null || !transaction.date().isBefore(from))
+                && (to == null || !transaction.date().isAfter(to))
+                && (descriptionPrefix == null || transaction.description().startsWith(descriptionPrefix));
+    }
+}
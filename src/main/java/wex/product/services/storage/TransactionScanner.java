@@ -0,0 +1,133 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Looks transactions up in a JSON array of transactions without binding the whole array.
+ * <p>
+ * The array is walked token by token. The id of every element is compared before anything else of it is bound, elements
+ * with other ids are skipped, and the walk stops as soon as everything wanted is found, so a lookup needs memory for a
+ * single element only.
+ */
+final class TransactionScanner {
+
+    private static final String ID_FIELD = "id";
+
+    private final ObjectMapper objectMapper;
+
+    TransactionScanner(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    Transaction find(InputStream inputStream, UUID id) throws IOException {
+        var found = new Transaction[1];
+        scan(inputStream, id::equals, transaction -> {
+            found[0] = transaction;
+            return false;
+        });
+        return found[0];
+    }
+
+    Map<UUID, Transaction> findAll(InputStream inputStream, Collection<UUID> ids) throws IOException {
+        var remaining = new HashSet<>(ids);
+        var transactions = new HashMap<UUID, Transaction>();
+        if (!remaining.isEmpty()) {
+            scan(inputStream, remaining::contains, transaction -> {
+                transactions.put(transaction.id(), transaction);
+                remaining.remove(transaction.id());
+                return !remaining.isEmpty();
+            });
+        }
+        return transactions;
+    }
+
+    /**
+     * Passes every transaction of the array to the consumer in stored order.
+     */
+    void forEach(InputStream inputStream, Consumer<Transaction> consumer) throws IOException {
+        scan(inputStream, id -> true, transaction -> {
+            consumer.accept(transaction);
+            return true;
+        });
+    }
+
+    /**
+     * Passes every wanted transaction to the consumer until the consumer returns {@code false} or the array ends.
+     */
+    private void scan(InputStream inputStream, Predicate<UUID> wanted, Predicate<Transaction> consumer) throws IOException {
+        try (var parser = objectMapper.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Transactions are not stored as a JSON array.");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                var transaction = readIfWanted(parser, wanted);
+                if (transaction != null && !consumer.test(transaction)) {
+                    return;
+                }
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("Transactions array holds something that is not a transaction.");
+            }
+        }
+    }
+
+    /**
+     * Reads the object the parser is at and binds it only if its id is wanted. Fields written before the id are
+     * buffered, which does not happen for files written by the storage, where the id always comes first.
+     */
+    private Transaction readIfWanted(JsonParser parser, Predicate<UUID> wanted) throws IOException {
+        TokenBuffer buffer = null;
+        UUID id = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (id == null && ID_FIELD.equals(parser.currentName())) {
+                if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                    throw new IOException("Transaction id is not a string.");
+                }
+                id = UUID.fromString(parser.getText());
+                if (!wanted.test(id)) {
+                    skipRemainingFields(parser);
+                    return null;
+                }
+                buffer = buffer != null ? buffer : startObject(parser);
+                buffer.writeStringField(ID_FIELD, parser.getText());
+            } else {
+                buffer = buffer != null ? buffer : startObject(parser);
+                buffer.copyCurrentStructure(parser);
+            }
+        }
+        if (id == null) {
+            return null;
+        }
+        buffer.writeEndObject();
+        try (var bufferParser = buffer.asParser(objectMapper)) {
+            return objectMapper.readValue(bufferParser, Transaction.class);
+        }
+    }
+
+    private static TokenBuffer startObject(JsonParser parser) throws IOException {
+        var buffer = new TokenBuffer(parser);
+        buffer.writeStartObject();
+        return buffer;
+    }
+
+    private static void skipRemainingFields(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+}
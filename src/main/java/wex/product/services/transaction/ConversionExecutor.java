@@ -0,0 +1,44 @@
+package wex.product.services.transaction;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs conversions on the non-blocking path of {@link TransactionService#retrieveTransactionAsync} with a deadline.
+ * <p>
+ * No thread waits for the exchange rate API while a conversion is in flight, so the number of conversions in flight is
+ * not bounded by threads, and none are started per conversion. A conversion missing its deadline completes with
+ * {@link TimeoutException}, which cancels its rate fetch down to the HTTP exchange, or keeps it from starting while
+ * the purchase is still being looked up, so abandoned conversions do not keep requests to the API open.
+ */
+public final class ConversionExecutor {
+
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(30);
+
+    private final TransactionService transactionService;
+    private final Duration deadline;
+
+    public ConversionExecutor(TransactionService transactionService) {
+        this(transactionService, DEFAULT_DEADLINE);
+    }
+
+    public ConversionExecutor(TransactionService transactionService, Duration deadline) {
+        this.transactionService = transactionService;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Starts the conversion, the result completes with {@link TimeoutException} when the deadline passes first.
+     * Cancelling the result stops the conversion as well.
+     */
+    public CompletableFuture<ConvertedTransaction> convert(UUID id, String currency) {
+        try {
+            return transactionService.retrieveTransactionAsync(id, currency).orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
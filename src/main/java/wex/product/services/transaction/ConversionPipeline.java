@@ -0,0 +1,162 @@
+package wex.product.services.transaction;
+
+import wex.product.services.storage.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Converts large sets of purchases on a fork-join pool.
+ * <p>
+ * Purchases are sorted by date as packed {@code [epochDay][position]} longs, so the distinct purchase dates fall out of
+ * one pass and their rates are resolved in one call, which leaves bounding the fetches to the caller, e.g. an
+ * {@link ExchangeRateResolver}. The sorted range is then split in
+ * halves down to {@value #LEAF_SIZE} purchases per task; a task finds the rate of its first date by binary search and
+ * steps through the following ones as the dates change. Every conversion is written to the position of its purchase,
+ * so the result follows the input order however the work was split.
+ */
+public final class ConversionPipeline {
+
+    static final int LEAF_SIZE = 4_096;
+
+    private final ForkJoinPool pool;
+
+    public ConversionPipeline() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ConversionPipeline(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Converts the purchases with the rates of their dates and returns them in the order given. Fails before converting
+     * anything when the rate of one of the dates can not be resolved.
+     *
+     * @param exchangeRates starts resolving the rates of the distinct purchase dates, given in ascending order, called
+     *                      once per conversion
+     */
+    public List<ConvertedTransaction> convert(
+            List<Transaction> transactions,
+            Function<List<LocalDate>, CompletableFuture<Map<LocalDate, BigDecimal>>> exchangeRates
+    ) {
+        var purchases = transactions.toArray(Transaction[]::new);
+        var sorted = new long[purchases.length];
+        for (var i = 0; i < sorted.length; i++) {
+            sorted[i] = (long) Math.toIntExact(purchases[i].date().toEpochDay()) << 32 | i;
+        }
+        // Sort tasks fork into the pool of the thread sorting, so sorting on a worker keeps them in this pool.
+        pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSort(sorted)));
+
+        var days = distinctDays(sorted);
+        if (days.length == 0) {
+            return List.of();
+        }
+        var dates = new ArrayList<LocalDate>(days.length);
+        for (var day : days) {
+            dates.add(LocalDate.ofEpochDay(day));
+        }
+        var resolved = awaitExchangeRates(exchangeRates.apply(dates));
+        var rates = new BigDecimal[days.length];
+        for (var i = 0; i < rates.length; i++) {
+            rates[i] = resolved.get(dates.get(i));
+            if (rates[i] == null) {
+                throw new IllegalStateException("The purchase cannot be converted to the target currency.");
+            }
+        }
+
+        var converted = new ConvertedTransaction[sorted.length];
+        pool.invoke(new ConvertTask(purchases, sorted, days, rates, converted, 0, sorted.length));
+        return Collections.unmodifiableList(Arrays.asList(converted));
+    }
+
+    private static int[] distinctDays(long[] sorted) {
+        var days = new int[sorted.length];
+        var count = 0;
+        for (var key : sorted) {
+            var day = day(key);
+            if (count == 0 || days[count - 1] != day) {
+                days[count++] = day;
+            }
+        }
+        return Arrays.copyOf(days, count);
+    }
+
+    private static int day(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int position(long key) {
+        return (int) key;
+    }
+
+    private static Map<LocalDate, BigDecimal> awaitExchangeRates(CompletableFuture<Map<LocalDate, BigDecimal>> exchangeRates) {
+        try {
+            return exchangeRates.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static final class ConvertTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Transaction[] purchases;
+        private final long[] sorted;
+        private final int[] days;
+        private final BigDecimal[] rates;
+        private final ConvertedTransaction[] converted;
+        private final int from;
+        private final int to;
+
+        private ConvertTask(
+                Transaction[] purchases,
+                long[] sorted,
+                int[] days,
+                BigDecimal[] rates,
+                ConvertedTransaction[] converted,
+                int from,
+                int to
+        ) {
+            this.purchases = purchases;
+            this.sorted = sorted;
+            this.days = days;
+            this.rates = rates;
+            this.converted = converted;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                var middle = (from + to) >>> 1;
+                invokeAll(
+                        new ConvertTask(purchases, sorted, days, rates, converted, from, middle),
+                        new ConvertTask(purchases, sorted, days, rates, converted, middle, to)
+                );
+                return;
+            }
+            var rate = from < to ? Arrays.binarySearch(days, day(sorted[from])) : 0;
+            for (var i = from; i < to; i++) {
+                while (days[rate] != day(sorted[i])) {
+                    rate++;
+                }
+                var position = position(sorted[i]);
+                converted[position] = TransactionService.convert(purchases[position], rates[rate]);
+            }
+        }
+    }
+}
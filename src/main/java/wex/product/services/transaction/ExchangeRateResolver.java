@@ -0,0 +1,146 @@
+package wex.product.services.transaction;
+
+import wex.product.services.exchange.ExchangeRateRecord;
+import wex.product.services.exchange.ExchangeRateService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves the rates of many purchase dates in one currency without flooding the exchange rate service.
+ * <p>
+ * Dates are fetched newest first, at most {@code maxConcurrentFetches} at a time. A fetched rate applies to every date
+ * from the day it was recorded on up to the fetched date, so the dates within that period are resolved without
+ * fetching them, also by later calls of the same resolver. The newest date is fetched alone, as its period often
+ * covers many of the others.
+ */
+final class ExchangeRateResolver {
+
+    static final int MAX_CONCURRENT_FETCHES = 4;
+
+    private final ExchangeRateService exchangeRateService;
+    private final String currency;
+    private final int maxConcurrentFetches;
+    private final TreeMap<LocalDate, Period> periods = new TreeMap<>();
+
+    ExchangeRateResolver(ExchangeRateService exchangeRateService, String currency) {
+        this(exchangeRateService, currency, MAX_CONCURRENT_FETCHES);
+    }
+
+    ExchangeRateResolver(ExchangeRateService exchangeRateService, String currency, int maxConcurrentFetches) {
+        this.exchangeRateService = exchangeRateService;
+        this.currency = currency;
+        this.maxConcurrentFetches = maxConcurrentFetches;
+    }
+
+    /**
+     * Completes with the rate of every date, {@code null} for a date without one, or with the first failed fetch.
+     */
+    CompletableFuture<Map<LocalDate, BigDecimal>> resolve(Collection<LocalDate> dates) {
+        var resolution = new Resolution();
+        synchronized (this) {
+            for (var date : dates) {
+                var period = periods.floorEntry(date);
+                if (period != null && !period.getValue().to().isBefore(date)) {
+                    resolution.rates.put(date, period.getValue().rate());
+                } else {
+                    resolution.pending.add(date);
+                }
+            }
+        }
+        resolution.drain();
+        return resolution.result;
+    }
+
+    private final class Resolution {
+
+        private final TreeSet<LocalDate> pending = new TreeSet<>();
+        private final Map<LocalDate, BigDecimal> rates = new HashMap<>();
+        private final CompletableFuture<Map<LocalDate, BigDecimal>> result = new CompletableFuture<>();
+        private final AtomicInteger drains = new AtomicInteger();
+
+        private int inFlight;
+        private boolean fetched;
+        private Throwable failure;
+
+        /**
+         * Starts fetches up to the limit and completes the result once nothing is left. A fetch completing during the
+         * drain, also right away from a cache, makes the draining thread go round once more instead of recursing.
+         */
+        private void drain() {
+            if (drains.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                var fetches = new ArrayList<LocalDate>();
+                var done = false;
+                synchronized (ExchangeRateResolver.this) {
+                    if (failure == null) {
+                        while (inFlight < (fetched ? maxConcurrentFetches : 1) && !pending.isEmpty()) {
+                            fetches.add(pending.pollLast());
+                            inFlight++;
+                        }
+                    }
+                    done = inFlight == 0 && (failure != null || pending.isEmpty());
+                }
+                if (done) {
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        result.complete(rates);
+                    }
+                }
+                for (var date : fetches) {
+                    fetch(date);
+                }
+            } while (drains.decrementAndGet() != 0);
+        }
+
+        private void fetch(LocalDate date) {
+            try {
+                exchangeRateService.getExchangeRateRecordAsync(currency, date)
+                        .whenComplete((record, error) -> complete(date, record, error));
+            } catch (RuntimeException e) {
+                complete(date, null, e);
+            }
+        }
+
+        private void complete(LocalDate date, ExchangeRateRecord record, Throwable error) {
+            synchronized (ExchangeRateResolver.this) {
+                inFlight--;
+                fetched = true;
+                if (error != null) {
+                    if (failure == null) {
+                        failure = error;
+                    }
+                } else if (record == null) {
+                    rates.put(date, null);
+                } else {
+                    var from = record.date().isAfter(date) ? date : record.date();
+                    var known = periods.get(from);
+                    if (known == null || known.to().isBefore(date)) {
+                        periods.put(from, new Period(date, record.exchangeRate()));
+                    }
+                    rates.put(date, record.exchangeRate());
+                    var covered = pending.subSet(from, true, date, true);
+                    for (var coveredDate : covered) {
+                        rates.put(coveredDate, record.exchangeRate());
+                    }
+                    covered.clear();
+                }
+            }
+            drain();
+        }
+    }
+
+    private record Period(LocalDate to, BigDecimal rate) {
+    }
+}
@@ -0,0 +1,87 @@
+package wex.product.services.transaction;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money arithmetic on {@code long} unscaled values with the same results as {@link BigDecimal} rounded
+ * {@link RoundingMode#HALF_UP} to cents.
+ * <p>
+ * Values are read through {@link BigDecimal#doubleValue()}, which does not allocate for the compact values amounts and
+ * exchange rates are, and is correctly rounded, so scaling the double back and rounding it restores the exact unscaled
+ * value as long as it stays below {@link #MAX_UNSCALED}. Anything outside the fast path, such as more digits than the
+ * target scale, a product that overflows a {@code long} or an exchange rate with more than 18 decimals, is computed
+ * with {@link BigDecimal} instead.
+ */
+public abstract class FixedPointMoney {
+
+    public static final int SCALE = 2;
+    public static final long NOT_REPRESENTABLE = Long.MIN_VALUE;
+
+    static final long MAX_UNSCALED = 1L << 50;
+
+    private static final int MAX_SCALE = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (var i = 1; i <= MAX_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private FixedPointMoney() {
+    }
+
+    /**
+     * Returns {@code amount * rate} rounded half up to cents, equal to
+     * {@code amount.multiply(rate).setScale(2, RoundingMode.HALF_UP)} including the scale.
+     */
+    public static BigDecimal multiply(BigDecimal amount, BigDecimal rate) {
+        var cents = unscaled(amount, SCALE);
+        var rateScale = rate.scale();
+        if (cents != NOT_REPRESENTABLE && rateScale >= 0 && rateScale <= MAX_SCALE) {
+            var rateUnscaled = unscaled(rate, rateScale);
+            if (rateUnscaled != NOT_REPRESENTABLE) {
+                var product = multiply(cents, rateUnscaled, rateScale);
+                if (product != NOT_REPRESENTABLE) {
+                    return BigDecimal.valueOf(product, SCALE);
+                }
+            }
+        }
+        return amount.multiply(rate).setScale(SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Returns the unscaled value of {@code value} at the given scale, or {@link #NOT_REPRESENTABLE} when the value has
+     * more decimals than the scale or its unscaled value is not below {@link #MAX_UNSCALED}.
+     */
+    public static long unscaled(BigDecimal value, int scale) {
+        if (value.scale() > scale || scale > MAX_SCALE) {
+            return NOT_REPRESENTABLE;
+        }
+        var scaled = value.doubleValue() * POWERS_OF_TEN[scale];
+        if (!(Math.abs(scaled) < MAX_UNSCALED)) {
+            return NOT_REPRESENTABLE;
+        }
+        return Math.round(scaled);
+    }
+
+    /**
+     * Multiplies cents by a rate given as its unscaled value and scale and rounds the product half up to cents, or
+     * returns {@link #NOT_REPRESENTABLE} when the product overflows a {@code long}.
+     */
+    public static long multiply(long cents, long rateUnscaled, int rateScale) {
+        var product = cents * rateUnscaled;
+        if (Math.multiplyHigh(cents, rateUnscaled) != product >> 63 || product == NOT_REPRESENTABLE) {
+            return NOT_REPRESENTABLE;
+        }
+        var divisor = POWERS_OF_TEN[rateScale];
+        var quotient = product / divisor;
+        var remainder = product % divisor;
+        if (2 * Math.abs(remainder) >= divisor) {
+            quotient += Long.signum(product);
+        }
+        return quotient;
+    }
+}
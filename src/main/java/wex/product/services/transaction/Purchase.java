@@ -0,0 +1,11 @@
+package wex.product.services.transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record Purchase(
+        BigDecimal amount,
+        LocalDate date,
+        String description
+) {
+}
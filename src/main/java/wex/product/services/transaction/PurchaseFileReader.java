@@ -0,0 +1,191 @@
+package wex.product.services.transaction;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads purchases from a CSV or JSON lines file one line at a time, so memory use does not depend on the file size.
+ * <p>
+ * CSV rows are {@code amount,date,description} with an optional header row, and a description containing commas or
+ * quotes is quoted with {@code "} and doubled quotes. JSON lines are objects with {@code amount}, {@code date} and
+ * {@code description} fields. Blank lines are skipped, a malformed line fails with its line number.
+ */
+public final class PurchaseFileReader implements Iterator<Purchase>, Closeable {
+
+    private static final String CSV_HEADER = "amount,date,description";
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectReader jsonReader;
+
+    private int lineNumber;
+    private Purchase next;
+
+    public PurchaseFileReader(BufferedReader reader, Format format, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.jsonReader = objectMapper.reader().with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    }
+
+    /**
+     * Opens the file choosing the format by its extension, {@code .jsonl} and {@code .ndjson} are JSON lines and any
+     * other file is CSV.
+     */
+    public static PurchaseFileReader open(Path path, ObjectMapper objectMapper) throws IOException {
+        var fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        var format = fileName.endsWith(".jsonl") || fileName.endsWith(".ndjson") ? Format.JSON_LINES : Format.CSV;
+        return new PurchaseFileReader(Files.newBufferedReader(path, StandardCharsets.UTF_8), format, objectMapper);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = readNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Purchase next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var purchase = next;
+        next = null;
+        return purchase;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Purchase readNext() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || format == Format.CSV && lineNumber == 1 && line.trim().equalsIgnoreCase(CSV_HEADER)) {
+                    continue;
+                }
+                return format == Format.CSV ? parseCsv(line) : parseJson(line);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not read purchases from the import file.", e);
+        }
+    }
+
+    private Purchase parseCsv(String line) {
+        var fields = splitCsv(line);
+        if (fields.size() != 3) {
+            throw invalidLine("expected 3 comma separated fields.");
+        }
+        return toPurchase(fields.get(0).trim(), fields.get(1).trim(), fields.get(2));
+    }
+
+    private List<String> splitCsv(String line) {
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        var quoted = false;
+        for (var i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw invalidLine("unterminated quoted field.");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private Purchase parseJson(String line) {
+        JsonNode node;
+        try {
+            node = jsonReader.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw invalidLine("not a valid JSON object.");
+        }
+        if (node == null || !node.isObject()) {
+            throw invalidLine("not a valid JSON object.");
+        }
+        return toPurchase(jsonText(node, "amount"), jsonText(node, "date"), jsonText(node, "description"));
+    }
+
+    private static String jsonText(JsonNode node, String field) {
+        var value = node.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        return value.isNumber() ? value.decimalValue().toPlainString() : value.asText();
+    }
+
+    private Purchase toPurchase(String amount, String date, String description) {
+        if (amount == null || amount.isEmpty()) {
+            throw invalidLine("amount is not provided.");
+        }
+        if (date == null || date.isEmpty()) {
+            throw invalidLine("date is not provided.");
+        }
+        if (description == null) {
+            throw invalidLine("description is not provided.");
+        }
+        BigDecimal parsedAmount;
+        try {
+            parsedAmount = new BigDecimal(amount);
+        } catch (NumberFormatException e) {
+            throw invalidLine("amount is not a valid decimal number.");
+        }
+        LocalDate parsedDate;
+        try {
+            parsedDate = LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw invalidLine("date is not a valid ISO 8601 date.");
+        }
+        return new Purchase(parsedAmount, parsedDate, description);
+    }
+
+    private IllegalArgumentException invalidLine(String reason) {
+        return new IllegalArgumentException(String.format("Line %d of the import file is invalid: %s", lineNumber, reason));
+    }
+
+    public enum Format {
+        CSV,
+        JSON_LINES
+    }
+}
@@ -0,0 +1,66 @@
+package wex.product.services.transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Streams purchases from a file into storage in batches, so only one batch is held in memory at a time.
+ */
+public final class TransactionImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public TransactionImporter(TransactionService transactionService, ObjectMapper objectMapper) {
+        this(transactionService, objectMapper, DEFAULT_BATCH_SIZE);
+    }
+
+    public TransactionImporter(TransactionService transactionService, ObjectMapper objectMapper, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.transactionService = transactionService;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports all purchases of the file and returns their number. Import stops at the first invalid line, purchases of
+     * the batches stored before it stay stored and their number is reported in the error.
+     */
+    public long importFile(Path path) {
+        try (var reader = PurchaseFileReader.open(path, objectMapper)) {
+            return importPurchases(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Can not read purchases from %s.", path), e);
+        }
+    }
+
+    long importPurchases(Iterator<Purchase> purchases) {
+        var imported = 0L;
+        var batch = new ArrayList<Purchase>(batchSize);
+        try {
+            while (purchases.hasNext()) {
+                batch.add(purchases.next());
+                if (batch.size() == batchSize) {
+                    imported += transactionService.storeTransactions(batch).size();
+                    batch.clear();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("%s %d purchases were imported before it.", e.getMessage(), imported), e);
+        }
+        if (!batch.isEmpty()) {
+            imported += transactionService.storeTransactions(batch).size();
+        }
+        return imported;
+    }
+}
@@ -0,0 +1,12 @@
+package wex.product.services.transaction;
+
+import java.util.UUID;
+
+public final class TransactionNotFoundException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TransactionNotFoundException(UUID id) {
+        super(String.format("Can not find the purchase with id %s.", id));
+    }
+}
@@ -3,38 +3,184 @@ package wex.product.services.transaction;
 import wex.product.services.exchange.ExchangeRateService;
 import wex.product.services.storage.StorageService;
 import wex.product.services.storage.Transaction;
+import wex.product.services.storage.TransactionQuery;
+import wex.product.utils.Utils;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public final class TransactionService {
 
     private static final int AMOUNT_SCALE = 2;
     private static final int MAX_DESCRIPTION_LENGTH = 50;
+    private static final int QUERY_CONVERSION_CHUNK_SIZE = 65_536;
 
     private final StorageService storageService;
     private final ExchangeRateService exchangeRateService;
+    private final Executor storageExecutor;
+    private final ConversionPipeline conversionPipeline = new ConversionPipeline();
 
     public TransactionService(StorageService storageService, ExchangeRateService exchangeRateService) {
+        this(storageService, exchangeRateService, Runnable::run);
+    }
+
+    public TransactionService(StorageService storageService, ExchangeRateService exchangeRateService, Executor storageExecutor) {
         this.storageService = storageService;
         this.exchangeRateService = exchangeRateService;
+        this.storageExecutor = storageExecutor;
     }
 
     public Transaction storeTransaction(BigDecimal amount, LocalDate date, String description) {
-        var truncatedDescription = description.substring(0, Math.min(MAX_DESCRIPTION_LENGTH, description.length()));
-        var transaction = new Transaction(UUID.randomUUID(), scale(amount), date, truncatedDescription);
+        var transaction = createTransaction(amount, date, description);
         storageService.storeTransaction(transaction);
         return transaction;
     }
 
+    /**
+     * Stores purchases as one storage batch applying the same rounding and truncation as {@link #storeTransaction}.
+     */
+    public List<Transaction> storeTransactions(List<Purchase> purchases) {
+        var transactions = new ArrayList<Transaction>(purchases.size());
+        for (var purchase : purchases) {
+            transactions.add(createTransaction(purchase.amount(), purchase.date(), purchase.description()));
+        }
+        storageService.storeTransactions(transactions);
+        return transactions;
+    }
+
     public ConvertedTransaction retrieveTransaction(UUID id, String currency) {
+        var transaction = findTransaction(id);
+        return convert(transaction, exchangeRateService.getExchangeRate(currency, transaction.date()));
+    }
+
+    /**
+     * Converts one purchase to many currencies: storage is read once and the rates of all the currencies are looked up
+     * in one call, which the exchange rate service answers concurrently or with a single request. Results follow the
+     * order of the currencies. Fails when one of the currencies has no rate for the purchase date.
+     */
+    public Map<String, ConvertedTransaction> retrieveTransaction(UUID id, List<String> currencies) {
+        var transaction = findTransaction(id);
+        var exchangeRates = await(exchangeRateService.getExchangeRatesAsync(currencies, transaction.date()));
+        var converted = new LinkedHashMap<String, ConvertedTransaction>();
+        for (var currency : currencies) {
+            var exchangeRate = exchangeRates.get(currency);
+            if (exchangeRate == null) {
+                throw new IllegalStateException(String.format("The purchase cannot be converted to %s.", currency));
+            }
+            converted.put(currency, convert(transaction, exchangeRate));
+        }
+        return converted;
+    }
+
+    /**
+     * Converts one purchase to every currency that has a rate for its date, ordered by currency.
+     */
+    public Map<String, ConvertedTransaction> retrieveTransactionInAllCurrencies(UUID id) {
+        var transaction = findTransaction(id);
+        var converted = new TreeMap<String, ConvertedTransaction>();
+        await(exchangeRateService.getAllExchangeRatesAsync(transaction.date()))
+                .forEach((currency, exchangeRate) -> converted.put(currency, convert(transaction, exchangeRate)));
+        return converted;
+    }
+
+    /**
+     * Looks the purchase up on the storage executor and composes the non-blocking rate fetch onto it, so no thread
+     * waits for the Treasury API. The rate depends on the purchase date, so the fetch starts once the lookup is done.
+     * Cancelling the result, or completing it exceptionally on a deadline, cancels the rate fetch or keeps it from
+     * starting.
+     */
+    public CompletableFuture<ConvertedTransaction> retrieveTransactionAsync(UUID id, String currency) {
+        var result = new CompletableFuture<ConvertedTransaction>();
+        var lookup = CompletableFuture.supplyAsync(() -> findTransaction(id), storageExecutor);
+        Utils.cancelling(result, lookup);
+        lookup.thenCompose(transaction -> {
+            var exchangeRate = exchangeRateService.getExchangeRateAsync(currency, transaction.date());
+            Utils.cancelling(result, exchangeRate);
+            return exchangeRate.thenApply(rate -> convert(transaction, rate));
+        }).whenComplete((converted, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(converted);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Converts many purchases in one pass: storage is read once and the rates of the purchase dates are resolved by an
+     * {@link ExchangeRateResolver}, which fetches a rate period once and keeps a few fetches in flight at a time.
+     * Results follow the order of the ids. Fails before producing any result when one of the purchases is not stored.
+     */
+    public Stream<ConvertedTransaction> retrieveTransactions(List<UUID> ids, String currency) {
+        var transactions = storageService.findTransactions(ids);
+        for (var id : ids) {
+            if (!transactions.containsKey(id)) {
+                throw new TransactionNotFoundException(id);
+            }
+        }
+        var dates = new HashSet<LocalDate>();
+        transactions.values().forEach(transaction -> dates.add(transaction.date()));
+        var exchangeRates = new ExchangeRateResolver(exchangeRateService, currency).resolve(dates);
+        return ids.stream().map(id -> {
+            var transaction = transactions.get(id);
+            return convert(transaction, await(exchangeRates).get(transaction.date()));
+        });
+    }
+
+    /**
+     * Passes stored purchases matching the query to the consumer as the storage reads them.
+     */
+    public void queryTransactions(TransactionQuery query, Consumer<Transaction> consumer) {
+        storageService.queryTransactions(query, consumer);
+    }
+
+    /**
+     * Converts stored purchases matching the query in chunks of {@value #QUERY_CONVERSION_CHUNK_SIZE}, each converted
+     * in parallel by the {@link ConversionPipeline} and passed on in the order the storage read them. The rates of a
+     * chunk are resolved by one {@link ExchangeRateResolver} for the whole query, so a rate period is fetched once per
+     * query and only a few fetches are in flight at a time.
+     */
+    public void queryTransactions(TransactionQuery query, String currency, Consumer<ConvertedTransaction> consumer) {
+        var resolver = new ExchangeRateResolver(exchangeRateService, currency);
+        var chunk = new ArrayList<Transaction>();
+        storageService.queryTransactions(query, transaction -> {
+            chunk.add(transaction);
+            if (chunk.size() == QUERY_CONVERSION_CHUNK_SIZE) {
+                conversionPipeline.convert(chunk, resolver::resolve).forEach(consumer);
+                chunk.clear();
+            }
+        });
+        conversionPipeline.convert(chunk, resolver::resolve).forEach(consumer);
+    }
+
+    private Transaction createTransaction(BigDecimal amount, LocalDate date, String description) {
+        var truncatedDescription = description.substring(0, Math.min(MAX_DESCRIPTION_LENGTH, description.length()));
+        return new Transaction(UUID.randomUUID(), scale(amount), date, truncatedDescription);
+    }
+
+    private Transaction findTransaction(UUID id) {
         var transaction = storageService.findTransaction(id);
         if (transaction == null) {
-            throw new IllegalStateException(String.format("Can not find the purchase with id %s.", id));
+            throw new TransactionNotFoundException(id);
         }
-        var exchangeRate = exchangeRateService.getExchangeRate(currency, transaction.date());
+        return transaction;
+    }
+
+    static ConvertedTransaction convert(Transaction transaction, BigDecimal exchangeRate) {
         if (exchangeRate == null) {
             throw new IllegalStateException("The purchase cannot be converted to the target currency.");
         }
@@ -44,10 +190,18 @@ public final class TransactionService {
                 transaction.description(),
                 transaction.amount(),
                 exchangeRate,
-                scale(transaction.amount().multiply(exchangeRate))
+                FixedPointMoney.multiply(transaction.amount(), exchangeRate)
         );
     }
 
+    private <T> T await(CompletableFuture<T> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
     private BigDecimal scale(BigDecimal value) {
         return value.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP);
     }
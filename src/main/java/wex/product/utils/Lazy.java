@@ -0,0 +1,47 @@
+package wex.product.utils;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Creates a value on the first call to {@link #get()} and returns the same value afterwards.
+ * <p>
+ * Lets the application build only the services the current command needs, which keeps the startup of short commands
+ * free of HTTP clients, caches and thread pools they never use.
+ */
+public final class Lazy<T> implements Supplier<T> {
+
+    private Supplier<? extends T> factory;
+    private volatile T value;
+
+    private Lazy(Supplier<? extends T> factory) {
+        this.factory = factory;
+    }
+
+    public static <T> Lazy<T> of(Supplier<? extends T> factory) {
+        return new Lazy<>(Objects.requireNonNull(factory));
+    }
+
+    @Override
+    public T get() {
+        var result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    result = Objects.requireNonNull(factory.get());
+                    value = result;
+                    factory = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether the value has been created already.
+     */
+    public boolean isCreated() {
+        return value != null;
+    }
+}
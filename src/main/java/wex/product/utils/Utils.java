@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public abstract class Utils {
@@ -21,4 +22,18 @@ public abstract class Utils {
             throw new RuntimeException(String.format("Can not read resource %s.", path), e);
         }
     }
+
+    /**
+     * Cancels {@code source} when {@code derived} completes exceptionally first, as a future derived by
+     * {@link CompletableFuture#thenApply} and the like does not pass a cancellation or timeout on to the future it was
+     * derived from. Returns {@code derived}.
+     */
+    public static <T> CompletableFuture<T> cancelling(CompletableFuture<T> derived, CompletableFuture<?> source) {
+        derived.whenComplete((result, error) -> {
+            if (error != null) {
+                source.cancel(true);
+            }
+        });
+        return derived;
+    }
 }
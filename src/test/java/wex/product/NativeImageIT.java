@@ -0,0 +1,119 @@
+package wex.product;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the same command scenarios against {@code app.jar} and the native executable on every storage engine and expects
+ * the same output. Run with {@code mvn -P native verify}, which builds both and passes their paths.
+ * <p>
+ * Retrieval is answered from a local exchange rates table put next to the storage, so no network is needed.
+ */
+public class NativeImageIT {
+
+    private static final Pattern RESULT_ID = Pattern.compile("Result: \"([0-9a-f-]{36})\"");
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final String EXCHANGE_RATES_TABLE = """
+            {"syncedAt":"2023-09-01","rates":[{"currency":"Euro Zone-Euro","date":"2023-06-30","exchangeRate":0.917},\
+            {"currency":"Canada-Dollar","date":"2023-06-30","exchangeRate":1.324}]}
+            """;
+
+    private static List<String> jarCommand;
+    private static List<String> nativeCommand;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeAll
+    public static void setUp() {
+        var jar = System.getProperty("app.jar");
+        var executable = System.getProperty("app.native");
+        assumeTrue(jar != null && Files.exists(Path.of(jar)), "app.jar is not built.");
+        assumeTrue(executable != null && Files.isExecutable(Path.of(executable)), "Native executable is not built.");
+        jarCommand = List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(), "-jar", jar);
+        nativeCommand = List.of(executable);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"log", "file", "mapped", "locking-file", "segmented", "jdbc"})
+    public void nativeExecutable_BehavesLikeJar_OnResetStoreAndRetrieve(String storage) throws Exception {
+        var expected = runScenario(jarCommand, Files.createDirectory(directory.resolve("jar")), storage);
+        var actual = runScenario(nativeCommand, Files.createDirectory(directory.resolve("native")), storage);
+
+        assertEquals(expected, actual);
+        assertEquals("Result: \"Done\"", expected.get(0));
+        assertTrue(expected.get(2).contains("\"convertedAmount\":11.46"), expected.get(2));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"log", "file", "mapped", "locking-file", "segmented", "jdbc"})
+    public void nativeExecutable_BehavesLikeJar_OnQueryPurgeAndMultiCurrencyRetrieve(String storage) throws Exception {
+        var expected = runQueryScenario(jarCommand, Files.createDirectory(directory.resolve("jar")), storage);
+        var actual = runQueryScenario(nativeCommand, Files.createDirectory(directory.resolve("native")), storage);
+
+        assertEquals(expected, actual);
+        assertTrue(expected.get(3).contains("\"Canada-Dollar\""), expected.get(3));
+    }
+
+    private static List<String> runScenario(List<String> launcher, Path workingDirectory, String storage) throws Exception {
+        Files.writeString(workingDirectory.resolve("exchange-rates-table.json"), EXCHANGE_RATES_TABLE);
+        var storageOption = "--storage=" + storage;
+        var outputs = new ArrayList<String>();
+        outputs.add(run(launcher, workingDirectory, "reset", storageOption));
+
+        var stored = run(launcher, workingDirectory, "store", "--amount=12.50", "--date=2023-08-17", "--description=Native", storageOption);
+        var matcher = RESULT_ID.matcher(stored);
+        assertTrue(matcher.matches(), stored);
+        var id = matcher.group(1);
+        outputs.add(stored.replace(id, "<id>"));
+
+        outputs.add(run(launcher, workingDirectory, "retrieve", "--id=" + id, "--currency=Euro Zone-Euro", storageOption).replace(id, "<id>"));
+        outputs.add(run(launcher, workingDirectory, "retrieve", "--id=00000000-0000-0000-0000-000000000000", "--currency=Euro Zone-Euro", storageOption));
+        return outputs;
+    }
+
+    private static List<String> runQueryScenario(List<String> launcher, Path workingDirectory, String storage) throws Exception {
+        Files.writeString(workingDirectory.resolve("exchange-rates-table.json"), EXCHANGE_RATES_TABLE);
+        var storageOption = "--storage=" + storage;
+        var outputs = new ArrayList<String>();
+        outputs.add(run(launcher, workingDirectory, "reset", storageOption));
+        var stored = run(launcher, workingDirectory, "store", "--amount=12.50", "--date=2023-08-17", "--description=Native", storageOption);
+        outputs.add(stored);
+        outputs.add(run(launcher, workingDirectory, "store", "--amount=7.25", "--date=2019-05-02", "--description=Old", storageOption));
+
+        var matcher = RESULT_ID.matcher(stored);
+        assertTrue(matcher.matches(), stored);
+        outputs.add(run(launcher, workingDirectory, "retrieve", "--id=" + matcher.group(1), "--currency=Euro Zone-Euro,Canada-Dollar", storageOption));
+        outputs.add(run(launcher, workingDirectory, "query", "--from=2019-01-01", storageOption));
+        outputs.add(run(launcher, workingDirectory, "query", "--prefix=Nat", "--currency=Canada-Dollar", storageOption));
+        outputs.add(run(launcher, workingDirectory, "purge", "--before=2020-01-01", storageOption));
+        outputs.add(run(launcher, workingDirectory, "query", "--from=2019-01-01", storageOption));
+        return outputs.stream().map(output -> ID.matcher(output).replaceAll("<id>")).toList();
+    }
+
+    private static String run(List<String> launcher, Path workingDirectory, String... arguments) throws IOException, InterruptedException {
+        var command = new ArrayList<>(launcher);
+        command.addAll(List.of(arguments));
+        var process = new ProcessBuilder(command)
+                .directory(workingDirectory.toFile())
+                .redirectErrorStream(true)
+                .start();
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).strip();
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS), "Process did not exit.");
+        return output;
+    }
+}
@@ -9,15 +9,25 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import wex.product.interactor.Interactor;
 import wex.product.interactor.commands.*;
+import wex.product.server.TransactionServer;
+import wex.product.services.exchange.LocalExchangeRateService;
 import wex.product.services.storage.StorageService;
 import wex.product.services.storage.Transaction;
+import wex.product.services.storage.TransactionQuery;
 import wex.product.services.transaction.ConvertedTransaction;
+import wex.product.services.transaction.TransactionImporter;
 import wex.product.services.transaction.TransactionService;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,16 +42,32 @@ public class RunnerTest {
     @Mock
     private TransactionService transactionService;
 
+    @Mock
+    private LocalExchangeRateService localExchangeRateService;
+
+    @Mock
+    private TransactionImporter transactionImporter;
+
+    @Mock
+    private TransactionServer transactionServer;
+
     private Runner runner;
 
     @BeforeEach
     public void setUp() {
-        runner = new Runner(interactor, storageService, transactionService);
+        runner = new Runner(
+                interactor,
+                () -> storageService,
+                () -> transactionService,
+                () -> localExchangeRateService,
+                () -> transactionImporter,
+                () -> transactionServer
+        );
     }
 
     @AfterEach
     public void tearDown() {
-        var mocks = new Object[]{interactor, storageService, transactionService};
+        var mocks = new Object[]{interactor, storageService, transactionService, localExchangeRateService, transactionImporter, transactionServer};
         verifyNoMoreInteractions(mocks);
         Mockito.reset(mocks);
     }
@@ -100,7 +126,7 @@ public class RunnerTest {
 
     @Test
     public void run_RetrievesTransactionAndReturnsIt_WhenRetrieveCommandIsPassed() throws CommandException {
-        var command = new RetrieveCommand(UUID.randomUUID(), "currency");
+        var command = new RetrieveCommand(UUID.randomUUID(), List.of("currency"));
         var convertedTransaction = new ConvertedTransaction(
                 UUID.randomUUID(),
                 LocalDate.now(),
@@ -111,12 +137,153 @@ public class RunnerTest {
         );
 
         when(interactor.getCommand()).thenReturn(command);
-        when(transactionService.retrieveTransaction(command.id(), command.currency())).thenReturn(convertedTransaction);
+        when(transactionService.retrieveTransaction(command.id(), "currency")).thenReturn(convertedTransaction);
 
         runner.run();
 
         verify(interactor).printResult(convertedTransaction);
     }
 
+    @Test
+    public void run_PrintsConversionsByCurrency_WhenRetrieveCommandHasManyCurrencies() throws CommandException {
+        var command = new RetrieveCommand(UUID.randomUUID(), List.of("first", "second"));
+        var conversions = Map.of(
+                "first", new ConvertedTransaction(command.id(), LocalDate.now(), "Description", BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN),
+                "second", new ConvertedTransaction(command.id(), LocalDate.now(), "Description", BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE)
+        );
+
+        when(interactor.getCommand()).thenReturn(command);
+        when(transactionService.retrieveTransaction(command.id(), command.currencies())).thenReturn(conversions);
+
+        runner.run();
+
+        verify(interactor).printResult(conversions);
+    }
+
+    @Test
+    public void run_PrintsConversionsToAllCurrencies_WhenRetrieveCommandHasNoCurrencies() throws CommandException {
+        var command = new RetrieveCommand(UUID.randomUUID(), List.of());
+        var conversions = Map.of(
+                "first", new ConvertedTransaction(command.id(), LocalDate.now(), "Description", BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN)
+        );
+
+        when(interactor.getCommand()).thenReturn(command);
+        when(transactionService.retrieveTransactionInAllCurrencies(command.id())).thenReturn(conversions);
+
+        runner.run();
+
+        verify(interactor).printResult(conversions);
+    }
+
+    @Test
+    public void run_PrintsJsonLinePerTransaction_WhenRetrieveBatchCommandIsPassed() throws CommandException {
+        var first = new ConvertedTransaction(UUID.randomUUID(), LocalDate.now(), "First", BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN);
+        var second = new ConvertedTransaction(UUID.randomUUID(), LocalDate.now(), "Second", BigDecimal.TEN, BigDecimal.TEN, BigDecimal.valueOf(100));
+        var command = new RetrieveBatchCommand(List.of(first.id(), second.id()), "currency");
+
+        when(interactor.getCommand()).thenReturn(command);
+        when(transactionService.retrieveTransactions(command.ids(), command.currency())).thenReturn(Stream.of(first, second));
+
+        runner.run();
+
+        var inOrder = inOrder(interactor);
+        inOrder.verify(interactor).printJsonLine(first);
+        inOrder.verify(interactor).printJsonLine(second);
+    }
+
+    @Test
+    public void run_ImportsTransactionsAndReturnsTheirCount_WhenImportCommandIsPassed() throws CommandException {
+        when(interactor.getCommand()).thenReturn(new ImportCommand("purchases.csv"));
+        when(transactionImporter.importFile(Path.of("purchases.csv"))).thenReturn(3L);
+
+        runner.run();
+
+        verify(interactor).printResult(3L);
+    }
+
+    @Test
+    public void run_SyncsExchangeRatesAndReturnsTheirCount_WhenSyncCommandIsPassed() throws CommandException {
+        when(interactor.getCommand()).thenReturn(new SyncCommand());
+        when(localExchangeRateService.sync()).thenReturn(42);
+
+        runner.run();
+
+        verify(interactor).printResult(42);
+    }
+
+    @Test
+    public void run_ServesUntilServerIsStopped_WhenServeCommandIsPassed() throws Exception {
+        when(interactor.getCommand()).thenReturn(new ServeCommand(0));
+        when(transactionServer.start(0)).thenReturn(8123);
+
+        runner.run();
+
+        var inOrder = inOrder(interactor, transactionServer);
+        inOrder.verify(transactionServer).start(0);
+        inOrder.verify(interactor).printResult("Listening on http://localhost:8123");
+        inOrder.verify(transactionServer).awaitStop();
+    }
+
+    @Test
+    public void run_DeletesOlderTransactions_WhenPurgeCommandIsPassed() throws CommandException {
+        var date = LocalDate.parse("2020-01-01");
+        when(interactor.getCommand()).thenReturn(new PurgeCommand(date));
+
+        runner.run();
+
+        verify(storageService).deleteTransactionsBefore(date);
+        verify(interactor).printResult("Done");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void run_PrintsJsonLinePerStoredTransaction_WhenQueryCommandWithoutCurrencyIsPassed() throws CommandException {
+        var transaction = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.parse("2023-01-01"), "WALMART");
+        var query = new TransactionQuery(LocalDate.parse("2023-01-01"), null, "WAL");
+        when(interactor.getCommand()).thenReturn(new QueryCommand(query.from(), null, "WAL", null));
+        doAnswer(invocation -> {
+            ((Consumer<Transaction>) invocation.getArgument(1)).accept(transaction);
+            return null;
+        }).when(transactionService).queryTransactions(eq(query), any(Consumer.class));
+
+        runner.run();
+
+        verify(interactor).printJsonLine(transaction);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void run_PrintsJsonLinePerConvertedTransaction_WhenQueryCommandWithCurrencyIsPassed() throws CommandException {
+        var converted = new ConvertedTransaction(UUID.randomUUID(), LocalDate.now(), "WALMART", BigDecimal.ONE, BigDecimal.TEN, BigDecimal.TEN);
+        var query = TransactionQuery.byDescriptionPrefix("WAL");
+        when(interactor.getCommand()).thenReturn(new QueryCommand(null, null, "WAL", "currency"));
+        doAnswer(invocation -> {
+            ((Consumer<ConvertedTransaction>) invocation.getArgument(2)).accept(converted);
+            return null;
+        }).when(transactionService).queryTransactions(eq(query), eq("currency"), any(Consumer.class));
+
+        runner.run();
+
+        verify(interactor).printJsonLine(converted);
+    }
+
+    @Test
+    public void run_AsksOnlyForServicesTheCommandNeeds() throws CommandException {
+        when(interactor.getCommand()).thenReturn(new ResetCommand());
+        var resetRunner = new Runner(
+                interactor,
+                () -> storageService,
+                () -> fail("Transaction service is not needed to reset storage."),
+                () -> fail("Exchange rate service is not needed to reset storage."),
+                () -> fail("Importer is not needed to reset storage."),
+                () -> fail("Server is not needed to reset storage.")
+        );
+
+        resetRunner.run();
+
+        verify(storageService).reset();
+        verify(interactor).printResult("Done");
+    }
+
     private static class UnknownCommand implements Command {}
 }
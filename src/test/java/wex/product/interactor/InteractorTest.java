@@ -5,18 +5,31 @@ import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 import wex.product.interactor.commands.CommandException;
+import wex.product.interactor.commands.ImportCommand;
 import wex.product.interactor.commands.ResetCommand;
+import wex.product.interactor.commands.RetrieveBatchCommand;
 import wex.product.interactor.commands.RetrieveCommand;
 import wex.product.interactor.commands.StoreCommand;
+import wex.product.interactor.commands.PurgeCommand;
+import wex.product.interactor.commands.QueryCommand;
+import wex.product.interactor.commands.ServeCommand;
+import wex.product.interactor.commands.SyncCommand;
 import wex.product.mapper.ObjectMapperFactory;
 import wex.product.utils.LaunchParameters;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -47,9 +60,9 @@ public class InteractorTest {
     @Test
     public void printResult_PrintsJson() {
         var outputStream = new ByteArrayOutputStream();
-        var command = new RetrieveCommand(UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae"), "currency");
+        var command = new RetrieveCommand(UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae"), List.of("currency"));
         setupInteractor(outputStream).printResult(command);
-        assertEquals(String.format("Result: {\"id\":\"06cbf119-2111-4a08-a50e-f71c1afebfae\",\"currency\":\"currency\"}%n"), outputStream.toString());
+        assertEquals(String.format("Result: {\"id\":\"06cbf119-2111-4a08-a50e-f71c1afebfae\",\"currencies\":[\"currency\"]}%n"), outputStream.toString());
     }
 
     @Test
@@ -154,7 +167,146 @@ public class InteractorTest {
     public void getCommand_ReturnsRetrieveCommand_WhenAllArgumentsProvided() throws CommandException {
         var interactor = setupInteractor("retrieve", "--id=06cbf119-2111-4a08-a50e-f71c1afebfae", "--currency=dollar");
         var result = interactor.getCommand();
-        assertEquals(new RetrieveCommand(UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae"), "dollar"), result);
+        assertEquals(new RetrieveCommand(UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae"), List.of("dollar")), result);
+    }
+
+    @Test
+    public void getCommand_ReturnsRetrieveCommandWithEachCurrencyOnce_WhenCurrencyListProvided() throws CommandException {
+        var interactor = setupInteractor("retrieve", "--id=06cbf119-2111-4a08-a50e-f71c1afebfae", "--currency=Euro Zone-Euro, dollar,,Euro Zone-Euro");
+        var result = interactor.getCommand();
+        assertEquals(new RetrieveCommand(UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae"), List.of("Euro Zone-Euro", "dollar")), result);
+    }
+
+    @Test
+    public void getCommand_ReturnsRetrieveCommandForAllCurrencies_WhenCurrencyIsAll() throws CommandException {
+        var interactor = setupInteractor("retrieve", "--id=06cbf119-2111-4a08-a50e-f71c1afebfae", "--currency=all");
+        var result = (RetrieveCommand) interactor.getCommand();
+        assertTrue(result.allCurrencies());
+    }
+
+    @Test
+    public void getCommand_ThrowsCommandException_WhenCurrencyListIsBlank() {
+        var interactor = setupInteractor("retrieve", "--id=06cbf119-2111-4a08-a50e-f71c1afebfae", "--currency= , ");
+        var exception = assertThrows(CommandException.class, interactor::getCommand);
+        assertEquals("Argument currency is not provided.", exception.getMessage());
+    }
+
+    @Test
+    public void printJsonLine_PrintsJsonWithoutPrefix() {
+        var outputStream = new ByteArrayOutputStream();
+        var command = new RetrieveCommand(UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae"), List.of("currency"));
+        setupInteractor(outputStream).printJsonLine(command);
+        assertEquals(String.format("{\"id\":\"06cbf119-2111-4a08-a50e-f71c1afebfae\",\"currencies\":[\"currency\"]}%n"), outputStream.toString());
+    }
+
+    @Test
+    public void getCommand_ReturnsRetrieveBatchCommand_WithIdsFromStandardInput() throws CommandException {
+        var input = "06cbf119-2111-4a08-a50e-f71c1afebfae\n\n 5a0c1bd8-4d4f-4b44-8d1c-2e1df2f1c6a1 \n";
+        var interactor = new Interactor(
+                new LaunchParameters("retrieve-batch", "--currency=dollar"),
+                new PrintStream(new ByteArrayOutputStream()),
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                objectMapper
+        );
+        var result = interactor.getCommand();
+        var ids = List.of(UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae"), UUID.fromString("5a0c1bd8-4d4f-4b44-8d1c-2e1df2f1c6a1"));
+        assertEquals(new RetrieveBatchCommand(ids, "dollar"), result);
+    }
+
+    @Test
+    public void getCommand_ReturnsRetrieveBatchCommand_WithIdsFromFile(@TempDir Path directory) throws IOException, CommandException {
+        var file = Files.writeString(directory.resolve("ids.txt"), "06cbf119-2111-4a08-a50e-f71c1afebfae");
+        var interactor = setupInteractor("retrieve-batch", "--file=" + file, "--currency=dollar");
+        var result = interactor.getCommand();
+        assertEquals(new RetrieveBatchCommand(List.of(UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae")), "dollar"), result);
+    }
+
+    @Test
+    public void getCommand_ThrowsCommandException_WhenIdsFileCanNotBeRead(@TempDir Path directory) {
+        var file = directory.resolve("missing.txt");
+        var interactor = setupInteractor("retrieve-batch", "--file=" + file, "--currency=dollar");
+        var exception = assertThrows(CommandException.class, interactor::getCommand);
+        assertEquals(String.format("Can not read ids from %s.", file), exception.getMessage());
+    }
+
+    @Test
+    public void getCommand_ThrowsCommandException_WhenBatchIdIsNotAUuid(@TempDir Path directory) throws IOException {
+        var file = Files.writeString(directory.resolve("ids.txt"), "06cbf119-2111-4a08-a50e-f71c1afebfae\nx\n");
+        var interactor = setupInteractor("retrieve-batch", "--file=" + file, "--currency=dollar");
+        var exception = assertThrows(CommandException.class, interactor::getCommand);
+        assertEquals("Line 2 of ids is not a valid UUID.", exception.getMessage());
+    }
+
+    @Test
+    public void getCommand_ThrowsCommandException_WhenNoCurrencyArgumentProvidedForRetrieveBatchCommand() {
+        var interactor = setupInteractor("retrieve-batch");
+        var exception = assertThrows(CommandException.class, interactor::getCommand);
+        assertEquals("Argument currency is not provided.", exception.getMessage());
+    }
+
+    @Test
+    public void getCommand_ReturnsImportCommand_WhenFileArgumentProvided() throws CommandException {
+        var interactor = setupInteractor("import", "--file=purchases.csv");
+        var result = interactor.getCommand();
+        assertEquals(new ImportCommand("purchases.csv"), result);
+    }
+
+    @Test
+    public void getCommand_ThrowsCommandException_WhenNoFileArgumentProvidedForImportCommand() {
+        var interactor = setupInteractor("import");
+        var exception = assertThrows(CommandException.class, interactor::getCommand);
+        assertEquals("Argument file is not provided.", exception.getMessage());
+    }
+
+    @Test
+    public void getCommand_ReturnsSyncCommand() throws CommandException {
+        var interactor = setupInteractor("sync");
+        var result = interactor.getCommand();
+        assertEquals(new SyncCommand(), result);
+    }
+
+    @Test
+    public void getCommand_ReturnsServeCommandWithDefaultPort_WhenNoPortArgumentProvided() throws CommandException {
+        assertEquals(new ServeCommand(8080), setupInteractor("serve").getCommand());
+        assertEquals(new ServeCommand(9000), setupInteractor("serve", "--port=9000").getCommand());
+    }
+
+    @Test
+    public void getCommand_ThrowsCommandException_WhenPortArgumentIsNotValid() {
+        for (var port : new String[]{"x", "-1", "65536"}) {
+            var interactor = setupInteractor("serve", "--port=" + port);
+            var exception = assertThrows(CommandException.class, interactor::getCommand);
+            assertEquals("Argument port is not a valid port number.", exception.getMessage());
+        }
+    }
+
+    @Test
+    public void getCommand_ReturnsPurgeCommand_WhenValidBeforeDateProvided() throws CommandException {
+        assertEquals(new PurgeCommand(LocalDate.parse("2020-01-01")), setupInteractor("purge", "--before=2020-01-01").getCommand());
+    }
+
+    @Test
+    public void getCommand_ThrowsCommandException_WhenPurgeBeforeDateIsNotValid() {
+        var exception = assertThrows(CommandException.class, setupInteractor("purge", "--before=yesterday")::getCommand);
+        assertEquals("Argument before is not a valid ISO 8601 date.", exception.getMessage());
+    }
+
+    @Test
+    public void getCommand_ReturnsQueryCommand_WithOnlyProvidedCriteria() throws CommandException {
+        assertEquals(
+                new QueryCommand(LocalDate.parse("2023-01-01"), LocalDate.parse("2023-03-31"), "WAL", "Euro Zone-Euro"),
+                setupInteractor("query", "--from=2023-01-01", "--to=2023-03-31", "--prefix=WAL", "--currency=Euro Zone-Euro").getCommand()
+        );
+        assertEquals(new QueryCommand(null, null, "WAL", null), setupInteractor("query", "--prefix=WAL").getCommand());
+        assertEquals(new QueryCommand(null, null, null, null), setupInteractor("query").getCommand());
+    }
+
+    @Test
+    public void getCommand_ThrowsCommandException_WhenQueryDatesAreNotValid() {
+        var exception = assertThrows(CommandException.class, setupInteractor("query", "--from=yesterday")::getCommand);
+        assertEquals("Argument from is not a valid ISO 8601 date.", exception.getMessage());
+        exception = assertThrows(CommandException.class, setupInteractor("query", "--from=2023-02-01", "--to=2023-01-01")::getCommand);
+        assertEquals("Argument from is after argument to.", exception.getMessage());
     }
 
     private Interactor setupInteractor(String... args) {
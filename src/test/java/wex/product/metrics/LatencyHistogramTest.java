@@ -0,0 +1,52 @@
+package wex.product.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void indexOf_MapsValuesIntoBucketsCoveringThem() {
+        for (var value : new long[]{0, 1, 15, 16, 17, 31, 32, 33, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            var index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+        }
+    }
+
+    @Test
+    public void snapshot_ReportsPercentilesWithinBucketPrecision() {
+        var histogram = new LatencyHistogram();
+        for (var i = 1; i <= 1_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+
+        var snapshot = histogram.snapshot();
+
+        assertEquals(1_000, snapshot.count());
+        assertEquals(500_500, snapshot.meanNanos());
+        assertWithinPrecision(500_000, snapshot.p50Nanos());
+        assertWithinPrecision(900_000, snapshot.p90Nanos());
+        assertWithinPrecision(990_000, snapshot.p99Nanos());
+        assertEquals(1_000_000, snapshot.maxNanos());
+    }
+
+    @Test
+    public void snapshot_ReportsZeros_WhenNothingIsRecorded() {
+        assertEquals(new LatencyHistogram.Snapshot(0, 0, 0, 0, 0, 0, 0), new LatencyHistogram().snapshot());
+    }
+
+    @Test
+    public void record_TreatsNegativeDurationsAsZero() {
+        var histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.snapshot().maxNanos());
+        assertEquals(1, histogram.snapshot().count());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / LatencyHistogram.SUB_BUCKETS,
+                String.format("%d is not within bucket precision of %d", actual, expected));
+    }
+}
@@ -0,0 +1,47 @@
+package wex.product.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void counterAndHistogram_ReturnSameInstrumentForSameName() {
+        var metrics = new Metrics();
+        assertSame(metrics.counter("a"), metrics.counter("a"));
+        assertSame(metrics.histogram("b"), metrics.histogram("b"));
+    }
+
+    @Test
+    public void dump_WritesSnapshotAsJson() throws IOException {
+        var metrics = new Metrics();
+        metrics.counter("storage.read.misses").add(2);
+        metrics.gauge("exchange.cache.hitRatio", () -> 0.75);
+        metrics.histogram("storage.read").record(1_000);
+        var path = directory.resolve("metrics.json");
+
+        metrics.dump(path, ObjectMapperFactory.create());
+
+        var json = ObjectMapperFactory.create().readTree(path.toFile());
+        assertEquals(2, json.at("/counters/storage.read.misses").asLong());
+        assertEquals(0.75, json.at("/gauges/exchange.cache.hitRatio").asDouble());
+        assertEquals(1, json.at("/histograms/storage.read/count").asLong());
+        assertEquals(1_000, json.at("/histograms/storage.read/maxNanos").asLong());
+    }
+
+    @Test
+    public void dump_ThrowsRuntimeException_WhenCanNotWrite() {
+        var path = directory.resolve("missing").resolve("metrics.json");
+        var exception = assertThrows(RuntimeException.class, () -> new Metrics().dump(path, ObjectMapperFactory.create()));
+        assertEquals("Can not write metrics.", exception.getMessage());
+    }
+}
@@ -0,0 +1,167 @@
+package wex.product.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import wex.product.mapper.ObjectMapperFactory;
+import wex.product.services.storage.Transaction;
+import wex.product.services.transaction.ConversionExecutor;
+import wex.product.services.transaction.ConvertedTransaction;
+import wex.product.services.transaction.TransactionNotFoundException;
+import wex.product.services.transaction.TransactionService;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TransactionServerTest {
+
+    private final UUID id = UUID.fromString("06cbf119-2111-4a08-a50e-f71c1afebfae");
+
+    private final ConvertedTransaction convertedTransaction = new ConvertedTransaction(
+            id, LocalDate.parse("2023-08-17"), "WALMART", new BigDecimal("10.00"), new BigDecimal("1.5"), new BigDecimal("15.00"));
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private TransactionService transactionService;
+
+    private ConversionExecutor conversionExecutor;
+
+    private TransactionServer server;
+
+    private int port;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        transactionService = mock(TransactionService.class);
+        conversionExecutor = mock(ConversionExecutor.class);
+        server = new TransactionServer(transactionService, conversionExecutor, ObjectMapperFactory.create(), Executors.newFixedThreadPool(4));
+        port = server.start(0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void start_ThrowsIllegalStateException_WhenAlreadyStarted() {
+        var exception = assertThrows(IllegalStateException.class, () -> server.start(0));
+        assertEquals("Server is already started.", exception.getMessage());
+    }
+
+    @Test
+    public void post_StoresTransaction() throws Exception {
+        var transaction = new Transaction(id, new BigDecimal("10.00"), LocalDate.parse("2023-08-17"), "WALMART");
+        when(transactionService.storeTransaction(new BigDecimal("9.999"), LocalDate.parse("2023-08-17"), "WALMART")).thenReturn(transaction);
+
+        var response = post("/transactions", "{\"amount\":9.999,\"date\":\"2023-08-17\",\"description\":\"WALMART\"}");
+
+        assertEquals(201, response.statusCode());
+        assertEquals("{\"id\":\"06cbf119-2111-4a08-a50e-f71c1afebfae\",\"amount\":10.00,\"date\":\"2023-08-17\",\"description\":\"WALMART\"}", response.body());
+    }
+
+    @Test
+    public void post_RespondsBadRequest_WhenPurchaseIsIncomplete() throws Exception {
+        var response = post("/transactions", "{\"amount\":1,\"date\":\"2023-08-17\"}");
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"Field description is not provided.\"}", response.body());
+
+        response = post("/transactions", "{");
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"Request body is not valid JSON of the expected shape.\"}", response.body());
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    public void get_RetrievesConvertedTransaction() throws Exception {
+        when(conversionExecutor.convert(id, "Euro Zone-Euro")).thenReturn(CompletableFuture.completedFuture(convertedTransaction));
+
+        var response = get("/transactions/" + id + "?currency=Euro%20Zone-Euro");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"convertedAmount\":15.00"));
+    }
+
+    @Test
+    public void get_RespondsWithStatusMatchingFailure() throws Exception {
+        when(conversionExecutor.convert(id, "missing"))
+                .thenReturn(CompletableFuture.failedFuture(new TransactionNotFoundException(id)));
+        when(conversionExecutor.convert(id, "unknown"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("The purchase cannot be converted to the target currency.")));
+        when(conversionExecutor.convert(id, "broken"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Failed to fetch exchange rate.")));
+        when(conversionExecutor.convert(id, "slow")).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        assertEquals(404, get("/transactions/" + id + "?currency=missing").statusCode());
+        assertEquals(422, get("/transactions/" + id + "?currency=unknown").statusCode());
+        assertEquals(500, get("/transactions/" + id + "?currency=broken").statusCode());
+        assertEquals(504, get("/transactions/" + id + "?currency=slow").statusCode());
+        assertEquals(400, get("/transactions/" + id).statusCode());
+        assertEquals(400, get("/transactions/x?currency=dollar").statusCode());
+        assertEquals(404, get("/unknown").statusCode());
+    }
+
+    @Test
+    public void post_StreamsBatchAsJsonLines() throws Exception {
+        var otherId = UUID.randomUUID();
+        var other = new ConvertedTransaction(otherId, LocalDate.parse("2023-08-18"), "TARGET", BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+        when(transactionService.retrieveTransactions(List.of(id, otherId), "dollar")).thenReturn(Stream.of(convertedTransaction, other));
+
+        var response = post("/transactions/retrieve-batch", String.format("{\"ids\":[\"%s\",\"%s\"],\"currency\":\"dollar\"}", id, otherId));
+
+        assertEquals(200, response.statusCode());
+        var lines = response.body().lines().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains(id.toString()));
+        assertTrue(lines.get(1).contains(otherId.toString()));
+    }
+
+    @Test
+    public void post_RespondsNotFound_WhenBatchContainsUnknownId() throws Exception {
+        when(transactionService.retrieveTransactions(List.of(id), "dollar")).thenThrow(new TransactionNotFoundException(id));
+
+        var response = post("/transactions/retrieve-batch", String.format("{\"ids\":[\"%s\"],\"currency\":\"dollar\"}", id));
+
+        assertEquals(404, response.statusCode());
+        assertEquals("{\"error\":\"Can not find the purchase with id 06cbf119-2111-4a08-a50e-f71c1afebfae.\"}", response.body());
+    }
+
+    @Test
+    public void awaitStop_Returns_WhenServerIsStopped() throws Exception {
+        var waiter = CompletableFuture.runAsync(() -> {
+            try {
+                server.awaitStop();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.stop(0);
+        waiter.get();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
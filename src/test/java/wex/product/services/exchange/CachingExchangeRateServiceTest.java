@@ -0,0 +1,266 @@
+package wex.product.services.exchange;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingExchangeRateServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.parse("2023-09-01");
+    private static final LocalDate PAST_DATE = LocalDate.parse("2023-06-30");
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.create();
+
+    private final MutableClock clock = new MutableClock(TODAY.atStartOfDay(ZoneOffset.UTC).toInstant());
+
+    @Mock
+    private ExchangeRateService delegate;
+
+    @TempDir
+    private Path directory;
+
+    @AfterEach
+    public void tearDown() {
+        verifyNoMoreInteractions(delegate);
+        Mockito.reset(delegate);
+    }
+
+    @Test
+    public void constructor_WorksWithDefaults() {
+        new CachingExchangeRateService(delegate, "test.json", objectMapper);
+    }
+
+    @Test
+    public void getExchangeRate_FetchesRateOnceAndServesItFromMemory() {
+        var service = createService(directory.resolve("cache.json"), 10);
+        when(delegate.getExchangeRateRecordAsync("currency", PAST_DATE)).thenReturn(record(PAST_DATE, BigDecimal.TEN));
+
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", PAST_DATE));
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", PAST_DATE));
+
+        verify(delegate).getExchangeRateRecordAsync("currency", PAST_DATE);
+        assertEquals(new CachingExchangeRateService.Stats(1, 0, 1), service.stats());
+        assertEquals(0.5, service.stats().hitRatio());
+    }
+
+    @Test
+    public void getExchangeRateAsync_FetchesRateAsynchronouslyOnceAndServesItFromMemory() {
+        var service = createService(directory.resolve("cache.json"), 10);
+        when(delegate.getExchangeRateRecordAsync("currency", PAST_DATE)).thenReturn(record(PAST_DATE, BigDecimal.TEN));
+
+        assertEquals(BigDecimal.TEN, service.getExchangeRateAsync("currency", PAST_DATE).join());
+        assertEquals(BigDecimal.TEN, service.getExchangeRateAsync("currency", PAST_DATE).join());
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", PAST_DATE));
+
+        verify(delegate).getExchangeRateRecordAsync("currency", PAST_DATE);
+        assertEquals(new CachingExchangeRateService.Stats(2, 0, 1), service.stats());
+    }
+
+    @Test
+    public void getExchangeRatesAsync_AsksDelegateForMissingCurrenciesOnlyAndPersistsThemOnce() throws IOException {
+        var cachePath = directory.resolve("cache.json");
+        var service = createService(cachePath, 10);
+        when(delegate.getExchangeRateRecordAsync("cached", PAST_DATE))
+                .thenReturn(CompletableFuture.completedFuture(new ExchangeRateRecord("cached", PAST_DATE, BigDecimal.ONE)));
+        when(delegate.getExchangeRatesAsync(List.of("first", "unknown"), PAST_DATE))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("first", BigDecimal.TEN)));
+        service.getExchangeRate("cached", PAST_DATE);
+
+        var rates = service.getExchangeRatesAsync(List.of("first", "cached", "unknown"), PAST_DATE).join();
+        var cachedRates = service.getExchangeRatesAsync(List.of("unknown", "first"), PAST_DATE).join();
+
+        assertEquals(List.of("first", "cached"), List.copyOf(rates.keySet()));
+        assertEquals(BigDecimal.TEN, rates.get("first"));
+        assertEquals(Map.of("first", BigDecimal.TEN), cachedRates);
+        verify(delegate).getExchangeRateRecordAsync("cached", PAST_DATE);
+        verify(delegate).getExchangeRatesAsync(List.of("first", "unknown"), PAST_DATE);
+        assertEquals(new CachingExchangeRateService.Stats(3, 0, 3), service.stats());
+        assertTrue(Files.readString(cachePath).contains("{\"currency\":\"first\",\"from\":\"2023-06-30\",\"to\":\"2023-06-30\",\"rate\":10}"));
+    }
+
+    @Test
+    public void getAllExchangeRatesAsync_AsksDelegateAndCachesReturnedRates() {
+        var service = createService(directory.resolve("cache.json"), 10);
+        when(delegate.getAllExchangeRatesAsync(PAST_DATE)).thenReturn(CompletableFuture.completedFuture(Map.of("currency", BigDecimal.TEN)));
+
+        assertEquals(Map.of("currency", BigDecimal.TEN), service.getAllExchangeRatesAsync(PAST_DATE).join());
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", PAST_DATE));
+
+        verify(delegate).getAllExchangeRatesAsync(PAST_DATE);
+    }
+
+    @Test
+    public void getExchangeRate_CachesMissingRates() {
+        var service = createService(directory.resolve("cache.json"), 10);
+        when(delegate.getExchangeRateRecordAsync("currency", PAST_DATE)).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertNull(service.getExchangeRate("currency", PAST_DATE));
+        assertNull(service.getExchangeRate("currency", PAST_DATE));
+
+        verify(delegate).getExchangeRateRecordAsync("currency", PAST_DATE);
+    }
+
+    @Test
+    public void getExchangeRate_ServesStableRatesFromFileAfterRestart() {
+        var cachePath = directory.resolve("cache.json");
+        when(delegate.getExchangeRateRecordAsync("currency", PAST_DATE)).thenReturn(record(PAST_DATE, BigDecimal.TEN));
+        createService(cachePath, 10).getExchangeRate("currency", PAST_DATE);
+
+        var restartedService = createService(cachePath, 10);
+        assertEquals(BigDecimal.TEN, restartedService.getExchangeRate("currency", PAST_DATE));
+        assertEquals(BigDecimal.TEN, restartedService.getExchangeRate("currency", PAST_DATE));
+
+        verify(delegate).getExchangeRateRecordAsync("currency", PAST_DATE);
+        assertEquals(new CachingExchangeRateService.Stats(1, 1, 0), restartedService.stats());
+    }
+
+    @Test
+    public void getExchangeRate_KeepsRecentRatesInMemoryOnlyUntilTheyExpire() {
+        var cachePath = directory.resolve("cache.json");
+        var service = createService(cachePath, 10);
+        when(delegate.getExchangeRateRecordAsync("currency", TODAY)).thenReturn(record(TODAY, BigDecimal.ONE), record(TODAY, BigDecimal.TEN));
+
+        assertEquals(BigDecimal.ONE, service.getExchangeRate("currency", TODAY));
+        clock.advance(Duration.ofMinutes(59));
+        assertEquals(BigDecimal.ONE, service.getExchangeRate("currency", TODAY));
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", TODAY));
+
+        verify(delegate, times(2)).getExchangeRateRecordAsync("currency", TODAY);
+        assertFalse(Files.exists(cachePath));
+    }
+
+    @Test
+    public void getExchangeRate_EvictsLeastRecentlyUsedEntries() {
+        var service = createService(directory.resolve("cache.json"), 2);
+        var otherDate = TODAY.minusDays(1);
+        var evictedDate = TODAY.minusDays(2);
+        when(delegate.getExchangeRateRecordAsync(eq("currency"), any()))
+                .thenAnswer(invocation -> record(invocation.getArgument(1), BigDecimal.ONE));
+
+        service.getExchangeRate("currency", evictedDate);
+        service.getExchangeRate("currency", TODAY);
+        service.getExchangeRate("currency", otherDate);
+        service.getExchangeRate("currency", TODAY);
+        service.getExchangeRate("currency", evictedDate);
+
+        verify(delegate, times(2)).getExchangeRateRecordAsync("currency", evictedDate);
+        verify(delegate).getExchangeRateRecordAsync("currency", TODAY);
+        verify(delegate).getExchangeRateRecordAsync("currency", otherDate);
+    }
+
+    @Test
+    public void getExchangeRate_IgnoresDamagedCacheFile() throws IOException {
+        var cachePath = directory.resolve("cache.json");
+        Files.writeString(cachePath, "{");
+        when(delegate.getExchangeRateRecordAsync("currency", PAST_DATE)).thenReturn(record(PAST_DATE, BigDecimal.TEN));
+
+        assertEquals(BigDecimal.TEN, createService(cachePath, 10).getExchangeRate("currency", PAST_DATE));
+
+        verify(delegate).getExchangeRateRecordAsync("currency", PAST_DATE);
+        assertEquals("{\"currency\":\"currency\",\"from\":\"2023-06-30\",\"to\":\"2023-06-30\",\"rate\":10}\n",
+                Files.readString(cachePath));
+    }
+
+    @Test
+    public void getExchangeRate_ServesOtherDatesOfTheSameRatePeriodWithoutAskingDelegate() {
+        var cachePath = directory.resolve("cache.json");
+        var recordedDate = LocalDate.parse("2023-03-31");
+        var earlierDate = recordedDate.minusDays(1);
+        var service = createService(cachePath, 10);
+        when(delegate.getExchangeRateRecordAsync("currency", PAST_DATE)).thenReturn(record(recordedDate, BigDecimal.TEN));
+        when(delegate.getExchangeRateRecordAsync("currency", earlierDate)).thenReturn(record(earlierDate.minusMonths(3), BigDecimal.ONE));
+
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", PAST_DATE));
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", LocalDate.parse("2023-05-15")));
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", recordedDate));
+        assertEquals(BigDecimal.ONE, service.getExchangeRate("currency", earlierDate));
+        assertEquals(BigDecimal.TEN, createService(cachePath, 10).getExchangeRate("currency", LocalDate.parse("2023-04-10")));
+
+        verify(delegate).getExchangeRateRecordAsync("currency", PAST_DATE);
+        verify(delegate).getExchangeRateRecordAsync("currency", earlierDate);
+        assertEquals(new CachingExchangeRateService.Stats(0, 2, 2), service.stats());
+    }
+
+    @Test
+    public void getExchangeRate_AppendsMissesToCacheFileAndCompactsItWhenLoaded() throws IOException {
+        var cachePath = directory.resolve("cache.json");
+        var recordedDate = LocalDate.parse("2023-03-31");
+        var service = createService(cachePath, 10);
+        when(delegate.getExchangeRateRecordAsync(eq("currency"), any())).thenReturn(record(recordedDate, BigDecimal.TEN));
+
+        service.getExchangeRate("currency", LocalDate.parse("2023-04-30"));
+        service.getExchangeRate("currency", LocalDate.parse("2023-05-31"));
+        service.getExchangeRate("currency", PAST_DATE);
+        assertEquals(3, Files.readAllLines(cachePath).size());
+
+        assertEquals(BigDecimal.TEN, createService(cachePath, 10).getExchangeRate("currency", LocalDate.parse("2023-06-01")));
+        assertEquals(List.of("{\"currency\":\"currency\",\"from\":\"2023-03-31\",\"to\":\"2023-06-30\",\"rate\":10}"),
+                Files.readAllLines(cachePath));
+
+        verify(delegate, times(3)).getExchangeRateRecordAsync(eq("currency"), any());
+    }
+
+    private static CompletableFuture<ExchangeRateRecord> record(LocalDate date, BigDecimal rate) {
+        return CompletableFuture.completedFuture(new ExchangeRateRecord("currency", date, rate));
+    }
+
+    private CachingExchangeRateService createService(Path cachePath, int maxEntries) {
+        return new CachingExchangeRateService(
+                delegate,
+                cachePath,
+                objectMapper,
+                maxEntries,
+                Duration.ofHours(1),
+                Period.ofDays(30),
+                clock
+        );
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package wex.product.services.exchange;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static wex.product.services.exchange.CoalescingExchangeRateServiceTest.WIREMOCK_PORT;
+
+@WireMockTest(httpPort = WIREMOCK_PORT)
+public class CoalescingExchangeRateServiceTest {
+
+    public static final int WIREMOCK_PORT = 8012;
+
+    private static final int CALLERS = 32;
+
+    @AfterEach
+    public void tearDown() {
+        WireMock.reset();
+    }
+
+    @Test
+    public void getExchangeRate_MakesOneUpstreamCall_WhenCallersAskForTheSameRateConcurrently() throws Exception {
+        stubFor(any(anyUrl()).willReturn(ok().withFixedDelay(500).withBody("{ \"data\": [{ \"exchange_rate\": 12.345 }] }")));
+        var service = new CoalescingExchangeRateService(
+                new FiscalDataExchangeRateService("http://localhost:8012", ObjectMapperFactory.create()));
+        var date = LocalDate.parse("2023-08-17");
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            var results = new ArrayList<Future<BigDecimal>>();
+            for (var i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return service.getExchangeRate("test_currency", date);
+                }));
+            }
+            start.countDown();
+            for (var result : results) {
+                assertEquals(BigDecimal.valueOf(12.345), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        verify(1, getRequestedFor(anyUrl()));
+    }
+
+    @Test
+    public void getExchangeRateAsync_SharesInFlightFetchOfTheSameKeyOnly() {
+        var delegate = mock(ExchangeRateService.class);
+        var pending = new CompletableFuture<BigDecimal>();
+        var date = LocalDate.parse("2023-08-17");
+        when(delegate.getExchangeRateAsync("currency", date)).thenReturn(pending);
+        when(delegate.getExchangeRateAsync("other", date)).thenReturn(CompletableFuture.completedFuture(BigDecimal.ONE));
+        var service = new CoalescingExchangeRateService(delegate);
+
+        var first = service.getExchangeRateAsync("currency", date);
+        var second = service.getExchangeRateAsync("currency", date);
+        assertEquals(BigDecimal.ONE, service.getExchangeRateAsync("other", date).join());
+        pending.complete(BigDecimal.TEN);
+
+        assertEquals(BigDecimal.TEN, first.join());
+        assertEquals(BigDecimal.TEN, second.join());
+        verify(delegate).getExchangeRateAsync("currency", date);
+        verify(delegate).getExchangeRateAsync("other", date);
+    }
+
+    @Test
+    public void getExchangeRateRecordAsync_SharesInFlightFetchOfTheSameKey() {
+        var delegate = mock(ExchangeRateService.class);
+        var pending = new CompletableFuture<ExchangeRateRecord>();
+        var date = LocalDate.parse("2023-08-17");
+        var record = new ExchangeRateRecord("currency", LocalDate.parse("2023-06-30"), BigDecimal.TEN);
+        when(delegate.getExchangeRateRecordAsync("currency", date)).thenReturn(pending);
+        var service = new CoalescingExchangeRateService(delegate);
+
+        var first = service.getExchangeRateRecordAsync("currency", date);
+        var second = service.getExchangeRateRecordAsync("currency", date);
+        pending.complete(record);
+
+        assertEquals(record, first.join());
+        assertEquals(record, second.join());
+        verify(delegate).getExchangeRateRecordAsync("currency", date);
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    public void getExchangeRateAsync_FetchesAgain_AfterPreviousFetchCompleted() {
+        var delegate = mock(ExchangeRateService.class);
+        var date = LocalDate.parse("2023-08-17");
+        when(delegate.getExchangeRateAsync("currency", date)).thenReturn(CompletableFuture.completedFuture(BigDecimal.TEN));
+        var service = new CoalescingExchangeRateService(delegate);
+
+        service.getExchangeRateAsync("currency", date).join();
+        service.getExchangeRateAsync("currency", date).join();
+
+        verify(delegate, times(2)).getExchangeRateAsync("currency", date);
+    }
+
+    @Test
+    public void getExchangeRate_PropagatesFailureToAllWaitingCallers() {
+        var delegate = mock(ExchangeRateService.class);
+        var pending = new CompletableFuture<BigDecimal>();
+        var date = LocalDate.parse("2023-08-17");
+        when(delegate.getExchangeRateAsync("currency", date)).thenReturn(pending);
+        var service = new CoalescingExchangeRateService(delegate);
+
+        var first = service.getExchangeRateAsync("currency", date);
+        var second = service.getExchangeRateAsync("currency", date);
+        var failure = new RuntimeException("Failed to fetch exchange rate.");
+        pending.completeExceptionally(failure);
+
+        assertSame(failure, assertThrows(CompletionException.class, first::join).getCause());
+        assertSame(failure, assertThrows(CompletionException.class, second::join).getCause());
+        when(delegate.getExchangeRateAsync("currency", date)).thenReturn(CompletableFuture.failedFuture(failure));
+        assertSame(failure, assertThrows(RuntimeException.class, () -> service.getExchangeRate("currency", date)));
+    }
+
+    @Test
+    public void getExchangeRatesAsync_SharesInFlightFetchesAndAsksDelegateForTheRestInOneCall() {
+        var delegate = mock(ExchangeRateService.class);
+        var pending = new CompletableFuture<BigDecimal>();
+        var pendingRates = new CompletableFuture<Map<String, BigDecimal>>();
+        var date = LocalDate.parse("2023-08-17");
+        when(delegate.getExchangeRateAsync("currency", date)).thenReturn(pending);
+        when(delegate.getExchangeRatesAsync(List.of("other", "unknown"), date)).thenReturn(pendingRates);
+        var service = new CoalescingExchangeRateService(delegate);
+
+        var single = service.getExchangeRateAsync("currency", date);
+        var rates = service.getExchangeRatesAsync(List.of("other", "currency", "unknown"), date);
+        var other = service.getExchangeRateAsync("other", date);
+        pending.complete(BigDecimal.TEN);
+        pendingRates.complete(Map.of("other", BigDecimal.ONE));
+
+        assertEquals(BigDecimal.TEN, single.join());
+        assertEquals(BigDecimal.ONE, other.join());
+        assertEquals(List.of("other", "currency"), List.copyOf(rates.join().keySet()));
+        assertEquals(BigDecimal.TEN, rates.join().get("currency"));
+        verify(delegate).getExchangeRateAsync("currency", date);
+        verify(delegate).getExchangeRatesAsync(List.of("other", "unknown"), date);
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    public void getExchangeRateAsync_CancelsSharedFetch_OnlyAfterAllCallersCancelled() {
+        var delegate = mock(ExchangeRateService.class);
+        var pending = new CompletableFuture<BigDecimal>();
+        var date = LocalDate.parse("2023-08-17");
+        when(delegate.getExchangeRateAsync("currency", date)).thenReturn(pending, CompletableFuture.completedFuture(BigDecimal.TEN));
+        var service = new CoalescingExchangeRateService(delegate);
+
+        var first = service.getExchangeRateAsync("currency", date);
+        var second = service.getExchangeRateAsync("currency", date);
+        first.cancel(true);
+        assertFalse(pending.isDone());
+        second.cancel(true);
+
+        assertTrue(pending.isCancelled());
+        assertEquals(BigDecimal.TEN, service.getExchangeRateAsync("currency", date).join());
+    }
+
+    @Test
+    public void getExchangeRatesAsync_KeepsSharedFetch_WhenSingleCallerCancels() {
+        var delegate = mock(ExchangeRateService.class);
+        var pending = new CompletableFuture<BigDecimal>();
+        var date = LocalDate.parse("2023-08-17");
+        when(delegate.getExchangeRateAsync("currency", date)).thenReturn(pending);
+        var service = new CoalescingExchangeRateService(delegate);
+
+        var single = service.getExchangeRateAsync("currency", date);
+        var rates = service.getExchangeRatesAsync(List.of("currency"), date);
+        single.cancel(true);
+        pending.complete(BigDecimal.TEN);
+
+        assertEquals(Map.of("currency", BigDecimal.TEN), rates.join());
+    }
+}
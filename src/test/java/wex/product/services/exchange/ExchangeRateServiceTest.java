@@ -0,0 +1,35 @@
+package wex.product.services.exchange;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExchangeRateServiceTest {
+
+    private static final LocalDate DATE = LocalDate.parse("2023-08-17");
+
+    private final ExchangeRateService service = (currency, date) -> switch (currency) {
+        case "A-Dollar" -> BigDecimal.ONE;
+        case "B-Euro" -> BigDecimal.TEN;
+        default -> null;
+    };
+
+    @Test
+    public void getExchangeRatesAsync_LooksEachCurrencyUpAndLeavesOutThoseWithoutRate() {
+        var result = service.getExchangeRatesAsync(List.of("B-Euro", "C-Peso", "A-Dollar", "B-Euro"), DATE).join();
+
+        assertEquals(List.of("B-Euro", "A-Dollar"), List.copyOf(result.keySet()));
+        assertEquals(Map.of("A-Dollar", BigDecimal.ONE, "B-Euro", BigDecimal.TEN), result);
+    }
+
+    @Test
+    public void getAllExchangeRatesAsync_ThrowsUnsupportedOperationException_ByDefault() {
+        var exception = assertThrows(UnsupportedOperationException.class, () -> service.getAllExchangeRatesAsync(DATE));
+        assertEquals("The exchange rate service does not support listing currencies.", exception.getMessage());
+    }
+}
@@ -0,0 +1,67 @@
+package wex.product.services.exchange;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExchangeRateTableTest {
+
+    private final ExchangeRateTable table = ExchangeRateTable.of(List.of(
+            new ExchangeRateRecord("A-Dollar", LocalDate.parse("2023-06-30"), new BigDecimal("1.3")),
+            new ExchangeRateRecord("A-Dollar", LocalDate.parse("2022-12-31"), new BigDecimal("1.1")),
+            new ExchangeRateRecord("B-Euro", LocalDate.parse("2023-03-31"), new BigDecimal("0.9")),
+            new ExchangeRateRecord("A-Dollar", LocalDate.parse("2023-03-31"), new BigDecimal("1.2"))
+    ));
+
+    @Test
+    public void contains_ReturnsWhetherCurrencyIsKnown() {
+        assertTrue(table.contains("A-Dollar"));
+        assertFalse(table.contains("C-Peso"));
+    }
+
+    @Test
+    public void find_ReturnsRateOfTheSameDate() {
+        assertEquals(new BigDecimal("1.2"), table.find("A-Dollar", LocalDate.parse("2023-03-31")));
+    }
+
+    @Test
+    public void find_ReturnsLatestRateBeforeTheDate() {
+        assertEquals(new BigDecimal("1.2"), table.find("A-Dollar", LocalDate.parse("2023-06-29")));
+        assertEquals(new BigDecimal("1.3"), table.find("A-Dollar", LocalDate.parse("2023-12-30")));
+        assertEquals(new BigDecimal("0.9"), table.find("B-Euro", LocalDate.parse("2023-06-30")));
+    }
+
+    @Test
+    public void findRecord_ReturnsDateTheLatestRateWasRecordedOn() {
+        assertEquals(new ExchangeRateRecord("A-Dollar", LocalDate.parse("2023-03-31"), new BigDecimal("1.2")),
+                table.findRecord("A-Dollar", LocalDate.parse("2023-06-29")));
+        assertNull(table.findRecord("C-Peso", LocalDate.parse("2023-03-31")));
+    }
+
+    @Test
+    public void find_ReturnsNull_WhenLatestRateIsOlderThanSixMonths() {
+        assertNull(table.find("A-Dollar", LocalDate.parse("2024-01-01")));
+        assertNotNull(table.find("A-Dollar", LocalDate.parse("2023-12-30")));
+    }
+
+    @Test
+    public void find_ReturnsNull_WhenThereIsNoRateBeforeTheDate() {
+        assertNull(table.find("A-Dollar", LocalDate.parse("2022-12-30")));
+    }
+
+    @Test
+    public void find_ReturnsNull_WhenCurrencyIsUnknown() {
+        assertNull(table.find("C-Peso", LocalDate.parse("2023-03-31")));
+    }
+
+    @Test
+    public void findAll_ReturnsRatesOfCurrenciesThatHaveOneForTheDate() {
+        assertEquals(Map.of("A-Dollar", new BigDecimal("1.3"), "B-Euro", new BigDecimal("0.9")), table.findAll(LocalDate.parse("2023-07-01")));
+        assertEquals(Map.of("A-Dollar", new BigDecimal("1.3")), table.findAll(LocalDate.parse("2023-12-30")));
+    }
+}
@@ -2,6 +2,7 @@ package wex.product.services.exchange;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.http.Fault;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
@@ -12,9 +13,16 @@ import wex.product.mapper.ObjectMapperFactory;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
 import static org.junit.jupiter.api.Assertions.*;
 import static wex.product.services.exchange.FiscalDataExchangeRateServiceTest.WIREMOCK_PORT;
 
@@ -29,7 +37,14 @@ public class FiscalDataExchangeRateServiceTest {
 
     @BeforeEach
     public void setUp() {
-        service = new FiscalDataExchangeRateService("http://localhost:8011", objectMapper);
+        service = new FiscalDataExchangeRateService("http://localhost:8011", objectMapper, new HttpSettings(
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(5),
+                3,
+                Duration.ofMillis(1),
+                Duration.ofMillis(5),
+                2
+        ));
     }
 
     @AfterEach
@@ -50,6 +65,46 @@ public class FiscalDataExchangeRateServiceTest {
         assertEquals(BigDecimal.valueOf(12.345), result);
     }
 
+    @Test
+    public void getExchangeRateAsync_CompletesWithExchangeRate() {
+        stubFor(any(anyUrl()).willReturn(ok().withBody("{ \"data\": [{ \"exchange_rate\": 12.345 }] }")));
+        var result = service.getExchangeRateAsync("test_currency", LocalDate.now());
+        assertEquals(BigDecimal.valueOf(12.345), result.join());
+    }
+
+    @Test
+    public void getExchangeRateRecordAsync_CompletesWithDateTheRateWasRecordedOn() {
+        stubFor(any(anyUrl()).willReturn(ok().withBody("{ \"data\": [{ \"record_date\": \"2023-06-30\", \"exchange_rate\": 12.345 }] }")));
+        var result = service.getExchangeRateRecordAsync("test_currency", LocalDate.parse("2023-08-17"));
+        assertEquals(new ExchangeRateRecord("test_currency", LocalDate.parse("2023-06-30"), BigDecimal.valueOf(12.345)), result.join());
+    }
+
+    @Test
+    public void getExchangeRateAsync_BindsResponseOffHttpClientThreads() {
+        var bindingThreads = new CopyOnWriteArrayList<String>();
+        var recordingMapper = new ObjectMapper() {
+            @Override
+            public <T> T readValue(byte[] content, Class<T> valueType) throws IOException {
+                bindingThreads.add(Thread.currentThread().getName());
+                return super.readValue(content, valueType);
+            }
+        }.registerModule(new JavaTimeModule());
+        var recordingService = new FiscalDataExchangeRateService("http://localhost:8011", recordingMapper);
+        stubFor(any(anyUrl()).willReturn(ok().withBody("{ \"data\": [{ \"exchange_rate\": 12.345 }] }")));
+        assertEquals(BigDecimal.valueOf(12.345), recordingService.getExchangeRateAsync("test_currency", LocalDate.now()).join());
+        assertEquals(1, bindingThreads.size());
+        assertFalse(bindingThreads.get(0).startsWith("fiscal-data-http-"));
+    }
+
+    @Test
+    public void getExchangeRateAsync_CompletesExceptionally_WhenRequestFails() {
+        stubFor(any(anyUrl()).willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+        var result = service.getExchangeRateAsync("test_currency", LocalDate.now());
+        var exception = assertThrows(CompletionException.class, result::join);
+        assertEquals("Failed to fetch exchange rate.", exception.getCause().getMessage());
+        assertInstanceOf(IOException.class, exception.getCause().getCause());
+    }
+
     @Test
     public void getExchangeRate_ReturnsNullIfNoExchangeRateFetched() {
         stubFor(any(anyUrl()).willReturn(ok().withBody("{ \"data\": [] }")));
@@ -70,4 +125,127 @@ public class FiscalDataExchangeRateServiceTest {
         var exception = assertThrows(RuntimeException.class, () -> service.getExchangeRate("test_currency", LocalDate.now()));
         assertInstanceOf(MismatchedInputException.class, exception.getCause());
     }
+
+    @Test
+    public void getExchangeRate_RetriesOnServerErrorsAndRateLimiting() {
+        stubFor(any(anyUrl()).inScenario("retry").whenScenarioStateIs(STARTED)
+                .willReturn(serviceUnavailable()).willSetStateTo("rate limited"));
+        stubFor(any(anyUrl()).inScenario("retry").whenScenarioStateIs("rate limited")
+                .willReturn(status(429).withHeader("Retry-After", "0")).willSetStateTo("recovered"));
+        stubFor(any(anyUrl()).inScenario("retry").whenScenarioStateIs("recovered")
+                .willReturn(ok().withBody("{ \"data\": [{ \"exchange_rate\": 12.345 }] }")));
+        var result = service.getExchangeRate("test_currency", LocalDate.now());
+        assertEquals(BigDecimal.valueOf(12.345), result);
+        verify(3, getRequestedFor(anyUrl()));
+    }
+
+    @Test
+    public void getExchangeRate_ThrowsRuntimeException_WhenRetriesAreExhausted() {
+        stubFor(any(anyUrl()).willReturn(serverError()));
+        var exception = assertThrows(RuntimeException.class, () -> service.getExchangeRate("test_currency", LocalDate.now()));
+        assertEquals("Unexpected response status 500.", exception.getCause().getMessage());
+        verify(3, getRequestedFor(anyUrl()));
+    }
+
+    @Test
+    public void getExchangeRate_DoesNotRetryClientErrors() {
+        stubFor(any(anyUrl()).willReturn(badRequest()));
+        var exception = assertThrows(RuntimeException.class, () -> service.getExchangeRate("test_currency", LocalDate.now()));
+        assertEquals("Unexpected response status 400.", exception.getCause().getMessage());
+        verify(1, getRequestedFor(anyUrl()));
+    }
+
+    @Test
+    public void getExchangeRateAsync_StopsRetrying_WhenCancelled() throws InterruptedException {
+        var settings = new HttpSettings(Duration.ofSeconds(5), Duration.ofSeconds(5), 3, Duration.ofMillis(1), Duration.ofMillis(500), 1);
+        var patientService = new FiscalDataExchangeRateService("http://localhost:8011", objectMapper, settings);
+        stubFor(any(anyUrl()).willReturn(status(503).withHeader("Retry-After", "1")));
+
+        var result = patientService.getExchangeRateAsync("test_currency", LocalDate.now());
+        while (findAll(getRequestedFor(anyUrl())).isEmpty()) {
+            Thread.sleep(10);
+        }
+        result.cancel(true);
+        Thread.sleep(1000);
+
+        verify(1, getRequestedFor(anyUrl()));
+    }
+
+    @Test
+    public void getExchangeRate_ThrowsRuntimeException_WhenRequestTimesOut() {
+        var settings = new HttpSettings(Duration.ofSeconds(5), Duration.ofMillis(200), 1, Duration.ZERO, Duration.ZERO, 1);
+        var impatientService = new FiscalDataExchangeRateService("http://localhost:8011", objectMapper, settings);
+        stubFor(any(anyUrl()).willReturn(ok().withFixedDelay(1000).withBody("{ \"data\": [] }")));
+        var exception = assertThrows(RuntimeException.class, () -> impatientService.getExchangeRate("test_currency", LocalDate.now()));
+        assertInstanceOf(HttpTimeoutException.class, exception.getCause());
+    }
+
+    @Test
+    public void getExchangeRatesAsync_FetchesLatestRateOfEachCurrencyWithOneRequest() {
+        var expectedUrl = "/?fields=country_currency_desc,record_date,exchange_rate" +
+                "&filter=country_currency_desc:in:(B-Euro,A-Dollar,C-Peso),record_date:gte:2023-02-17,record_date:lte:2023-08-17" +
+                "&sort=-record_date&page[number]=1&page[size]=10000";
+        stubFor(get(expectedUrl).willReturn(ok().withBody("""
+                { "data": [
+                    { "country_currency_desc": "A-Dollar", "record_date": "2023-06-30", "exchange_rate": 1.3 },
+                    { "country_currency_desc": "B-Euro", "record_date": "2023-06-30", "exchange_rate": 0.9 },
+                    { "country_currency_desc": "A-Dollar", "record_date": "2023-03-31", "exchange_rate": 1.2 }
+                ], "meta": { "total-pages": 1 } }""")));
+
+        var result = service.getExchangeRatesAsync(List.of("B-Euro", "A-Dollar", "C-Peso", "A-Dollar"), LocalDate.parse("2023-08-17")).join();
+
+        assertEquals(List.of("B-Euro", "A-Dollar"), List.copyOf(result.keySet()));
+        assertEquals(new BigDecimal("1.3"), result.get("A-Dollar"));
+        assertEquals(new BigDecimal("0.9"), result.get("B-Euro"));
+        verify(1, getRequestedFor(anyUrl()));
+    }
+
+    @Test
+    public void getAllExchangeRatesAsync_FetchesLatestRateOfEveryCurrencyFromAllPages() {
+        var urlPrefix = "/?fields=country_currency_desc,record_date,exchange_rate" +
+                "&filter=record_date:gte:2023-02-17,record_date:lte:2023-08-17&sort=-record_date";
+        stubFor(get(urlPrefix + "&page[number]=1&page[size]=10000").willReturn(ok().withBody("""
+                { "data": [{ "country_currency_desc": "A-Dollar", "record_date": "2023-06-30", "exchange_rate": 1.3 }],
+                  "meta": { "total-pages": 2 } }""")));
+        stubFor(get(urlPrefix + "&page[number]=2&page[size]=10000").willReturn(ok().withBody("""
+                { "data": [
+                    { "country_currency_desc": "A-Dollar", "record_date": "2023-03-31", "exchange_rate": 1.2 },
+                    { "country_currency_desc": "B-Euro", "record_date": "2023-03-31", "exchange_rate": 0.9 }
+                ], "meta": { "total-pages": 2 } }""")));
+
+        var result = service.getAllExchangeRatesAsync(LocalDate.parse("2023-08-17")).join();
+
+        assertEquals(Map.of("A-Dollar", new BigDecimal("1.3"), "B-Euro", new BigDecimal("0.9")), result);
+    }
+
+    @Test
+    public void getExchangeRatesAsync_CompletesExceptionally_WhenRequestFails() {
+        stubFor(any(anyUrl()).willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+        var result = service.getExchangeRatesAsync(List.of("A-Dollar"), LocalDate.now());
+        var exception = assertThrows(CompletionException.class, result::join);
+        assertEquals("Failed to fetch exchange rates.", exception.getCause().getMessage());
+    }
+
+    @Test
+    public void fetchAllExchangeRates_FetchesAllPages() {
+        var urlPrefix = "/?fields=country_currency_desc,record_date,exchange_rate&sort=country_currency_desc,record_date";
+        stubFor(get(urlPrefix + "&page[number]=1&page[size]=10000").willReturn(ok().withBody("""
+                { "data": [{ "country_currency_desc": "A-Dollar", "record_date": "2023-03-31", "exchange_rate": "1.5" }],
+                  "meta": { "total-pages": 2 } }""")));
+        stubFor(get(urlPrefix + "&page[number]=2&page[size]=10000").willReturn(ok().withBody("""
+                { "data": [{ "country_currency_desc": "B-Euro", "record_date": "2023-06-30", "exchange_rate": "0.9" }],
+                  "meta": { "total-pages": 2 } }""")));
+        var result = service.fetchAllExchangeRates();
+        assertEquals(List.of(
+                new ExchangeRateRecord("A-Dollar", LocalDate.parse("2023-03-31"), new BigDecimal("1.5")),
+                new ExchangeRateRecord("B-Euro", LocalDate.parse("2023-06-30"), new BigDecimal("0.9"))
+        ), result);
+    }
+
+    @Test
+    public void fetchAllExchangeRates_ThrowsRuntimeException_WhenCanNotParseResponse() {
+        stubFor(any(anyUrl()).willReturn(ok().withBody("{ \"data\": [] }")));
+        var exception = assertThrows(RuntimeException.class, () -> service.fetchAllExchangeRates());
+        assertInstanceOf(MismatchedInputException.class, exception.getCause());
+    }
 }
@@ -0,0 +1,41 @@
+package wex.product.services.exchange;
+
+import org.junit.jupiter.api.Test;
+import wex.product.utils.Lazy;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LazyExchangeRateServiceTest {
+
+    private static final LocalDate DATE = LocalDate.parse("2023-08-17");
+
+    private final ExchangeRateService delegate = mock(ExchangeRateService.class);
+
+    @Test
+    public void constructor_DoesNotBuildDelegate() {
+        var lazy = Lazy.of(() -> delegate);
+        new LazyExchangeRateService(lazy);
+        assertFalse(lazy.isCreated());
+    }
+
+    @Test
+    public void getExchangeRate_DelegatesToBuiltService() {
+        when(delegate.getExchangeRate("currency", DATE)).thenReturn(BigDecimal.TEN);
+        when(delegate.getExchangeRateAsync("currency", DATE)).thenReturn(CompletableFuture.completedFuture(BigDecimal.ONE));
+        when(delegate.getExchangeRatesAsync(List.of("currency"), DATE)).thenReturn(CompletableFuture.completedFuture(Map.of("currency", BigDecimal.ONE)));
+        when(delegate.getAllExchangeRatesAsync(DATE)).thenReturn(CompletableFuture.completedFuture(Map.of("currency", BigDecimal.TEN)));
+        var service = new LazyExchangeRateService(() -> delegate);
+
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", DATE));
+        assertEquals(BigDecimal.ONE, service.getExchangeRateAsync("currency", DATE).join());
+        assertEquals(Map.of("currency", BigDecimal.ONE), service.getExchangeRatesAsync(List.of("currency"), DATE).join());
+        assertEquals(Map.of("currency", BigDecimal.TEN), service.getAllExchangeRatesAsync(DATE).join());
+    }
+}
@@ -0,0 +1,186 @@
+package wex.product.services.exchange;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LocalExchangeRateServiceTest {
+
+    private static final LocalDate SYNC_DATE = LocalDate.parse("2023-09-01");
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.create();
+
+    private final Clock clock = Clock.fixed(SYNC_DATE.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+
+    private final List<ExchangeRateRecord> rates = List.of(
+            new ExchangeRateRecord("A-Dollar", LocalDate.parse("2023-03-31"), new BigDecimal("1.2")),
+            new ExchangeRateRecord("A-Dollar", LocalDate.parse("2023-06-30"), new BigDecimal("1.3"))
+    );
+
+    @Mock
+    private FiscalDataExchangeRateService source;
+
+    @Mock
+    private ExchangeRateService fallback;
+
+    @TempDir
+    private Path directory;
+
+    private Path tablePath;
+
+    @BeforeEach
+    public void setUp() {
+        tablePath = directory.resolve("table.json");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        var mocks = new Object[]{source, fallback};
+        verifyNoMoreInteractions(mocks);
+        Mockito.reset(mocks);
+    }
+
+    @Test
+    public void constructor_WorksWithDefaults() {
+        new LocalExchangeRateService(source, fallback, "test.json", objectMapper);
+    }
+
+    @Test
+    public void getExchangeRate_UsesFallback_WhenNotSynced() {
+        when(fallback.getExchangeRate("A-Dollar", SYNC_DATE)).thenReturn(BigDecimal.TEN);
+        assertEquals(BigDecimal.TEN, createService().getExchangeRate("A-Dollar", SYNC_DATE));
+    }
+
+    @Test
+    public void sync_StoresAllRatesAndReturnsTheirCount() {
+        when(source.fetchAllExchangeRates()).thenReturn(rates);
+        assertEquals(2, createService().sync());
+        assertTrue(Files.exists(tablePath));
+        verify(source).fetchAllExchangeRates();
+    }
+
+    @Test
+    public void getExchangeRate_AnswersFromSyncedTable() {
+        when(source.fetchAllExchangeRates()).thenReturn(rates);
+        var service = createService();
+        service.sync();
+
+        assertEquals(new BigDecimal("1.3"), service.getExchangeRate("A-Dollar", LocalDate.parse("2023-08-17")));
+        assertNull(service.getExchangeRate("A-Dollar", LocalDate.parse("2023-01-01")));
+
+        verify(source).fetchAllExchangeRates();
+    }
+
+    @Test
+    public void getExchangeRate_AnswersFromTableStoredByPreviousInstance() {
+        when(source.fetchAllExchangeRates()).thenReturn(rates);
+        createService().sync();
+
+        assertEquals(new BigDecimal("1.2"), createService().getExchangeRate("A-Dollar", LocalDate.parse("2023-05-01")));
+
+        verify(source).fetchAllExchangeRates();
+    }
+
+    @Test
+    public void getExchangeRate_UsesFallback_WhenCurrencyIsUnknownOrDateIsAfterSync() {
+        when(source.fetchAllExchangeRates()).thenReturn(rates);
+        when(fallback.getExchangeRate(anyString(), any())).thenReturn(BigDecimal.TEN);
+        var service = createService();
+        service.sync();
+
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("B-Euro", SYNC_DATE));
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("A-Dollar", SYNC_DATE.plusDays(1)));
+
+        verify(source).fetchAllExchangeRates();
+        verify(fallback).getExchangeRate("B-Euro", SYNC_DATE);
+        verify(fallback).getExchangeRate("A-Dollar", SYNC_DATE.plusDays(1));
+    }
+
+    @Test
+    public void getExchangeRateAsync_AnswersFromSyncedTableOrFallback() {
+        when(source.fetchAllExchangeRates()).thenReturn(rates);
+        when(fallback.getExchangeRateAsync("B-Euro", SYNC_DATE)).thenReturn(CompletableFuture.completedFuture(BigDecimal.TEN));
+        var service = createService();
+        service.sync();
+
+        assertEquals(new BigDecimal("1.3"), service.getExchangeRateAsync("A-Dollar", SYNC_DATE).join());
+        assertEquals(BigDecimal.TEN, service.getExchangeRateAsync("B-Euro", SYNC_DATE).join());
+
+        verify(source).fetchAllExchangeRates();
+        verify(fallback).getExchangeRateAsync("B-Euro", SYNC_DATE);
+    }
+
+    @Test
+    public void getExchangeRatesAsync_AnswersKnownCurrenciesFromTableAndAsksFallbackForTheRestInOneCall() {
+        when(source.fetchAllExchangeRates()).thenReturn(rates);
+        when(fallback.getExchangeRatesAsync(List.of("B-Euro", "C-Peso"), SYNC_DATE))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("B-Euro", BigDecimal.TEN)));
+        var service = createService();
+        service.sync();
+
+        var result = service.getExchangeRatesAsync(List.of("B-Euro", "A-Dollar", "C-Peso"), SYNC_DATE).join();
+
+        assertEquals(List.of("B-Euro", "A-Dollar"), List.copyOf(result.keySet()));
+        assertEquals(new BigDecimal("1.3"), result.get("A-Dollar"));
+        assertEquals(BigDecimal.TEN, result.get("B-Euro"));
+        verify(source).fetchAllExchangeRates();
+        verify(fallback).getExchangeRatesAsync(List.of("B-Euro", "C-Peso"), SYNC_DATE);
+    }
+
+    @Test
+    public void getAllExchangeRatesAsync_AnswersFromSyncedTableOrFallback() {
+        when(source.fetchAllExchangeRates()).thenReturn(rates);
+        when(fallback.getAllExchangeRatesAsync(SYNC_DATE.plusDays(1)))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("B-Euro", BigDecimal.TEN)));
+        var service = createService();
+        service.sync();
+
+        assertEquals(Map.of("A-Dollar", new BigDecimal("1.3")), service.getAllExchangeRatesAsync(SYNC_DATE).join());
+        assertEquals(Map.of("B-Euro", BigDecimal.TEN), service.getAllExchangeRatesAsync(SYNC_DATE.plusDays(1)).join());
+
+        verify(source).fetchAllExchangeRates();
+        verify(fallback).getAllExchangeRatesAsync(SYNC_DATE.plusDays(1));
+    }
+
+    @Test
+    public void getExchangeRate_ThrowsRuntimeException_WhenTableIsDamaged() throws IOException {
+        Files.writeString(tablePath, "{");
+        var exception = assertThrows(RuntimeException.class, () -> createService().getExchangeRate("A-Dollar", SYNC_DATE));
+        assertEquals("Can not read exchange rates table.", exception.getMessage());
+    }
+
+    @Test
+    public void sync_ThrowsRuntimeException_WhenCanNotWriteTable() {
+        when(source.fetchAllExchangeRates()).thenReturn(rates);
+        var service = new LocalExchangeRateService(source, fallback, directory.resolve("missing").resolve("table.json"), objectMapper, clock);
+        var exception = assertThrows(RuntimeException.class, service::sync);
+        assertEquals("Can not write exchange rates table.", exception.getMessage());
+        verify(source).fetchAllExchangeRates();
+    }
+
+    private LocalExchangeRateService createService() {
+        return new LocalExchangeRateService(source, fallback, tablePath, objectMapper, clock);
+    }
+}
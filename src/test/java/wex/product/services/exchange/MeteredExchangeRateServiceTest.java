@@ -0,0 +1,61 @@
+package wex.product.services.exchange;
+
+import org.junit.jupiter.api.Test;
+import wex.product.metrics.Metrics;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class MeteredExchangeRateServiceTest {
+
+    private static final LocalDate DATE = LocalDate.parse("2023-08-17");
+
+    private final ExchangeRateService delegate = mock(ExchangeRateService.class);
+
+    private final Metrics metrics = new Metrics();
+
+    private final MeteredExchangeRateService service = new MeteredExchangeRateService(delegate, metrics, "fetch");
+
+    @Test
+    public void getExchangeRate_RecordsLatenciesAndFailures() {
+        when(delegate.getExchangeRate("currency", DATE)).thenReturn(BigDecimal.TEN);
+        when(delegate.getExchangeRate("broken", DATE)).thenThrow(new RuntimeException("Failed to fetch exchange rate."));
+
+        assertEquals(BigDecimal.TEN, service.getExchangeRate("currency", DATE));
+        assertThrows(RuntimeException.class, () -> service.getExchangeRate("broken", DATE));
+
+        assertEquals(2, metrics.histogram("exchange.fetch").snapshot().count());
+        assertEquals(1, metrics.counter("exchange.fetch.failures").sum());
+    }
+
+    @Test
+    public void getExchangeRateAsync_RecordsLatencyOnCompletion() {
+        var pending = new CompletableFuture<BigDecimal>();
+        when(delegate.getExchangeRateAsync("currency", DATE)).thenReturn(pending);
+
+        var result = service.getExchangeRateAsync("currency", DATE);
+        assertEquals(0, metrics.histogram("exchange.fetch").snapshot().count());
+        pending.completeExceptionally(new RuntimeException("Failed to fetch exchange rate."));
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(1, metrics.histogram("exchange.fetch").snapshot().count());
+        assertEquals(1, metrics.counter("exchange.fetch.failures").sum());
+    }
+
+    @Test
+    public void getExchangeRatesAsync_RecordsLookupOfManyCurrenciesAsOne() {
+        when(delegate.getExchangeRatesAsync(List.of("currency", "other"), DATE))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("currency", BigDecimal.TEN)));
+
+        assertEquals(Map.of("currency", BigDecimal.TEN), service.getExchangeRatesAsync(List.of("currency", "other"), DATE).join());
+
+        assertEquals(1, metrics.histogram("exchange.fetch").snapshot().count());
+        assertEquals(0, metrics.counter("exchange.fetch.failures").sum());
+    }
+}
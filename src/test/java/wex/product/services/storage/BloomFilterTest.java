@@ -0,0 +1,67 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    private static final int IDS = 10_000;
+
+    @Test
+    public void mightContain_ReturnsTrueForEveryAddedId() {
+        var filter = BloomFilter.create(IDS, 0.01);
+        var ids = new ArrayList<UUID>();
+        for (var i = 0; i < IDS; i++) {
+            var id = UUID.randomUUID();
+            ids.add(id);
+            filter.add(id);
+        }
+        for (var id : ids) {
+            assertTrue(filter.mightContain(id));
+        }
+    }
+
+    @Test
+    public void mightContain_KeepsFalsePositivesNearConfiguredRate() {
+        var filter = BloomFilter.create(IDS, 0.01);
+        for (var i = 0; i < IDS; i++) {
+            filter.add(UUID.randomUUID());
+        }
+        var falsePositives = 0;
+        for (var i = 0; i < IDS; i++) {
+            if (filter.mightContain(UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < IDS * 0.02, "False positives: " + falsePositives);
+    }
+
+    @Test
+    public void readFrom_RestoresWrittenFilter() throws IOException {
+        var filter = BloomFilter.create(100, 0.01);
+        var id = UUID.randomUUID();
+        filter.add(id);
+        var bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+
+        var restored = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertTrue(restored.mightContain(id));
+        assertThrows(IOException.class, () -> BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[8]))));
+    }
+
+    @Test
+    public void create_ThrowsIllegalArgumentException_WhenRateIsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(IDS, 0));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(IDS, 1));
+    }
+}
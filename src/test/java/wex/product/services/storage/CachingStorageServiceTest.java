@@ -0,0 +1,165 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CachingStorageServiceTest {
+
+    private final Transaction transaction = new Transaction(UUID.randomUUID(), new BigDecimal("12.50"), LocalDate.parse("2023-08-24"), "Purchase");
+
+    private final StorageService delegate = mock(StorageService.class);
+
+    private final CachingStorageService service = new CachingStorageService(delegate, 100);
+
+    @Test
+    public void storeTransaction_WritesThroughAndServesLookupsFromMemory() {
+        service.storeTransaction(transaction);
+
+        assertEquals(transaction, service.findTransaction(transaction.id()));
+        assertEquals(Map.of(transaction.id(), transaction), service.findTransactions(List.of(transaction.id())));
+
+        verify(delegate).storeTransaction(transaction);
+        verify(delegate, never()).findTransaction(any());
+        verify(delegate, never()).findTransactions(any());
+    }
+
+    @Test
+    public void storeTransaction_DoesNotCache_WhenDelegateFails() {
+        doThrow(new RuntimeException("test")).when(delegate).storeTransactions(List.of(transaction));
+
+        assertThrows(RuntimeException.class, () -> service.storeTransactions(List.of(transaction)));
+
+        assertEquals(0, service.cachedCount());
+        assertNull(service.findTransaction(transaction.id()));
+    }
+
+    @Test
+    public void findTransaction_CachesTransactionsLoadedFromDelegate() {
+        var missingId = UUID.randomUUID();
+        when(delegate.findTransaction(transaction.id())).thenReturn(transaction);
+
+        assertEquals(transaction, service.findTransaction(transaction.id()));
+        assertEquals(transaction, service.findTransaction(transaction.id()));
+        assertNull(service.findTransaction(missingId));
+        assertNull(service.findTransaction(missingId));
+
+        verify(delegate).findTransaction(transaction.id());
+        verify(delegate, times(2)).findTransaction(missingId);
+    }
+
+    @Test
+    public void findTransactions_AsksDelegateOnlyForIdsNotInMemory() {
+        var loaded = new Transaction(UUID.randomUUID(), new BigDecimal("1.00"), LocalDate.parse("2023-08-25"), "Loaded");
+        var missingId = UUID.randomUUID();
+        service.storeTransaction(transaction);
+        when(delegate.findTransactions(List.of(loaded.id(), missingId))).thenReturn(Map.of(loaded.id(), loaded));
+
+        var transactions = service.findTransactions(List.of(transaction.id(), loaded.id(), missingId));
+
+        assertEquals(Map.of(transaction.id(), transaction, loaded.id(), loaded), transactions);
+        assertEquals(loaded, service.findTransaction(loaded.id()));
+        verify(delegate, never()).findTransaction(any());
+    }
+
+    @Test
+    public void findTransaction_ReadsFromDelegate_WhenTransactionCanNotBeCached() {
+        var oversized = new Transaction(UUID.randomUUID(), new BigDecimal("1.00"), LocalDate.parse("2023-08-24"), "€".repeat(60));
+        when(delegate.findTransaction(oversized.id())).thenReturn(oversized);
+
+        service.storeTransaction(oversized);
+
+        assertEquals(0, service.cachedCount());
+        assertEquals(oversized, service.findTransaction(oversized.id()));
+    }
+
+    @Test
+    public void findTransaction_ReadsFromDelegate_WhenCacheIsFull() {
+        var cachingService = new CachingStorageService(delegate, 1);
+        var other = new Transaction(UUID.randomUUID(), new BigDecimal("1.00"), LocalDate.parse("2023-08-25"), "Other");
+        when(delegate.findTransaction(other.id())).thenReturn(other);
+
+        cachingService.storeTransactions(List.of(transaction, other));
+
+        assertEquals(1, cachingService.cachedCount());
+        assertEquals(transaction, cachingService.findTransaction(transaction.id()));
+        assertEquals(other, cachingService.findTransaction(other.id()));
+        verify(delegate).findTransaction(other.id());
+    }
+
+    @Test
+    public void reset_ClearsCache() {
+        service.storeTransaction(transaction);
+
+        service.reset();
+
+        verify(delegate).reset();
+        assertEquals(0, service.cachedCount());
+        assertNull(service.findTransaction(transaction.id()));
+    }
+
+    @Test
+    public void deleteTransactionsBefore_DelegatesAndClearsCache() {
+        var date = LocalDate.parse("2024-01-01");
+        service.storeTransaction(transaction);
+
+        service.deleteTransactionsBefore(date);
+
+        verify(delegate).deleteTransactionsBefore(date);
+        assertEquals(0, service.cachedCount());
+    }
+
+    @Test
+    public void deleteTransactionsBefore_KeepsCache_WhenDelegateDoesNotSupportIt() {
+        doThrow(new UnsupportedOperationException("test")).when(delegate).deleteTransactionsBefore(any());
+        service.storeTransaction(transaction);
+
+        assertThrows(UnsupportedOperationException.class, () -> service.deleteTransactionsBefore(LocalDate.parse("2024-01-01")));
+
+        assertEquals(1, service.cachedCount());
+    }
+
+    @Test
+    public void forEachTransaction_DelegatesToStorage() {
+        Consumer<Transaction> consumer = ignored -> {
+        };
+        service.forEachTransaction(consumer);
+        verify(delegate).forEachTransaction(consumer);
+    }
+
+    @Test
+    public void queryTransactions_DelegatesToStorage() {
+        var query = TransactionQuery.byDateRange(LocalDate.parse("2023-01-01"), null);
+        Consumer<Transaction> consumer = ignored -> {
+        };
+        service.queryTransactions(query, consumer);
+        verify(delegate).queryTransactions(query, consumer);
+    }
+
+    @Test
+    public void close_ClosesDelegate() throws IOException {
+        service.close();
+        verify(delegate).close();
+    }
+
+    @Test
+    public void findTransaction_DoesNotCache_WhenResetHappensDuringLookup() {
+        when(delegate.findTransaction(transaction.id())).thenAnswer(invocation -> {
+            service.reset();
+            return transaction;
+        });
+
+        assertEquals(transaction, service.findTransaction(transaction.id()));
+
+        assertEquals(0, service.cachedCount());
+    }
+}
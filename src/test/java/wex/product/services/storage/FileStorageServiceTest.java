@@ -16,6 +16,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -92,6 +95,20 @@ public class FileStorageServiceTest {
         verify(fileAccessor, times(2)).ensureFileExists();
     }
 
+    @Test
+    public void queryTransactions_PassesMatchingTransactionsInDateOrder() throws IOException {
+        var inputStream = new ByteArrayInputStream(contentWithSampleTransaction.getBytes());
+        var result = new ArrayList<Transaction>();
+
+        when(fileAccessor.getInputStream()).thenReturn(inputStream);
+
+        service.queryTransactions(TransactionQuery.byDateRange(LocalDate.parse("2023-08-01"), null), result::add);
+
+        assertEquals(List.of(sampleTransaction), result);
+
+        verify(fileAccessor).ensureFileExists();
+    }
+
     @Test
     public void findTransaction_ReturnsNull_WhenTransactionWithGivenIdDoesNotExist() throws IOException {
         var inputStream = new ByteArrayInputStream(contentWithoutSampleTransaction.getBytes());
@@ -124,4 +141,33 @@ public class FileStorageServiceTest {
         assertThrows(RuntimeException.class, () -> service.findTransaction(sampleTransaction.id()));
         verify(fileAccessor).ensureFileExists();
     }
+
+    @Test
+    public void storeTransactions_RewritesFileOnceWithWholeBatch() throws IOException {
+        var inputStream = new ByteArrayInputStream(contentWithoutSampleTransaction.getBytes());
+        var outputStream = new ByteArrayOutputStream();
+
+        when(fileAccessor.getInputStream()).thenReturn(inputStream);
+        when(fileAccessor.getOutputStream()).thenReturn(outputStream);
+
+        service.storeTransactions(List.of(sampleTransaction));
+
+        assertEquals(contentWithSampleTransaction, outputStream.toString());
+
+        verify(fileAccessor, times(2)).ensureFileExists();
+    }
+
+    @Test
+    public void findTransactions_ReadsFileOnceAndReturnsOnlyStoredTransactions() throws IOException {
+        var inputStream = new ByteArrayInputStream(contentWithSampleTransaction.getBytes());
+
+        when(fileAccessor.getInputStream()).thenReturn(inputStream);
+
+        var result = service.findTransactions(List.of(sampleTransaction.id(), UUID.randomUUID()));
+
+        assertEquals(Map.of(sampleTransaction.id(), sampleTransaction), result);
+
+        verify(fileAccessor).ensureFileExists();
+        verify(fileAccessor).getInputStream();
+    }
 }
@@ -0,0 +1,146 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcStorageServiceTest {
+
+    private final Transaction sampleTransaction = new Transaction(
+            UUID.fromString("8a43c3eb-7210-47dd-8e7e-7ae3c92971d7"),
+            new BigDecimal("15.67"),
+            LocalDate.parse("2023-08-24"),
+            "New Transaction");
+
+    private final Transaction otherTransaction = new Transaction(
+            UUID.fromString("8a522a6c-28e3-4b94-aada-078e7fde20e6"),
+            new BigDecimal("81.12"),
+            LocalDate.parse("2019-07-31"),
+            "Initial Transaction");
+
+    @TempDir
+    private Path directory;
+
+    private JdbcStorageService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = createService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.close();
+    }
+
+    @Test
+    public void findTransaction_ReturnsStoredTransaction() {
+        assertNull(service.findTransaction(sampleTransaction.id()));
+        service.storeTransaction(otherTransaction);
+        service.storeTransaction(sampleTransaction);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+        assertEquals(otherTransaction, service.findTransaction(otherTransaction.id()));
+        assertNull(service.findTransaction(UUID.randomUUID()));
+    }
+
+    @Test
+    public void findTransaction_ReturnsTransactionStoredByPreviousInstance() {
+        service.storeTransaction(sampleTransaction);
+        service.close();
+        service = createService();
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void storeTransactions_StoresWholeBatchOrNothing() {
+        var batch = new ArrayList<Transaction>();
+        for (var i = 0; i < 2_500; i++) {
+            batch.add(new Transaction(UUID.randomUUID(), BigDecimal.valueOf(i, 2), LocalDate.parse("2023-08-24"), "Purchase " + i));
+        }
+        service.storeTransactions(batch);
+        var ids = batch.stream().map(Transaction::id).toList();
+        assertEquals(batch.size(), service.findTransactions(ids).size());
+
+        var duplicate = List.of(otherTransaction, batch.get(0));
+        var exception = assertThrows(RuntimeException.class, () -> service.storeTransactions(duplicate));
+        assertEquals("Can not write transaction to the database storage.", exception.getMessage());
+        assertNull(service.findTransaction(otherTransaction.id()));
+    }
+
+    @Test
+    public void findTransactions_ReturnsOnlyStoredTransactions() {
+        service.storeTransactions(List.of(sampleTransaction, otherTransaction));
+        var missingId = UUID.randomUUID();
+
+        var result = service.findTransactions(List.of(sampleTransaction.id(), missingId, sampleTransaction.id()));
+
+        assertEquals(Map.of(sampleTransaction.id(), sampleTransaction), result);
+        assertEquals(Map.of(), service.findTransactions(List.of()));
+    }
+
+    @Test
+    public void deleteTransactionsBefore_DeletesOnlyOlderTransactions() {
+        service.storeTransactions(List.of(sampleTransaction, otherTransaction));
+
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+
+        assertNull(service.findTransaction(otherTransaction.id()));
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void queryTransactions_FindsTransactionsByDateRangeAndDescriptionPrefix() {
+        var discounted = new Transaction(UUID.randomUUID(), new BigDecimal("5.00"), LocalDate.parse("2023-08-25"), "New_50% off");
+        service.storeTransactions(List.of(sampleTransaction, otherTransaction, discounted));
+
+        assertEquals(List.of(otherTransaction, sampleTransaction), query(TransactionQuery.byDateRange(null, LocalDate.parse("2023-08-24"))));
+        assertEquals(List.of(sampleTransaction, discounted), query(TransactionQuery.byDateRange(LocalDate.parse("2020-01-01"), null)));
+        assertEquals(List.of(sampleTransaction, discounted), query(TransactionQuery.byDescriptionPrefix("New")));
+        assertEquals(List.of(discounted), query(TransactionQuery.byDescriptionPrefix("New_50%")));
+        assertEquals(List.of(), query(TransactionQuery.byDescriptionPrefix("New%")));
+        assertEquals(List.of(otherTransaction), query(new TransactionQuery(LocalDate.parse("2019-01-01"), LocalDate.parse("2019-12-31"), "Init")));
+    }
+
+    @Test
+    public void queryTransactions_SortsDescriptionsAsStrings() {
+        var transactions = new ArrayList<Transaction>();
+        for (var description : List.of("b", "B", "a", "\u00e9", "Z", "_")) {
+            transactions.add(new Transaction(UUID.randomUUID(), new BigDecimal("1.00"), LocalDate.parse("2023-08-24"), description));
+        }
+        service.storeTransactions(transactions);
+
+        transactions.sort(Comparator.comparing(Transaction::description));
+        assertEquals(transactions, query(TransactionQuery.byDescriptionPrefix("")));
+    }
+
+    @Test
+    public void reset_DeletesAllTransactions() {
+        service.storeTransactions(List.of(sampleTransaction, otherTransaction));
+        service.reset();
+        assertNull(service.findTransaction(sampleTransaction.id()));
+        assertNull(service.findTransaction(otherTransaction.id()));
+    }
+
+    private JdbcStorageService createService() {
+        return new JdbcStorageService(JdbcStorageService.fileUrl(directory.resolve("storage").toString()));
+    }
+
+    private List<Transaction> query(TransactionQuery query) {
+        var transactions = new ArrayList<Transaction>();
+        service.queryTransactions(query, transactions::add);
+        return transactions;
+    }
+
+}
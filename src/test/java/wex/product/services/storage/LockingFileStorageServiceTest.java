@@ -0,0 +1,191 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LockingFileStorageServiceTest {
+
+    private static final int PROCESSES = 4;
+    private static final int THREADS_PER_PROCESS = 4;
+    private static final int STORES_PER_THREAD = 10;
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.create();
+
+    private final Transaction sampleTransaction = new Transaction(
+            UUID.fromString("8a43c3eb-7210-47dd-8e7e-7ae3c92971d7"),
+            BigDecimal.valueOf(15.67),
+            LocalDate.parse("2023-08-24"),
+            "New Transaction");
+
+    @TempDir
+    private Path directory;
+
+    private Path storagePath;
+
+    private LockingFileStorageService service;
+
+    @BeforeEach
+    public void setUp() {
+        storagePath = directory.resolve("storage.json");
+        service = new LockingFileStorageService(storagePath.toString(), objectMapper);
+    }
+
+    @Test
+    public void findTransaction_ReturnsNull_WhenStorageDoesNotExist() {
+        assertNull(service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void queryTransactions_PassesMatchingTransactionsInDescriptionOrder() {
+        var result = new ArrayList<Transaction>();
+        service.queryTransactions(TransactionQuery.byDescriptionPrefix("New"), result::add);
+        assertTrue(result.isEmpty());
+
+        var other = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.parse("2023-01-01"), "New Purchase");
+        service.storeTransactions(List.of(sampleTransaction, other, new Transaction(UUID.randomUUID(), BigDecimal.TEN, LocalDate.parse("2023-02-01"), "Old Purchase")));
+        service.queryTransactions(TransactionQuery.byDescriptionPrefix("New"), result::add);
+
+        assertEquals(List.of(other, sampleTransaction), result);
+    }
+
+    @Test
+    public void storeTransaction_WritesJsonStorageCompatibleWithFileStorage() {
+        service.storeTransaction(sampleTransaction);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+        assertEquals(sampleTransaction, new FileStorageService(storagePath.toString(), objectMapper).findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void storeTransactions_AppendsWholeBatch() {
+        var other = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.parse("2023-07-31"), "Other");
+        service.storeTransaction(sampleTransaction);
+        service.storeTransactions(List.of(other));
+        assertEquals(Map.of(sampleTransaction.id(), sampleTransaction, other.id(), other),
+                service.findTransactions(List.of(sampleTransaction.id(), other.id())));
+    }
+
+    @Test
+    public void storeTransaction_LeavesNoTemporaryFiles() throws IOException {
+        service.storeTransaction(sampleTransaction);
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of("storage.json", "storage.json.lock"), files.map(p -> p.getFileName().toString()).sorted().toList());
+        }
+    }
+
+    @Test
+    public void storeTransaction_ThrowsUncheckedException_WhenStorageIsCorrupted() throws IOException {
+        Files.writeString(storagePath, "[{");
+        var exception = assertThrows(RuntimeException.class, () -> service.storeTransaction(sampleTransaction));
+        assertEquals("Can not write transactions to the file storage.", exception.getMessage());
+        assertEquals("[{", Files.readString(storagePath));
+    }
+
+    @Test
+    public void findTransaction_ThrowsUncheckedException_WhenStorageIsCorrupted() throws IOException {
+        Files.writeString(storagePath, "[{");
+        var exception = assertThrows(RuntimeException.class, () -> service.findTransaction(sampleTransaction.id()));
+        assertEquals("Can not read transactions from the file storage.", exception.getMessage());
+    }
+
+    @Test
+    public void reset_DeletesStorage() {
+        service.storeTransaction(sampleTransaction);
+        service.reset();
+        assertFalse(Files.exists(storagePath));
+        assertNull(service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void reset_ThrowsUncheckedException_WhenCatchesCheckedException() {
+        var brokenService = new LockingFileStorageService(directory.resolve("missing").resolve("storage.json"), objectMapper);
+        var exception = assertThrows(RuntimeException.class, brokenService::reset);
+        assertEquals("Can not reset the file storage.", exception.getMessage());
+    }
+
+    @Test
+    public void storeTransaction_LosesNoTransactions_WhenThreadsStoreConcurrently() throws Exception {
+        var ids = storeConcurrently(storagePath, THREADS_PER_PROCESS * 4, STORES_PER_THREAD);
+        assertAllStored(ids);
+    }
+
+    @Test
+    public void storeTransaction_LosesNoTransactions_WhenProcessesStoreConcurrently() throws Exception {
+        var javaPath = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var processes = new ArrayList<Process>();
+        for (var i = 0; i < PROCESSES; i++) {
+            processes.add(new ProcessBuilder(
+                    javaPath,
+                    "-cp", System.getProperty("java.class.path"),
+                    StoreWorker.class.getName(),
+                    storagePath.toString()
+            ).redirectErrorStream(true).start());
+        }
+        var ids = new ArrayList<UUID>();
+        for (var process : processes) {
+            var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(0, process.waitFor(), output);
+            output.lines().map(UUID::fromString).forEach(ids::add);
+        }
+        assertEquals(PROCESSES * THREADS_PER_PROCESS * STORES_PER_THREAD, ids.size());
+        assertAllStored(ids);
+    }
+
+    private void assertAllStored(List<UUID> ids) throws IOException {
+        var stored = objectMapper.readValue(storagePath.toFile(), Transaction[].class);
+        assertEquals(ids.size(), stored.length);
+        for (var id : ids) {
+            assertNotNull(service.findTransaction(id), id.toString());
+        }
+    }
+
+    private static List<UUID> storeConcurrently(Path storagePath, int threads, int storesPerThread) throws Exception {
+        var service = new LockingFileStorageService(storagePath, ObjectMapperFactory.create());
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var tasks = new ArrayList<Callable<List<UUID>>>();
+            for (var thread = 0; thread < threads; thread++) {
+                tasks.add(() -> {
+                    var ids = new ArrayList<UUID>();
+                    for (var i = 0; i < storesPerThread; i++) {
+                        var transaction = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(i, 2), LocalDate.now(), "Stress");
+                        service.storeTransaction(transaction);
+                        ids.add(transaction.id());
+                    }
+                    return ids;
+                });
+            }
+            var ids = new ArrayList<UUID>();
+            for (Future<List<UUID>> future : executor.invokeAll(tasks)) {
+                ids.addAll(future.get());
+            }
+            return ids;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static final class StoreWorker {
+        public static void main(String[] args) throws Exception {
+            storeConcurrently(Path.of(args[0]), THREADS_PER_PROCESS, STORES_PER_THREAD).forEach(System.out::println);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogStorageServiceTest {
+
+    private static final int PROCESSES = 4;
+    private static final int STORES_PER_PROCESS = 15;
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.create();
+
+    private final Transaction sampleTransaction = new Transaction(
+            UUID.fromString("8a43c3eb-7210-47dd-8e7e-7ae3c92971d7"),
+            BigDecimal.valueOf(15.67),
+            LocalDate.parse("2023-08-24"),
+            "New Transaction");
+
+    private final Transaction otherTransaction = new Transaction(
+            UUID.fromString("8a522a6c-28e3-4b94-aada-078e7fde20e6"),
+            BigDecimal.valueOf(81.12),
+            LocalDate.parse("2023-07-31"),
+            "Initial Transaction");
+
+    @TempDir
+    private Path directory;
+
+    private LogStorageService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        service.close();
+    }
+
+    @Test
+    public void openImportingLegacy_ImportsJsonStorageOnce_WhenLogDoesNotExist() throws IOException {
+        var jsonPath = directory.resolve("storage.json");
+        var logPath = directory.resolve("legacy.log");
+        objectMapper.writeValue(jsonPath.toFile(), List.of(otherTransaction, sampleTransaction));
+
+        try (var storage = LogStorageService.openImportingLegacy(logPath.toString(), jsonPath.toString(), objectMapper)) {
+            assertEquals(otherTransaction, storage.findTransaction(otherTransaction.id()));
+            assertEquals(sampleTransaction, storage.findTransaction(sampleTransaction.id()));
+            storage.reset();
+        }
+        try (var storage = LogStorageService.openImportingLegacy(logPath.toString(), jsonPath.toString(), objectMapper)) {
+            assertNull(storage.findTransaction(otherTransaction.id()));
+        }
+        assertTrue(Files.exists(jsonPath));
+        assertFalse(Files.exists(directory.resolve("legacy.log.import")));
+    }
+
+    @Test
+    public void openImportingLegacy_OpensEmptyLog_WhenThereIsNoJsonStorage() throws IOException {
+        var logPath = directory.resolve("legacy.log");
+        try (var storage = LogStorageService.openImportingLegacy(logPath.toString(), directory.resolve("storage.json").toString(), objectMapper)) {
+            assertNull(storage.findTransaction(otherTransaction.id()));
+        }
+    }
+
+    @Test
+    public void findTransaction_ReturnsNull_WhenStorageIsEmpty() {
+        assertNull(service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void findTransaction_ReturnsStoredTransaction() {
+        service.storeTransaction(otherTransaction);
+        service.storeTransaction(sampleTransaction);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+        assertEquals(otherTransaction, service.findTransaction(otherTransaction.id()));
+        assertNull(service.findTransaction(UUID.randomUUID()));
+    }
+
+    @Test
+    public void findTransaction_ReturnsTransactionStoredByPreviousInstance() throws IOException {
+        service.storeTransaction(sampleTransaction);
+        service.close();
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void storeTransaction_AppendsWithoutRewritingPreviousRecords() throws IOException {
+        var path = directory.resolve("storage.log");
+        service.storeTransaction(otherTransaction);
+        var before = Files.readAllBytes(path);
+        service.storeTransaction(sampleTransaction);
+        var after = Files.readAllBytes(path);
+        assertArrayEquals(before, Arrays.copyOf(after, before.length));
+    }
+
+    @Test
+    public void storeTransactions_StoresBatchFoundByLaterInstance() throws IOException {
+        service.storeTransactions(List.of(otherTransaction, sampleTransaction));
+        service.close();
+
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+        assertEquals(otherTransaction, service.findTransaction(otherTransaction.id()));
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void findTransaction_RebuildsIndexFromLog_WhenIndexIsMissing() throws IOException {
+        service.storeTransaction(otherTransaction);
+        service.storeTransaction(sampleTransaction);
+        service.close();
+        Files.delete(directory.resolve("storage.log.idx"));
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+        assertEquals(otherTransaction, service.findTransaction(otherTransaction.id()));
+    }
+
+    @Test
+    public void findTransaction_CatchesIndexUpWithLog_WhenIndexIsStale() throws IOException {
+        var indexPath = directory.resolve("storage.log.idx");
+        service.storeTransaction(otherTransaction);
+        service.close();
+        var staleIndex = Files.readAllBytes(indexPath);
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+        service.storeTransaction(sampleTransaction);
+        service.close();
+        Files.write(indexPath, staleIndex);
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+        assertEquals(otherTransaction, service.findTransaction(otherTransaction.id()));
+    }
+
+    @Test
+    public void findTransaction_RebuildsIndexFromLog_WhenIndexWasNotClosed() throws IOException {
+        service.storeTransaction(otherTransaction);
+        service.storeTransaction(sampleTransaction);
+        var crashed = service;
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+        assertEquals(otherTransaction, service.findTransaction(otherTransaction.id()));
+        crashed.close();
+    }
+
+    @Test
+    public void findTransaction_RebuildsIndex_WhenIndexCoversMoreThanLog() throws IOException {
+        service.storeTransaction(otherTransaction);
+        service.storeTransaction(sampleTransaction);
+        service.close();
+        var logPath = directory.resolve("storage.log");
+        var content = Files.readAllBytes(logPath);
+        Files.write(logPath, Arrays.copyOf(content, content.length - 1));
+        service = new LogStorageService(logPath.toString(), objectMapper);
+        assertNull(service.findTransaction(sampleTransaction.id()));
+        assertEquals(otherTransaction, service.findTransaction(otherTransaction.id()));
+    }
+
+    @Test
+    public void queryTransactions_FindsTransactionsByDateRangeInDateOrder() {
+        var transactions = queryTransactions();
+        service.storeTransactions(transactions);
+
+        assertEquals(List.of(transactions.get(3), transactions.get(0), transactions.get(2)),
+                query(TransactionQuery.byDateRange(LocalDate.parse("2023-01-01"), LocalDate.parse("2023-03-31"))));
+        assertEquals(List.of(transactions.get(1), transactions.get(3)), query(TransactionQuery.byDateRange(null, LocalDate.parse("2023-01-31"))));
+        assertEquals(List.of(), query(TransactionQuery.byDateRange(LocalDate.parse("2024-01-01"), null)));
+    }
+
+    @Test
+    public void queryTransactions_FindsTransactionsByDescriptionPrefixInDescriptionOrder() {
+        var transactions = queryTransactions();
+        service.storeTransactions(transactions);
+
+        assertEquals(List.of(transactions.get(3), transactions.get(0), transactions.get(2)), query(TransactionQuery.byDescriptionPrefix("WAL")));
+        assertEquals(List.of(transactions.get(1)), query(TransactionQuery.byDescriptionPrefix("Target")));
+        assertEquals(List.of(), query(TransactionQuery.byDescriptionPrefix("wal")));
+        assertEquals(List.of(transactions.get(4)), query(TransactionQuery.byDescriptionPrefix("x".repeat(70))));
+    }
+
+    @Test
+    public void queryTransactions_CombinesDateRangeAndDescriptionPrefixInDateOrder() {
+        var transactions = queryTransactions();
+        service.storeTransactions(transactions);
+
+        assertEquals(List.of(transactions.get(3), transactions.get(0)),
+                query(new TransactionQuery(LocalDate.parse("2023-01-01"), LocalDate.parse("2023-02-28"), "WALMART")));
+        assertEquals(List.of(transactions.get(0), transactions.get(2)),
+                query(new TransactionQuery(LocalDate.parse("2023-01-01"), null, "WALMART ")));
+    }
+
+    @Test
+    public void queryTransactions_IndexesTransactionsStoredAfterPreviousQueryAndByOtherInstance() throws IOException {
+        var transactions = queryTransactions();
+        service.storeTransactions(transactions.subList(0, 2));
+        assertEquals(List.of(transactions.get(0)), query(TransactionQuery.byDescriptionPrefix("WAL")));
+        service.storeTransactions(transactions.subList(2, 4));
+        service.close();
+        assertTrue(Files.exists(directory.resolve("storage.log.qidx")));
+
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+        service.storeTransaction(transactions.get(4));
+
+        assertEquals(List.of(transactions.get(3), transactions.get(0), transactions.get(2)), query(TransactionQuery.byDescriptionPrefix("WAL")));
+        assertEquals(transactions.size(), query(new TransactionQuery(null, null, null)).size());
+    }
+
+    @Test
+    public void queryTransactions_RebuildsIndex_WhenItIsDamagedOrStorageWasReset() throws IOException {
+        var transactions = queryTransactions();
+        service.storeTransactions(transactions);
+        query(TransactionQuery.byDescriptionPrefix("WAL"));
+        service.close();
+        try (var runs = Files.list(directory.resolve("storage.log.qidx"))) {
+            for (var run : runs.toList()) {
+                Files.writeString(run, "damaged");
+            }
+        }
+
+        service = new LogStorageService(directory.resolve("storage.log").toString(), objectMapper);
+        assertEquals(List.of(transactions.get(1)), query(TransactionQuery.byDescriptionPrefix("Target")));
+
+        service.reset();
+        assertFalse(Files.exists(directory.resolve("storage.log.qidx")));
+        service.storeTransaction(sampleTransaction);
+        assertEquals(List.of(sampleTransaction), query(new TransactionQuery(null, null, null)));
+    }
+
+    @Test
+    public void queryTransactions_IndexesLogInBoundedRuns() {
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i <= 1 << 16; i++) {
+            transactions.add(new Transaction(UUID.randomUUID(), BigDecimal.valueOf(i, 2), LocalDate.parse("2023-01-01").plusDays(i % 365), "Bulk " + i));
+        }
+        service.storeTransactions(transactions);
+
+        assertEquals(transactions.size(), query(TransactionQuery.byDescriptionPrefix("Bulk")).size());
+        assertEquals(List.of(transactions.get(1 << 16)), query(TransactionQuery.byDescriptionPrefix("Bulk " + (1 << 16))));
+    }
+
+    @Test
+    public void reset_RemovesAllTransactions() {
+        service.storeTransaction(sampleTransaction);
+        service.reset();
+        assertNull(service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void storeTransaction_ThrowsUncheckedException_WhenCatchesCheckedException() {
+        var brokenService = new LogStorageService(directory.resolve("missing").resolve("storage.log").toString(), objectMapper);
+        var exception = assertThrows(RuntimeException.class, () -> brokenService.storeTransaction(sampleTransaction));
+        assertEquals("Can not write transaction to the log storage.", exception.getMessage());
+    }
+
+    @Test
+    public void findTransaction_ThrowsUncheckedException_WhenCatchesCheckedException() {
+        var brokenService = new LogStorageService(directory.resolve("missing").resolve("storage.log").toString(), objectMapper);
+        var exception = assertThrows(RuntimeException.class, () -> brokenService.findTransaction(sampleTransaction.id()));
+        assertEquals("Can not read transactions from the log storage.", exception.getMessage());
+    }
+
+    @Test
+    public void reset_ThrowsUncheckedException_WhenCatchesCheckedException() {
+        var brokenService = new LogStorageService(directory.resolve("missing").resolve("storage.log").toString(), objectMapper);
+        var exception = assertThrows(RuntimeException.class, brokenService::reset);
+        assertEquals("Can not reset the log storage.", exception.getMessage());
+    }
+
+    @Test
+    public void storeTransaction_LosesNoTransactions_WhenProcessesStoreConcurrently() throws Exception {
+        var storagePath = directory.resolve("storage.log");
+        var javaPath = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var processes = new ArrayList<Process>();
+        for (var i = 0; i < PROCESSES; i++) {
+            processes.add(new ProcessBuilder(
+                    javaPath,
+                    "-cp", System.getProperty("java.class.path"),
+                    StoreWorker.class.getName(),
+                    storagePath.toString()
+            ).redirectErrorStream(true).start());
+        }
+        var ids = new ArrayList<UUID>();
+        for (var process : processes) {
+            var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(0, process.waitFor(), output);
+            output.lines().map(UUID::fromString).forEach(ids::add);
+        }
+        assertEquals(PROCESSES * STORES_PER_PROCESS, ids.size());
+        for (var id : ids) {
+            assertNotNull(service.findTransaction(id), id.toString());
+        }
+        assertEquals(ids.size(), query(new TransactionQuery(null, null, null)).size());
+    }
+
+    @Test
+    public void deleteTransactionsBefore_IsNotSupported() {
+        assertThrows(UnsupportedOperationException.class, () -> service.deleteTransactionsBefore(LocalDate.parse("2020-01-01")));
+    }
+
+    private List<Transaction> query(TransactionQuery query) {
+        var transactions = new ArrayList<Transaction>();
+        service.queryTransactions(query, transactions::add);
+        return transactions;
+    }
+
+    private static List<Transaction> queryTransactions() {
+        return List.of(
+                new Transaction(UUID.randomUUID(), new BigDecimal("10.00"), LocalDate.parse("2023-02-14"), "WALMART 1"),
+                new Transaction(UUID.randomUUID(), new BigDecimal("20.00"), LocalDate.parse("2022-12-31"), "Target"),
+                new Transaction(UUID.randomUUID(), new BigDecimal("30.00"), LocalDate.parse("2023-03-31"), "WALMART 2"),
+                new Transaction(UUID.randomUUID(), new BigDecimal("40.00"), LocalDate.parse("2023-01-01"), "WALMART"),
+                new Transaction(UUID.randomUUID(), new BigDecimal("50.00"), LocalDate.parse("2023-04-01"), "x".repeat(70))
+        );
+    }
+
+    /**
+     * Stores transactions the way parallel invocations of the application do, opening the storage for each of them,
+     * and queries it now and then so the query index is extended concurrently too.
+     */
+    public static final class StoreWorker {
+        public static void main(String[] args) throws Exception {
+            var objectMapper = ObjectMapperFactory.create();
+            for (var i = 0; i < STORES_PER_PROCESS; i++) {
+                var transaction = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(i, 2), LocalDate.now(), "Stress");
+                try (var storage = new LogStorageService(args[0], objectMapper)) {
+                    storage.storeTransaction(transaction);
+                    if (i % 5 == 0) {
+                        storage.queryTransactions(TransactionQuery.byDescriptionPrefix("Stress"), found -> {
+                        });
+                    }
+                }
+                System.out.println(transaction.id());
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedStorageServiceTest {
+
+    private final Transaction sampleTransaction = new Transaction(
+            UUID.fromString("8a43c3eb-7210-47dd-8e7e-7ae3c92971d7"),
+            BigDecimal.valueOf(15.67),
+            LocalDate.parse("2023-08-24"),
+            "New Transaction");
+
+    @TempDir
+    private Path directory;
+
+    private MappedStorageService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = new MappedStorageService(directory.resolve("storage.bin").toString());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        service.close();
+    }
+
+    @Test
+    public void findTransaction_ReturnsNull_WhenStorageIsEmpty() {
+        assertNull(service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void findTransaction_ReturnsStoredTransaction() {
+        service.storeTransaction(sampleTransaction);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+        assertNull(service.findTransaction(UUID.randomUUID()));
+    }
+
+    @Test
+    public void queryTransactions_PassesMatchingTransactionsInDateOrder() {
+        var earlier = new Transaction(UUID.randomUUID(), new BigDecimal("1.00"), LocalDate.parse("2023-08-01"), "Earlier Transaction");
+        var older = new Transaction(UUID.randomUUID(), new BigDecimal("10.00"), LocalDate.parse("2022-08-01"), "Older Transaction");
+        service.storeTransactions(List.of(sampleTransaction, older, earlier));
+
+        var result = new ArrayList<Transaction>();
+        service.queryTransactions(TransactionQuery.byDateRange(LocalDate.parse("2023-01-01"), LocalDate.parse("2023-12-31")), result::add);
+
+        assertEquals(List.of(earlier, sampleTransaction), result);
+    }
+
+    @Test
+    public void storeTransaction_GrowsMappingBeyondInitialCapacity() {
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 2500; i++) {
+            var transaction = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(i, 2), LocalDate.ofEpochDay(i), "Transaction " + i);
+            transactions.add(transaction);
+            service.storeTransaction(transaction);
+        }
+        for (var transaction : transactions) {
+            assertEquals(transaction, service.findTransaction(transaction.id()));
+        }
+    }
+
+    @Test
+    public void storeTransactions_GrowsMappingToFitWholeBatch() {
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 5000; i++) {
+            transactions.add(new Transaction(UUID.randomUUID(), BigDecimal.valueOf(i, 2), LocalDate.ofEpochDay(i), "Transaction " + i));
+        }
+        service.storeTransaction(sampleTransaction);
+        service.storeTransactions(transactions);
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+        for (var transaction : transactions) {
+            assertEquals(transaction, service.findTransaction(transaction.id()));
+        }
+    }
+
+    @Test
+    public void storeTransactions_SpreadsRecordsOverRegions() throws IOException {
+        var path = directory.resolve("regions.bin");
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 500; i++) {
+            transactions.add(new Transaction(UUID.randomUUID(), BigDecimal.valueOf(i, 2), LocalDate.ofEpochDay(i), "Transaction " + i));
+        }
+        try (var regions = new MappedStorageService(path, new TransactionIndex(directory.resolve("regions.bin.idx")), 4096)) {
+            regions.storeTransactions(transactions);
+            regions.storeTransaction(sampleTransaction);
+        }
+        Files.delete(directory.resolve("regions.bin.idx"));
+        try (var regions = new MappedStorageService(path, new TransactionIndex(directory.resolve("regions.bin.idx")), 4096)) {
+            assertEquals(sampleTransaction, regions.findTransaction(sampleTransaction.id()));
+            for (var transaction : transactions) {
+                assertEquals(transaction, regions.findTransaction(transaction.id()));
+            }
+        }
+    }
+
+    @Test
+    public void close_TruncatesFileToStoredRecords() throws IOException {
+        service.storeTransaction(sampleTransaction);
+        service.close();
+        assertEquals(MappedStorageService.HEADER_SIZE + TransactionCodec.FIXED_SIZE + sampleTransaction.description().length(),
+                Files.size(directory.resolve("storage.bin")));
+        service = new MappedStorageService(directory.resolve("storage.bin").toString());
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void close_KeepsFileSize_WhileAnotherInstanceUsesStorage() throws IOException {
+        var storagePath = directory.resolve("storage.bin");
+        service.storeTransaction(sampleTransaction);
+        try (var other = new MappedStorageService(storagePath.toString())) {
+            assertEquals(sampleTransaction, other.findTransaction(sampleTransaction.id()));
+            var size = Files.size(storagePath);
+            service.close();
+            assertEquals(size, Files.size(storagePath));
+            var later = new Transaction(UUID.randomUUID(), new BigDecimal("2.00"), LocalDate.parse("2023-08-25"), "Later Transaction");
+            other.storeTransaction(later);
+            assertEquals(later, other.findTransaction(later.id()));
+        }
+        assertEquals(MappedStorageService.HEADER_SIZE + 2L * TransactionCodec.FIXED_SIZE + "New Transaction".length() + "Later Transaction".length(),
+                Files.size(storagePath));
+    }
+
+    @Test
+    public void findTransaction_ReturnsTransactionStoredByPreviousInstance_WhenIndexIsMissing() throws IOException {
+        service.storeTransaction(sampleTransaction);
+        service.close();
+        Files.delete(directory.resolve("storage.bin.idx"));
+        service = new MappedStorageService(directory.resolve("storage.bin").toString());
+        assertEquals(sampleTransaction, service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void reset_RemovesAllTransactions() throws IOException {
+        service.storeTransaction(sampleTransaction);
+        service.reset();
+        assertNull(service.findTransaction(sampleTransaction.id()));
+        service.close();
+        service = new MappedStorageService(directory.resolve("storage.bin").toString());
+        assertNull(service.findTransaction(sampleTransaction.id()));
+    }
+
+    @Test
+    public void storeTransaction_ThrowsUncheckedException_WhenCatchesCheckedException() {
+        var brokenService = new MappedStorageService(directory.resolve("missing").resolve("storage.bin").toString());
+        var exception = assertThrows(RuntimeException.class, () -> brokenService.storeTransaction(sampleTransaction));
+        assertEquals("Can not write transaction to the mapped storage.", exception.getMessage());
+    }
+
+    @Test
+    public void findTransaction_ThrowsUncheckedException_WhenCatchesCheckedException() {
+        var brokenService = new MappedStorageService(directory.resolve("missing").resolve("storage.bin").toString());
+        var exception = assertThrows(RuntimeException.class, () -> brokenService.findTransaction(sampleTransaction.id()));
+        assertEquals("Can not read transactions from the mapped storage.", exception.getMessage());
+    }
+
+    @Test
+    public void reset_ThrowsUncheckedException_WhenCatchesCheckedException() {
+        var brokenService = new MappedStorageService(directory.resolve("missing").resolve("storage.bin").toString());
+        var exception = assertThrows(RuntimeException.class, brokenService::reset);
+        assertEquals("Can not reset the mapped storage.", exception.getMessage());
+    }
+}
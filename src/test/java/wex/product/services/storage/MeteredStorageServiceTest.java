@@ -0,0 +1,90 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.Test;
+import wex.product.metrics.Metrics;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class MeteredStorageServiceTest {
+
+    private final Transaction transaction = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.parse("2023-08-24"), "Purchase");
+
+    private final StorageService delegate = mock(StorageService.class);
+
+    private final Metrics metrics = new Metrics();
+
+    private final MeteredStorageService service = new MeteredStorageService(delegate, metrics);
+
+    @Test
+    public void storeTransactions_RecordsWriteLatencies() {
+        service.storeTransaction(transaction);
+        service.storeTransactions(List.of(transaction));
+
+        assertEquals(2, metrics.histogram("storage.write").snapshot().count());
+        verify(delegate).storeTransaction(transaction);
+        verify(delegate).storeTransactions(List.of(transaction));
+    }
+
+    @Test
+    public void findTransactions_RecordsReadLatenciesAndMisses() {
+        var missingId = UUID.randomUUID();
+        when(delegate.findTransaction(transaction.id())).thenReturn(transaction);
+        when(delegate.findTransactions(List.of(transaction.id(), missingId))).thenReturn(Map.of(transaction.id(), transaction));
+
+        assertEquals(transaction, service.findTransaction(transaction.id()));
+        assertNull(service.findTransaction(missingId));
+        assertEquals(Map.of(transaction.id(), transaction), service.findTransactions(List.of(transaction.id(), missingId)));
+
+        assertEquals(3, metrics.histogram("storage.read").snapshot().count());
+        assertEquals(2, metrics.counter("storage.read.misses").sum());
+    }
+
+    @Test
+    public void deleteTransactionsBefore_DelegatesWithoutRecording() {
+        var date = LocalDate.parse("2020-01-01");
+        service.deleteTransactionsBefore(date);
+        verify(delegate).deleteTransactionsBefore(date);
+        assertEquals(0, metrics.histogram("storage.write").snapshot().count());
+    }
+
+    @Test
+    public void forEachTransaction_DelegatesWithoutRecording() {
+        Consumer<Transaction> consumer = ignored -> {
+        };
+        service.forEachTransaction(consumer);
+        verify(delegate).forEachTransaction(consumer);
+        assertEquals(0, metrics.histogram("storage.read").snapshot().count());
+    }
+
+    @Test
+    public void queryTransactions_DelegatesWithoutRecording() {
+        var query = TransactionQuery.byDescriptionPrefix("Pur");
+        Consumer<Transaction> consumer = ignored -> {
+        };
+        service.queryTransactions(query, consumer);
+        verify(delegate).queryTransactions(query, consumer);
+        assertEquals(0, metrics.histogram("storage.read").snapshot().count());
+    }
+
+    @Test
+    public void close_ClosesDelegate() throws IOException {
+        service.close();
+        verify(delegate).close();
+    }
+
+    @Test
+    public void storeTransaction_RecordsLatency_WhenDelegateFails() {
+        doThrow(new RuntimeException("test")).when(delegate).storeTransaction(transaction);
+        assertThrows(RuntimeException.class, () -> service.storeTransaction(transaction));
+        assertEquals(1, metrics.histogram("storage.write").snapshot().count());
+    }
+}
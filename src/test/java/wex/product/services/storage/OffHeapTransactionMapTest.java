@@ -0,0 +1,121 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapTransactionMapTest {
+
+    @Test
+    public void get_ReturnsNull_WhenIdIsNotStored() {
+        var map = new OffHeapTransactionMap(10);
+        assertNull(map.get(UUID.randomUUID()));
+    }
+
+    @Test
+    public void put_ReplacesTransactionWithTheSameId() {
+        var map = new OffHeapTransactionMap(10);
+        var id = UUID.randomUUID();
+        map.put(new Transaction(id, new BigDecimal("1.00"), LocalDate.parse("2023-08-24"), "First"));
+        var replacement = new Transaction(id, new BigDecimal("2.50"), LocalDate.parse("2023-08-25"), "Second");
+
+        assertTrue(map.put(replacement));
+
+        assertEquals(replacement, map.get(id));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void put_GrowsBeyondOneRecordChunkAndTableResize() {
+        var records = OffHeapTransactionMap.CHUNK_SIZE / TransactionCodec.FIXED_SIZE + 100;
+        var map = new OffHeapTransactionMap(records);
+
+        for (var i = 0; i < records; i++) {
+            assertTrue(map.put(transaction(i)));
+        }
+
+        assertEquals(records, map.size());
+        for (var i = 0; i < records; i += 997) {
+            assertEquals(transaction(i), map.get(new UUID(i, ~i)));
+        }
+        assertEquals(transaction(records - 1), map.get(new UUID(records - 1, ~(records - 1))));
+        assertNull(map.get(new UUID(records, ~records)));
+    }
+
+    @Test
+    public void put_ReturnsFalse_WhenMaxRecordsAreStored() {
+        var map = new OffHeapTransactionMap(2);
+        assertTrue(map.put(transaction(0)));
+        assertTrue(map.put(transaction(1)));
+
+        assertFalse(map.put(transaction(2)));
+        assertTrue(map.put(transaction(1)));
+
+        assertNull(map.get(new UUID(2, ~2)));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void put_PacksRecordsByEncodedSize() {
+        var records = 50_000;
+        var map = new OffHeapTransactionMap(records, OffHeapTransactionMap.CHUNK_SIZE + (1 << 17) * Integer.BYTES);
+
+        for (var i = 0; i < records; i++) {
+            assertTrue(map.put(transaction(i)));
+        }
+
+        assertEquals(records, map.size());
+        assertEquals(transaction(records - 1), map.get(new UUID(records - 1, ~(records - 1))));
+    }
+
+    @Test
+    public void put_ReturnsFalse_OnceMemoryBudgetIsUsed() {
+        var map = new OffHeapTransactionMap(10_000, OffHeapTransactionMap.CHUNK_SIZE + 1024 * Integer.BYTES);
+        var stored = 0;
+        while (map.put(transaction(stored))) {
+            stored++;
+        }
+
+        assertEquals(512, stored);
+        assertFalse(map.put(transaction(stored + 1)));
+        var replacement = new Transaction(new UUID(0, ~0), new BigDecimal("10.00"), LocalDate.parse("2023-08-24"), "Replacement");
+        assertTrue(map.put(replacement));
+        assertEquals(replacement, map.get(new UUID(0, ~0)));
+
+        map.clear();
+        assertTrue(map.put(transaction(stored)));
+    }
+
+    @Test
+    public void directMemoryBudget_IsAShareOfMaxDirectMemory() {
+        var budget = OffHeapTransactionMap.directMemoryBudget();
+        assertTrue(budget > 0 && budget < Long.MAX_VALUE / 2, String.valueOf(budget));
+    }
+
+    @Test
+    public void clear_DropsAllTransactions() {
+        var map = new OffHeapTransactionMap(10);
+        map.put(transaction(0));
+
+        map.clear();
+
+        assertNull(map.get(new UUID(0, ~0)));
+        assertEquals(0, map.size());
+        assertTrue(map.put(transaction(1)));
+        assertEquals(transaction(1), map.get(new UUID(1, ~1)));
+    }
+
+    @Test
+    public void constructor_ThrowsIllegalArgumentException_WhenMaxRecordsAreOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapTransactionMap(0));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapTransactionMap(OffHeapTransactionMap.MAX_RECORDS + 1));
+    }
+
+    private static Transaction transaction(int index) {
+        return new Transaction(new UUID(index, ~index), BigDecimal.valueOf(index, 2), LocalDate.ofEpochDay(index % 20_000), "Purchase " + index);
+    }
+}
@@ -0,0 +1,122 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryIndexTest {
+
+    @TempDir
+    private Path directory;
+
+    private Path indexPath;
+    private QueryIndex index;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        indexPath = directory.resolve("storage.log.qidx");
+        index = new QueryIndex(indexPath);
+        index.open(0);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    public void append_MergesRunsSoThatFewRemain() throws IOException {
+        for (var offset = 0L; offset < 100; offset++) {
+            index.append(offset + 1, List.of(new QueryIndex.Entry(offset, 19_000 + offset % 10, "Purchase " + offset)));
+        }
+
+        assertEquals(100, index.coveredSize());
+        assertTrue(runCount() <= 7, String.valueOf(runCount()));
+        var expected = LongStream.range(0, 100).boxed()
+                .sorted((first, second) -> Long.compare(first % 10, second % 10))
+                .mapToLong(Long::longValue)
+                .toArray();
+        assertArrayEquals(expected, index.findByDate(null, null));
+        assertArrayEquals(new long[]{1, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19}, index.findByDescriptionPrefix("Purchase 1"));
+    }
+
+    @Test
+    public void find_KeepsLogOrderOfEqualDatesAndKeysAcrossRuns() throws IOException {
+        index.append(10, List.of(entry(0, "2023-02-01", "WALMART"), entry(5, "2023-01-01", "Target")));
+        index.append(20, List.of(entry(10, "2023-01-01", "WALMART"), entry(15, "2023-03-01", "WALMART 2")));
+        index.append(30, List.of(entry(20, "2023-02-01", "Target")));
+
+        assertArrayEquals(new long[]{5, 10, 0, 20}, index.findByDate(LocalDate.parse("2023-01-01"), LocalDate.parse("2023-02-28")));
+        assertEquals(4, index.countByDate(null, LocalDate.parse("2023-02-01")));
+        assertArrayEquals(new long[]{0, 10, 15}, index.findByDescriptionPrefix("WAL"));
+        assertEquals(2, index.countByDescriptionPrefix("Target"));
+        assertArrayEquals(new long[0], index.findByDescriptionPrefix("wal"));
+    }
+
+    @Test
+    public void find_MatchesLongPrefixesByIndexedPart() throws IOException {
+        var description = "x".repeat(QueryIndex.MAX_KEY_LENGTH + 10);
+        index.append(10, List.of(QueryIndex.Entry.of(0, new Transaction(null, null, LocalDate.parse("2023-01-01"), description))));
+
+        assertArrayEquals(new long[]{0}, index.findByDescriptionPrefix(description + "y"));
+    }
+
+    @Test
+    public void open_KeepsRunsCoveringTheLogAndDeletesTheRest() throws IOException {
+        index.append(10, List.of(entry(0, "2023-01-01", "A")));
+        index.append(20, List.of(entry(10, "2023-01-02", "B"), entry(15, "2023-01-03", "C")));
+        index.append(30, List.of(entry(20, "2023-01-04", "D")));
+        index.close();
+        Files.writeString(indexPath.resolve("run-0000000000000000030-0000000000000000040"), "damaged");
+        Files.writeString(indexPath.resolve("run-0000000000000000040-0000000000000000050"), "unreachable");
+        Files.writeString(indexPath.resolve("leftover.tmp"), "partial");
+
+        index.open(25);
+
+        assertEquals(20, index.coveredSize());
+        assertArrayEquals(new long[]{0, 10, 15}, index.findByDate(null, null));
+        assertEquals(1, runCount());
+    }
+
+    @Test
+    public void open_ReplacesSingleFileIndexOfEarlierVersion() throws IOException {
+        index.clear();
+        Files.writeString(indexPath, "earlier version");
+
+        index.open(10);
+
+        assertTrue(Files.isDirectory(indexPath));
+        assertEquals(0, index.coveredSize());
+    }
+
+    @Test
+    public void clear_DeletesTheIndex() throws IOException {
+        index.append(10, List.of(entry(0, "2023-01-01", "A")));
+
+        index.clear();
+
+        assertFalse(Files.exists(indexPath));
+        index.open(10);
+        assertEquals(0, index.coveredSize());
+    }
+
+    private long runCount() throws IOException {
+        try (var runs = Files.list(indexPath)) {
+            return runs.count();
+        }
+    }
+
+    private static QueryIndex.Entry entry(long offset, String date, String description) {
+        return new QueryIndex.Entry(offset, LocalDate.parse(date).toEpochDay(), description);
+    }
+}
@@ -0,0 +1,154 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordLogTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void constructor_ThrowsIllegalArgumentException_WhenSyncBatchSizeIsNotPositive() {
+        var exception = assertThrows(IllegalArgumentException.class, () -> new RecordLog(directory.resolve("test.log"), 0));
+        assertEquals("Sync batch size must be positive.", exception.getMessage());
+    }
+
+    @Test
+    public void append_ReturnsOffsetsOfLengthPrefixedRecords() throws IOException {
+        try (var log = new RecordLog(directory.resolve("test.log"), 1)) {
+            assertEquals(0, log.append(new byte[]{1, 2, 3}));
+            assertEquals(RecordLog.HEADER_SIZE + 3, log.append(new byte[]{4}));
+            assertEquals(2L * RecordLog.HEADER_SIZE + 4, log.size());
+        }
+    }
+
+    @Test
+    public void appendAll_ReturnsOffsetsOfRecordsReadableAfterReopen() throws IOException {
+        var path = directory.resolve("test.log");
+        long[] offsets;
+        try (var log = new RecordLog(path, 1000)) {
+            log.append(new byte[]{1});
+            offsets = log.appendAll(List.of(new byte[]{2, 3}, new byte[]{4}));
+            assertArrayEquals(new long[]{RecordLog.HEADER_SIZE + 1, 2L * RecordLog.HEADER_SIZE + 3}, offsets);
+        }
+        try (var log = new RecordLog(path, 1)) {
+            assertArrayEquals(new byte[]{2, 3}, log.read(offsets[0]));
+            assertArrayEquals(new byte[]{4}, log.read(offsets[1]));
+        }
+    }
+
+    @Test
+    public void read_ReturnsPayloadStoredAtOffset() throws IOException {
+        try (var log = new RecordLog(directory.resolve("test.log"), 1)) {
+            log.append(new byte[]{1, 2, 3});
+            var offset = log.append(new byte[]{4, 5});
+            assertArrayEquals(new byte[]{4, 5}, log.read(offset));
+        }
+    }
+
+    @Test
+    public void read_ThrowsIOException_WhenOffsetDoesNotPointToRecord() throws IOException {
+        try (var log = new RecordLog(directory.resolve("test.log"), 1)) {
+            log.append(new byte[]{1, 2, 3});
+            assertThrows(IOException.class, () -> log.read(2));
+        }
+    }
+
+    @Test
+    public void scan_VisitsRecordsInOrderUntilVisitorStops() throws IOException {
+        try (var log = new RecordLog(directory.resolve("test.log"), 2)) {
+            log.append(new byte[]{1});
+            log.append(new byte[]{2});
+            log.append(new byte[]{3});
+            var visited = new ArrayList<Byte>();
+            log.scan(0, (offset, payload) -> visited.add(payload[0]) && payload[0] < 2);
+            assertEquals(2, visited.size());
+            assertEquals((byte) 2, visited.get(1));
+        }
+    }
+
+    @Test
+    public void truncate_RemovesAllRecords() throws IOException {
+        try (var log = new RecordLog(directory.resolve("test.log"), 1)) {
+            log.append(new byte[]{1});
+            log.truncate();
+            assertEquals(0, log.size());
+        }
+    }
+
+    @Test
+    public void open_RecoversRecordsWrittenByPreviousInstance() throws IOException {
+        var path = directory.resolve("test.log");
+        try (var log = new RecordLog(path, 10)) {
+            log.append(new byte[]{1});
+            log.append(new byte[]{2});
+        }
+        try (var log = new RecordLog(path, 1)) {
+            assertEquals(2L * (RecordLog.HEADER_SIZE + 1), log.size());
+        }
+    }
+
+    @Test
+    public void open_TruncatesTornTail() throws IOException {
+        var path = directory.resolve("test.log");
+        try (var log = new RecordLog(path, 1)) {
+            log.append(new byte[]{1});
+        }
+        Files.write(path, new byte[]{0, 0, 0, 9, 1, 2}, StandardOpenOption.APPEND);
+        try (var log = new RecordLog(path, 1)) {
+            assertEquals(RecordLog.HEADER_SIZE + 1, log.size());
+        }
+        assertEquals(RecordLog.HEADER_SIZE + 1, Files.size(path));
+    }
+
+    @Test
+    public void append_ThrowsIllegalArgumentException_WhenPayloadIsEmpty() throws IOException {
+        try (var log = new RecordLog(directory.resolve("test.log"), 1)) {
+            var exception = assertThrows(IllegalArgumentException.class, () -> log.append(new byte[0]));
+            assertEquals("Records must not be empty.", exception.getMessage());
+        }
+    }
+
+    @Test
+    public void open_ThrowsIOException_WhenRecordBeforeValidRecordsIsCorrupted() throws IOException {
+        var path = directory.resolve("test.log");
+        try (var log = new RecordLog(path, 1)) {
+            log.append(new byte[]{1});
+            log.append(new byte[]{2});
+            log.append(new byte[]{3});
+        }
+        var content = Files.readAllBytes(path);
+        content[2 * RecordLog.HEADER_SIZE + 1] = 7;
+        Files.write(path, content);
+        try (var log = new RecordLog(path, 1)) {
+            var exception = assertThrows(IOException.class, log::size);
+            assertEquals(String.format("The record log is damaged at offset %d.", RecordLog.HEADER_SIZE + 1), exception.getMessage());
+        }
+        assertArrayEquals(content, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void open_TruncatesLastRecordWithCorruptedChecksum() throws IOException {
+        var path = directory.resolve("test.log");
+        try (var log = new RecordLog(path, 1)) {
+            log.append(new byte[]{1});
+            log.append(new byte[]{2});
+        }
+        var content = Files.readAllBytes(path);
+        content[content.length - 1] = 7;
+        Files.write(path, content);
+        try (var log = new RecordLog(path, 1)) {
+            assertEquals(RecordLog.HEADER_SIZE + 1, log.size());
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentedStorageServiceTest {
+
+    private static final long MAX_SEGMENT_BYTES = 1_000;
+    private static final LocalDate OLD_DATE = LocalDate.parse("2019-06-30");
+    private static final LocalDate NEW_DATE = LocalDate.parse("2023-08-24");
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.create();
+
+    private final List<Runnable> compactions = new ArrayList<>();
+
+    @TempDir
+    private Path directory;
+
+    private SegmentedStorageService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = createService();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        service.close();
+    }
+
+    @Test
+    public void storeTransactions_RollsIntoSizeBoundedSegmentsWithSummaries() throws IOException {
+        var transactions = transactions(0, 40, NEW_DATE);
+        service.storeTransactions(transactions);
+        transactions.forEach(service::storeTransaction);
+
+        assertTrue(service.segmentCount() > 5);
+        try (var files = Files.list(directory)) {
+            var names = files.map(path -> path.getFileName().toString()).toList();
+            assertEquals(service.segmentCount() - 1, names.stream().filter(name -> name.endsWith(".summary")).count());
+        }
+        for (var transaction : transactions) {
+            assertEquals(transaction, service.findTransaction(transaction.id()));
+        }
+        assertNull(service.findTransaction(UUID.randomUUID()));
+    }
+
+    @Test
+    public void findTransaction_ReturnsTransactionsStoredByPreviousInstance() throws IOException {
+        var transactions = transactions(0, 30, NEW_DATE);
+        transactions.forEach(service::storeTransaction);
+
+        service.close();
+        service = createService();
+
+        for (var transaction : transactions) {
+            assertEquals(transaction, service.findTransaction(transaction.id()));
+        }
+    }
+
+    @Test
+    public void findTransaction_IndexesActiveSegmentFromCheckpointAndRecordsAppendedAfterIt() throws IOException {
+        var transactions = transactions(0, 3, NEW_DATE);
+        service.storeTransactions(transactions.subList(0, 2));
+        service.close();
+        assertTrue(Files.exists(directory.resolve("segment-000000000001.summary")));
+
+        service = createService();
+        service.storeTransaction(transactions.get(2));
+        assertEquals(1, service.segmentCount());
+        for (var transaction : transactions) {
+            assertEquals(transaction, service.findTransaction(transaction.id()));
+        }
+
+        service.close();
+        Files.writeString(directory.resolve("segment-000000000001.summary"), "damaged");
+        service = createService();
+        for (var transaction : transactions) {
+            assertEquals(transaction, service.findTransaction(transaction.id()));
+        }
+    }
+
+    @Test
+    public void findTransaction_ThrowsUncheckedException_WhenRetentionIsDamaged() throws IOException {
+        service.storeTransaction(transaction(0, NEW_DATE));
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+        service.close();
+        Files.writeString(directory.resolve("retention"), "damaged");
+
+        service = createService();
+
+        var exception = assertThrows(RuntimeException.class, () -> service.findTransaction(UUID.randomUUID()));
+        assertEquals("Can not read transactions from the segmented storage.", exception.getMessage());
+        assertInstanceOf(IOException.class, exception.getCause());
+    }
+
+    @Test
+    public void findTransaction_RebuildsSummaries_WhenTheyAreMissingOrDamaged() throws IOException {
+        var transactions = transactions(0, 30, NEW_DATE);
+        transactions.forEach(service::storeTransaction);
+        service.close();
+        Files.delete(directory.resolve("segment-000000000001.summary"));
+        Files.writeString(directory.resolve("segment-000000000002.summary"), "damaged");
+        Files.write(directory.resolve("segment-000000000003.log"), new byte[]{0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        service = createService();
+
+        for (var transaction : transactions) {
+            assertEquals(transaction, service.findTransaction(transaction.id()));
+        }
+        assertTrue(Files.exists(directory.resolve("segment-000000000001.summary")));
+    }
+
+    @Test
+    public void deleteTransactionsBefore_DeletesOlderSegmentsAndHidesOlderTransactions() throws IOException {
+        var old = transactions(0, 20, OLD_DATE);
+        var mixed = List.of(transaction(100, OLD_DATE), transaction(101, NEW_DATE));
+        var recent = transactions(200, 20, NEW_DATE);
+        service.storeTransactions(old);
+        service.storeTransactions(mixed);
+        service.storeTransactions(recent);
+        var segmentsBefore = service.segmentCount();
+
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+
+        assertTrue(service.segmentCount() < segmentsBefore);
+        assertFalse(Files.exists(directory.resolve("segment-000000000001.log")));
+        for (var transaction : old) {
+            assertNull(service.findTransaction(transaction.id()));
+        }
+        assertNull(service.findTransaction(mixed.get(0).id()));
+        assertEquals(mixed.get(1), service.findTransaction(mixed.get(1).id()));
+        for (var transaction : recent) {
+            assertEquals(transaction, service.findTransaction(transaction.id()));
+        }
+
+        service.close();
+        service = createService();
+        assertNull(service.findTransaction(mixed.get(0).id()));
+        assertEquals(mixed.get(1), service.findTransaction(mixed.get(1).id()));
+    }
+
+    @Test
+    public void queryTransactions_ScansRetainedTransactionsOfEverySegment() {
+        var sealed = transactions(0, 20, NEW_DATE);
+        var hidden = transaction(100, OLD_DATE);
+        var active = transaction(101, NEW_DATE.minusDays(1));
+        service.storeTransactions(sealed);
+        service.storeTransactions(List.of(hidden, active));
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+
+        var byDate = new ArrayList<Transaction>();
+        service.queryTransactions(TransactionQuery.byDateRange(null, NEW_DATE), byDate::add);
+        var expected = new ArrayList<Transaction>();
+        expected.add(active);
+        expected.addAll(sealed);
+        assertEquals(expected, byDate);
+
+        var byDescription = new ArrayList<Transaction>();
+        service.queryTransactions(TransactionQuery.byDescriptionPrefix("Purchase 10"), byDescription::add);
+        assertEquals(List.of(sealed.get(10), active), byDescription);
+    }
+
+    @Test
+    public void compact_DropsHiddenTransactionsAndMergesSmallSegments() throws IOException {
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 40; i++) {
+            transactions.add(transaction(i, i % 2 == 0 ? OLD_DATE : NEW_DATE));
+        }
+        transactions.forEach(service::storeTransaction);
+        var sizeBefore = segmentsSize();
+        assertFalse(compactions.isEmpty());
+
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+        compactions.forEach(Runnable::run);
+
+        assertTrue(segmentsSize() < sizeBefore * 3 / 4);
+        assertEquals(0, service.compact());
+        for (var transaction : transactions) {
+            assertEquals(transaction.date().equals(NEW_DATE) ? transaction : null, service.findTransaction(transaction.id()));
+        }
+
+        service.close();
+        service = createService();
+        for (var transaction : transactions) {
+            assertEquals(transaction.date().equals(NEW_DATE) ? transaction : null, service.findTransaction(transaction.id()));
+        }
+    }
+
+    @Test
+    public void deleteTransactionsBefore_CompactsHiddenTransactionsBeforeReturning() throws IOException {
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 40; i++) {
+            transactions.add(transaction(i, i % 2 == 0 ? OLD_DATE : NEW_DATE));
+        }
+        transactions.forEach(service::storeTransaction);
+        var sizeBefore = segmentsSize();
+
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+
+        assertTrue(segmentsSize() < sizeBefore * 3 / 4);
+        assertEquals(0, service.compact());
+    }
+
+    @Test
+    public void storeTransaction_ThrowsIllegalArgumentException_WhenDatedBeforeDeletedTransactions() throws IOException {
+        service.storeTransactions(transactions(0, 5, NEW_DATE));
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+        var old = transaction(100, OLD_DATE);
+
+        assertThrows(IllegalArgumentException.class, () -> service.storeTransaction(old));
+        assertThrows(IllegalArgumentException.class, () -> service.storeTransactions(List.of(transaction(101, NEW_DATE), old)));
+
+        service.close();
+        service = createService();
+        assertThrows(IllegalArgumentException.class, () -> service.storeTransaction(old));
+        assertNull(service.findTransaction(transaction(101, NEW_DATE).id()));
+        var recent = transaction(102, LocalDate.parse("2020-01-01"));
+        service.storeTransaction(recent);
+        assertEquals(recent, service.findTransaction(recent.id()));
+    }
+
+    @Test
+    public void close_WaitsForBackgroundCompaction() throws IOException {
+        var executor = Executors.newSingleThreadExecutor();
+        var backgroundService = new SegmentedStorageService(directory.resolve("background"), objectMapper, MAX_SEGMENT_BYTES, executor);
+        var transactions = transactions(0, 40, NEW_DATE);
+        transactions.forEach(backgroundService::storeTransaction);
+
+        backgroundService.close();
+
+        assertTrue(executor.isTerminated());
+        backgroundService = new SegmentedStorageService(directory.resolve("background"), objectMapper, MAX_SEGMENT_BYTES, Runnable::run);
+        for (var transaction : transactions) {
+            assertEquals(transaction, backgroundService.findTransaction(transaction.id()));
+        }
+        backgroundService.close();
+    }
+
+    @Test
+    public void compact_DeletesSegments_WhenAllTheirTransactionsAreHidden() {
+        var transactions = new ArrayList<Transaction>();
+        for (var i = 0; i < 20; i++) {
+            transactions.add(transaction(i, i < 10 ? OLD_DATE : NEW_DATE));
+        }
+        transactions.forEach(service::storeTransaction);
+        service.storeTransactions(transactions(100, 20, NEW_DATE));
+
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+        service.compact();
+
+        for (var transaction : transactions) {
+            assertEquals(transaction.date().equals(NEW_DATE) ? transaction : null, service.findTransaction(transaction.id()));
+        }
+    }
+
+    @Test
+    public void reset_DeletesAllSegments() throws IOException {
+        service.storeTransactions(transactions(0, 30, NEW_DATE));
+        service.deleteTransactionsBefore(LocalDate.parse("2020-01-01"));
+
+        service.reset();
+
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        assertEquals(1, service.segmentCount());
+        var transaction = transaction(0, OLD_DATE);
+        service.storeTransaction(transaction);
+        assertEquals(transaction, service.findTransaction(transaction.id()));
+    }
+
+    @Test
+    public void findTransaction_IgnoresLeftoversOfInterruptedCompaction() throws IOException {
+        var transaction = transaction(0, NEW_DATE);
+        service.storeTransaction(transaction);
+        service.close();
+        Files.writeString(directory.resolve("segment-000000000001.log.compacting"), "partial");
+
+        service = createService();
+
+        assertEquals(transaction, service.findTransaction(transaction.id()));
+        assertFalse(Files.exists(directory.resolve("segment-000000000001.log.compacting")));
+    }
+
+    @Test
+    public void constructor_ThrowsIllegalArgumentException_WhenSegmentSizeIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new SegmentedStorageService(directory, objectMapper, 0, Runnable::run));
+    }
+
+    private long segmentsSize() throws IOException {
+        try (var files = Files.list(directory)) {
+            var size = 0L;
+            for (var file : files.filter(path -> path.toString().endsWith(".log")).toList()) {
+                size += Files.size(file);
+            }
+            return size;
+        }
+    }
+
+    private SegmentedStorageService createService() {
+        return new SegmentedStorageService(directory, objectMapper, MAX_SEGMENT_BYTES, compactions::add);
+    }
+
+    private static List<Transaction> transactions(int from, int count, LocalDate date) {
+        var transactions = new ArrayList<Transaction>();
+        for (var i = from; i < from + count; i++) {
+            transactions.add(transaction(i, date));
+        }
+        return transactions;
+    }
+
+    private static Transaction transaction(int index, LocalDate date) {
+        return new Transaction(new UUID(index, index * 31L), BigDecimal.valueOf(index, 2), date, "Purchase " + index);
+    }
+}
@@ -0,0 +1,41 @@
+package wex.product.services.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import wex.product.mapper.ObjectMapperFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorageServiceFactoryTest {
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.create();
+
+    @Test
+    public void create_ReturnsLogStorage_WhenTypeIsNotProvided() {
+        assertInstanceOf(LogStorageService.class, StorageServiceFactory.create(null, objectMapper));
+    }
+
+    @Test
+    public void create_ReturnsStorageOfRequestedType() {
+        assertInstanceOf(LogStorageService.class, StorageServiceFactory.create("log", objectMapper));
+        assertInstanceOf(FileStorageService.class, StorageServiceFactory.create("file", objectMapper));
+        assertInstanceOf(MappedStorageService.class, StorageServiceFactory.create("mapped", objectMapper));
+        assertInstanceOf(LockingFileStorageService.class, StorageServiceFactory.create("locking-file", objectMapper));
+        assertInstanceOf(SegmentedStorageService.class, StorageServiceFactory.create("segmented", objectMapper));
+        assertInstanceOf(JdbcStorageService.class, StorageServiceFactory.create("jdbc", objectMapper));
+    }
+
+    @Test
+    public void create_ThrowsIllegalArgumentException_WhenSyncBatchSizeIsNotPositiveNumber() {
+        var exception = assertThrows(IllegalArgumentException.class, () -> StorageServiceFactory.create("log", "0", objectMapper));
+        assertEquals("Sync batch size 0 is not a positive number.", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> StorageServiceFactory.create(null, "many", objectMapper));
+        assertEquals("Sync batch size many is not a positive number.", exception.getMessage());
+    }
+
+    @Test
+    public void create_ThrowsIllegalArgumentException_WhenTypeIsUnknown() {
+        var exception = assertThrows(IllegalArgumentException.class, () -> StorageServiceFactory.create("tape", objectMapper));
+        assertEquals("Unknown storage type tape.", exception.getMessage());
+    }
+}
@@ -0,0 +1,76 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionCodecTest {
+
+    private final Transaction sampleTransaction = new Transaction(
+            UUID.fromString("8a43c3eb-7210-47dd-8e7e-7ae3c92971d7"),
+            BigDecimal.valueOf(-15.67),
+            LocalDate.parse("2023-08-24"),
+            "Café ☕ 😀");
+
+    @Test
+    public void decode_ReturnsEncodedTransaction() {
+        var buffer = ByteBuffer.allocate(2 * TransactionCodec.MAX_RECORD_SIZE);
+        TransactionCodec.encode(sampleTransaction, buffer, TransactionCodec.MAX_RECORD_SIZE);
+        assertEquals(sampleTransaction, TransactionCodec.decode(buffer, TransactionCodec.MAX_RECORD_SIZE));
+        assertEquals(sampleTransaction.id().getMostSignificantBits(), TransactionCodec.idMostSignificantBits(buffer, TransactionCodec.MAX_RECORD_SIZE));
+        assertEquals(sampleTransaction.id().getLeastSignificantBits(), TransactionCodec.idLeastSignificantBits(buffer, TransactionCodec.MAX_RECORD_SIZE));
+    }
+
+    @Test
+    public void encode_ReturnsSizeTakenByDescription() {
+        var buffer = ByteBuffer.allocate(TransactionCodec.MAX_RECORD_SIZE);
+        var size = TransactionCodec.encode(sampleTransaction, buffer, 0);
+        assertEquals(TransactionCodec.FIXED_SIZE + 14, size);
+        assertEquals(size, TransactionCodec.recordSize(buffer, 0));
+    }
+
+    @Test
+    public void decode_ReturnsAmountScaledToCents() {
+        var buffer = ByteBuffer.allocate(TransactionCodec.MAX_RECORD_SIZE);
+        TransactionCodec.encode(new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.now(), ""), buffer, 0);
+        assertEquals(new BigDecimal("1.00"), TransactionCodec.decode(buffer, 0).amount());
+    }
+
+    @Test
+    public void encode_OverwritesPreviousDescription() {
+        var buffer = ByteBuffer.allocate(TransactionCodec.MAX_RECORD_SIZE);
+        TransactionCodec.encode(sampleTransaction, buffer, 0);
+        var shorter = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.now(), "A");
+        TransactionCodec.encode(shorter, buffer, 0);
+        assertEquals("A", TransactionCodec.decode(buffer, 0).description());
+    }
+
+    @Test
+    public void encode_AcceptsFiftyCharactersOfWorstCaseUtf8() {
+        var buffer = ByteBuffer.allocate(TransactionCodec.MAX_RECORD_SIZE);
+        var transaction = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.now(), "☕".repeat(50));
+        TransactionCodec.encode(transaction, buffer, 0);
+        assertEquals(transaction.description(), TransactionCodec.decode(buffer, 0).description());
+    }
+
+    @Test
+    public void encode_ThrowsIllegalArgumentException_WhenDescriptionIsTooLong() {
+        var buffer = ByteBuffer.allocate(TransactionCodec.MAX_RECORD_SIZE);
+        var transaction = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.now(), "☕".repeat(51));
+        var exception = assertThrows(IllegalArgumentException.class, () -> TransactionCodec.encode(transaction, buffer, 0));
+        assertEquals("Description exceeds 150 bytes.", exception.getMessage());
+    }
+
+    @Test
+    public void encode_ThrowsIllegalArgumentException_WhenAmountHasFractionsOfCents() {
+        var buffer = ByteBuffer.allocate(TransactionCodec.MAX_RECORD_SIZE);
+        var transaction = new Transaction(UUID.randomUUID(), new BigDecimal("1.005"), LocalDate.now(), "");
+        var exception = assertThrows(IllegalArgumentException.class, () -> TransactionCodec.encode(transaction, buffer, 0));
+        assertEquals("Amount 1.005 can not be stored in cents.", exception.getMessage());
+    }
+}
@@ -0,0 +1,158 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionIndexTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void find_ReturnsMinusOne_WhenIdIsNotIndexed() throws IOException {
+        try (var index = new TransactionIndex(directory.resolve("test.idx"))) {
+            assertEquals(-1, index.find(UUID.randomUUID()));
+        }
+    }
+
+    @Test
+    public void find_ReturnsOffsetOfIndexedId() throws IOException {
+        var id = UUID.randomUUID();
+        try (var index = new TransactionIndex(directory.resolve("test.idx"))) {
+            index.put(UUID.randomUUID(), 10);
+            index.put(id, 0);
+            assertEquals(0, index.find(id));
+            index.put(id, 42);
+            assertEquals(42, index.find(id));
+        }
+    }
+
+    @Test
+    public void put_GrowsTableBeyondInitialCapacity() throws IOException {
+        var ids = new ArrayList<UUID>();
+        try (var index = new TransactionIndex(directory.resolve("test.idx"))) {
+            index.setCoveredSize(7);
+            for (var i = 0; i < 3 * TransactionIndex.INITIAL_CAPACITY; i++) {
+                var id = UUID.randomUUID();
+                ids.add(id);
+                index.put(id, i);
+            }
+            for (var i = 0; i < ids.size(); i++) {
+                assertEquals(i, index.find(ids.get(i)));
+            }
+            assertEquals(7, index.coveredSize());
+        }
+    }
+
+    @Test
+    public void open_ReadsEntriesWrittenByPreviousInstance() throws IOException {
+        var path = directory.resolve("test.idx");
+        var id = UUID.randomUUID();
+        try (var index = new TransactionIndex(path)) {
+            index.put(id, 15);
+            index.setCoveredSize(100);
+        }
+        try (var index = new TransactionIndex(path)) {
+            assertEquals(15, index.find(id));
+            assertEquals(100, index.coveredSize());
+        }
+    }
+
+    @Test
+    public void discardIfDirty_ClearsIndex_WhenPreviousInstanceWasNotClosed() throws IOException {
+        var path = directory.resolve("test.idx");
+        var id = UUID.randomUUID();
+        try (var index = new TransactionIndex(path)) {
+            index.put(id, 15);
+            index.setCoveredSize(100);
+        }
+        var crashed = new TransactionIndex(path);
+        crashed.put(UUID.randomUUID(), 30);
+        crashed.setCoveredSize(200);
+        try (var index = new TransactionIndex(path)) {
+            index.discardIfDirty();
+            assertEquals(0, index.coveredSize());
+            assertEquals(-1, index.find(id));
+        }
+    }
+
+    @Test
+    public void discardIfDirty_KeepsIndex_WhenPreviousInstanceOnlyRead() throws IOException {
+        var path = directory.resolve("test.idx");
+        var id = UUID.randomUUID();
+        try (var index = new TransactionIndex(path)) {
+            index.put(id, 15);
+            index.setCoveredSize(100);
+        }
+        var reader = new TransactionIndex(path);
+        assertEquals(15, reader.find(id));
+        try (var index = new TransactionIndex(path)) {
+            index.discardIfDirty();
+            assertEquals(100, index.coveredSize());
+        }
+    }
+
+    @Test
+    public void refresh_MapsIndexReplacedByAnotherInstance() throws IOException {
+        var path = directory.resolve("test.idx");
+        var ids = new ArrayList<UUID>();
+        try (var reader = new TransactionIndex(path); var writer = new TransactionIndex(path)) {
+            var id = UUID.randomUUID();
+            writer.put(id, 1);
+            assertEquals(1, reader.find(id));
+            for (var i = 0; i < TransactionIndex.INITIAL_CAPACITY; i++) {
+                ids.add(UUID.randomUUID());
+                writer.put(ids.get(i), i);
+            }
+            assertEquals(-1, reader.find(ids.get(ids.size() - 1)));
+            reader.refresh();
+            for (var i = 0; i < ids.size(); i++) {
+                assertEquals(i, reader.find(ids.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void put_SpreadsIdsWithEqualOrComplementaryHalves() throws IOException {
+        try (var index = new TransactionIndex(directory.resolve("test.idx"))) {
+            for (var i = 0; i < TransactionIndex.INITIAL_CAPACITY; i++) {
+                index.put(new UUID(i, i), i);
+                index.put(new UUID(i, ~i), i);
+            }
+            for (var i = 0; i < TransactionIndex.INITIAL_CAPACITY; i++) {
+                assertEquals(i, index.find(new UUID(i, i)));
+                assertEquals(i, index.find(new UUID(i, ~i)));
+            }
+        }
+    }
+
+    @Test
+    public void open_StartsEmpty_WhenFileIsNotAValidIndex() throws IOException {
+        var path = directory.resolve("test.idx");
+        Files.writeString(path, "not an index");
+        try (var index = new TransactionIndex(path)) {
+            assertEquals(0, index.coveredSize());
+            assertEquals(-1, index.find(UUID.randomUUID()));
+        }
+    }
+
+    @Test
+    public void clear_RemovesAllEntries() throws IOException {
+        var id = UUID.randomUUID();
+        try (var index = new TransactionIndex(directory.resolve("test.idx"))) {
+            index.put(id, 15);
+            index.setCoveredSize(100);
+            index.clear();
+            assertEquals(-1, index.find(id));
+            assertEquals(0, index.coveredSize());
+        }
+    }
+}
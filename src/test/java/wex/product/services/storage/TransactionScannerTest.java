@@ -0,0 +1,78 @@
+package wex.product.services.storage;
+
+import org.junit.jupiter.api.Test;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionScannerTest {
+
+    private static final Transaction FIRST = new Transaction(
+            UUID.fromString("8a522a6c-28e3-4b94-aada-078e7fde20e6"), new BigDecimal("81.12"), LocalDate.parse("2023-07-31"), "First");
+    private static final Transaction SECOND = new Transaction(
+            UUID.fromString("8a43c3eb-7210-47dd-8e7e-7ae3c92971d7"), new BigDecimal("15.67"), LocalDate.parse("2023-08-24"), "Second");
+
+    private static final String CONTENT = """
+            [{"id":"8a522a6c-28e3-4b94-aada-078e7fde20e6","amount":81.12,"date":"2023-07-31","description":"First"},\
+            {"id":"8a43c3eb-7210-47dd-8e7e-7ae3c92971d7","amount":15.67,"date":"2023-08-24","description":"Second"}]""";
+
+    private final TransactionScanner scanner = new TransactionScanner(ObjectMapperFactory.create());
+
+    @Test
+    public void forEach_PassesEveryTransactionInStoredOrder() throws IOException {
+        var transactions = new ArrayList<Transaction>();
+        scanner.forEach(stream(CONTENT), transactions::add);
+        assertEquals(List.of(FIRST, SECOND), transactions);
+    }
+
+    @Test
+    public void find_ReturnsTransactionWithGivenId() throws IOException {
+        assertEquals(SECOND, scanner.find(stream(CONTENT), SECOND.id()));
+        assertNull(scanner.find(stream(CONTENT), UUID.randomUUID()));
+        assertNull(scanner.find(stream("[]"), FIRST.id()));
+    }
+
+    @Test
+    public void find_StopsReading_WhenTransactionIsFound() throws IOException {
+        var damagedTail = CONTENT.substring(0, CONTENT.indexOf("},") + 2) + "{\"id\": broken";
+        assertEquals(FIRST, scanner.find(stream(damagedTail), FIRST.id()));
+        assertThrows(IOException.class, () -> scanner.find(stream(damagedTail), SECOND.id()));
+    }
+
+    @Test
+    public void find_SkipsUnknownFieldsAndBindsFieldsWrittenBeforeId() throws IOException {
+        var content = """
+                [{"note":{"nested":[1,2]},"id":"8a522a6c-28e3-4b94-aada-078e7fde20e6","amount":0,"date":"2023-07-31","description":"Other"},\
+                {"amount":15.67,"date":"2023-08-24","id":"8a43c3eb-7210-47dd-8e7e-7ae3c92971d7","description":"Second"}]""";
+        assertEquals(SECOND, scanner.find(stream(content), SECOND.id()));
+    }
+
+    @Test
+    public void findAll_ReturnsOnlyWantedTransactions() throws IOException {
+        assertEquals(Map.of(FIRST.id(), FIRST, SECOND.id(), SECOND), scanner.findAll(stream(CONTENT), List.of(SECOND.id(), FIRST.id())));
+        assertEquals(Map.of(FIRST.id(), FIRST), scanner.findAll(stream(CONTENT), List.of(FIRST.id(), UUID.randomUUID())));
+        assertEquals(Map.of(), scanner.findAll(stream("not even json"), List.of()));
+    }
+
+    @Test
+    public void find_ThrowsIOException_WhenContentIsNotArrayOfTransactions() {
+        assertThrows(IOException.class, () -> scanner.find(stream("{}"), FIRST.id()));
+        assertThrows(IOException.class, () -> scanner.find(stream("[1]"), FIRST.id()));
+        assertThrows(IOException.class, () -> scanner.find(stream("[{\"id\":1}]"), FIRST.id()));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
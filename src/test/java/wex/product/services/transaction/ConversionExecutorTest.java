@@ -0,0 +1,95 @@
+package wex.product.services.transaction;
+
+import org.junit.jupiter.api.Test;
+import wex.product.services.exchange.ExchangeRateService;
+import wex.product.services.storage.StorageService;
+import wex.product.services.storage.Transaction;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ConversionExecutorTest {
+
+    private static final LocalDate DATE = LocalDate.parse("2023-08-17");
+
+    private final StorageService storageService = mock(StorageService.class);
+    private final ExchangeRateService exchangeRateService = mock(ExchangeRateService.class);
+
+    @Test
+    public void convert_ConvertsWithRateOfPurchaseDate() {
+        when(exchangeRateService.getExchangeRateAsync("currency", DATE)).thenReturn(CompletableFuture.completedFuture(BigDecimal.valueOf(1.5)));
+        var executor = new ConversionExecutor(new TransactionService(storageService, exchangeRateService), Duration.ofSeconds(5));
+
+        var result = executor.convert(storePurchase(), "currency").join();
+
+        assertEquals(new BigDecimal("15.00"), result.convertedAmount());
+    }
+
+    @Test
+    public void convert_FailsWithTimeout_WhenDeadlinePasses() {
+        when(exchangeRateService.getExchangeRateAsync("currency", DATE)).thenReturn(new CompletableFuture<>());
+        var executor = new ConversionExecutor(new TransactionService(storageService, exchangeRateService), Duration.ofMillis(50));
+
+        var exception = assertThrows(ExecutionException.class, executor.convert(storePurchase(), "currency")::get);
+
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+    }
+
+    @Test
+    public void convert_CancelsRateFetch_WhenDeadlinePasses() {
+        var rate = new CompletableFuture<BigDecimal>();
+        when(exchangeRateService.getExchangeRateAsync("currency", DATE)).thenReturn(rate);
+        var executor = new ConversionExecutor(new TransactionService(storageService, exchangeRateService), Duration.ofMillis(50));
+
+        assertThrows(ExecutionException.class, executor.convert(storePurchase(), "currency")::get);
+
+        assertTrue(rate.isCancelled());
+    }
+
+    @Test
+    public void convert_FailsWithNotFound_WhenPurchaseIsNotStored() {
+        var executor = new ConversionExecutor(new TransactionService(storageService, exchangeRateService));
+        var id = UUID.randomUUID();
+
+        var exception = assertThrows(ExecutionException.class, executor.convert(id, "currency")::get);
+
+        assertInstanceOf(TransactionNotFoundException.class, exception.getCause());
+    }
+
+    /**
+     * Conversions waiting on the exchange rate API hold no thread, so all of them are in flight at once on the calling
+     * thread alone and complete together once the rate arrives.
+     */
+    @Test
+    public void convert_KeepsConversionsInFlightWithoutThreads_WhileRateIsPending() {
+        var rate = new CompletableFuture<BigDecimal>();
+        when(exchangeRateService.getExchangeRateAsync(eq("currency"), any())).thenReturn(rate);
+        var executor = new ConversionExecutor(new TransactionService(storageService, exchangeRateService), Duration.ofSeconds(30));
+
+        var conversions = new ArrayList<CompletableFuture<ConvertedTransaction>>();
+        for (var i = 0; i < 1_000; i++) {
+            conversions.add(executor.convert(storePurchase(), "currency"));
+        }
+        assertTrue(conversions.stream().noneMatch(CompletableFuture::isDone));
+
+        rate.complete(BigDecimal.ONE);
+        assertTrue(conversions.stream().allMatch(conversion -> conversion.isDone() && !conversion.isCompletedExceptionally()));
+    }
+
+    private UUID storePurchase() {
+        var transaction = new Transaction(UUID.randomUUID(), BigDecimal.TEN, DATE, "Purchase");
+        when(storageService.findTransaction(transaction.id())).thenReturn(transaction);
+        return transaction.id();
+    }
+}
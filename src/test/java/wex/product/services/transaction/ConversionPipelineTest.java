@@ -0,0 +1,118 @@
+package wex.product.services.transaction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import wex.product.services.storage.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversionPipelineTest {
+
+    private static final LocalDate FIRST_DATE = LocalDate.parse("1969-12-01");
+    private static final HashMap<LocalDate, BigDecimal> RATES = new HashMap<>();
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void convert_ConvertsEveryPurchaseWithRateOfItsDateInInputOrder() {
+        var transactions = transactions(10 * ConversionPipeline.LEAF_SIZE + 7);
+        var requestedDates = new ArrayList<List<LocalDate>>();
+
+        var converted = new ConversionPipeline(pool).convert(transactions, dates -> {
+            requestedDates.add(dates);
+            return CompletableFuture.completedFuture(rates(dates));
+        });
+
+        assertEquals(transactions.size(), converted.size());
+        for (var i = 0; i < transactions.size(); i++) {
+            var transaction = transactions.get(i);
+            assertEquals(TransactionService.convert(transaction, rate(transaction.date())), converted.get(i));
+        }
+        assertEquals(List.of(transactions.stream().map(Transaction::date).distinct().sorted().toList()), requestedDates);
+    }
+
+    @Test
+    public void convert_ReturnsSameResult_WhateverTheParallelism() {
+        var transactions = transactions(3 * ConversionPipeline.LEAF_SIZE);
+        var sequentialPool = new ForkJoinPool(1);
+        try {
+            assertEquals(
+                    new ConversionPipeline(sequentialPool).convert(transactions, dates -> CompletableFuture.completedFuture(rates(dates))),
+                    new ConversionPipeline(pool).convert(transactions, dates -> CompletableFuture.completedFuture(rates(dates)))
+            );
+        } finally {
+            sequentialPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void convert_ThrowsIllegalStateException_WhenRateOfOneDateIsMissing() {
+        var transactions = transactions(100);
+        var missingDate = transactions.get(42).date();
+
+        var rates = rates(transactions.stream().map(Transaction::date).toList());
+        rates.remove(missingDate);
+
+        var exception = assertThrows(IllegalStateException.class,
+                () -> new ConversionPipeline(pool).convert(transactions, dates -> CompletableFuture.completedFuture(rates)));
+
+        assertEquals("The purchase cannot be converted to the target currency.", exception.getMessage());
+    }
+
+    @Test
+    public void convert_ThrowsFetchFailure_WhenRateCanNotBeFetched() {
+        var failure = new RuntimeException("Failed to fetch exchange rate.");
+
+        var exception = assertThrows(RuntimeException.class,
+                () -> new ConversionPipeline(pool).convert(transactions(10), dates -> CompletableFuture.failedFuture(failure)));
+
+        assertSame(failure, exception);
+    }
+
+    @Test
+    public void convert_ReturnsEmptyList_WhenThereAreNoPurchases() {
+        assertEquals(List.of(), new ConversionPipeline(pool).convert(List.of(), dates -> fail("No rate is needed.")));
+    }
+
+    private static List<Transaction> transactions(int count) {
+        var random = new Random(17);
+        var transactions = new ArrayList<Transaction>(count);
+        for (var i = 0; i < count; i++) {
+            transactions.add(new Transaction(
+                    new UUID(i, i),
+                    BigDecimal.valueOf(random.nextInt(1_000_000), 2),
+                    FIRST_DATE.plusDays(random.nextInt(400)),
+                    "Purchase " + i
+            ));
+        }
+        Collections.shuffle(transactions, random);
+        return transactions;
+    }
+
+    private static Map<LocalDate, BigDecimal> rates(List<LocalDate> dates) {
+        var rates = new HashMap<LocalDate, BigDecimal>();
+        dates.forEach(date -> rates.put(date, rate(date)));
+        return rates;
+    }
+
+    private static synchronized BigDecimal rate(LocalDate date) {
+        return RATES.computeIfAbsent(date, ignored -> BigDecimal.valueOf(500 + date.getDayOfYear(), 3));
+    }
+}
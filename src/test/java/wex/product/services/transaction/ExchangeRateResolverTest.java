@@ -0,0 +1,134 @@
+package wex.product.services.transaction;
+
+import org.junit.jupiter.api.Test;
+import wex.product.services.exchange.ExchangeRateRecord;
+import wex.product.services.exchange.ExchangeRateService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExchangeRateResolverTest {
+
+    private final PendingExchangeRateService exchangeRateService = new PendingExchangeRateService();
+
+    @Test
+    public void resolve_FetchesNewestDateAloneThenKeepsAtMostTheLimitInFlight() {
+        var resolver = new ExchangeRateResolver(exchangeRateService, "currency", 2);
+        var dates = List.of(date("2023-01-01"), date("2023-02-01"), date("2023-03-01"), date("2023-04-01"));
+
+        var result = resolver.resolve(dates);
+        assertEquals(List.of(date("2023-04-01")), exchangeRateService.requested());
+
+        exchangeRateService.complete(date("2023-04-01"), date("2023-04-01"), BigDecimal.valueOf(2));
+        assertEquals(List.of(date("2023-04-01"), date("2023-03-01"), date("2023-02-01")), exchangeRateService.requested());
+
+        exchangeRateService.complete(date("2023-02-01"), date("2023-02-01"), BigDecimal.TEN);
+        assertEquals(List.of(date("2023-04-01"), date("2023-03-01"), date("2023-02-01"), date("2023-01-01")), exchangeRateService.requested());
+
+        exchangeRateService.complete(date("2023-03-01"), date("2023-03-01"), BigDecimal.ONE);
+        exchangeRateService.complete(date("2023-01-01"), date("2023-01-01"), null);
+
+        var expected = new HashMap<LocalDate, BigDecimal>();
+        expected.put(date("2023-04-01"), BigDecimal.valueOf(2));
+        expected.put(date("2023-03-01"), BigDecimal.ONE);
+        expected.put(date("2023-02-01"), BigDecimal.TEN);
+        expected.put(date("2023-01-01"), null);
+        assertEquals(expected, result.join());
+    }
+
+    @Test
+    public void resolve_DoesNotFetchDatesWithinFetchedRatePeriod() {
+        var resolver = new ExchangeRateResolver(exchangeRateService, "currency", 1);
+
+        var result = resolver.resolve(List.of(date("2023-04-15"), date("2023-05-20"), date("2023-06-30"), date("2023-03-30")));
+        exchangeRateService.complete(date("2023-06-30"), date("2023-03-31"), BigDecimal.TEN);
+        exchangeRateService.complete(date("2023-03-30"), date("2022-12-31"), BigDecimal.ONE);
+
+        assertEquals(Map.of(
+                date("2023-06-30"), BigDecimal.TEN,
+                date("2023-05-20"), BigDecimal.TEN,
+                date("2023-04-15"), BigDecimal.TEN,
+                date("2023-03-30"), BigDecimal.ONE
+        ), result.join());
+        assertEquals(Map.of(date("2023-04-01"), BigDecimal.TEN), resolver.resolve(List.of(date("2023-04-01"))).join());
+        assertEquals(List.of(date("2023-06-30"), date("2023-03-30")), exchangeRateService.requested());
+    }
+
+    @Test
+    public void resolve_CompletesExceptionally_WhenFetchFails() {
+        var resolver = new ExchangeRateResolver(exchangeRateService, "currency", 1);
+        var failure = new RuntimeException("Failed to fetch exchange rate.");
+
+        var result = resolver.resolve(List.of(date("2023-01-01"), date("2023-02-01")));
+        exchangeRateService.fail(date("2023-02-01"), failure);
+
+        assertSame(failure, assertThrows(CompletionException.class, result::join).getCause());
+        assertEquals(List.of(date("2023-02-01")), exchangeRateService.requested());
+    }
+
+    @Test
+    public void resolve_DoesNotRecurse_WhenRatesAreAlreadyAvailable() {
+        ExchangeRateService cached = new ExchangeRateService() {
+            @Override
+            public BigDecimal getExchangeRate(String currency, LocalDate date) {
+                return BigDecimal.ONE;
+            }
+
+            @Override
+            public CompletableFuture<ExchangeRateRecord> getExchangeRateRecordAsync(String currency, LocalDate date) {
+                return CompletableFuture.completedFuture(new ExchangeRateRecord(currency, date, BigDecimal.ONE));
+            }
+        };
+        var dates = new ArrayList<LocalDate>();
+        for (var day = 0; day < 100_000; day++) {
+            dates.add(LocalDate.ofEpochDay(day));
+        }
+
+        assertEquals(dates.size(), new ExchangeRateResolver(cached, "currency").resolve(dates).join().size());
+    }
+
+    private static LocalDate date(String date) {
+        return LocalDate.parse(date);
+    }
+
+    private static final class PendingExchangeRateService implements ExchangeRateService {
+
+        private final Map<LocalDate, CompletableFuture<ExchangeRateRecord>> fetches = new HashMap<>();
+        private final List<LocalDate> requested = new ArrayList<>();
+
+        @Override
+        public BigDecimal getExchangeRate(String currency, LocalDate date) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized CompletableFuture<ExchangeRateRecord> getExchangeRateRecordAsync(String currency, LocalDate date) {
+            requested.add(date);
+            return fetches.computeIfAbsent(date, ignored -> new CompletableFuture<>());
+        }
+
+        private void complete(LocalDate date, LocalDate recordedDate, BigDecimal rate) {
+            fetch(date).complete(rate == null ? null : new ExchangeRateRecord("currency", recordedDate, rate));
+        }
+
+        private void fail(LocalDate date, RuntimeException failure) {
+            fetch(date).completeExceptionally(failure);
+        }
+
+        private synchronized CompletableFuture<ExchangeRateRecord> fetch(LocalDate date) {
+            return fetches.computeIfAbsent(date, ignored -> new CompletableFuture<>());
+        }
+
+        private synchronized List<LocalDate> requested() {
+            return List.copyOf(requested);
+        }
+    }
+}
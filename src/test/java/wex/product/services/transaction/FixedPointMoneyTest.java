@@ -0,0 +1,112 @@
+package wex.product.services.transaction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FixedPointMoneyTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @ParameterizedTest
+    @CsvSource({
+            "12.50, 0.917, 11.46",
+            "0.05, 0.5, 0.03",
+            "-0.05, 0.5, -0.03",
+            "0.01, 0.49, 0.00",
+            "101.87, 1.527, 155.56",
+            "1, 3, 3.00",
+            "1.5, 1E+3, 1500.00",
+            "10000000000000.00, 99999999.999999, 999999999999990000000.00",
+            "0.01, 0.0000000000000000005, 0.00",
+            "123.456, 1, 123.46"
+    })
+    public void multiply_RoundsHalfUpToCents(BigDecimal amount, BigDecimal rate, BigDecimal expected) {
+        var result = FixedPointMoney.multiply(amount, rate);
+        assertEquals(expected, result);
+        assertEquals(2, result.scale());
+    }
+
+    @Test
+    public void multiply_EqualsBigDecimalArithmetic_ForRandomAmountsAndRates() {
+        var random = new Random(42);
+        for (var i = 0; i < SAMPLES; i++) {
+            var amount = BigDecimal.valueOf(randomUnscaled(random), random.nextInt(3));
+            var rate = BigDecimal.valueOf(randomUnscaled(random), random.nextInt(21) - 1);
+            assertEquivalent(amount, rate);
+        }
+    }
+
+    @Test
+    public void multiply_EqualsBigDecimalArithmetic_ForProductsHalfwayBetweenCents() {
+        var random = new Random(7);
+        for (var i = 0; i < SAMPLES; i++) {
+            var rateScale = 1 + random.nextInt(18);
+            var amount = BigDecimal.valueOf(random.nextInt(2_000_001) - 1_000_000, 2);
+            var rate = BigDecimal.valueOf(5, rateScale).add(BigDecimal.valueOf(random.nextInt(1_000), 0));
+            assertEquivalent(amount, rate);
+        }
+    }
+
+    @Test
+    public void multiply_EqualsBigDecimalArithmetic_NearTheFastPathLimit() {
+        var random = new Random(11);
+        for (var i = 0; i < SAMPLES; i++) {
+            var unscaled = FixedPointMoney.MAX_UNSCALED - 1_000 + random.nextInt(2_000);
+            var amount = BigDecimal.valueOf(random.nextBoolean() ? unscaled : -unscaled, 2);
+            var rate = BigDecimal.valueOf(random.nextInt(20_000), random.nextInt(6));
+            assertEquivalent(amount, rate);
+        }
+    }
+
+    @Test
+    public void unscaled_ReturnsExactUnscaledValue_BelowTheLimit() {
+        var random = new Random(3);
+        for (var i = 0; i < SAMPLES; i++) {
+            var unscaled = random.nextLong() % FixedPointMoney.MAX_UNSCALED;
+            var scale = random.nextInt(19);
+            assertEquals(unscaled, FixedPointMoney.unscaled(BigDecimal.valueOf(unscaled, scale), scale));
+        }
+    }
+
+    @Test
+    public void unscaled_ReturnsNotRepresentable_WhenValueHasMoreDecimalsOrIsTooLarge() {
+        assertEquals(FixedPointMoney.NOT_REPRESENTABLE, FixedPointMoney.unscaled(new BigDecimal("1.005"), 2));
+        assertEquals(FixedPointMoney.NOT_REPRESENTABLE, FixedPointMoney.unscaled(BigDecimal.valueOf(FixedPointMoney.MAX_UNSCALED, 2), 2));
+        assertEquals(FixedPointMoney.NOT_REPRESENTABLE, FixedPointMoney.unscaled(new BigDecimal("1E+100"), 2));
+        assertEquals(FixedPointMoney.NOT_REPRESENTABLE, FixedPointMoney.unscaled(BigDecimal.ONE, 19));
+        assertEquals(100, FixedPointMoney.unscaled(BigDecimal.ONE, 2));
+    }
+
+    @Test
+    public void multiply_ReturnsNotRepresentable_WhenProductOverflows() {
+        assertEquals(FixedPointMoney.NOT_REPRESENTABLE, FixedPointMoney.multiply(Long.MAX_VALUE / 2, 3, 0));
+        assertEquals(FixedPointMoney.NOT_REPRESENTABLE, FixedPointMoney.multiply(Long.MIN_VALUE / 2, 2, 0));
+        assertEquals(-Long.MAX_VALUE + 1, FixedPointMoney.multiply(-(Long.MAX_VALUE / 2), 2, 0));
+    }
+
+    private static void assertEquivalent(BigDecimal amount, BigDecimal rate) {
+        var expected = amount.multiply(rate).setScale(2, RoundingMode.HALF_UP);
+        var actual = FixedPointMoney.multiply(amount, rate);
+        assertEquals(expected, actual, () -> String.format("%s * %s", amount, rate));
+    }
+
+    /**
+     * Mixes small values, values of every magnitude and values near the fast path limit.
+     */
+    private static long randomUnscaled(Random random) {
+        var magnitude = switch (random.nextInt(4)) {
+            case 0 -> random.nextInt(1_000);
+            case 1 -> random.nextLong() >>> (1 + random.nextInt(63));
+            case 2 -> FixedPointMoney.MAX_UNSCALED - 1 - random.nextInt(1_000);
+            default -> random.nextLong() >>> 1;
+        };
+        return random.nextBoolean() ? magnitude : -magnitude;
+    }
+}
@@ -0,0 +1,97 @@
+package wex.product.services.transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wex.product.mapper.ObjectMapperFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchaseFileReaderTest {
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.create();
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void next_ReadsCsvRowsSkippingHeaderAndBlankLines() {
+        var content = "amount,date,description\n81.12,2023-07-31,WALMART\n\n-5,2023-08-01,\"Refund, \"\"partial\"\"\"\n";
+        assertEquals(List.of(
+                new Purchase(new BigDecimal("81.12"), LocalDate.parse("2023-07-31"), "WALMART"),
+                new Purchase(new BigDecimal("-5"), LocalDate.parse("2023-08-01"), "Refund, \"partial\"")
+        ), readAll(content, PurchaseFileReader.Format.CSV));
+    }
+
+    @Test
+    public void next_ReadsJsonLinesKeepingAmountPrecision() {
+        var content = """
+                {"amount":81.125,"date":"2023-07-31","description":"WALMART"}
+                {"amount":"12","date":"2023-08-01","description":"TARGET","ignored":true}
+                """;
+        assertEquals(List.of(
+                new Purchase(new BigDecimal("81.125"), LocalDate.parse("2023-07-31"), "WALMART"),
+                new Purchase(new BigDecimal("12"), LocalDate.parse("2023-08-01"), "TARGET")
+        ), readAll(content, PurchaseFileReader.Format.JSON_LINES));
+    }
+
+    @Test
+    public void next_ThrowsIllegalArgumentExceptionWithLineNumber_WhenCsvRowIsInvalid() {
+        assertInvalid("1,2023-07-31\n", PurchaseFileReader.Format.CSV, "Line 1 of the import file is invalid: expected 3 comma separated fields.");
+        assertInvalid("1,2023-07-31,\"open\n", PurchaseFileReader.Format.CSV, "Line 1 of the import file is invalid: unterminated quoted field.");
+        assertInvalid("1,2023-07-31,A\nx,2023-07-31,B\n", PurchaseFileReader.Format.CSV, "Line 2 of the import file is invalid: amount is not a valid decimal number.");
+        assertInvalid("1,31.07.2023,A\n", PurchaseFileReader.Format.CSV, "Line 1 of the import file is invalid: date is not a valid ISO 8601 date.");
+        assertInvalid(",2023-07-31,A\n", PurchaseFileReader.Format.CSV, "Line 1 of the import file is invalid: amount is not provided.");
+    }
+
+    @Test
+    public void next_ThrowsIllegalArgumentExceptionWithLineNumber_WhenJsonLineIsInvalid() {
+        assertInvalid("{\n", PurchaseFileReader.Format.JSON_LINES, "Line 1 of the import file is invalid: not a valid JSON object.");
+        assertInvalid("[1]\n", PurchaseFileReader.Format.JSON_LINES, "Line 1 of the import file is invalid: not a valid JSON object.");
+        assertInvalid("{\"amount\":1,\"description\":\"A\"}\n", PurchaseFileReader.Format.JSON_LINES, "Line 1 of the import file is invalid: date is not provided.");
+        assertInvalid("{\"amount\":1,\"date\":\"2023-07-31\"}\n", PurchaseFileReader.Format.JSON_LINES, "Line 1 of the import file is invalid: description is not provided.");
+    }
+
+    @Test
+    public void next_ThrowsNoSuchElementException_WhenFileIsExhausted() {
+        var reader = new PurchaseFileReader(new BufferedReader(new StringReader("")), PurchaseFileReader.Format.CSV, objectMapper);
+        assertFalse(reader.hasNext());
+        assertThrows(NoSuchElementException.class, reader::next);
+    }
+
+    @Test
+    public void open_ChoosesFormatByExtension() throws IOException {
+        var csv = Files.writeString(directory.resolve("purchases.csv"), "1,2023-07-31,A\n");
+        var jsonLines = Files.writeString(directory.resolve("purchases.jsonl"), "{\"amount\":1,\"date\":\"2023-07-31\",\"description\":\"A\"}\n");
+        var expected = new Purchase(new BigDecimal("1"), LocalDate.parse("2023-07-31"), "A");
+        try (var reader = PurchaseFileReader.open(csv, objectMapper)) {
+            assertEquals(expected, reader.next());
+        }
+        try (var reader = PurchaseFileReader.open(jsonLines, objectMapper)) {
+            assertEquals(expected, reader.next());
+        }
+    }
+
+    private List<Purchase> readAll(String content, PurchaseFileReader.Format format) {
+        var reader = new PurchaseFileReader(new BufferedReader(new StringReader(content)), format, objectMapper);
+        var purchases = new ArrayList<Purchase>();
+        reader.forEachRemaining(purchases::add);
+        return purchases;
+    }
+
+    private void assertInvalid(String content, PurchaseFileReader.Format format, String message) {
+        var exception = assertThrows(IllegalArgumentException.class, () -> readAll(content, format));
+        assertEquals(message, exception.getMessage());
+    }
+}
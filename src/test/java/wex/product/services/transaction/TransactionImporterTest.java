@@ -0,0 +1,85 @@
+package wex.product.services.transaction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import wex.product.mapper.ObjectMapperFactory;
+import wex.product.services.exchange.ExchangeRateService;
+import wex.product.services.storage.StorageService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class TransactionImporterTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void constructor_ThrowsIllegalArgumentException_WhenBatchSizeIsNotPositive() {
+        var transactionService = new TransactionService(mock(StorageService.class), mock(ExchangeRateService.class));
+        var exception = assertThrows(IllegalArgumentException.class,
+                () -> new TransactionImporter(transactionService, ObjectMapperFactory.create(), 0));
+        assertEquals("Batch size must be positive.", exception.getMessage());
+    }
+
+    @Test
+    public void importFile_StoresPurchasesInBatchesWithStoreRules() throws IOException {
+        var file = directory.resolve("purchases.csv");
+        Files.write(file, IntStream.range(0, 5).mapToObj(i -> i + ".125,2023-07-31,Purchase " + i).toList());
+        var storageService = mock(StorageService.class);
+        var importer = new TransactionImporter(new TransactionService(storageService, mock(ExchangeRateService.class)), ObjectMapperFactory.create(), 2);
+
+        assertEquals(5, importer.importFile(file));
+
+        verify(storageService, times(3)).storeTransactions(anyList());
+        verify(storageService).storeTransactions(argThat(batch -> batch.size() == 1
+                && batch.get(0).amount().equals(new BigDecimal("4.13"))
+                && batch.get(0).description().equals("Purchase 4")));
+    }
+
+    @Test
+    public void importFile_TruncatesDescriptionsOfJsonLines() throws IOException {
+        var file = Files.writeString(directory.resolve("purchases.jsonl"),
+                "{\"amount\":1.005,\"date\":\"2023-07-31\",\"description\":\"Transaction with a description exceeding the limit of 50 characters\"}\n");
+        var storageService = mock(StorageService.class);
+        var importer = new TransactionImporter(new TransactionService(storageService, mock(ExchangeRateService.class)), ObjectMapperFactory.create());
+
+        assertEquals(1, importer.importFile(file));
+
+        verify(storageService).storeTransactions(argThat(batch -> batch.size() == 1
+                && batch.get(0).amount().equals(new BigDecimal("1.01"))
+                && batch.get(0).date().equals(LocalDate.parse("2023-07-31"))
+                && batch.get(0).description().equals("Transaction with a description exceeding the limit")));
+    }
+
+    @Test
+    public void importFile_ReportsImportedCount_WhenLineIsInvalid() throws IOException {
+        var file = directory.resolve("purchases.csv");
+        Files.write(file, List.of("1,2023-07-31,A", "2,2023-07-31,B", "3,2023-07-31,C", "x,2023-07-31,D"));
+        var storageService = mock(StorageService.class);
+        var importer = new TransactionImporter(new TransactionService(storageService, mock(ExchangeRateService.class)), ObjectMapperFactory.create(), 2);
+
+        var exception = assertThrows(IllegalArgumentException.class, () -> importer.importFile(file));
+
+        assertEquals("Line 4 of the import file is invalid: amount is not a valid decimal number. 2 purchases were imported before it.", exception.getMessage());
+        verify(storageService).storeTransactions(anyList());
+    }
+
+    @Test
+    public void importFile_ThrowsUncheckedIOException_WhenFileCanNotBeRead() {
+        var file = directory.resolve("missing.csv");
+        var importer = new TransactionImporter(new TransactionService(mock(StorageService.class), mock(ExchangeRateService.class)), ObjectMapperFactory.create());
+        var exception = assertThrows(UncheckedIOException.class, () -> importer.importFile(file));
+        assertEquals(String.format("Can not read purchases from %s.", file), exception.getMessage());
+    }
+}
@@ -7,13 +7,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import wex.product.services.exchange.ExchangeRateRecord;
 import wex.product.services.exchange.ExchangeRateService;
 import wex.product.services.storage.StorageService;
 import wex.product.services.storage.Transaction;
+import wex.product.services.storage.TransactionQuery;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -82,6 +91,21 @@ public class TransactionServiceTest {
         verify(storageService, times(2)).storeTransaction(any());
     }
 
+    @Test
+    public void storeTransactions_StoresScaledAndTruncatedBatch() {
+        var purchases = List.of(
+                new Purchase(BigDecimal.valueOf(45.7425), LocalDate.parse("2023-08-25"), "Short"),
+                new Purchase(BigDecimal.valueOf(21.5252), LocalDate.parse("2023-08-26"), "Transaction with a description exceeding the limit of 50 characters")
+        );
+
+        var transactions = service.storeTransactions(purchases);
+
+        assertEquals(List.of(BigDecimal.valueOf(45.74), BigDecimal.valueOf(21.53)), transactions.stream().map(Transaction::amount).toList());
+        assertEquals(List.of("Short", "Transaction with a description exceeding the limit"), transactions.stream().map(Transaction::description).toList());
+        assertNotEquals(transactions.get(0).id(), transactions.get(1).id());
+        verify(storageService).storeTransactions(transactions);
+    }
+
     @Test
     public void retrieveTransaction_EnhancesStoredTransactionWithConversionResult() {
         var currency = "currency";
@@ -138,4 +162,220 @@ public class TransactionServiceTest {
 
         assertEquals("The purchase cannot be converted to the target currency.", exception.getMessage());
     }
+
+    @Test
+    public void retrieveTransaction_ConvertsToManyCurrenciesWithOneRatesLookupInCurrenciesOrder() {
+        var storedTransaction = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(12.64), LocalDate.parse("2023-08-17"), "Description");
+
+        when(storageService.findTransaction(storedTransaction.id())).thenReturn(storedTransaction);
+        when(exchangeRateService.getExchangeRatesAsync(List.of("second", "first"), storedTransaction.date()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("first", BigDecimal.valueOf(1.254), "second", BigDecimal.valueOf(2))));
+
+        var result = service.retrieveTransaction(storedTransaction.id(), List.of("second", "first"));
+
+        assertEquals(List.of("second", "first"), List.copyOf(result.keySet()));
+        assertEquals(BigDecimal.valueOf(25.28), result.get("second").convertedAmount());
+        assertEquals(BigDecimal.valueOf(15.85), result.get("first").convertedAmount());
+        assertEquals(BigDecimal.valueOf(1.254), result.get("first").exchangeRate());
+    }
+
+    @Test
+    public void retrieveTransaction_ThrowsRuntimeException_WhenOneOfCurrenciesHasNoRate() {
+        var storedTransaction = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(12.64), LocalDate.parse("2023-08-17"), "Description");
+
+        when(storageService.findTransaction(storedTransaction.id())).thenReturn(storedTransaction);
+        when(exchangeRateService.getExchangeRatesAsync(List.of("first", "second"), storedTransaction.date()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("first", BigDecimal.ONE)));
+
+        var exception = assertThrows(IllegalStateException.class, () -> service.retrieveTransaction(storedTransaction.id(), List.of("first", "second")));
+
+        assertEquals("The purchase cannot be converted to second.", exception.getMessage());
+    }
+
+    @Test
+    public void retrieveTransactionInAllCurrencies_ConvertsToEveryCurrencyWithRateOrderedByCurrency() {
+        var storedTransaction = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(10), LocalDate.parse("2023-08-17"), "Description");
+
+        when(storageService.findTransaction(storedTransaction.id())).thenReturn(storedTransaction);
+        when(exchangeRateService.getAllExchangeRatesAsync(storedTransaction.date()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("b", BigDecimal.valueOf(2), "a", BigDecimal.valueOf(3), "c", BigDecimal.ONE)));
+
+        var result = service.retrieveTransactionInAllCurrencies(storedTransaction.id());
+
+        assertEquals(List.of("a", "b", "c"), List.copyOf(result.keySet()));
+        assertEquals(BigDecimal.valueOf(3000, 2), result.get("a").convertedAmount());
+    }
+
+    @Test
+    public void retrieveTransactionAsync_ComposesStorageLookupAndAsyncRateFetch() {
+        var currency = "currency";
+        var exchangeRate = BigDecimal.valueOf(1.254);
+        var storedTransaction = new Transaction(
+                UUID.randomUUID(),
+                BigDecimal.valueOf(12.64),
+                LocalDate.now(),
+                "Description"
+        );
+
+        when(storageService.findTransaction(storedTransaction.id())).thenReturn(storedTransaction);
+        when(exchangeRateService.getExchangeRateAsync(currency, storedTransaction.date())).thenReturn(CompletableFuture.completedFuture(exchangeRate));
+
+        var result = service.retrieveTransactionAsync(storedTransaction.id(), currency).join();
+
+        assertEquals(BigDecimal.valueOf(15.85), result.convertedAmount());
+        assertEquals(exchangeRate, result.exchangeRate());
+    }
+
+    @Test
+    public void retrieveTransactionAsync_LooksTransactionUpOnStorageExecutor() {
+        var executed = new AtomicInteger();
+        var asyncService = new TransactionService(storageService, exchangeRateService, command -> {
+            executed.incrementAndGet();
+            command.run();
+        });
+        var id = UUID.randomUUID();
+
+        when(storageService.findTransaction(id)).thenReturn(null);
+
+        var exception = assertThrows(CompletionException.class, () -> asyncService.retrieveTransactionAsync(id, "currency").join());
+
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals(1, executed.get());
+    }
+
+    @Test
+    public void retrieveTransactionAsync_CompletesExceptionally_WhenNoRatesProvided() {
+        var currency = "currency";
+        var storedTransaction = new Transaction(
+                UUID.randomUUID(),
+                BigDecimal.valueOf(12.64),
+                LocalDate.now(),
+                "Description"
+        );
+
+        when(storageService.findTransaction(storedTransaction.id())).thenReturn(storedTransaction);
+        when(exchangeRateService.getExchangeRateAsync(currency, storedTransaction.date())).thenReturn(CompletableFuture.completedFuture(null));
+
+        var exception = assertThrows(CompletionException.class, () -> service.retrieveTransactionAsync(storedTransaction.id(), currency).join());
+
+        assertEquals("The purchase cannot be converted to the target currency.", exception.getCause().getMessage());
+    }
+
+    @Test
+    public void retrieveTransactions_FetchesRateOfEachDistinctDateOnceAndKeepsIdsOrder() {
+        var currency = "currency";
+        var firstDate = LocalDate.parse("2023-08-17");
+        var secondDate = LocalDate.parse("2023-09-01");
+        var first = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(10), firstDate, "First");
+        var second = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(20), secondDate, "Second");
+        var third = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(30), firstDate, "Third");
+        var ids = List.of(third.id(), first.id(), second.id());
+
+        when(storageService.findTransactions(ids)).thenReturn(Map.of(first.id(), first, second.id(), second, third.id(), third));
+        when(exchangeRateService.getExchangeRateRecordAsync(currency, firstDate)).thenReturn(record(firstDate, BigDecimal.valueOf(1.5)));
+        when(exchangeRateService.getExchangeRateRecordAsync(currency, secondDate)).thenReturn(record(secondDate, BigDecimal.valueOf(2)));
+
+        var result = service.retrieveTransactions(ids, currency).toList();
+
+        assertEquals(List.of(third.id(), first.id(), second.id()), result.stream().map(ConvertedTransaction::id).toList());
+        assertEquals(List.of(new BigDecimal("45.00"), new BigDecimal("15.00"), new BigDecimal("40.00")),
+                result.stream().map(ConvertedTransaction::convertedAmount).toList());
+        verify(storageService).findTransactions(ids);
+        verify(exchangeRateService).getExchangeRateRecordAsync(currency, firstDate);
+        verify(exchangeRateService).getExchangeRateRecordAsync(currency, secondDate);
+    }
+
+    @Test
+    public void retrieveTransactions_FetchesRateOncePerRatePeriod() {
+        var currency = "currency";
+        var recordedDate = LocalDate.parse("2023-06-30");
+        var latestDate = LocalDate.parse("2023-09-01");
+        var first = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(10), latestDate, "First");
+        var second = new Transaction(UUID.randomUUID(), BigDecimal.valueOf(20), LocalDate.parse("2023-07-15"), "Second");
+        var ids = List.of(first.id(), second.id());
+
+        when(storageService.findTransactions(ids)).thenReturn(Map.of(first.id(), first, second.id(), second));
+        when(exchangeRateService.getExchangeRateRecordAsync(currency, latestDate)).thenReturn(record(recordedDate, BigDecimal.valueOf(2)));
+
+        var result = service.retrieveTransactions(ids, currency).toList();
+
+        assertEquals(List.of(new BigDecimal("20.00"), new BigDecimal("40.00")), result.stream().map(ConvertedTransaction::convertedAmount).toList());
+        verify(storageService).findTransactions(ids);
+        verify(exchangeRateService).getExchangeRateRecordAsync(currency, latestDate);
+    }
+
+    @Test
+    public void retrieveTransactions_ThrowsRuntimeException_WhenOneOfTransactionsIsNotFound() {
+        var stored = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.now(), "Stored");
+        var missingId = UUID.fromString("9c54da8b-94ec-4ead-b480-7e271470a9fd");
+        var ids = List.of(stored.id(), missingId);
+
+        when(storageService.findTransactions(ids)).thenReturn(Map.of(stored.id(), stored));
+
+        var exception = assertThrows(RuntimeException.class, () -> service.retrieveTransactions(ids, "currency"));
+
+        assertEquals("Can not find the purchase with id 9c54da8b-94ec-4ead-b480-7e271470a9fd.", exception.getMessage());
+        verify(storageService).findTransactions(ids);
+    }
+
+    @Test
+    public void retrieveTransactions_ThrowsFetchFailure_WhenRateCanNotBeFetched() {
+        var stored = new Transaction(UUID.randomUUID(), BigDecimal.ONE, LocalDate.now(), "Stored");
+        var ids = List.of(stored.id());
+        var failure = new RuntimeException("Failed to fetch exchange rate.");
+
+        when(storageService.findTransactions(ids)).thenReturn(Map.of(stored.id(), stored));
+        when(exchangeRateService.getExchangeRateRecordAsync("currency", stored.date())).thenReturn(CompletableFuture.failedFuture(failure));
+
+        var result = service.retrieveTransactions(ids, "currency");
+
+        assertSame(failure, assertThrows(RuntimeException.class, result::toList));
+        verify(storageService).findTransactions(ids);
+        verify(exchangeRateService).getExchangeRateRecordAsync("currency", stored.date());
+    }
+
+    @Test
+    public void queryTransactions_PassesStoredTransactionsToConsumer() {
+        var query = TransactionQuery.byDescriptionPrefix("WAL");
+        Consumer<Transaction> consumer = transaction -> {
+        };
+
+        service.queryTransactions(query, consumer);
+
+        verify(storageService).queryTransactions(query, consumer);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void queryTransactions_ConvertsTransactionsFetchingRateOfEachDateOnce() {
+        var currency = "currency";
+        var query = TransactionQuery.byDateRange(LocalDate.parse("2023-08-01"), LocalDate.parse("2023-09-30"));
+        var firstDate = LocalDate.parse("2023-08-17");
+        var secondDate = LocalDate.parse("2023-09-01");
+        var first = new Transaction(UUID.randomUUID(), new BigDecimal("10.00"), firstDate, "First");
+        var second = new Transaction(UUID.randomUUID(), new BigDecimal("20.00"), firstDate, "Second");
+        var third = new Transaction(UUID.randomUUID(), new BigDecimal("30.00"), secondDate, "Third");
+
+        doAnswer(invocation -> {
+            var consumer = (Consumer<Transaction>) invocation.getArgument(1);
+            List.of(first, second, third).forEach(consumer);
+            return null;
+        }).when(storageService).queryTransactions(eq(query), any());
+        when(exchangeRateService.getExchangeRateRecordAsync(currency, firstDate)).thenReturn(record(firstDate, BigDecimal.valueOf(1.5)));
+        when(exchangeRateService.getExchangeRateRecordAsync(currency, secondDate)).thenReturn(record(secondDate, BigDecimal.valueOf(2)));
+
+        var result = new ArrayList<ConvertedTransaction>();
+        service.queryTransactions(query, currency, result::add);
+
+        assertEquals(List.of(first.id(), second.id(), third.id()), result.stream().map(ConvertedTransaction::id).toList());
+        assertEquals(List.of(new BigDecimal("15.00"), new BigDecimal("30.00"), new BigDecimal("60.00")),
+                result.stream().map(ConvertedTransaction::convertedAmount).toList());
+        verify(storageService).queryTransactions(eq(query), any());
+        verify(exchangeRateService).getExchangeRateRecordAsync(currency, firstDate);
+        verify(exchangeRateService).getExchangeRateRecordAsync(currency, secondDate);
+    }
+
+    private static CompletableFuture<ExchangeRateRecord> record(LocalDate date, BigDecimal rate) {
+        return CompletableFuture.completedFuture(new ExchangeRateRecord("currency", date, rate));
+    }
 }
@@ -0,0 +1,43 @@
+package wex.product.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyTest {
+
+    @Test
+    public void get_CreatesValueOnFirstCallOnly() {
+        var calls = new AtomicInteger();
+        var lazy = Lazy.of(() -> "value-" + calls.incrementAndGet());
+
+        assertFalse(lazy.isCreated());
+        assertEquals(0, calls.get());
+        assertEquals("value-1", lazy.get());
+        assertEquals("value-1", lazy.get());
+        assertTrue(lazy.isCreated());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void get_CreatesValueAgain_WhenPreviousAttemptFailed() {
+        var calls = new AtomicInteger();
+        var lazy = Lazy.of(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("test");
+            }
+            return "value";
+        });
+
+        assertThrows(IllegalStateException.class, lazy::get);
+        assertEquals("value", lazy.get());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void get_ThrowsNullPointerException_WhenFactoryReturnsNull() {
+        assertThrows(NullPointerException.class, () -> Lazy.of(() -> null).get());
+    }
+}
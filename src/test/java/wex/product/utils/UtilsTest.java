@@ -2,8 +2,10 @@ package wex.product.utils;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wex.product.utils.Utils.cancelling;
 import static wex.product.utils.Utils.readTextResource;
 
 public class UtilsTest {
@@ -18,4 +20,24 @@ public class UtilsTest {
         var result = readTextResource("test-resource.txt");
         assertEquals(String.format("Multiline%nResource%nText"), result);
     }
+
+    @Test
+    public void cancelling_CancelsSource_WhenDerivedFutureTimesOut() {
+        var source = new CompletableFuture<String>();
+        var derived = cancelling(source.thenApply(String::length), source);
+
+        derived.completeExceptionally(new RuntimeException("Timed out."));
+
+        assertTrue(source.isCancelled());
+    }
+
+    @Test
+    public void cancelling_KeepsSource_WhenDerivedFutureCompletes() {
+        var source = new CompletableFuture<String>();
+        var derived = cancelling(new CompletableFuture<Integer>(), source);
+
+        derived.complete(1);
+
+        assertFalse(source.isDone());
+    }
 }